@@ -0,0 +1,135 @@
+package ru.clevertec.bank.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with {@code -rf json} and prints the change of every benchmark.
+ * A benchmark is reported as a regression when it got worse by more than the threshold and
+ * the difference is larger than the combined error of both runs. Higher is better for throughput modes,
+ * lower is better for time modes. Exits with status 1 if any benchmark regressed.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class BenchmarkReport {
+
+    private static final String ROW = "%-90s %16s %16s %9s  %s%n";
+
+    private BenchmarkReport() {
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args The baseline file, the current results file and the optional threshold in percent.
+     * @throws IOException If a result file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkReport <baseline.json> <results.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Result> baseline = read(Path.of(args[0]));
+        Map<String, Result> current = read(Path.of(args[1]));
+        int regressions = print(baseline, current, threshold, System.out);
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints the comparison table.
+     *
+     * @param baseline  The baseline results by benchmark key.
+     * @param current   The current results by benchmark key.
+     * @param threshold The regression threshold in percent.
+     * @param out       The stream to print to.
+     * @return The number of regressions.
+     */
+    public static int print(Map<String, Result> baseline, Map<String, Result> current, double threshold, PrintStream out) {
+        int regressions = 0;
+        out.printf(ROW, "Benchmark", "Baseline", "Current", "Change", "");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                out.printf(ROW, entry.getKey(), "-", now.format(), "-", "new");
+                continue;
+            }
+            double change = (now.score() - before.score()) / before.score() * 100;
+            double worse = now.higherIsBetter() ? -change : change;
+            boolean significant = Math.abs(now.score() - before.score()) > now.error() + before.error();
+            String verdict = "";
+            if (significant && worse > threshold) {
+                verdict = "REGRESSION";
+                regressions++;
+            } else if (significant && worse < -threshold) {
+                verdict = "improvement";
+            }
+            out.printf(ROW, entry.getKey(), before.format(), now.format(), "%+.1f%%".formatted(change), verdict);
+        }
+        for (String missing : baseline.keySet()) {
+            if (!current.containsKey(missing)) {
+                out.printf(ROW, missing, baseline.get(missing).format(), "-", "-", "not run");
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Reads a JMH JSON result file.
+     *
+     * @param file The result file.
+     * @return The results keyed by benchmark name, mode and parameters.
+     * @throws IOException If the file cannot be read.
+     */
+    public static Map<String, Result> read(Path file) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(Files.readString(file));
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonNode benchmark : root) {
+            StringBuilder key = new StringBuilder(benchmark.get("benchmark").asText()
+                    .replace("ru.clevertec.bank.", ""));
+            String mode = benchmark.get("mode").asText();
+            key.append(" [").append(mode);
+            JsonNode params = benchmark.get("params");
+            if (params != null) {
+                params.fields().forEachRemaining(param ->
+                        key.append(", ").append(param.getKey()).append('=').append(param.getValue().asText()));
+            }
+            key.append(']');
+            JsonNode metric = benchmark.get("primaryMetric");
+            double error = metric.get("scoreError").asDouble();
+            results.put(key.toString(), new Result(
+                    metric.get("score").asDouble(),
+                    Double.isNaN(error) ? 0 : error,
+                    metric.get("scoreUnit").asText(),
+                    "thrpt".equals(mode)
+            ));
+        }
+        return results;
+    }
+
+    /**
+     * Primary metric of one benchmark.
+     *
+     * @param score          The score.
+     * @param error          The score error at 99.9%.
+     * @param unit           The unit of the score.
+     * @param higherIsBetter Whether a higher score is an improvement.
+     */
+    public record Result(double score, double error, String unit, boolean higherIsBetter) {
+
+        String format() {
+            return "%.3f %s".formatted(score, unit);
+        }
+    }
+}
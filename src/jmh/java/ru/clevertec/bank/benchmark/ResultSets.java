@@ -0,0 +1,48 @@
+package ru.clevertec.bank.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.Map;
+
+/**
+ * In-memory {@link ResultSet} rows for benchmarking {@code construct} methods without a database.
+ * Every {@code getXxx(String)} call returns the value stored under the column label and every
+ * {@code getXxx(int)} call the value of the column at that position, counting from 1 in the order of the map;
+ * {@code wasNull()} reports whether the last value read was null.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class ResultSets {
+
+    private ResultSets() {
+    }
+
+    /**
+     * Creates a result set positioned on one row.
+     *
+     * @param columns The column values keyed by column label, in the order of the select list.
+     * @return The result set.
+     */
+    public static ResultSet row(Map<String, Object> columns) {
+        Object[] values = columns.values().toArray();
+        Object[] last = new Object[1];
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSets.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if ("wasNull".equals(name)) {
+                        return last[0] == null;
+                    }
+                    if (name.startsWith("get") && args != null && args.length == 1) {
+                        Object value = args[0] instanceof Integer index ? values[index - 1] : columns.get(args[0]);
+                        last[0] = value;
+                        if (value == null && method.getReturnType().isPrimitive()) {
+                            return method.getReturnType() == boolean.class ? Boolean.FALSE : 0L;
+                        }
+                        return value;
+                    }
+                    throw new UnsupportedOperationException(name);
+                });
+    }
+}
@@ -0,0 +1,73 @@
+package ru.clevertec.bank.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Jackson serialization of the response records as the servlets write them,
+ * using the {@link ObjectMapper} configured in {@link ApplicationConfig}.
+ *
+ * @author Andrei Yuryeu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class DtoSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private AccountResponseDto account;
+    private TransactionResponseDto transaction;
+    private List<TransactionResponseDto> transactions;
+
+    @Setup
+    public void setUp() {
+        objectMapper = ApplicationConfig.getObjectMapper();
+        account = new AccountResponseDto(1L, "0104100100000001", Money.of(new BigDecimal("1234.31"), Currency.BYN), Currency.BYN,
+                1L, 1L, LocalDate.of(2001, 11, 18));
+        transaction = new TransactionResponseDto(5L, Money.of(new BigDecimal("567.55"), Currency.EUR), TransactionType.TRANSFER, Currency.EUR, 5L, 1L,
+                LocalDateTime.of(2023, 12, 4, 12, 45, 7), new BigDecimal("3.42"), Money.of(new BigDecimal("1941.02"), Currency.BYN));
+        transactions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            transactions.add(transaction);
+        }
+    }
+
+    @Benchmark
+    public String account() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(account);
+    }
+
+    @Benchmark
+    public String transaction() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(transaction);
+    }
+
+    @Benchmark
+    public String transactionPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(transactions);
+    }
+}
@@ -0,0 +1,71 @@
+package ru.clevertec.bank.entity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.clevertec.bank.util.exchange.ExchangeRates;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the arithmetic of a cross-currency transfer (balance check, debit, conversion, credit)
+ * on {@link BigDecimal} amounts, as it was done before, against {@link Money} amounts.
+ *
+ * @author Andrei Yuryeu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class MoneyBenchmark {
+
+    private BigDecimal rate;
+    private BigDecimal senderBalance;
+    private BigDecimal receiverBalance;
+    private BigDecimal amount;
+    private Money senderMoney;
+    private Money receiverMoney;
+    private Money amountMoney;
+
+    @Setup
+    public void setUp() {
+        rate = new BigDecimal("102.2600000000");
+        senderBalance = new BigDecimal("10025.85");
+        receiverBalance = new BigDecimal("12577.98");
+        amount = new BigDecimal("123.00");
+        senderMoney = Money.of(senderBalance, Currency.EUR);
+        receiverMoney = Money.of(receiverBalance, Currency.RUB);
+        amountMoney = Money.of(amount, Currency.EUR);
+    }
+
+    @Benchmark
+    public void bigDecimalTransfer(Blackhole blackhole) {
+        if (senderBalance.compareTo(amount) < 0) {
+            return;
+        }
+        BigDecimal converted = ExchangeRates.convert(amount, rate);
+        blackhole.consume(senderBalance.subtract(amount));
+        blackhole.consume(receiverBalance.add(converted));
+    }
+
+    @Benchmark
+    public void moneyTransfer(Blackhole blackhole) {
+        if (senderMoney.isLessThan(amountMoney)) {
+            return;
+        }
+        Money converted = amountMoney.convert(rate, Currency.RUB);
+        blackhole.consume(senderMoney.minus(amountMoney));
+        blackhole.consume(receiverMoney.plus(converted));
+    }
+}
@@ -0,0 +1,80 @@
+package ru.clevertec.bank.mapper;
+
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.clevertec.bank.dto.AccountResponseDto;
+import ru.clevertec.bank.dto.TransactionResponseDto;
+import ru.clevertec.bank.entity.Account;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.entity.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the MapStruct mappers from entities to response DTOs, one by one and as lists.
+ *
+ * @author Andrei Yuryeu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class MapperBenchmark {
+
+    @Param({"100"})
+    private int size;
+
+    private final AccountMapper accountMapper = Mappers.getMapper(AccountMapper.class);
+    private final TransactionMapper transactionMapper = Mappers.getMapper(TransactionMapper.class);
+    private Account account;
+    private Transaction transaction;
+    private List<Transaction> transactions;
+
+    @Setup
+    public void setUp() {
+        account = new Account("0104100100000001", Money.of(new BigDecimal("1234.31"), Currency.BYN), Currency.BYN,
+                1L, 1L, LocalDate.of(2001, 11, 18), true);
+        account.setId(1L);
+        transaction = new Transaction(Money.of(new BigDecimal("567.55"), Currency.EUR), TransactionType.TRANSFER, Currency.EUR, 5L, 1L,
+                LocalDateTime.of(2023, 12, 4, 12, 45, 7), new BigDecimal("3.42"), Money.of(new BigDecimal("1941.02"), Currency.BYN));
+        transaction.setId(5L);
+        transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            transactions.add(transaction);
+        }
+    }
+
+    @Benchmark
+    public AccountResponseDto accountToDto() {
+        return accountMapper.toDto(account);
+    }
+
+    @Benchmark
+    public TransactionResponseDto transactionToDto() {
+        return transactionMapper.toDto(transaction);
+    }
+
+    @Benchmark
+    public List<TransactionResponseDto> transactionsToDto() {
+        return transactionMapper.toListOfDto(transactions);
+    }
+}
@@ -0,0 +1,146 @@
+package ru.clevertec.bank.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.clevertec.bank.util.jdbc.PostgresDataSources;
+import ru.clevertec.bank.util.yaml.PostgresProperties;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one execution of {@link AccountRepository#SELECT_BY_NUMBER_QUERY} and
+ * {@link AccountRepository#ADD_TO_BALANCE_QUERY} against Postgres started with Testcontainers,
+ * or against the empty database given by the {@code jmh.jdbcUrl}, {@code jmh.user} and {@code jmh.password}
+ * system properties, the way a repository method runs it: borrow a connection, prepare, execute, close.
+ * <ul>
+ *     <li>{@code connectionPerCall} - a new physical connection per call, as before pooling;</li>
+ *     <li>{@code pooledUnnamed} - pooled connections with server-side prepare disabled,
+ *     so every execution is parsed and planned again;</li>
+ *     <li>{@code pooledServerPrepared} - pooled connections with {@code prepareThreshold} 1,
+ *     so the statement is planned once per connection and then only bound and executed.</li>
+ * </ul>
+ * The difference between the last two is the parse and plan time saved by the statement cache.
+ * Without {@code jmh.jdbcUrl} it requires Docker.
+ *
+ * @author Andrei Yuryeu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(3)
+public class PreparedStatementBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final String SCHEMA = """
+        CREATE TABLE accounts (
+            id BIGSERIAL PRIMARY KEY,
+            number VARCHAR(34) NOT NULL,
+            balance NUMERIC(15, 2) NOT NULL,
+            checkpoint_posting_id BIGINT NOT NULL DEFAULT 0,
+            active BOOLEAN NOT NULL
+        );
+        INSERT INTO accounts (number, balance, active)
+        SELECT LPAD(s::text, 16, '0'), 100, TRUE FROM GENERATE_SERIES(1, %d) AS s;
+        CREATE INDEX accounts_number_idx ON accounts (number);
+        ANALYZE accounts;
+    """.formatted(ACCOUNTS);
+    private static final String DROP_SCHEMA = "DROP TABLE accounts";
+
+    @Param({"connectionPerCall", "pooledUnnamed", "pooledServerPrepared"})
+    private String mode;
+
+    private PostgreSQLContainer<?> container;
+    private DataSource dataSource;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        PostgresProperties properties = new PostgresProperties();
+        String url = System.getProperty("jmh.jdbcUrl");
+        if (url == null) {
+            container = new PostgreSQLContainer<>("postgres:15-alpine");
+            container.start();
+            properties.setUrl(container.getJdbcUrl());
+            properties.setUser(container.getUsername());
+            properties.setPassword(container.getPassword());
+        } else {
+            properties.setUrl(url);
+            properties.setUser(System.getProperty("jmh.user", "postgres"));
+            properties.setPassword(System.getProperty("jmh.password", "postgres"));
+        }
+        properties.setPrepareThreshold(mode.equals("pooledUnnamed") ? 0 : 1);
+        dataSource = mode.equals("connectionPerCall")
+                ? PostgresDataSources.simple(properties)
+                : PostgresDataSources.pooled(properties);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()
+        ) {
+            statement.execute(SCHEMA);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (container != null) {
+            container.stop();
+        } else {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()
+            ) {
+                statement.execute(DROP_SCHEMA);
+            }
+        }
+        if (dataSource instanceof HikariDataSource pool) {
+            pool.close();
+        }
+    }
+
+    @Benchmark
+    public long selectByNumber() throws SQLException {
+        String number = "%016d".formatted(ThreadLocalRandom.current().nextInt(1, ACCOUNTS + 1));
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(
+                     AccountRepository.SELECT_BY_NUMBER_QUERY)
+        ) {
+            preparedStatement.setString(1, number);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong("id") : 0;
+            }
+        }
+    }
+
+    @Benchmark
+    public int updateBalance() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(
+                     AccountRepository.ADD_TO_BALANCE_QUERY)
+        ) {
+            preparedStatement.setBigDecimal(1, BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(100_000), 2));
+            preparedStatement.setLong(2, 0);
+            preparedStatement.setLong(3, ThreadLocalRandom.current().nextLong(1, ACCOUNTS + 1));
+            return preparedStatement.executeUpdate();
+        }
+    }
+}
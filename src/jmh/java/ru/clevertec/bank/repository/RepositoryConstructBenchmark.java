@@ -0,0 +1,86 @@
+package ru.clevertec.bank.repository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.clevertec.bank.benchmark.ResultSets;
+import ru.clevertec.bank.entity.Account;
+import ru.clevertec.bank.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mapping of a result set row into an entity by the repositories.
+ * The rows are served by {@link ResultSets}, so only the work done by {@code construct} is measured.
+ *
+ * @author Andrei Yuryeu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class RepositoryConstructBenchmark {
+
+    private AccountRepository accountRepository;
+    private TransactionRepository transactionRepository;
+    private ResultSet accountRow;
+    private ResultSet transactionRow;
+
+    @Setup
+    public void setUp() {
+        accountRepository = new AccountRepository(null);
+        transactionRepository = new TransactionRepository(null);
+
+        Map<String, Object> account = new LinkedHashMap<>();
+        account.put("id", 1L);
+        account.put("number", "0104100100000001");
+        account.put("balance", new BigDecimal("1234.31"));
+        account.put("currency", "BYN");
+        account.put("bank_id", 1L);
+        account.put("user_id", 1L);
+        account.put("created_date", Date.valueOf(LocalDate.of(2001, 11, 18)));
+        account.put("active", true);
+        accountRow = ResultSets.row(account);
+
+        Map<String, Object> transaction = new LinkedHashMap<>();
+        transaction.put("id", 5L);
+        transaction.put("amount", new BigDecimal("567.55"));
+        transaction.put("type", "TRANSFER");
+        transaction.put("currency", "EUR");
+        transaction.put("sender_account_id", 5L);
+        transaction.put("receiver_account_id", 1L);
+        transaction.put("created_date", Timestamp.valueOf(LocalDateTime.of(2023, 12, 4, 12, 45, 7)));
+        transaction.put("exchange_rate", new BigDecimal("3.4200000000"));
+        transaction.put("converted_amount", new BigDecimal("1941.02"));
+        transaction.put("converted_currency", "BYN");
+        transactionRow = ResultSets.row(transaction);
+    }
+
+    @Benchmark
+    public Account constructAccount() throws SQLException {
+        return accountRepository.construct(accountRow);
+    }
+
+    @Benchmark
+    public Transaction constructTransaction() throws SQLException {
+        return transactionRepository.construct(transactionRow);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.clevertec.bank.util.check;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.clevertec.bank.entity.Account;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.entity.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a transfer check, including the file written into {@code checks} under the working directory.
+ *
+ * @author Andrei Yuryeu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class CheckGeneratorBenchmark {
+
+    private Transaction transaction;
+    private Account sender;
+    private Account receiver;
+
+    @Setup
+    public void setUp() {
+        transaction = new Transaction(Money.of(new BigDecimal("100.11"), Currency.BYN), TransactionType.TRANSFER, Currency.BYN, 1L, 2L,
+                LocalDateTime.of(2023, 12, 18, 12, 11, 7), BigDecimal.ONE, Money.of(new BigDecimal("100.11"), Currency.BYN));
+        sender = new Account("0104100100000001", Money.of(new BigDecimal("1234.31"), Currency.BYN), Currency.BYN,
+                1L, 1L, LocalDate.of(2001, 11, 18), true);
+        receiver = new Account("0104100100000002", Money.of(new BigDecimal("500123.01"), Currency.BYN), Currency.BYN,
+                3L, 1L, LocalDate.of(2022, 9, 22), true);
+    }
+
+    @Benchmark
+    public void generateCheck() {
+        CheckGenerator.generateCheck(transaction, sender, receiver);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.clevertec.bank.util.statement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.clevertec.bank.dto.AccountResponseDto;
+import ru.clevertec.bank.dto.TransactionResponseDto;
+import ru.clevertec.bank.dto.UserResponseDto;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering and saving the PDF statements into {@code statements} under the working directory.
+ *
+ * @author Andrei Yuryeu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class PdfStatementGeneratorBenchmark {
+
+    @Param({"30"})
+    private int transactionCount;
+
+    private UserResponseDto user;
+    private AccountResponseDto account;
+    private List<TransactionResponseDto> transactions;
+    private final LocalDate from = LocalDate.of(2023, 1, 1);
+    private final LocalDate to = LocalDate.of(2023, 12, 31);
+
+    @Setup
+    public void setUp() {
+        user = new UserResponseDto(1L, "Maria", "Ivanova", LocalDate.of(2001, 11, 3));
+        account = new AccountResponseDto(1L, "0104100100000001", Money.of(new BigDecimal("1234.31"), Currency.BYN), Currency.BYN,
+                1L, 1L, LocalDate.of(2001, 11, 18));
+        transactions = new ArrayList<>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+            TransactionType type = i % 2 == 0 ? TransactionType.REFILL : TransactionType.WITHDRAW;
+            transactions.add(new TransactionResponseDto((long) i, Money.of(new BigDecimal("100.11"), Currency.BYN), type, Currency.BYN, null, 1L,
+                    LocalDateTime.of(2023, 12, 18, 12, 11, 7), BigDecimal.ONE, Money.of(new BigDecimal("100.11"), Currency.BYN)));
+        }
+    }
+
+    @Benchmark
+    public boolean moneyStatement() {
+        return PdfStatementGenerator.generatePdfMoneyStatement(user, account,
+                Money.of(new BigDecimal("1941.02"), Currency.BYN), Money.of(new BigDecimal("100.11"), Currency.BYN), from, to);
+    }
+
+    @Benchmark
+    public boolean accountStatement() {
+        return PdfStatementGenerator.generatePdfAccountStatement(user, transactions, account, from, to);
+    }
+}
@@ -0,0 +1,147 @@
+package ru.clevertec.bank.loadtest;
+
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServlet;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardVirtualThreadExecutor;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.ErrorPage;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import ru.clevertec.bank.filter.RateLimitFilter;
+import ru.clevertec.bank.listener.AccountEventBusListener;
+import ru.clevertec.bank.listener.BalanceCompactorListener;
+import ru.clevertec.bank.listener.BalanceEngineListener;
+import ru.clevertec.bank.listener.CacheInvalidationListener;
+import ru.clevertec.bank.listener.OutboxRelayListener;
+import ru.clevertec.bank.listener.ShutdownListener;
+import ru.clevertec.bank.listener.PropertiesReloadListener;
+import ru.clevertec.bank.listener.ReconciliationListener;
+import ru.clevertec.bank.servlet.AccountServlet;
+import ru.clevertec.bank.servlet.BankServlet;
+import ru.clevertec.bank.servlet.ExceptionHandlerServlet;
+import ru.clevertec.bank.servlet.MetricsServlet;
+import ru.clevertec.bank.servlet.QueryStatisticsServlet;
+import ru.clevertec.bank.servlet.StatementServlet;
+import ru.clevertec.bank.servlet.TransactionServlet;
+import ru.clevertec.bank.servlet.UserServlet;
+import ru.clevertec.bank.util.concurrent.VirtualThreads;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Embedded Tomcat serving the same servlets, filters and error page as the WAR on a random local port.
+ * The monthly-percentage listener is left out on purpose: it changes every balance on a timer,
+ * which would break the money-conservation check of the run.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class EmbeddedServer implements AutoCloseable {
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 8192;
+
+    private final Tomcat tomcat;
+
+    private EmbeddedServer(Tomcat tomcat) {
+        this.tomcat = tomcat;
+    }
+
+    /**
+     * Starts the server.
+     *
+     * @param baseDir        The working directory of Tomcat.
+     * @param maxThreads     The maximum number of request-processing threads, and of open connections
+     *                       and queued ones each at least.
+     * @param virtualThreads Whether every request runs on a new virtual thread instead of the thread pool.
+     * @return The started server.
+     * @throws LifecycleException If Tomcat fails to start.
+     */
+    public static EmbeddedServer start(Path baseDir, int maxThreads, boolean virtualThreads)
+            throws LifecycleException {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toAbsolutePath().toString());
+        tomcat.setPort(0);
+        Connector connector = tomcat.getConnector();
+        connector.setProperty("maxThreads", String.valueOf(maxThreads));
+        connector.setProperty("acceptCount", String.valueOf(maxThreads));
+        connector.setProperty("maxConnections", String.valueOf(Math.max(DEFAULT_MAX_CONNECTIONS, maxThreads)));
+        if (virtualThreads) {
+            if (!VirtualThreads.isSupported()) {
+                throw new LifecycleException("Virtual threads require Java 21, running on " + Runtime.version());
+            }
+            StandardVirtualThreadExecutor executor = new StandardVirtualThreadExecutor();
+            executor.setName("virtual");
+            tomcat.getService().addExecutor(executor);
+            connector.getProtocolHandler().setExecutor(executor);
+        }
+
+        Path docBase = baseDir.resolve("webapp");
+        try {
+            Files.createDirectories(docBase);
+        } catch (IOException e) {
+            throw new LifecycleException("Unable to create " + docBase, e);
+        }
+        Context context = tomcat.addContext("", docBase.toAbsolutePath().toString());
+        addServlet(context, new AccountServlet(), "/accounts/*");
+        addServlet(context, new BankServlet(), "/banks/*");
+        addServlet(context, new StatementServlet(), "/statements/*");
+        addServlet(context, new TransactionServlet(), "/transactions/*");
+        addServlet(context, new UserServlet(), "/users/*");
+        addServlet(context, new MetricsServlet(), "/metrics");
+        addServlet(context, new QueryStatisticsServlet(), "/admin/queries");
+        addServlet(context, new ExceptionHandlerServlet(), "/error");
+        addFilter(context, new RateLimitFilter(), "/accounts/*");
+        context.addApplicationListener(PropertiesReloadListener.class.getName());
+        context.addApplicationListener(BalanceEngineListener.class.getName());
+        context.addApplicationListener(ReconciliationListener.class.getName());
+        context.addApplicationListener(BalanceCompactorListener.class.getName());
+        context.addApplicationListener(OutboxRelayListener.class.getName());
+        context.addApplicationListener(AccountEventBusListener.class.getName());
+        context.addApplicationListener(CacheInvalidationListener.class.getName());
+        context.addApplicationListener(ShutdownListener.class.getName());
+
+        ErrorPage errorPage = new ErrorPage();
+        errorPage.setExceptionType(Throwable.class.getName());
+        errorPage.setLocation("/error");
+        context.addErrorPage(errorPage);
+
+        tomcat.start();
+        return new EmbeddedServer(tomcat);
+    }
+
+    public int getPort() {
+        return tomcat.getConnector().getLocalPort();
+    }
+
+    @Override
+    public void close() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    private static void addFilter(Context context, HttpFilter filter, String mapping) {
+        String name = filter.getClass().getSimpleName();
+        FilterDef filterDef = new FilterDef();
+        filterDef.setFilterName(name);
+        filterDef.setFilter(filter);
+        filterDef.setAsyncSupported(String.valueOf(filter.getClass().getAnnotation(WebFilter.class).asyncSupported()));
+        context.addFilterDef(filterDef);
+        FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName(name);
+        filterMap.addURLPattern(mapping);
+        context.addFilterMap(filterMap);
+    }
+
+    private static void addServlet(Context context, HttpServlet servlet, String mapping) {
+        String name = servlet.getClass().getSimpleName();
+        WebServlet annotation = servlet.getClass().getAnnotation(WebServlet.class);
+        Tomcat.addServlet(context, name, servlet).setAsyncSupported(annotation != null && annotation.asyncSupported());
+        context.addServletMappingDecoded(mapping, name);
+    }
+}
@@ -0,0 +1,111 @@
+package ru.clevertec.bank.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Latencies and outcomes of one operation. Every sample is kept, so percentiles are exact.
+ * Not thread-safe: every client records into its own instance and they are merged at the end of the run.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class LatencyRecorder {
+
+    private long[] micros = new long[1024];
+    private int count;
+    private long rejected;
+    private long errors;
+
+    /**
+     * Records one completed request.
+     *
+     * @param latencyNanos The time from sending the request to reading the whole response.
+     * @param status       The HTTP status, or 0 if no response was received.
+     */
+    public void record(long latencyNanos, int status) {
+        if (count == micros.length) {
+            micros = Arrays.copyOf(micros, count * 2);
+        }
+        micros[count++] = latencyNanos / 1_000;
+        if (status == 0 || status >= 500) {
+            errors++;
+        } else if (status >= 400) {
+            rejected++;
+        }
+    }
+
+    /**
+     * Adds the samples of another recorder to this one.
+     *
+     * @param other The recorder to merge.
+     */
+    public void merge(LatencyRecorder other) {
+        if (count + other.count > micros.length) {
+            micros = Arrays.copyOf(micros, count + other.count);
+        }
+        System.arraycopy(other.micros, 0, micros, count, other.count);
+        count += other.count;
+        rejected += other.rejected;
+        errors += other.errors;
+    }
+
+    /**
+     * Summarizes the recorded samples.
+     *
+     * @param operation     The operation the samples belong to.
+     * @param elapsedMillis The length of the measurement in milliseconds.
+     * @return The summary.
+     */
+    public Summary summarize(String operation, long elapsedMillis) {
+        long[] sorted = Arrays.copyOf(micros, count);
+        Arrays.sort(sorted);
+        return new Summary(
+                operation,
+                count,
+                rejected,
+                errors,
+                elapsedMillis == 0 ? 0 : count * 1_000.0 / elapsedMillis,
+                percentile(sorted, 0.50),
+                percentile(sorted, 0.99),
+                percentile(sorted, 0.999),
+                count == 0 ? 0 : sorted[count - 1]
+        );
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * Latency percentiles in microseconds, throughput and outcome counts of one operation.
+     *
+     * @param operation  The operation, or "total".
+     * @param requests   The number of completed requests.
+     * @param rejected   The number of 4xx responses.
+     * @param errors     The number of 5xx responses and failed requests.
+     * @param throughput The requests per second.
+     * @param p50        The median latency.
+     * @param p99        The 99th percentile latency.
+     * @param p999       The 99.9th percentile latency.
+     * @param max        The maximum latency.
+     */
+    public record Summary(
+            String operation,
+            long requests,
+            long rejected,
+            long errors,
+            double throughput,
+            long p50,
+            long p99,
+            long p999,
+            long max
+    ) {
+
+        public double errorRate() {
+            return requests == 0 ? 0 : (double) errors / requests;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package ru.clevertec.bank.loadtest;
+
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.LiquibaseException;
+import liquibase.resource.DirectoryResourceAccessor;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.FileNotFoundException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Postgres the load test runs against: either an existing database given by {@code loadtest.jdbcUrl}
+ * or a throwaway one started with Testcontainers. The schema is created from the application migrations
+ * and a dedicated set of CleverBank accounts is added for the run.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class LoadDatabase implements AutoCloseable {
+
+    static final String NUMBER_PREFIX = "77";
+
+    private static final String CHANGELOG = "changelog.xml";
+    private static final String INSERT_USER_QUERY = """
+        INSERT INTO users (name, surname, birthdate, active) VALUES ('Load', 'Test', '1990-01-01', TRUE) RETURNING id
+    """;
+    private static final String INSERT_ACCOUNTS_QUERY = """
+        INSERT INTO accounts (number, balance, currency, user_id, bank_id, created_date, active)
+        SELECT ? || LPAD(s::text, 14, '0'), ?, 'BYN'::currency_enum, ?, 1, CURRENT_DATE, TRUE
+        FROM GENERATE_SERIES(1, ?) AS s
+        WHERE NOT EXISTS (SELECT 1 FROM accounts a WHERE a.number = ? || LPAD(s::text, 14, '0'))
+    """;
+    private static final String UPDATE_ACCOUNTS_QUERY = """
+        UPDATE accounts SET balance = ?, active = TRUE WHERE number LIKE ? || '%'
+    """;
+    private static final String INSERT_OPENING_POSTINGS_QUERY = """
+        WITH opening AS (
+            SELECT a.id, a.currency,
+                a.balance - COALESCE((SELECT SUM(p.amount) FROM postings p WHERE p.account_id = a.id), 0) AS amount
+            FROM accounts a WHERE a.number LIKE ? || '%'
+        )
+        INSERT INTO postings (account_id, ledger, amount, currency, created_date)
+        SELECT id, NULL, amount, currency, now() FROM opening WHERE amount <> 0
+        UNION ALL
+        SELECT NULL, 'OPENING', -amount, currency, now() FROM opening WHERE amount <> 0
+    """;
+    private static final String UPDATE_CHECKPOINTS_QUERY = """
+        UPDATE accounts a SET checkpoint_posting_id = p.last_id
+        FROM (SELECT account_id, MAX(id) AS last_id FROM postings GROUP BY account_id) p
+        WHERE p.account_id = a.id AND a.number LIKE ? || '%'
+    """;
+    private static final String SELECT_NUMBERS_QUERY = """
+        SELECT number FROM accounts WHERE number LIKE ? || '%' ORDER BY number LIMIT ?
+    """;
+
+    private final PostgreSQLContainer<?> container;
+    private final String jdbcUrl;
+    private final String user;
+    private final String password;
+
+    private LoadDatabase(PostgreSQLContainer<?> container, String jdbcUrl, String user, String password) {
+        this.container = container;
+        this.jdbcUrl = jdbcUrl;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * Connects to the configured database or starts a container, then applies the migrations.
+     *
+     * @param options      The load-test options.
+     * @param changelogDir The directory containing the application changelog.
+     * @return The migrated database.
+     * @throws SQLException          If the database cannot be reached.
+     * @throws LiquibaseException    If the migrations fail.
+     * @throws FileNotFoundException If the changelog directory does not exist.
+     */
+    public static LoadDatabase start(LoadTestOptions options, Path changelogDir)
+            throws SQLException, LiquibaseException, FileNotFoundException {
+        LoadDatabase database;
+        if (options.jdbcUrl() != null) {
+            database = new LoadDatabase(null, options.jdbcUrl(), options.user(), options.password());
+        } else {
+            PostgreSQLContainer<?> container = new PostgreSQLContainer<>("postgres:13")
+                    .withDatabaseName("load")
+                    .withUsername("load")
+                    .withPassword("load")
+                    .withCommand("postgres", "-c", "max_connections=300");
+            container.start();
+            database = new LoadDatabase(container, container.getJdbcUrl(), "load", "load");
+        }
+        database.migrate(changelogDir);
+        return database;
+    }
+
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(jdbcUrl, user, password);
+    }
+
+    /**
+     * Creates the load-test accounts, or resets them if they are left from a previous run.
+     * All accounts belong to CleverBank and hold BYN, so any mix of operations is allowed on them
+     * and transfers between them never convert money. The opening balances are posted against the
+     * {@code OPENING} ledger, so the accounts reconcile with their postings.
+     *
+     * @param count   The number of accounts.
+     * @param balance The opening balance of every account.
+     * @return The account numbers.
+     * @throws SQLException If the accounts cannot be written.
+     */
+    public List<String> seedAccounts(int count, BigDecimal balance) throws SQLException {
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            long userId;
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(INSERT_USER_QUERY)) {
+                resultSet.next();
+                userId = resultSet.getLong(1);
+            }
+            try (PreparedStatement update = connection.prepareStatement(UPDATE_ACCOUNTS_QUERY)) {
+                update.setBigDecimal(1, balance);
+                update.setString(2, NUMBER_PREFIX);
+                update.executeUpdate();
+            }
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_ACCOUNTS_QUERY)) {
+                insert.setString(1, NUMBER_PREFIX);
+                insert.setBigDecimal(2, balance);
+                insert.setLong(3, userId);
+                insert.setInt(4, count);
+                insert.setString(5, NUMBER_PREFIX);
+                insert.executeUpdate();
+            }
+            try (PreparedStatement opening = connection.prepareStatement(INSERT_OPENING_POSTINGS_QUERY)) {
+                opening.setString(1, NUMBER_PREFIX);
+                opening.executeUpdate();
+            }
+            try (PreparedStatement checkpoints = connection.prepareStatement(UPDATE_CHECKPOINTS_QUERY)) {
+                checkpoints.setString(1, NUMBER_PREFIX);
+                checkpoints.executeUpdate();
+            }
+            List<String> numbers = new ArrayList<>(count);
+            try (PreparedStatement select = connection.prepareStatement(SELECT_NUMBERS_QUERY)) {
+                select.setString(1, NUMBER_PREFIX);
+                select.setInt(2, count);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        numbers.add(resultSet.getString(1));
+                    }
+                }
+            }
+            connection.commit();
+            return Collections.unmodifiableList(numbers);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    private void migrate(Path changelogDir) throws SQLException, LiquibaseException, FileNotFoundException {
+        try (Connection connection = getConnection()) {
+            Database database = DatabaseFactory.getInstance()
+                    .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase(CHANGELOG, new DirectoryResourceAccessor(changelogDir), database);
+            liquibase.update(new Contexts(), new LabelExpression());
+        }
+    }
+}
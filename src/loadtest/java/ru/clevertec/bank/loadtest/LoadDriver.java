@@ -0,0 +1,162 @@
+package ru.clevertec.bank.loadtest;
+
+import ru.clevertec.bank.util.concurrent.VirtualThreads;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drives a closed-loop load against the API: every client sends one request at a time,
+ * picking the operation by the configured weights and the accounts at random.
+ * Requests started during the warmup are sent but not recorded.
+ * In virtual-thread mode every client is a virtual thread, so ten thousand of them are cheap to run.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class LoadDriver {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final int PAGE_SIZE = 20;
+    private static final String CLIENT_HEADER = "X-Client-Id";
+
+    private final String baseUrl;
+    private final LoadTestOptions options;
+    private final List<String> accounts;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final HttpClient client;
+
+    public LoadDriver(String baseUrl, LoadTestOptions options, List<String> accounts) {
+        this.baseUrl = baseUrl;
+        this.options = options;
+        this.accounts = accounts;
+        this.operations = options.mix().keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += Math.max(0, options.mix().get(operations[i]));
+            cumulativeWeights[i] = total;
+        }
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+    }
+
+    /**
+     * Runs the warmup and the measurement.
+     *
+     * @return The latencies of every operation over the measurement and its actual length in milliseconds.
+     * @throws InterruptedException If the run is interrupted.
+     */
+    public Result run() throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup().toNanos();
+        long measureTo = measureFrom + options.duration().toNanos();
+        ExecutorService executor = options.virtualThreads()
+                ? VirtualThreads.newExecutor()
+                : Executors.newFixedThreadPool(options.clients());
+        List<Future<Map<Operation, LatencyRecorder>>> clients = new ArrayList<>();
+        for (int i = 0; i < options.clients(); i++) {
+            String clientId = "load-" + i;
+            clients.add(executor.submit(() -> runClient(clientId, measureFrom, measureTo)));
+        }
+        Map<Operation, LatencyRecorder> merged = new EnumMap<>(Operation.class);
+        try {
+            for (Future<Map<Operation, LatencyRecorder>> future : clients) {
+                future.get().forEach((operation, recorder) ->
+                        merged.computeIfAbsent(operation, key -> new LatencyRecorder()).merge(recorder));
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load client failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedMillis = Math.max(0, Math.min(System.nanoTime(), measureTo) - measureFrom) / 1_000_000;
+        return new Result(merged, elapsedMillis);
+    }
+
+    private Map<Operation, LatencyRecorder> runClient(String clientId, long measureFrom, long measureTo)
+            throws InterruptedException {
+        Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now;
+        while ((now = System.nanoTime()) < measureTo) {
+            Operation operation = pick(random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]));
+            HttpRequest request = request(clientId, operation, random);
+            int status;
+            try {
+                status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException e) {
+                status = 0;
+            }
+            long latency = System.nanoTime() - now;
+            if (now >= measureFrom) {
+                recorders.computeIfAbsent(operation, key -> new LatencyRecorder()).record(latency, status);
+            }
+        }
+        return recorders;
+    }
+
+    private Operation pick(int weight) {
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (weight < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private HttpRequest request(String clientId, Operation operation, ThreadLocalRandom random) {
+        String account = accounts.get(random.nextInt(accounts.size()));
+        String amount = BigDecimal.valueOf(random.nextInt(1, 1_000), 2).toPlainString();
+        String path = switch (operation) {
+            case TRANSFER -> {
+                String receiver;
+                do {
+                    receiver = accounts.get(random.nextInt(accounts.size()));
+                } while (receiver.equals(account) && accounts.size() > 1);
+                yield "/accounts/" + account + "/transfer/" + receiver + "?amount=" + amount;
+            }
+            case DEPOSIT -> "/accounts/" + account + "/deposit?amount=" + amount;
+            case WITHDRAW -> "/accounts/" + account + "/withdraw?amount=" + amount;
+            case LIST -> "/accounts?page=" + random.nextInt(Math.max(1, accounts.size() / PAGE_SIZE))
+                    + "&size=" + PAGE_SIZE;
+            case STATEMENT -> "/statements/money/" + account + "?from=01-01-2023&to="
+                    + LocalDate.now().format(DATE_FORMAT);
+        };
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header(CLIENT_HEADER, clientId)
+                .timeout(REQUEST_TIMEOUT);
+        return switch (operation) {
+            case TRANSFER, DEPOSIT, WITHDRAW -> builder.PUT(HttpRequest.BodyPublishers.noBody()).build();
+            case LIST, STATEMENT -> builder.GET().build();
+        };
+    }
+
+    /**
+     * Outcome of a run.
+     *
+     * @param recorders     The latencies of every operation that was sent.
+     * @param elapsedMillis The length of the measurement in milliseconds.
+     */
+    public record Result(Map<Operation, LatencyRecorder> recorders, long elapsedMillis) {
+    }
+}
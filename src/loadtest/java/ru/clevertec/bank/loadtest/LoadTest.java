@@ -0,0 +1,140 @@
+package ru.clevertec.bank.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import ru.clevertec.bank.util.yaml.Parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entry point of the load test, run by {@code ./gradlew loadTest}.
+ * Starts Postgres, points the application at it through a generated configuration file,
+ * serves the servlets from an embedded Tomcat and drives the configured mix of requests against them.
+ * Prints latency percentiles, throughput and error rates of every operation and exits with status 1
+ * if money was created or lost during the run.
+ *
+ * @author Andrei Yuryeu
+ * @see LoadTestOptions
+ */
+public final class LoadTest {
+
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("100000.00");
+    private static final String ROW = "%-10s %10s %8s %8s %10s %10s %10s %10s %10s%n";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.fromSystemProperties();
+        Path workDir = Path.of("").toAbsolutePath();
+        Path changelogDir = Path.of(System.getProperty("loadtest.changelogDir", "databases/banking"));
+
+        List<String> violations;
+        Map<String, LatencyRecorder.Summary> summaries = new LinkedHashMap<>();
+        try (LoadDatabase database = LoadDatabase.start(options, changelogDir)) {
+            Path config = writeConfig(workDir, database, options);
+            System.setProperty(Parser.CONFIG_PROPERTY, config.toString());
+            List<String> accounts = database.seedAccounts(options.accounts(), OPENING_BALANCE);
+
+            MoneyInvariants invariants;
+            try (Connection connection = database.getConnection()) {
+                invariants = MoneyInvariants.snapshot(connection);
+            }
+            LoadDriver.Result result;
+            try (EmbeddedServer server = EmbeddedServer.start(workDir.resolve("tomcat"),
+                    Math.max(200, options.clients()), options.virtualThreads())) {
+                System.out.printf("Running %d clients for %ds after %ds of warmup against %d accounts on %s threads%n",
+                        options.clients(), options.duration().toSeconds(), options.warmup().toSeconds(),
+                        accounts.size(), options.virtualThreads() ? "virtual" : "platform");
+                result = new LoadDriver("http://localhost:" + server.getPort(), options, accounts).run();
+            }
+            try (Connection connection = database.getConnection()) {
+                violations = invariants.check(connection);
+            }
+
+            LatencyRecorder total = new LatencyRecorder();
+            result.recorders().forEach((operation, recorder) -> {
+                summaries.put(operation.name().toLowerCase(),
+                        recorder.summarize(operation.name().toLowerCase(), result.elapsedMillis()));
+                total.merge(recorder);
+            });
+            summaries.put("total", total.summarize("total", result.elapsedMillis()));
+        }
+
+        print(summaries.values(), violations);
+        String reportFile = options.reportFile();
+        if (reportFile != null) {
+            writeReport(Path.of(reportFile), options, summaries, violations);
+        }
+        if (!violations.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    private static Path writeConfig(Path workDir, LoadDatabase database, LoadTestOptions options) throws IOException {
+        String defaults;
+        try (InputStream inputStream = LoadTest.class.getClassLoader().getResourceAsStream(Parser.DEFAULT_RESOURCE)) {
+            if (inputStream == null) {
+                throw new IllegalStateException(Parser.DEFAULT_RESOURCE + " was not found on the classpath");
+            }
+            defaults = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String config = defaults
+                .replaceFirst("(?m)^(\\s+url:).*$", "$1 " + database.getJdbcUrl())
+                .replaceFirst("(?m)^(\\s+user:).*$", "$1 " + database.getUser())
+                .replaceFirst("(?m)^(\\s+password:).*$", "$1 " + database.getPassword())
+                .replaceFirst("(?m)^(rateLimit:\\R\\s+enabled:).*$", "$1 " + options.rateLimit());
+        Path file = workDir.resolve(Parser.DEFAULT_RESOURCE);
+        Files.writeString(file, config);
+        return file;
+    }
+
+    private static void print(Iterable<LatencyRecorder.Summary> summaries, List<String> violations) {
+        System.out.printf(ROW, "Operation", "Requests", "4xx", "Errors", "Req/s", "p50 us", "p99 us", "p999 us",
+                "max us");
+        for (LatencyRecorder.Summary summary : summaries) {
+            System.out.printf(ROW, summary.operation(), summary.requests(), summary.rejected(),
+                    "%.2f%%".formatted(summary.errorRate() * 100), "%.1f".formatted(summary.throughput()),
+                    summary.p50(), summary.p99(), summary.p999(), summary.max());
+        }
+        if (violations.isEmpty()) {
+            System.out.println("Money conservation: OK");
+        } else {
+            System.out.println("Money conservation: " + violations.size() + " violation(s)");
+            violations.forEach(violation -> System.out.println("  " + violation));
+        }
+    }
+
+    private static void writeReport(
+            Path file,
+            LoadTestOptions options,
+            Map<String, LatencyRecorder.Summary> summaries,
+            List<String> violations
+    ) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("clients", options.clients());
+        report.put("virtualThreads", options.virtualThreads());
+        report.put("rateLimit", options.rateLimit());
+        report.put("warmupSeconds", options.warmup().toSeconds());
+        report.put("durationSeconds", options.duration().toSeconds());
+        report.put("accounts", options.accounts());
+        report.put("mix", options.mix());
+        report.put("operations", new ArrayList<>(summaries.values()));
+        report.put("violations", violations);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(file.toFile(), report);
+        System.out.println("Report written to " + file.toAbsolutePath());
+    }
+}
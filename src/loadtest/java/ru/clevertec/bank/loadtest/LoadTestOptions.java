@@ -0,0 +1,83 @@
+package ru.clevertec.bank.loadtest;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings of one load-test run, read from {@code loadtest.*} system properties.
+ *
+ * @param jdbcUrl     The URL of an existing Postgres to run against, or null to start one in a container.
+ * @param user        The Postgres user.
+ * @param password    The Postgres password.
+ * @param clients     The number of concurrent clients.
+ * @param warmup      How long to run before measuring.
+ * @param duration    How long to measure.
+ * @param accounts    The number of accounts created for the run.
+ * @param mix         The relative weight of every operation.
+ * @param reportFile     The JSON report file, or null to print the report only.
+ * @param virtualThreads Whether Tomcat and the clients run on virtual threads, which needs Java 21.
+ * @param rateLimit      Whether admission control of money operations stays on; off by default so the
+ *                       run measures the service rather than the limits.
+ * @author Andrei Yuryeu
+ */
+public record LoadTestOptions(
+        String jdbcUrl,
+        String user,
+        String password,
+        int clients,
+        Duration warmup,
+        Duration duration,
+        int accounts,
+        Map<Operation, Integer> mix,
+        String reportFile,
+        boolean virtualThreads,
+        boolean rateLimit
+) {
+
+    private static final String DEFAULT_MIX = "transfer=70,deposit=5,withdraw=5,list=15,statement=5";
+
+    /**
+     * Reads the options from system properties, falling back to defaults.
+     *
+     * @return The options.
+     * @throws IllegalArgumentException If a property has an invalid value.
+     */
+    public static LoadTestOptions fromSystemProperties() {
+        return new LoadTestOptions(
+                System.getProperty("loadtest.jdbcUrl"),
+                System.getProperty("loadtest.user", "postgres"),
+                System.getProperty("loadtest.password", "postgres"),
+                Integer.getInteger("loadtest.clients", 32),
+                Duration.ofSeconds(Integer.getInteger("loadtest.warmupSeconds", 10)),
+                Duration.ofSeconds(Integer.getInteger("loadtest.durationSeconds", 60)),
+                Integer.getInteger("loadtest.accounts", 200),
+                parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX)),
+                System.getProperty("loadtest.report"),
+                Boolean.getBoolean("loadtest.virtualThreads"),
+                Boolean.getBoolean("loadtest.rateLimit")
+        );
+    }
+
+    /**
+     * Parses an operation mix such as {@code transfer=70,list=30}.
+     *
+     * @param mix The mix.
+     * @return The weight of every operation named in the mix.
+     * @throws IllegalArgumentException If an operation is unknown or no operation has a positive weight.
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] weight = part.trim().split("=");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Invalid operation weight: " + part);
+            }
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("At least one operation must have a positive weight");
+        }
+        return weights;
+    }
+}
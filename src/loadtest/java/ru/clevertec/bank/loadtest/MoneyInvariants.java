@@ -0,0 +1,141 @@
+package ru.clevertec.bank.loadtest;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that no money was created or lost during a run.
+ * Before the run the balances of the load-test accounts and the last transaction id are remembered.
+ * Afterwards every account must hold its opening balance changed by exactly the transactions recorded for it,
+ * no balance may be negative, and the total must have changed only by deposits and withdrawals.
+ * Balances are read as the checkpoint plus the postings after it, which is the balance in both balance modes:
+ * with derived balances, {@code accounts.balance} alone lags behind until it is compacted.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class MoneyInvariants {
+
+    private static final String SELECT_BALANCES_QUERY = """
+        SELECT a.id, a.balance + COALESCE((SELECT SUM(p.amount) FROM postings p
+            WHERE p.account_id = a.id AND p.id > a.checkpoint_posting_id), 0)
+        FROM accounts a
+        WHERE a.number LIKE ? || '%'
+    """;
+    private static final String SELECT_LAST_TRANSACTION_QUERY = "SELECT COALESCE(MAX(id), 0) FROM transactions";
+    private static final String SELECT_MOVEMENTS_QUERY = """
+        SELECT a.id,
+               COALESCE(SUM(CASE WHEN t.type = 'REFILL' AND t.receiver_account_id = a.id THEN t.amount END), 0)
+             - COALESCE(SUM(CASE WHEN t.type = 'WITHDRAW' AND t.receiver_account_id = a.id THEN t.amount END), 0)
+             - COALESCE(SUM(CASE WHEN t.type = 'TRANSFER' AND t.sender_account_id = a.id THEN t.amount END), 0)
+             + COALESCE(SUM(CASE WHEN t.type = 'TRANSFER' AND t.receiver_account_id = a.id
+                                 THEN t.converted_amount END), 0)
+        FROM accounts a
+        JOIN transactions t ON t.id > ? AND (t.sender_account_id = a.id OR t.receiver_account_id = a.id)
+        WHERE a.number LIKE ? || '%'
+        GROUP BY a.id
+    """;
+    private static final String SELECT_EXTERNAL_FLOW_QUERY = """
+        SELECT COALESCE(SUM(CASE WHEN type = 'REFILL' THEN amount END), 0)
+             - COALESCE(SUM(CASE WHEN type = 'WITHDRAW' THEN amount END), 0)
+        FROM transactions t
+        JOIN accounts a ON a.id = t.receiver_account_id
+        WHERE t.id > ? AND t.type IN ('REFILL', 'WITHDRAW') AND a.number LIKE ? || '%'
+    """;
+
+    private final Map<Long, BigDecimal> openingBalances;
+    private final long lastTransactionId;
+
+    private MoneyInvariants(Map<Long, BigDecimal> openingBalances, long lastTransactionId) {
+        this.openingBalances = openingBalances;
+        this.lastTransactionId = lastTransactionId;
+    }
+
+    /**
+     * Remembers the state the run starts from.
+     *
+     * @param connection The connection to read with.
+     * @return The opening state.
+     * @throws SQLException If the state cannot be read.
+     */
+    public static MoneyInvariants snapshot(Connection connection) throws SQLException {
+        long lastTransactionId;
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_LAST_TRANSACTION_QUERY);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            lastTransactionId = resultSet.getLong(1);
+        }
+        return new MoneyInvariants(balances(connection), lastTransactionId);
+    }
+
+    /**
+     * Compares the current state with the opening one.
+     *
+     * @param connection The connection to read with.
+     * @return The violations found, empty if the money is conserved.
+     * @throws SQLException If the state cannot be read.
+     */
+    public List<String> check(Connection connection) throws SQLException {
+        List<String> violations = new ArrayList<>();
+        Map<Long, BigDecimal> closingBalances = balances(connection);
+        Map<Long, BigDecimal> movements = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_MOVEMENTS_QUERY)) {
+            statement.setLong(1, lastTransactionId);
+            statement.setString(2, LoadDatabase.NUMBER_PREFIX);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    movements.put(resultSet.getLong(1), resultSet.getBigDecimal(2));
+                }
+            }
+        }
+        BigDecimal opening = BigDecimal.ZERO;
+        BigDecimal closing = BigDecimal.ZERO;
+        for (Map.Entry<Long, BigDecimal> entry : openingBalances.entrySet()) {
+            Long id = entry.getKey();
+            BigDecimal before = entry.getValue();
+            BigDecimal after = closingBalances.getOrDefault(id, BigDecimal.ZERO);
+            BigDecimal expected = before.add(movements.getOrDefault(id, BigDecimal.ZERO));
+            if (after.compareTo(expected) != 0) {
+                violations.add("Account " + id + " holds " + after + " but its transactions add up to " + expected);
+            }
+            if (after.signum() < 0) {
+                violations.add("Account " + id + " has a negative balance " + after);
+            }
+            opening = opening.add(before);
+            closing = closing.add(after);
+        }
+        BigDecimal externalFlow;
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_EXTERNAL_FLOW_QUERY)) {
+            statement.setLong(1, lastTransactionId);
+            statement.setString(2, LoadDatabase.NUMBER_PREFIX);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                externalFlow = resultSet.getBigDecimal(1);
+            }
+        }
+        if (closing.subtract(opening).compareTo(externalFlow) != 0) {
+            violations.add("Total balance changed by " + closing.subtract(opening)
+                    + " but deposits minus withdrawals are " + externalFlow);
+        }
+        return violations;
+    }
+
+    private static Map<Long, BigDecimal> balances(Connection connection) throws SQLException {
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_BALANCES_QUERY)) {
+            statement.setString(1, LoadDatabase.NUMBER_PREFIX);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    balances.put(resultSet.getLong(1), resultSet.getBigDecimal(2));
+                }
+            }
+        }
+        return balances;
+    }
+}
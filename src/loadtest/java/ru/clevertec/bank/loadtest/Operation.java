@@ -0,0 +1,34 @@
+package ru.clevertec.bank.loadtest;
+
+/**
+ * Requests the load test sends.
+ *
+ * @author Andrei Yuryeu
+ */
+public enum Operation {
+
+    /**
+     * {@code PUT /accounts/{number}/transfer/{number}}.
+     */
+    TRANSFER,
+
+    /**
+     * {@code PUT /accounts/{number}/deposit}.
+     */
+    DEPOSIT,
+
+    /**
+     * {@code PUT /accounts/{number}/withdraw}.
+     */
+    WITHDRAW,
+
+    /**
+     * {@code GET /accounts?page=}.
+     */
+    LIST,
+
+    /**
+     * {@code GET /statements/money/{number}}.
+     */
+    STATEMENT
+}
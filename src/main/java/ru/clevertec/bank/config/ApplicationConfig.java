@@ -2,27 +2,74 @@ package ru.clevertec.bank.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import org.postgresql.ds.PGSimpleDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import ru.clevertec.bank.repository.AccountRepository;
 import ru.clevertec.bank.repository.BankRepository;
+import ru.clevertec.bank.repository.ExchangeRateRepository;
+import ru.clevertec.bank.repository.IdempotencyKeyRepository;
+import ru.clevertec.bank.repository.ImportRepository;
+import ru.clevertec.bank.repository.OutboxRepository;
+import ru.clevertec.bank.repository.PostingRepository;
 import ru.clevertec.bank.repository.TransactionRepository;
 import ru.clevertec.bank.repository.UserRepository;
 import ru.clevertec.bank.service.AccountService;
 import ru.clevertec.bank.service.BankService;
+import ru.clevertec.bank.service.ImportService;
 import ru.clevertec.bank.service.TransactionService;
 import ru.clevertec.bank.service.UserService;
 import ru.clevertec.bank.service.impl.AccountServiceImpl;
 import ru.clevertec.bank.service.impl.BankServiceImpl;
+import ru.clevertec.bank.service.impl.ImportServiceImpl;
 import ru.clevertec.bank.service.impl.TransactionServiceImpl;
 import ru.clevertec.bank.service.impl.UserServiceImpl;
+import ru.clevertec.bank.util.cache.Cache;
+import ru.clevertec.bank.util.cache.CacheInvalidationChannel;
+import ru.clevertec.bank.util.cache.RepositoryCaches;
+import ru.clevertec.bank.util.concurrent.RequestExecutor;
+import ru.clevertec.bank.util.exchange.ExchangeRateProvider;
+import ru.clevertec.bank.util.idempotency.RecentKeyFilter;
+import ru.clevertec.bank.util.jdbc.LimitingDataSource;
+import ru.clevertec.bank.util.jdbc.MonitoredDataSource;
+import ru.clevertec.bank.util.jdbc.PostgresDataSources;
+import ru.clevertec.bank.util.jdbc.QueryStatistics;
+import ru.clevertec.bank.util.ledger.BalanceEngine;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.event.AccountEventBroadcast;
+import ru.clevertec.bank.util.event.AccountEventBus;
+import ru.clevertec.bank.util.outbox.FileSink;
+import ru.clevertec.bank.util.outbox.OutboxRelay;
+import ru.clevertec.bank.util.outbox.OutboxSink;
+import ru.clevertec.bank.util.outbox.SubscriberSink;
+import ru.clevertec.bank.util.posting.BalanceCompactor;
+import ru.clevertec.bank.util.posting.PostingReconciler;
+import ru.clevertec.bank.util.yaml.BalanceProperties;
+import ru.clevertec.bank.util.yaml.CacheInvalidationProperties;
+import ru.clevertec.bank.util.yaml.EventStreamProperties;
+import ru.clevertec.bank.util.yaml.ExecutionProperties;
+import ru.clevertec.bank.util.yaml.IdempotencyProperties;
+import ru.clevertec.bank.util.yaml.LedgerProperties;
+import ru.clevertec.bank.util.yaml.OutboxProperties;
 import ru.clevertec.bank.util.yaml.Parser;
+import ru.clevertec.bank.util.yaml.PostgresProperties;
+import ru.clevertec.bank.util.yaml.Properties;
+import ru.clevertec.bank.util.yaml.PropertiesProvider;
+import ru.clevertec.bank.util.yaml.QueryProperties;
+import ru.clevertec.bank.util.yaml.ReconciliationProperties;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
 
 /**
  * Configuration class responsible for initializing various components of the application.
  * This class sets up the data source, repositories, services, and other necessary objects used throughout the application.
- * It also provides access to commonly used instances such as the YAML parser and Jackson ObjectMapper.
+ * It also provides access to commonly used instances such as the properties provider and Jackson ObjectMapper.
  * All components are initialized as static fields for easy access throughout the application.
  *
  * @author Andrei Yuryeu
@@ -31,37 +78,128 @@ public class ApplicationConfig {
 
     private static final AccountRepository accountRepository;
     private static final BankRepository bankRepository;
+    private static final ExchangeRateRepository exchangeRateRepository;
+    private static final IdempotencyKeyRepository idempotencyKeyRepository;
+    private static final ImportRepository importRepository;
+    private static final PostingRepository postingRepository;
+    private static final OutboxRepository outboxRepository;
     private static final TransactionRepository transactionRepository;
     private static final UserRepository userRepository;
     private static final AccountService accountService;
     private static final BankService bankService;
+    private static final ImportService importService;
     private static final TransactionService transactionService;
     private static final UserService userService;
-    private static final Parser yamlParser;
+    private static final PropertiesProvider propertiesProvider;
+    private static final ExchangeRateProvider exchangeRateProvider;
+    private static final RepositoryCaches repositoryCaches;
+    private static final MetricsRegistry metricsRegistry;
+    private static final QueryStatistics queryStatistics;
+    private static final HikariDataSource connectionPool;
+    private static final CacheInvalidationChannel cacheInvalidationChannel;
+    private static final RequestExecutor transferExecutor;
+    private static final RequestExecutor statementExecutor;
+    private static final BalanceEngine balanceEngine;
+    private static final PostingReconciler postingReconciler;
+    private static final BalanceCompactor balanceCompactor;
+    private static final SubscriberSink outboxSubscribers;
+    private static final FileSink outboxFileSink;
+    private static final OutboxRelay outboxRelay;
+    private static final AccountEventBus accountEventBus;
+    private static final AccountEventBroadcast accountEventBroadcast;
     private static final DataSource dataSource;
     private static final ObjectMapper objectMapper;
 
     static {
-        yamlParser = new Parser();
+        propertiesProvider = new PropertiesProvider(new Parser());
+        Properties properties = propertiesProvider.getProperties();
 
-        PGSimpleDataSource pgSimpleDataSource = new PGSimpleDataSource();
-        pgSimpleDataSource.setURL(yamlParser.getYaml().getPostgres().getUrl());
-        pgSimpleDataSource.setUser(yamlParser.getYaml().getPostgres().getUser());
-        pgSimpleDataSource.setPassword(yamlParser.getYaml().getPostgres().getPassword());
-        dataSource = pgSimpleDataSource;
+        PostgresProperties postgres = properties.getPostgres();
+        connectionPool = PostgresDataSources.pooled(postgres);
+        LimitingDataSource limitingDataSource = new LimitingDataSource(connectionPool,
+                postgres.getMaximumPoolSize(), postgres.getMaximumConnectionWaiters(),
+                Duration.ofMillis(postgres.getConnectionTimeoutMillis()));
+        QueryProperties queries = properties.getQueries();
+        queryStatistics = new QueryStatistics(queries.getMaximumTemplates(),
+                Duration.ofMillis(queries.getSlowThresholdMillis()));
+        propertiesProvider.addListener(snapshot -> queryStatistics.setSlowThreshold(
+                Duration.ofMillis(snapshot.properties().getQueries().getSlowThresholdMillis())));
+        dataSource = new MonitoredDataSource(limitingDataSource, queryStatistics);
 
-        accountRepository = new AccountRepository(dataSource);
-        bankRepository = new BankRepository(dataSource);
+        exchangeRateRepository = new ExchangeRateRepository(dataSource);
+        exchangeRateProvider = new ExchangeRateProvider(exchangeRateRepository, propertiesProvider);
+
+        metricsRegistry = MetricsRegistry.global();
+        RepositoryCaches caches = RepositoryCaches.of(properties.getCache());
+        CacheInvalidationProperties invalidation = properties.getCache().getInvalidation();
+        cacheInvalidationChannel = properties.getCache().isEnabled() && invalidation.isEnabled()
+                ? new CacheInvalidationChannel(invalidation, dataSource, PostgresDataSources.simple(postgres), caches)
+                : null;
+        repositoryCaches = cacheInvalidationChannel != null
+                ? caches.publishingTo(cacheInvalidationChannel)
+                : caches;
+        registerCacheMetrics(repositoryCaches);
+        registerPoolMetrics(connectionPool, limitingDataSource);
+        IdempotencyProperties idempotency = properties.getIdempotency();
+        idempotencyKeyRepository = new IdempotencyKeyRepository(dataSource, new RecentKeyFilter(
+                idempotency.getFilterBits(), idempotency.getFilterHashes(), idempotency.getFilterKeysPerGeneration()));
+        postingRepository = new PostingRepository(dataSource);
+        outboxRepository = new OutboxRepository(dataSource);
+        BalanceProperties balances = properties.getBalances();
+        accountRepository = new AccountRepository(dataSource, repositoryCaches, idempotencyKeyRepository,
+                postingRepository, outboxRepository, balances.isDerived());
+        balanceCompactor = balances.isDerived()
+                ? new BalanceCompactor(balances, postingRepository)
+                : null;
+        bankRepository = new BankRepository(dataSource, repositoryCaches);
         transactionRepository = new TransactionRepository(dataSource);
-        userRepository = new UserRepository(dataSource);
+        userRepository = new UserRepository(dataSource, repositoryCaches);
+        importRepository = new ImportRepository(dataSource);
 
-        accountService = new AccountServiceImpl(accountRepository, transactionRepository);
+        LedgerProperties ledger = properties.getLedger();
+        balanceEngine = ledger.isEnabled()
+                ? new BalanceEngine(ledger, accountRepository, exchangeRateProvider)
+                : null;
+        ReconciliationProperties reconciliation = properties.getReconciliation();
+        postingReconciler = reconciliation.isEnabled()
+                ? new PostingReconciler(reconciliation, postingRepository)
+                : null;
+        accountService = new AccountServiceImpl(accountRepository, idempotencyKeyRepository,
+                balanceEngine);
         bankService = new BankServiceImpl(bankRepository);
+        importService = new ImportServiceImpl(importRepository, bankRepository);
         transactionService = new TransactionServiceImpl(transactionRepository);
         userService = new UserServiceImpl(userRepository);
 
+        ExecutionProperties execution = properties.getExecution();
+        transferExecutor = RequestExecutor.of("transfer", execution.getTransferThreads(), execution, false);
+        statementExecutor = RequestExecutor.of("statement", execution.getStatementThreads(), execution);
+
         objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
+
+        OutboxProperties outbox = properties.getOutbox();
+        outboxSubscribers = new SubscriberSink();
+        EventStreamProperties events = properties.getEvents();
+        accountEventBus = outbox.isEnabled() && events.isEnabled()
+                ? new AccountEventBus(events, objectMapper)
+                : null;
+        if (accountEventBus != null) {
+            outboxSubscribers.subscribe(accountEventBus);
+        }
+        accountEventBroadcast = accountEventBus != null
+                ? new AccountEventBroadcast(events, dataSource, PostgresDataSources.simple(postgres), outboxSubscribers)
+                : null;
+        List<OutboxSink> sinks = new ArrayList<>();
+        sinks.add(accountEventBroadcast != null ? accountEventBroadcast : outboxSubscribers);
+        outboxFileSink = outbox.isEnabled() && outbox.getFile() != null && !outbox.getFile().isBlank()
+                ? openFileSink(outbox.getFile()) : null;
+        if (outboxFileSink != null) {
+            sinks.add(outboxFileSink);
+        }
+        outboxRelay = outbox.isEnabled()
+                ? new OutboxRelay(outbox, outboxRepository, sinks)
+                : null;
     }
 
     public static AccountService getAccountService() {
@@ -72,6 +210,10 @@ public class ApplicationConfig {
         return bankService;
     }
 
+    public static ImportService getImportService() {
+        return importService;
+    }
+
     public static TransactionService getTransactionService() {
         return transactionService;
     }
@@ -84,11 +226,164 @@ public class ApplicationConfig {
         return objectMapper;
     }
 
-    public static Parser getYamlParser() {
-        return yamlParser;
+    public static PropertiesProvider getPropertiesProvider() {
+        return propertiesProvider;
+    }
+
+    public static ExchangeRateProvider getExchangeRateProvider() {
+        return exchangeRateProvider;
+    }
+
+    public static RepositoryCaches getRepositoryCaches() {
+        return repositoryCaches;
+    }
+
+    /**
+     * Returns the channel through which the caches of several nodes invalidate each other,
+     * started by {@link ru.clevertec.bank.listener.CacheInvalidationListener}.
+     *
+     * @return The channel, or null if caching or the channel is disabled.
+     */
+    public static CacheInvalidationChannel getCacheInvalidationChannel() {
+        return cacheInvalidationChannel;
     }
 
     public static DataSource getDataSource() {
         return dataSource;
     }
+
+    public static MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    public static QueryStatistics getQueryStatistics() {
+        return queryStatistics;
+    }
+
+    public static HikariDataSource getConnectionPool() {
+        return connectionPool;
+    }
+
+    public static RequestExecutor getTransferExecutor() {
+        return transferExecutor;
+    }
+
+    public static RequestExecutor getStatementExecutor() {
+        return statementExecutor;
+    }
+
+    /**
+     * Returns the balance engine, started by {@link ru.clevertec.bank.listener.BalanceEngineListener}.
+     *
+     * @return The engine, or null if the ledger is disabled.
+     */
+    public static BalanceEngine getBalanceEngine() {
+        return balanceEngine;
+    }
+
+    /**
+     * Returns the reconciliation of postings against balances, started by
+     * {@link ru.clevertec.bank.listener.ReconciliationListener}.
+     *
+     * @return The reconciler, or null if reconciliation is disabled.
+     */
+    public static PostingReconciler getPostingReconciler() {
+        return postingReconciler;
+    }
+
+    /**
+     * Returns the compactor of balance checkpoints, started by {@link ru.clevertec.bank.listener.BalanceCompactorListener}.
+     *
+     * @return The compactor, or null if balances are stored rather than derived.
+     */
+    public static BalanceCompactor getBalanceCompactor() {
+        return balanceCompactor;
+    }
+
+    /**
+     * Returns the in-process sink of the outbox relay, through which the account events can be subscribed to.
+     *
+     * @return The sink; it receives events only while the outbox relay is enabled, those of every node
+     * if the event streams are enabled as well.
+     */
+    public static SubscriberSink getOutboxSubscribers() {
+        return outboxSubscribers;
+    }
+
+    public static FileSink getOutboxFileSink() {
+        return outboxFileSink;
+    }
+
+    /**
+     * Returns the outbox relay, started by {@link ru.clevertec.bank.listener.OutboxRelayListener}.
+     *
+     * @return The relay, or null if the outbox is disabled.
+     */
+    public static OutboxRelay getOutboxRelay() {
+        return outboxRelay;
+    }
+
+    /**
+     * Returns the bus of the account event streams, fed by the outbox relays of all nodes.
+     *
+     * @return The bus, or null if the outbox or the event streams are disabled.
+     */
+    public static AccountEventBus getAccountEventBus() {
+        return accountEventBus;
+    }
+
+    /**
+     * Returns the broadcast through which the outbox relay of each node feeds the account event buses of all nodes,
+     * started by {@link ru.clevertec.bank.listener.AccountEventBusListener}.
+     *
+     * @return The broadcast, or null if the outbox or the event streams are disabled.
+     */
+    public static AccountEventBroadcast getAccountEventBroadcast() {
+        return accountEventBroadcast;
+    }
+
+    private static FileSink openFileSink(String file) {
+        try {
+            return new FileSink(Path.of(file), objectMapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Outbox file " + file + " could not be opened", e);
+        }
+    }
+
+    private static void registerCacheMetrics(RepositoryCaches caches) {
+        for (Cache<?, ?> cache : caches.caches()) {
+            String name = cache.getName();
+            metricsRegistry.register("bank_cache_hits_total", "Cache lookups served from the cache.",
+                    MetricsRegistry.Type.COUNTER, () -> cache.stats().hits(), "cache", name);
+            metricsRegistry.register("bank_cache_misses_total", "Cache lookups that loaded the value.",
+                    MetricsRegistry.Type.COUNTER, () -> cache.stats().misses(), "cache", name);
+            metricsRegistry.register("bank_cache_evictions_total", "Cache entries evicted.",
+                    MetricsRegistry.Type.COUNTER, () -> cache.stats().evictions(), "cache", name);
+            metricsRegistry.register("bank_cache_size", "Cache entries currently stored.",
+                    MetricsRegistry.Type.GAUGE, () -> cache.stats().size(), "cache", name);
+        }
+    }
+
+    private static void registerPoolMetrics(HikariDataSource pool, LimitingDataSource limiter) {
+        metricsRegistry.register("bank_pool_limiter_waiting", "Callers queued for a connection ahead of the pool.",
+                MetricsRegistry.Type.GAUGE, limiter::getWaiting);
+        registerPoolGauge(pool, "bank_pool_active_connections", "Pooled connections in use.",
+                HikariPoolMXBean::getActiveConnections);
+        registerPoolGauge(pool, "bank_pool_idle_connections", "Pooled connections waiting to be borrowed.",
+                HikariPoolMXBean::getIdleConnections);
+        registerPoolGauge(pool, "bank_pool_pending_threads", "Threads waiting for a pooled connection.",
+                HikariPoolMXBean::getThreadsAwaitingConnection);
+    }
+
+    private static void registerPoolGauge(
+            HikariDataSource pool,
+            String name,
+            String help,
+            ToIntFunction<HikariPoolMXBean> value
+    ) {
+        metricsRegistry.register(name, help, MetricsRegistry.Type.GAUGE, () -> {
+            HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+            return bean == null ? 0 : value.applyAsInt(bean);
+        });
+    }
 }
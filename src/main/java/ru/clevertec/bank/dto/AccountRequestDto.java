@@ -1,5 +1,7 @@
 package ru.clevertec.bank.dto;
 
+import ru.clevertec.bank.entity.Currency;
+
 /**
  * A data transfer object (DTO) representing a request to create or update an account.
  * This DTO contains information about the account, including its number, currency, user ID, and bank ID.
@@ -9,7 +11,7 @@ package ru.clevertec.bank.dto;
  */
 public record AccountRequestDto(
         String number,
-        String currency,
+        Currency currency,
         Long userId,
         Long bankId
 ) {
@@ -1,6 +1,8 @@
 package ru.clevertec.bank.dto;
 
-import java.math.BigDecimal;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+
 import java.time.LocalDate;
 
 /**
@@ -14,8 +16,8 @@ import java.time.LocalDate;
 public record AccountResponseDto(
         Long id,
         String number,
-        BigDecimal balance,
-        String currency,
+        Money balance,
+        Currency currency,
         Long userId,
         Long bankId,
         LocalDate createdDate
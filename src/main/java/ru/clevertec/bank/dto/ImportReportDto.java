@@ -0,0 +1,34 @@
+package ru.clevertec.bank.dto;
+
+import java.util.List;
+
+/**
+ * A data transfer object (DTO) representing the outcome of a bulk import of users and accounts.
+ * Valid rows are imported even if others are rejected; at most a limited number of the rejected rows
+ * are listed, while {@code rejected} counts all of them.
+ *
+ * @param rows            The number of rows read, without the header.
+ * @param createdUsers    The number of users created; rows of an existing active user are added to that user.
+ * @param createdAccounts The number of accounts created.
+ * @param rejected        The number of rows rejected.
+ * @param errors          The rejected rows, in the order of the file.
+ * @author Andrei Yuryeu
+ */
+public record ImportReportDto(
+        long rows,
+        long createdUsers,
+        long createdAccounts,
+        long rejected,
+        List<RowError> errors
+) {
+
+    /**
+     * A rejected row.
+     *
+     * @param record The number of the CSV record of the row in the file, the header being record 1.
+     *               It is the line number unless a quoted value of an earlier row spans several lines.
+     * @param error  Why the row was rejected.
+     */
+    public record RowError(long record, String error) {
+    }
+}
@@ -1,5 +1,8 @@
 package ru.clevertec.bank.dto;
 
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.TransactionType;
+
 import java.math.BigDecimal;
 
 /**
@@ -12,8 +15,8 @@ import java.math.BigDecimal;
  */
 public record TransactionRequestDto(
         BigDecimal amount,
-        String type,
-        String currency,
+        TransactionType type,
+        Currency currency,
         Long senderAccountId,
         Long receiverAccountId
 ) {
@@ -1,23 +1,30 @@
 package ru.clevertec.bank.dto;
 
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.TransactionType;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
  * A data transfer object (DTO) representing a response containing information about a transaction.
  * This DTO includes details such as the transaction's ID, amount, type, currency, sender account ID,
- * receiver account ID, and the date when the transaction was created.
+ * receiver account ID, the date when the transaction was created, and the exchange rate and amount
+ * credited to the receiver account.
  * It is used to transfer data from the server to the client when retrieving transaction information.
  *
  * @author Andrei Yuryeu
  */
 public record TransactionResponseDto(
         Long id,
-        BigDecimal amount,
-        String type,
-        String currency,
+        Money amount,
+        TransactionType type,
+        Currency currency,
         Long senderAccountId,
         Long receiverAccountId,
-        LocalDateTime createdDate
+        LocalDateTime createdDate,
+        BigDecimal exchangeRate,
+        Money convertedAmount
 ) {
 }
@@ -5,7 +5,6 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
 /**
@@ -22,8 +21,8 @@ import java.time.LocalDate;
 public class Account extends BaseEntity {
 
     private String number;
-    private BigDecimal balance;
-    private String currency;
+    private Money balance;
+    private Currency currency;
     private Long userId;
     private Long bankId;
     private LocalDate createdDate;
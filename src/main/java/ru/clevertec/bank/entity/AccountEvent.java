@@ -0,0 +1,30 @@
+package ru.clevertec.bank.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a change of the balance of one account, as written to the outbox in the transaction of the change
+ * and relayed to downstream systems. The amount is signed: positive when the account is credited.
+ * A transfer produces one event for the sender and one for the receiver; interest has no transaction.
+ * Extends the BaseEntity class to inherit the 'id' field, which orders the events.
+ *
+ * @author Andrei Yuryeu
+ */
+@EqualsAndHashCode(callSuper = false)
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class AccountEvent extends BaseEntity {
+
+    private Long accountId;
+    private Long transactionId;
+    private AccountEventType type;
+    private Money amount;
+    private Currency currency;
+    private LocalDateTime createdDate;
+}
@@ -0,0 +1,16 @@
+package ru.clevertec.bank.entity;
+
+/**
+ * Types of balance changes published for an account: the transaction types, and interest accrual.
+ * The declaration order mirrors the {@code account_event_type_enum} Postgres type.
+ *
+ * @author Andrei Yuryeu
+ * @see AccountEvent
+ */
+public enum AccountEventType {
+
+    WITHDRAW,
+    REFILL,
+    TRANSFER,
+    INTEREST
+}
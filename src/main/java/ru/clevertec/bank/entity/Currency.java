@@ -0,0 +1,16 @@
+package ru.clevertec.bank.entity;
+
+/**
+ * Currencies supported by the bank.
+ * The declaration order mirrors the {@code currency_enum} Postgres type, so the ordinal of a constant
+ * can be used as a dense index (e.g. in the exchange-rate matrix).
+ *
+ * @author Andrei Yuryeu
+ */
+public enum Currency {
+
+    BYN,
+    RUB,
+    USD,
+    EUR
+}
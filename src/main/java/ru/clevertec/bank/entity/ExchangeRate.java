@@ -0,0 +1,28 @@
+package ru.clevertec.bank.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Represents one version of an exchange rate with properties such as currencyFrom, currencyTo, rate,
+ * and the moment the rate becomes effective.
+ * Extends the BaseEntity class to inherit the 'id' field as a unique identifier.
+ *
+ * @author Andrei Yuryeu
+ */
+@EqualsAndHashCode(callSuper = false)
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ExchangeRate extends BaseEntity {
+
+    private Currency currencyFrom;
+    private Currency currencyTo;
+    private BigDecimal rate;
+    private LocalDateTime effectiveFrom;
+}
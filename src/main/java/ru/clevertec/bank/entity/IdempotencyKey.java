@@ -0,0 +1,24 @@
+package ru.clevertec.bank.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a money operation recorded under a client-supplied Idempotency-Key.
+ * The fingerprint describes the request the key was first used with, so that a replay can be told apart
+ * from a different request reusing the key. Unlike the other entities it is identified by the key itself.
+ *
+ * @author Andrei Yuryeu
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class IdempotencyKey {
+
+    private String key;
+    private String fingerprint;
+    private LocalDateTime createdDate;
+}
@@ -0,0 +1,148 @@
+package ru.clevertec.bank.entity;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * An amount of money in a currency, held as a count of minor units (kopecks, cents) in a {@code long}.
+ * Adding, subtracting and comparing amounts is plain integer arithmetic that neither allocates nor rounds;
+ * rounding happens only when an amount is created from a decimal or converted at an exchange rate,
+ * and follows the rounding Postgres applies to the {@code numeric(10,2)} columns.
+ * Amounts in different currencies cannot be added or compared.
+ * In JSON an amount is written as the decimal number it has always been.
+ *
+ * @param minorUnits The amount in minor units.
+ * @param currency   The currency.
+ * @author Andrei Yuryeu
+ */
+public record Money(long minorUnits, Currency currency) implements Comparable<Money> {
+
+    /**
+     * Number of minor units digits, matching the {@code numeric(10,2)} columns.
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * Rounding of amounts created from decimals and of converted amounts.
+     */
+    public static final RoundingMode ROUNDING = RoundingMode.HALF_UP;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    public Money {
+        Objects.requireNonNull(currency, "currency");
+    }
+
+    /**
+     * Creates an amount from a decimal, rounding it to minor units.
+     *
+     * @param amount   The amount.
+     * @param currency The currency.
+     * @return The amount, or null if the decimal is null.
+     * @throws ArithmeticException If the amount does not fit into a long.
+     */
+    public static Money of(BigDecimal amount, Currency currency) {
+        if (amount == null) {
+            return null;
+        }
+        return new Money(amount.setScale(SCALE, ROUNDING).unscaledValue().longValueExact(), currency);
+    }
+
+    public static Money zero(Currency currency) {
+        return new Money(0, currency);
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+
+    public boolean isLessThan(Money other) {
+        return compareTo(other) < 0;
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    /**
+     * Converts the amount into another currency and rounds it to minor units, giving exactly the amount
+     * {@code toBigDecimal().multiply(rate)} would round to. Rates of up to 18 digits are applied
+     * in {@code long} arithmetic; longer ones, and products that overflow, fall back to {@link BigDecimal}.
+     *
+     * @param rate The exchange rate from the currency of this amount into the target currency.
+     * @param to   The target currency.
+     * @return The converted amount.
+     */
+    public Money convert(BigDecimal rate, Currency to) {
+        int scale = rate.scale();
+        if (scale >= 0 && scale < POWERS_OF_TEN.length && rate.precision() <= 18) {
+            long unscaledRate = rate.unscaledValue().longValue();
+            long high = Math.multiplyHigh(minorUnits, unscaledRate);
+            long low = minorUnits * unscaledRate;
+            if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+                return new Money(divideRounded(low, POWERS_OF_TEN[scale]), to);
+            }
+        }
+        return of(toBigDecimal().multiply(rate), to);
+    }
+
+    /**
+     * Returns the amount as a decimal with two fraction digits, as it is bound to the {@code numeric} columns.
+     *
+     * @return The amount.
+     */
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    /**
+     * Returns the amount without its currency, e.g. {@code 100.50}.
+     */
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (currency != other.currency) {
+            throw new IllegalArgumentException("Amounts in " + currency + " and " + other.currency
+                    + " cannot be combined");
+        }
+    }
+
+    private static long divideRounded(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) >= divisor - Math.abs(remainder)) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+}
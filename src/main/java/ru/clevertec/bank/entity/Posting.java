@@ -0,0 +1,30 @@
+package ru.clevertec.bank.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents one side of a double-entry operation: a signed amount posted to either a customer account
+ * or a {@link SystemLedger}. Credits are positive and debits negative, so the postings of an operation
+ * sum to zero per currency and the postings of an account sum to its balance.
+ * Postings are only ever appended.
+ * Extends the BaseEntity class to inherit the 'id' field as a unique identifier.
+ *
+ * @author Andrei Yuryeu
+ */
+@EqualsAndHashCode(callSuper = false)
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class Posting extends BaseEntity {
+
+    private Long transactionId;
+    private Long accountId;
+    private SystemLedger ledger;
+    private Money amount;
+    private LocalDateTime createdDate;
+}
@@ -0,0 +1,22 @@
+package ru.clevertec.bank.entity;
+
+/**
+ * Ledgers of the bank itself that customer accounts are posted against, so that every operation
+ * balances to zero per currency. The declaration order mirrors the {@code system_ledger_enum} Postgres type.
+ * <ul>
+ *     <li>{@code CASH} - money paid in and out over the counter: deposits and withdrawals.</li>
+ *     <li>{@code FX_CLEARING} - the currency exchange of transfers between accounts in different currencies.</li>
+ *     <li>{@code OPENING} - balances that existed before postings were recorded.</li>
+ *     <li>{@code INTEREST} - interest accrued on accounts.</li>
+ * </ul>
+ *
+ * @author Andrei Yuryeu
+ * @see Posting
+ */
+public enum SystemLedger {
+
+    CASH,
+    FX_CLEARING,
+    OPENING,
+    INTEREST
+}
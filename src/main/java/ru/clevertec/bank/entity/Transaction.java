@@ -10,7 +10,9 @@ import java.time.LocalDateTime;
 
 /**
  * Represents a Transaction entity with properties such as amount, type, currency,
- * senderAccountId, receiverAccountId, and createdDate.
+ * senderAccountId, receiverAccountId, createdDate, and the exchange rate and converted amount
+ * applied to the receiver account when the transaction was made.
+ * The converted amount is in the currency of the receiver account.
  * Extends the BaseEntity class to inherit the 'id' field as a unique identifier.
  *
  * @author Andrei Yuryeu
@@ -21,10 +23,12 @@ import java.time.LocalDateTime;
 @Data
 public class Transaction extends BaseEntity {
 
-    private BigDecimal amount;
-    private String type;
-    private String currency;
+    private Money amount;
+    private TransactionType type;
+    private Currency currency;
     private Long senderAccountId;
     private Long receiverAccountId;
     private LocalDateTime createdDate;
+    private BigDecimal exchangeRate;
+    private Money convertedAmount;
 }
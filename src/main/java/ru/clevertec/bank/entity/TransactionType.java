@@ -0,0 +1,15 @@
+package ru.clevertec.bank.entity;
+
+/**
+ * Types of transactions.
+ * The declaration order mirrors the {@code transaction_type_enum} Postgres type, so the ordinal of a constant
+ * can be used as a dense index (e.g. in an {@link java.util.EnumMap}).
+ *
+ * @author Andrei Yuryeu
+ */
+public enum TransactionType {
+
+    WITHDRAW,
+    REFILL,
+    TRANSFER
+}
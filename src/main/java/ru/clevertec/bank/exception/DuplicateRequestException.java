@@ -0,0 +1,15 @@
+package ru.clevertec.bank.exception;
+
+/**
+ * An exception that indicates a money operation was not applied because its Idempotency-Key
+ * had already been recorded by a concurrent or earlier request.
+ * The service answers such a request as a replay of the recorded one.
+ *
+ * @author Andrei Yuryeu
+ */
+public class DuplicateRequestException extends RuntimeException {
+
+    public DuplicateRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.clevertec.bank.exception;
+
+/**
+ * An exception that indicates a request ran out of time while its work was still running, so the work may yet
+ * complete. This exception is answered with status 504; a money operation should be repeated with the same
+ * Idempotency-Key, which returns its outcome without applying it twice.
+ *
+ * @author Andrei Yuryeu
+ */
+public class OutcomeUnknownException extends RuntimeException {
+
+    public OutcomeUnknownException(String message) {
+        super(message);
+    }
+}
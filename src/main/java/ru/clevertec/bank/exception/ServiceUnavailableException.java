@@ -0,0 +1,15 @@
+package ru.clevertec.bank.exception;
+
+/**
+ * An exception that indicates the server cannot handle a request right now.
+ * This exception is typically thrown when a request waits too long to be processed or
+ * finds no room in the queue of its executor, and is answered with status 503.
+ *
+ * @author Andrei Yuryeu
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
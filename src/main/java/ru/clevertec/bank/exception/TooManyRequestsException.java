@@ -0,0 +1,20 @@
+package ru.clevertec.bank.exception;
+
+import lombok.Getter;
+
+/**
+ * An exception that indicates a client or an account exceeded its request rate.
+ * This exception is answered with status 429 and a Retry-After header telling when to try again.
+ *
+ * @author Andrei Yuryeu
+ */
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
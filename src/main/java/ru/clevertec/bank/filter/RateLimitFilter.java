@@ -0,0 +1,149 @@
+package ru.clevertec.bank.filter;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.exception.ServiceUnavailableException;
+import ru.clevertec.bank.exception.TooManyRequestsException;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.ratelimit.ConcurrencyLimiter;
+import ru.clevertec.bank.util.ratelimit.RateLimiter;
+import ru.clevertec.bank.util.yaml.RateLimitProperties;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control for withdrawals, deposits and transfers.
+ * Every money operation takes a token from the bucket of its client, identified by the configured header or
+ * else by the remote address, and from the bucket of its account; an empty bucket is answered with 429 and
+ * Retry-After. Admitted operations then take a slot of the global concurrency limiter, which answers 503 when
+ * the slots and its queue are full or the latency of recent operations exceeds the target.
+ * Other requests pass through untouched.
+ *
+ * @author Andrei Yuryeu
+ * @see RateLimiter
+ * @see ConcurrencyLimiter
+ */
+@WebFilter(urlPatterns = "/accounts/*", asyncSupported = true)
+public class RateLimitFilter extends HttpFilter {
+
+    private static final Pattern MONEY_OPERATION = Pattern.compile("^/accounts/([^/]+)/(withdraw|deposit|transfer)(/.*)?$");
+
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+    private RateLimitProperties properties;
+    private RateLimiter clientLimiter;
+    private RateLimiter accountLimiter;
+    private ConcurrencyLimiter concurrencyLimiter;
+
+    @Override
+    public void init(FilterConfig config) {
+        this.properties = ApplicationConfig.getPropertiesProvider().getProperties().getRateLimit();
+        this.clientLimiter = new RateLimiter(properties.getClientPermitsPerSecond(), properties.getClientBurst(),
+                properties.getStripes());
+        this.accountLimiter = new RateLimiter(properties.getAccountPermitsPerSecond(), properties.getAccountBurst(),
+                properties.getStripes());
+        this.concurrencyLimiter = new ConcurrencyLimiter(properties.getMaximumConcurrent(),
+                properties.getMaximumQueued(), Duration.ofMillis(properties.getQueueTimeoutMillis()),
+                Duration.ofMillis(properties.getLatencyTargetMillis()));
+        metrics.register("bank_admission_in_flight", "Money operations being processed.",
+                MetricsRegistry.Type.GAUGE, concurrencyLimiter::getInFlight);
+        metrics.register("bank_admission_queued", "Money operations waiting for a slot.",
+                MetricsRegistry.Type.GAUGE, concurrencyLimiter::getQueued);
+    }
+
+    @Override
+    protected void doFilter(
+            HttpServletRequest req,
+            HttpServletResponse res,
+            FilterChain chain
+    ) throws IOException, ServletException {
+        Matcher operation = MONEY_OPERATION.matcher(req.getRequestURI());
+        if (!properties.isEnabled() || !"PUT".equals(req.getMethod()) || !operation.matches()) {
+            chain.doFilter(req, res);
+            return;
+        }
+        String client = req.getHeader(properties.getClientHeader());
+        takeToken(clientLimiter, client == null ? req.getRemoteAddr() : client, "client");
+        takeToken(accountLimiter, operation.group(1), "account");
+        admit();
+
+        long start = System.nanoTime();
+        boolean async = false;
+        try {
+            chain.doFilter(req, res);
+            if (req.isAsyncStarted()) {
+                req.getAsyncContext().addListener(new ReleasingListener(start));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                concurrencyLimiter.release(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void takeToken(RateLimiter limiter, String key, String reason) {
+        long waitNanos = limiter.tryAcquire(key);
+        if (waitNanos > 0) {
+            rejected(reason);
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999));
+            throw new TooManyRequestsException("Too many money operations by " + reason + " " + key, retryAfter);
+        }
+    }
+
+    private void admit() {
+        boolean admitted;
+        try {
+            admitted = concurrencyLimiter.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            rejected("overload");
+            throw new ServiceUnavailableException("Too many money operations in progress, try again later");
+        }
+    }
+
+    private void rejected(String reason) {
+        metrics.counter("bank_admission_rejected_total", "Money operations turned away by admission control.",
+                "reason", reason).increment();
+    }
+
+    private final class ReleasingListener implements AsyncListener {
+
+        private final long start;
+
+        private ReleasingListener(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            concurrencyLimiter.release(System.nanoTime() - start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.clevertec.bank.listener;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.util.event.AccountEventBroadcast;
+import ru.clevertec.bank.util.event.AccountEventBus;
+
+/**
+ * Starts the heartbeats of the account event streams and listening for the events of all nodes
+ * when the streams are enabled. The bus is closed by {@link ShutdownListener} after the outbox relay
+ * and the broadcast that feed it.
+ *
+ * @author Andrei Yuryeu
+ */
+@WebListener
+public class AccountEventBusListener implements ServletContextListener {
+
+    private final AccountEventBus accountEventBus = ApplicationConfig.getAccountEventBus();
+    private final AccountEventBroadcast accountEventBroadcast = ApplicationConfig.getAccountEventBroadcast();
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+        if (accountEventBus != null) {
+            accountEventBus.start();
+        }
+        if (accountEventBroadcast != null) {
+            accountEventBroadcast.start();
+        }
+    }
+}
@@ -13,6 +13,8 @@ import java.util.concurrent.TimeUnit;
 @WebListener
 public class ApplyMonthlyPercentageListener implements ServletContextListener {
 
+    private static final System.Logger log = System.getLogger(ApplyMonthlyPercentageListener.class.getName());
+
     private final AccountService accountService = ApplicationConfig.getAccountService();;
 
     private ScheduledExecutorService scheduler;
@@ -20,7 +22,16 @@ public class ApplyMonthlyPercentageListener implements ServletContextListener {
     @Override
     public void contextInitialized(ServletContextEvent servletContextEvent) {
         scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(accountService::applyPercentage, 0, 30, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(this::applyPercentage, 0, 30, TimeUnit.SECONDS);
+    }
+
+    private void applyPercentage() {
+        try {
+            accountService.applyPercentage();
+        } catch (RuntimeException ex) {
+            // a failed run must not cancel the schedule, the next run tries again
+            log.log(System.Logger.Level.ERROR, "Interest was not accrued", ex);
+        }
     }
 
     @Override
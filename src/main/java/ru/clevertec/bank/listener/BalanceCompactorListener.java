@@ -0,0 +1,26 @@
+package ru.clevertec.bank.listener;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.util.posting.BalanceCompactor;
+
+/**
+ * Schedules the compaction of balance checkpoints when balances are derived from postings.
+ * The compactor is closed by {@link ShutdownListener} before the connection pool.
+ *
+ * @author Andrei Yuryeu
+ */
+@WebListener
+public class BalanceCompactorListener implements ServletContextListener {
+
+    private final BalanceCompactor balanceCompactor = ApplicationConfig.getBalanceCompactor();
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+        if (balanceCompactor != null) {
+            balanceCompactor.start();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.clevertec.bank.listener;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.util.ledger.BalanceEngine;
+
+/**
+ * Starts the balance engine, replaying its ledger, when the ledger is enabled.
+ * The engine is closed by {@link ShutdownListener} before the connection pool.
+ *
+ * @author Andrei Yuryeu
+ */
+@WebListener
+public class BalanceEngineListener implements ServletContextListener {
+
+    private final BalanceEngine balanceEngine = ApplicationConfig.getBalanceEngine();
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+        if (balanceEngine != null) {
+            balanceEngine.start();
+        }
+    }
+}
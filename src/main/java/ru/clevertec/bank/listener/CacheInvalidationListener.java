@@ -0,0 +1,26 @@
+package ru.clevertec.bank.listener;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.util.cache.CacheInvalidationChannel;
+
+/**
+ * Starts exchanging cache invalidations with the other nodes when the invalidation channel is enabled.
+ * The channel is closed by {@link ShutdownListener} before the connection pool, sending what is still queued.
+ *
+ * @author Andrei Yuryeu
+ */
+@WebListener
+public class CacheInvalidationListener implements ServletContextListener {
+
+    private final CacheInvalidationChannel cacheInvalidationChannel = ApplicationConfig.getCacheInvalidationChannel();
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+        if (cacheInvalidationChannel != null) {
+            cacheInvalidationChannel.start();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.clevertec.bank.listener;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.util.outbox.OutboxRelay;
+
+/**
+ * Starts relaying the account events of the outbox when the outbox is enabled.
+ * The relay is closed by {@link ShutdownListener} before the connection pool.
+ *
+ * @author Andrei Yuryeu
+ */
+@WebListener
+public class OutboxRelayListener implements ServletContextListener {
+
+    private final OutboxRelay outboxRelay = ApplicationConfig.getOutboxRelay();
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+        if (outboxRelay != null) {
+            outboxRelay.start();
+        }
+    }
+}
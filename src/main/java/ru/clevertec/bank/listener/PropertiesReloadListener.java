@@ -0,0 +1,59 @@
+package ru.clevertec.bank.listener;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.exception.RepositoryException;
+import ru.clevertec.bank.util.exchange.ExchangeRateProvider;
+import ru.clevertec.bank.util.exchange.ExchangeRates;
+import ru.clevertec.bank.util.yaml.PropertiesProvider;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+
+@WebListener
+public class PropertiesReloadListener implements ServletContextListener {
+
+    private static final System.Logger log = System.getLogger(PropertiesReloadListener.class.getName());
+
+    private final PropertiesProvider propertiesProvider = ApplicationConfig.getPropertiesProvider();
+    private final ExchangeRateProvider exchangeRateProvider = ApplicationConfig.getExchangeRateProvider();
+    private ExchangeRates recordedRates;
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+        ExchangeRates exchangeRates = propertiesProvider.getExchangeRates();
+        try {
+            recordRates(exchangeRates);
+        } catch (RepositoryException ex) {
+            recordedRates = exchangeRates;
+            log.log(System.Logger.Level.WARNING, "Exchange rate history was not loaded", ex);
+        }
+        propertiesProvider.addListener(snapshot -> recordRates(snapshot.exchangeRates()));
+        try {
+            propertiesProvider.watch();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to watch the configuration file", e);
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent servletContextEvent) {
+        try {
+            propertiesProvider.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to stop watching the configuration file", e);
+        }
+    }
+
+    /**
+     * Records the rates that changed since the configuration was last recorded by this node;
+     * on the first call, only the pairs that have no stored rate yet.
+     */
+    private synchronized void recordRates(ExchangeRates exchangeRates) {
+        exchangeRateProvider.record(recordedRates, exchangeRates, LocalDateTime.now());
+        recordedRates = exchangeRates;
+    }
+}
@@ -0,0 +1,26 @@
+package ru.clevertec.bank.listener;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.util.posting.PostingReconciler;
+
+/**
+ * Schedules the reconciliation of postings against balances when it is enabled.
+ * The reconciler is closed by {@link ShutdownListener} before the connection pool.
+ *
+ * @author Andrei Yuryeu
+ */
+@WebListener
+public class ReconciliationListener implements ServletContextListener {
+
+    private final PostingReconciler postingReconciler = ApplicationConfig.getPostingReconciler();
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+        if (postingReconciler != null) {
+            postingReconciler.start();
+        }
+    }
+}
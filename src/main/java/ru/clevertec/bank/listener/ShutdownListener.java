@@ -0,0 +1,69 @@
+package ru.clevertec.bank.listener;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.util.cache.CacheInvalidationChannel;
+import ru.clevertec.bank.util.concurrent.RequestExecutor;
+import ru.clevertec.bank.util.event.AccountEventBroadcast;
+import ru.clevertec.bank.util.event.AccountEventBus;
+import ru.clevertec.bank.util.ledger.BalanceEngine;
+import ru.clevertec.bank.util.outbox.FileSink;
+import ru.clevertec.bank.util.outbox.OutboxRelay;
+import ru.clevertec.bank.util.posting.BalanceCompactor;
+import ru.clevertec.bank.util.posting.PostingReconciler;
+
+import java.io.IOException;
+
+@WebListener
+public class ShutdownListener implements ServletContextListener {
+
+    private final RequestExecutor transferExecutor = ApplicationConfig.getTransferExecutor();
+    private final RequestExecutor statementExecutor = ApplicationConfig.getStatementExecutor();
+    private final BalanceEngine balanceEngine = ApplicationConfig.getBalanceEngine();
+    private final PostingReconciler postingReconciler = ApplicationConfig.getPostingReconciler();
+    private final BalanceCompactor balanceCompactor = ApplicationConfig.getBalanceCompactor();
+    private final OutboxRelay outboxRelay = ApplicationConfig.getOutboxRelay();
+    private final FileSink outboxFileSink = ApplicationConfig.getOutboxFileSink();
+    private final AccountEventBroadcast accountEventBroadcast = ApplicationConfig.getAccountEventBroadcast();
+    private final AccountEventBus accountEventBus = ApplicationConfig.getAccountEventBus();
+    private final CacheInvalidationChannel cacheInvalidationChannel = ApplicationConfig.getCacheInvalidationChannel();
+    private final HikariDataSource connectionPool = ApplicationConfig.getConnectionPool();
+
+    @Override
+    public void contextDestroyed(ServletContextEvent servletContextEvent) {
+        transferExecutor.close();
+        statementExecutor.close();
+        if (postingReconciler != null) {
+            postingReconciler.close();
+        }
+        if (balanceCompactor != null) {
+            balanceCompactor.close();
+        }
+        if (outboxRelay != null) {
+            outboxRelay.close();
+        }
+        if (accountEventBroadcast != null) {
+            accountEventBroadcast.close();
+        }
+        if (accountEventBus != null) {
+            accountEventBus.close();
+        }
+        if (outboxFileSink != null) {
+            try {
+                outboxFileSink.close();
+            } catch (IOException ignored) {
+                // the events written so far were forced to disk with their batches
+            }
+        }
+        if (balanceEngine != null) {
+            balanceEngine.close();
+        }
+        if (cacheInvalidationChannel != null) {
+            cacheInvalidationChannel.close();
+        }
+        connectionPool.close();
+    }
+}
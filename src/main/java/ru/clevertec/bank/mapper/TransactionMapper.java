@@ -2,16 +2,21 @@ package ru.clevertec.bank.mapper;
 
 import ru.clevertec.bank.dto.TransactionRequestDto;
 import ru.clevertec.bank.dto.TransactionResponseDto;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
 import ru.clevertec.bank.entity.Transaction;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.ReportingPolicy;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 /**
  * Mapper interface responsible for mapping between Transaction entities and their corresponding DTOs.
  * It provides methods for converting Transaction objects to TransactionResponseDto objects and vice versa.
  * Additionally, it supports mapping lists of Transaction entities to lists of TransactionResponseDto objects.
+ * The amount of a request is a decimal in the currency of the request.
  *
  * @author Andrei Yuryeu
  * @see Transaction
@@ -25,7 +30,12 @@ public interface TransactionMapper {
 
     TransactionResponseDto toDto(Transaction transaction);
 
+    @Mapping(target = "amount", expression = "java(toMoney(dto.amount(), dto.currency()))")
     Transaction fromDto(TransactionRequestDto dto);
 
     List<TransactionResponseDto> toListOfDto(List<Transaction> transactions);
+
+    default Money toMoney(BigDecimal amount, Currency currency) {
+        return amount == null || currency == null ? null : Money.of(amount, currency);
+    }
 }
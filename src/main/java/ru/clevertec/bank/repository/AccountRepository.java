@@ -1,10 +1,26 @@
 package ru.clevertec.bank.repository;
 
 import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.entity.IdempotencyKey;
+import ru.clevertec.bank.exception.DuplicateRequestException;
+import ru.clevertec.bank.exception.EntityNotFoundException;
+import ru.clevertec.bank.exception.MoneyTransferException;
 import ru.clevertec.bank.exception.RepositoryException;
 import ru.clevertec.bank.entity.Account;
+import ru.clevertec.bank.entity.AccountEvent;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.Posting;
 import ru.clevertec.bank.entity.Transaction;
-import ru.clevertec.bank.util.yaml.Parser;
+import ru.clevertec.bank.entity.TransactionType;
+import ru.clevertec.bank.util.cache.AccountNumberIndex;
+import ru.clevertec.bank.util.cache.AccountRef;
+import ru.clevertec.bank.util.cache.RepositoryCaches;
+import ru.clevertec.bank.util.exchange.ExchangeRateProvider;
+import ru.clevertec.bank.util.idempotency.RecentKeyFilter;
+import ru.clevertec.bank.util.ledger.LedgerEntry;
+import ru.clevertec.bank.util.ledger.LedgerStore;
+import ru.clevertec.bank.util.posting.Postings;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
@@ -13,9 +29,18 @@ import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Repository class for managing operations on account entities.
@@ -24,11 +49,20 @@ import java.util.Optional;
  * @see Repository
  * @see Account
  */
-public class AccountRepository extends Repository<Account> {
+public class AccountRepository extends Repository<Account> implements LedgerStore {
 
-    private static final String SELECT_BY_ID_QUERY = "SELECT * FROM accounts WHERE active = TRUE AND id = ?";
-    private static final String SELECT_BY_NUMBER_QUERY = "SELECT * FROM accounts WHERE active = TRUE AND number = ?";
-    private static final String SELECT_ALL_QUERY = "SELECT * FROM accounts WHERE active = TRUE LIMIT ? OFFSET ?";
+    private static final String COLUMNS = "id, number, balance, currency, bank_id, user_id, created_date, active";
+    private static final String DERIVED_BALANCE = """
+        balance + COALESCE((SELECT SUM(p.amount) FROM postings p
+            WHERE p.account_id = accounts.id AND p.id > accounts.checkpoint_posting_id), 0)""";
+    private static final String DERIVED_COLUMNS = COLUMNS.replace("balance", DERIVED_BALANCE);
+
+    private static final String SELECT_BY_ID_QUERY = "SELECT " + COLUMNS + " FROM accounts WHERE active = TRUE AND id = ?";
+    static final String SELECT_BY_NUMBER_QUERY = "SELECT " + COLUMNS + " FROM accounts WHERE active = TRUE AND number = ?";
+    private static final String SELECT_ALL_QUERY = "SELECT " + COLUMNS + " FROM accounts WHERE active = TRUE LIMIT ? OFFSET ?";
+    private static final String SELECT_REF_BY_NUMBER_QUERY = """
+        SELECT id, bank_id, currency FROM accounts WHERE active = TRUE AND number = ?
+    """;
 
     private static final String INSERT_QUERY = """
         INSERT INTO accounts (number, balance, currency, user_id, bank_id, created_date, active)
@@ -41,33 +75,156 @@ public class AccountRepository extends Repository<Account> {
         WHERE id = ?
     """;
 
-    private static final String SELECT_BY_NUMBER_FOR_UPDATE_QUERY = """
-         SELECT * FROM accounts WHERE number = ? FOR UPDATE
-    """;
+    private static final String SELECT_BY_NUMBER_FOR_UPDATE_QUERY =
+            "SELECT " + COLUMNS + " FROM accounts WHERE number = ? FOR UPDATE";
 
-    private static final String SELECT_ALL_FOR_UPDATE_QUERY = """
-        SELECT * FROM accounts FOR UPDATE
-    """;
+    private static final String SELECT_BY_ID_FOR_UPDATE_QUERY =
+            "SELECT " + COLUMNS + " FROM accounts WHERE active = TRUE AND id = ? FOR UPDATE";
+
+    private static final String SELECT_ALL_FOR_UPDATE_QUERY = "SELECT id FROM accounts ORDER BY id FOR UPDATE";
 
-    private static final String UPDATE_ACCOUNT_BALANCE_QUERY = "UPDATE accounts SET balance = ? WHERE id = ?";
-    private static final String APPLY_PERCENTAGE_QUERY = "UPDATE accounts SET balance = balance * ? WHERE bank_id = 1";
+    private static final String LOCK_ACCOUNTS_QUERY =
+            "SELECT id FROM accounts WHERE active = TRUE AND id = ANY(?) ORDER BY id FOR UPDATE";
+    private static final String APPLY_PERCENTAGE_QUERY = """
+        WITH accrued AS (
+            SELECT id, currency, ROUND(balance * ?, 2) - balance AS amount FROM accounts WHERE bank_id = 1
+        ),
+        posted AS (
+            INSERT INTO postings (account_id, ledger, amount, currency, created_date)
+            SELECT id, NULL, amount, currency, ? FROM accrued WHERE amount <> 0
+            RETURNING id, account_id, amount, currency, created_date
+        ),
+        interest AS (
+            INSERT INTO postings (account_id, ledger, amount, currency, created_date)
+            SELECT NULL, 'INTEREST', -amount, currency, ? FROM accrued WHERE amount <> 0
+        ),
+        events AS (
+            INSERT INTO outbox (account_id, type, amount, currency, created_date)
+            SELECT account_id, 'INTEREST', amount, currency, created_date FROM posted
+        )
+        UPDATE accounts a SET balance = a.balance + p.amount,
+            checkpoint_posting_id = GREATEST(a.checkpoint_posting_id, p.id)
+        FROM posted p
+        WHERE a.id = p.account_id
+    """;
+    private static final String APPLY_DERIVED_PERCENTAGE_QUERY = """
+        WITH accrued AS (
+            SELECT id, currency, ROUND(balance * ?, 2) - balance AS amount
+            FROM (SELECT id, currency, %s AS balance FROM accounts WHERE bank_id = 1) derived
+        ),
+        posted AS (
+            INSERT INTO postings (account_id, ledger, amount, currency, created_date)
+            SELECT id, NULL, amount, currency, ? FROM accrued WHERE amount <> 0
+            UNION ALL
+            SELECT NULL, 'INTEREST', -amount, currency, ? FROM accrued WHERE amount <> 0
+            RETURNING account_id, amount, currency, created_date
+        )
+        INSERT INTO outbox (account_id, type, amount, currency, created_date)
+        SELECT account_id, 'INTEREST', amount, currency, created_date FROM posted WHERE account_id IS NOT NULL
+    """.formatted(DERIVED_BALANCE);
     private static final String DELETE_QUERY = "UPDATE accounts SET active = FALSE WHERE bank_id = 1 AND id = ?";
 
-    private final Parser yamlParser;
+    private static final String SELECT_BALANCE_BY_ID_QUERY = "SELECT balance, currency FROM accounts WHERE id = ?";
+    static final String ADD_TO_BALANCE_QUERY = """
+        UPDATE accounts SET balance = balance + ?, checkpoint_posting_id = GREATEST(checkpoint_posting_id, ?)
+        WHERE id = ?
+    """;
+    private static final String INSERT_LEDGER_APPLIED_QUERY = """
+        INSERT INTO ledger_applied (shard, sequence) VALUES (?, ?)
+        ON CONFLICT DO NOTHING
+    """;
+    private static final String INSERT_LEDGER_TRANSACTION_QUERY = """
+        INSERT INTO transactions (amount, type, currency, sender_account_id, receiver_account_id, created_date,
+            exchange_rate, converted_amount, converted_currency, id)
+        VALUES (?, ?::transaction_type_enum, ?::currency_enum, ?, ?, ?, ?, ?, ?::currency_enum,
+            COALESCE(?::bigint, nextval(pg_get_serial_sequence('transactions', 'id'))))
+    """;
+    private static final String RESERVE_TRANSACTION_IDS_QUERY = """
+        SELECT nextval(pg_get_serial_sequence('transactions', 'id')) FROM generate_series(1, ?)
+    """;
+    private static final String SELECT_LEDGER_APPLIED_QUERY =
+            "SELECT sequence FROM ledger_applied WHERE shard = ? AND sequence >= ?";
+    private static final String SELECT_LAST_LEDGER_APPLIED_QUERY =
+            "SELECT COALESCE(MAX(sequence), 0) FROM ledger_applied WHERE shard = ?";
+    private static final String DELETE_LEDGER_APPLIED_QUERY =
+            "DELETE FROM ledger_applied WHERE shard = ? AND sequence < ?";
+
+    private final ExchangeRateProvider exchangeRateProvider;
+    private final RepositoryCaches caches;
+    private final IdempotencyKeyRepository idempotencyKeys;
+    private final PostingRepository postings;
+    private final OutboxRepository outbox;
+    private final boolean derivedBalances;
+    private final String selectByIdQuery;
+    private final String selectByNumberQuery;
+    private final String selectAllQuery;
+    private final String selectByNumberForUpdateQuery;
+    private final String selectByIdForUpdateQuery;
+    private final String selectBalanceByIdQuery;
 
     public AccountRepository(DataSource dataSource) {
-        super(dataSource);
-        this.yamlParser = ApplicationConfig.getYamlParser();
+        this(dataSource, RepositoryCaches.disabled());
+    }
+
+    public AccountRepository(DataSource dataSource, RepositoryCaches caches) {
+        this(dataSource, caches, new IdempotencyKeyRepository(dataSource, RecentKeyFilter.disabled()));
+    }
+
+    public AccountRepository(DataSource dataSource, RepositoryCaches caches, IdempotencyKeyRepository idempotencyKeys) {
+        this(dataSource, caches, idempotencyKeys, new PostingRepository(dataSource));
+    }
+
+    public AccountRepository(DataSource dataSource, RepositoryCaches caches, IdempotencyKeyRepository idempotencyKeys,
+                             PostingRepository postings) {
+        this(dataSource, caches, idempotencyKeys, postings, new OutboxRepository(dataSource), false);
+    }
+
+    /**
+     * Creates the repository, storing or deriving balances.
+     * With stored balances, every operation updates the balances of its accounts. With derived balances,
+     * operations only append postings, {@code balance} is the checkpoint the postings up to
+     * {@code checkpoint_posting_id} sum to, and every read adds the postings after the checkpoint;
+     * checkpoints are advanced by a {@link ru.clevertec.bank.util.posting.BalanceCompactor}.
+     * Either way, every balance change writes an account event to the outbox in the same transaction.
+     *
+     * @param derivedBalances True to derive balances from the postings.
+     */
+    public AccountRepository(DataSource dataSource, RepositoryCaches caches, IdempotencyKeyRepository idempotencyKeys,
+                             PostingRepository postings, OutboxRepository outbox, boolean derivedBalances) {
+        super(dataSource, caches.accounts());
+        this.exchangeRateProvider = ApplicationConfig.getExchangeRateProvider();
+        this.caches = caches;
+        this.idempotencyKeys = idempotencyKeys;
+        this.postings = postings;
+        this.outbox = outbox;
+        this.derivedBalances = derivedBalances;
+        this.selectByIdQuery = withBalances(SELECT_BY_ID_QUERY);
+        this.selectByNumberQuery = withBalances(SELECT_BY_NUMBER_QUERY);
+        this.selectAllQuery = withBalances(SELECT_ALL_QUERY);
+        this.selectByNumberForUpdateQuery = withBalances(SELECT_BY_NUMBER_FOR_UPDATE_QUERY);
+        this.selectByIdForUpdateQuery = withBalances(SELECT_BY_ID_FOR_UPDATE_QUERY);
+        this.selectBalanceByIdQuery = derivedBalances
+                ? "SELECT " + DERIVED_BALANCE + ", currency FROM accounts WHERE id = ?"
+                : SELECT_BALANCE_BY_ID_QUERY;
+    }
+
+    private String withBalances(String query) {
+        return derivedBalances ? query.replace(COLUMNS, DERIVED_COLUMNS) : query;
+    }
+
+    @Override
+    protected void invalidate(Long id) {
+        caches.invalidateAccount(id);
     }
 
     @Override
     protected String getSelectByIdQuery() {
-        return SELECT_BY_ID_QUERY;
+        return selectByIdQuery;
     }
 
     @Override
     protected String getSelectAllQuery() {
-        return SELECT_ALL_QUERY;
+        return selectAllQuery;
     }
 
     @Override
@@ -88,21 +245,21 @@ public class AccountRepository extends Repository<Account> {
     @Override
     protected Account construct(ResultSet resultSet) throws SQLException {
         Account account = new Account();
-        account.setId(resultSet.getLong("id"));
-        account.setNumber(resultSet.getString("number"));
-        account.setBalance(resultSet.getBigDecimal("balance"));
-        account.setCurrency(resultSet.getString("currency"));
-        account.setBankId(resultSet.getLong("bank_id"));
-        account.setUserId(resultSet.getLong("user_id"));
-        account.setCreatedDate(resultSet.getDate("created_date").toLocalDate());
-        account.setActive(resultSet.getBoolean("active"));
+        account.setId(resultSet.getLong(1));
+        account.setNumber(resultSet.getString(2));
+        account.setCurrency(getEnum(resultSet, 4, Currency.class));
+        account.setBalance(getMoney(resultSet, 3, account.getCurrency()));
+        account.setBankId(resultSet.getLong(5));
+        account.setUserId(resultSet.getLong(6));
+        account.setCreatedDate(resultSet.getDate(7).toLocalDate());
+        account.setActive(resultSet.getBoolean(8));
         return account;
     }
 
     @Override
     protected void settingPreparedStatement(PreparedStatement preparedStatement, Account element) throws SQLException {
         preparedStatement.setString(1, element.getNumber());
-        preparedStatement.setString(2, element.getCurrency());
+        setEnum(preparedStatement, 2, element.getCurrency());
         preparedStatement.setLong(3, element.getUserId());
         preparedStatement.setLong(4, element.getBankId());
         preparedStatement.setDate(5, Date.valueOf(LocalDate.now()));
@@ -111,26 +268,42 @@ public class AccountRepository extends Repository<Account> {
 
     /**
      * Applies percentage on account balances with the given interest rate.
+     * The accrued interest of every account is posted against the {@code INTEREST} ledger in the same statement;
+     * with derived balances, it is only posted. A failed accrual is rolled back as a whole.
      *
+     * @param interestRate The interest rate.
+     * @throws RepositoryException If the interest was not accrued.
      */
     public void applyPercentage(BigDecimal interestRate) throws RepositoryException {
-        try (Connection connection = getDataSource().getConnection();
-             PreparedStatement selectForUpdate = connection.prepareStatement(SELECT_ALL_FOR_UPDATE_QUERY);
-             PreparedStatement updateBalance = connection.prepareStatement(APPLY_PERCENTAGE_QUERY)
-        ) {
-            try {
-                connection.setAutoCommit(false);
-                selectForUpdate.executeQuery();
-                updateBalance.setBigDecimal(1, interestRate);
-                updateBalance.executeUpdate();
-                connection.commit();
+        timed("applyPercentage", () -> {
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement selectForUpdate = connection.prepareStatement(SELECT_ALL_FOR_UPDATE_QUERY);
+                 PreparedStatement updateBalance = connection.prepareStatement(
+                         derivedBalances ? APPLY_DERIVED_PERCENTAGE_QUERY : APPLY_PERCENTAGE_QUERY)
+            ) {
+                try {
+                    connection.setAutoCommit(false);
+                    selectForUpdate.executeQuery();
+                    if (derivedBalances) {
+                        postings.lockShared(connection);
+                    }
+                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                    updateBalance.setBigDecimal(1, interestRate);
+                    updateBalance.setTimestamp(2, now);
+                    updateBalance.setTimestamp(3, now);
+                    updateBalance.executeUpdate();
+                    connection.commit();
+                } catch (Exception ex) {
+                    connection.rollback();
+                    throw ex;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                caches.invalidateAccounts();
             } catch (Exception ex) {
-                connection.setAutoCommit(true);
-                connection.rollback();
+                throw new RepositoryException("Failed to accrual interest [" + ex.getMessage() + "]");
             }
-        } catch (Exception ex) {
-            throw new RepositoryException("Failed to accrual interest [" + ex.getMessage() + "]");
-        }
+        });
     }
 
     /**
@@ -141,8 +314,12 @@ public class AccountRepository extends Repository<Account> {
      * @throws RepositoryException If there is an error during the repository operation.
      */
     public Optional<Account> findByNumber(String number) throws RepositoryException {
+        return timed("findByNumber", () -> caches.accountsByNumber().get(number, this::loadByNumber));
+    }
+
+    private Optional<Account> loadByNumber(String number) throws RepositoryException {
         try (Connection connection = getDataSource().getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_NUMBER_QUERY)
+             PreparedStatement preparedStatement = connection.prepareStatement(selectByNumberQuery)
         ) {
             preparedStatement.setString(1, number);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
@@ -158,19 +335,90 @@ public class AccountRepository extends Repository<Account> {
     }
 
     /**
-     * Retrieves an account entity by its unique number with a lock for update.
+     * Retrieves an account entity by its unique number, reading it with a lock for update.
+     * The lock only makes the read wait for the operations in flight on the account; it is released when
+     * the method returns, so it protects nothing afterwards. Operations lock the row again in their own transaction.
      *
      * @param number The unique number of the account to retrieve.
      * @return An Optional containing the retrieved account if found, or empty if not found.
      * @throws RepositoryException If there is an error during the repository operation.
      */
     public Optional<Account> blockingFindByNumber(String number) throws RepositoryException {
+        return timed("blockingFindByNumber", () -> {
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(selectByNumberForUpdateQuery)
+            ) {
+                preparedStatement.setString(1, number);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    return resultSet.next() ? Optional.of(construct(resultSet)) : Optional.empty();
+                }
+            } catch (Exception ex) {
+                throw new RepositoryException("The entity was not found[" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    /**
+     * Retrieves an account entity by its unique identifier (id), reading it with a lock for update.
+     * Uses the primary key, so the read waits only for the operations in flight on the account itself.
+     * The lock is released when the method returns; operations lock the row again in their own transaction.
+     *
+     * @param id The unique identifier (id) of the account to retrieve.
+     * @return An Optional containing the retrieved account if found, or empty if not found.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public Optional<Account> blockingFindById(Long id) throws RepositoryException {
+        return timed("blockingFindById", () -> {
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(selectByIdForUpdateQuery)
+            ) {
+                preparedStatement.setLong(1, id);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    return resultSet.next() ? Optional.of(construct(resultSet)) : Optional.empty();
+                }
+            } catch (Exception ex) {
+                throw new RepositoryException("The entity was not found[" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    /**
+     * Resolves an account number to the id, bank and currency of the account through the in-memory index.
+     * Loads the mapping on the first lookup of a number; the mapping never changes while the account is active.
+     *
+     * @param number The number of the account.
+     * @return The account reference, or empty if the index is disabled or the account was not found.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public Optional<AccountRef> findRefByNumber(String number) throws RepositoryException {
+        return timed("findRefByNumber", () -> {
+            AccountNumberIndex index = caches.accountNumbers();
+            long key = AccountNumberIndex.parse(number);
+            if (!index.isEnabled() || key < 0) {
+                return Optional.empty();
+            }
+            Optional<AccountRef> cached = index.get(key);
+            if (cached.isPresent()) {
+                return cached;
+            }
+            Optional<AccountRef> loaded = loadRefByNumber(number);
+            loaded.ifPresent(account -> index.put(key, account));
+            return loaded;
+        });
+    }
+
+    private Optional<AccountRef> loadRefByNumber(String number) throws RepositoryException {
         try (Connection connection = getDataSource().getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_NUMBER_FOR_UPDATE_QUERY)
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_REF_BY_NUMBER_QUERY)
         ) {
             preparedStatement.setString(1, number);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                return resultSet.next() ? Optional.of(construct(resultSet)) : Optional.empty();
+                return resultSet.next()
+                        ? Optional.of(new AccountRef(
+                                resultSet.getLong(1),
+                                resultSet.getLong(2),
+                                getEnum(resultSet, 3, Currency.class)))
+                        : Optional.empty();
             }
         } catch (Exception ex) {
             throw new RepositoryException("The entity was not found[" + ex.getMessage() + "]");
@@ -178,24 +426,37 @@ public class AccountRepository extends Repository<Account> {
     }
 
     /**
-     * Withdraws a specified amount from an account and returns the associated transaction.
+     * Withdraws a specified amount from an account and returns the associated transaction,
+     * which is stored together with its postings in the transaction of the balance update.
      *
      */
-    public Transaction withdraw(Account account, BigDecimal amount) {
-        BigDecimal balance = account.getBalance().subtract(amount);
-        account.setBalance(balance);
-        Transaction transaction = fillTransaction(account, amount, "WITHDRAW");
-        executeQuery(account);
-        return transaction;
+    public Transaction withdraw(Account account, Money amount) {
+        return withdraw(account, amount, null);
+    }
+
+    /**
+     * Withdraws a specified amount from an account, recording the Idempotency-Key of the request
+     * in the same transaction, and returns the associated transaction.
+     *
+     * @throws DuplicateRequestException If the key was already recorded; the balance is left unchanged.
+     */
+    public Transaction withdraw(Account account, Money amount, IdempotencyKey idempotencyKey) {
+        return timed("withdraw", () -> {
+            Transaction transaction = fillTransaction(account, amount, TransactionType.WITHDRAW);
+            executeQuery(idempotencyKey, transaction, account);
+            return transaction;
+        });
     }
 
-    private Transaction fillTransaction(Account account, BigDecimal amount, String transactionType) {
+    private Transaction fillTransaction(Account account, Money amount, TransactionType transactionType) {
         Transaction transaction = new Transaction();
         transaction.setAmount(amount);
         transaction.setType(transactionType);
         transaction.setCurrency(account.getCurrency());
         transaction.setReceiverAccountId(account.getId());
         transaction.setCreatedDate(LocalDateTime.now());
+        transaction.setExchangeRate(BigDecimal.ONE);
+        transaction.setConvertedAmount(amount);
         return transaction;
     }
 
@@ -203,78 +464,406 @@ public class AccountRepository extends Repository<Account> {
      * Refills an account with a specified amount and returns the associated transaction.
      *
      */
-    public Transaction deposit(Account account, BigDecimal amount) {
-        BigDecimal balance = account.getBalance().add(amount);
-        account.setBalance(balance);
-        Transaction transaction = fillTransaction(account, amount, "REFILL");
-        executeQuery(account);
-        return transaction;
+    public Transaction deposit(Account account, Money amount) {
+        return deposit(account, amount, null);
+    }
+
+    /**
+     * Refills an account with a specified amount, recording the Idempotency-Key of the request
+     * in the same transaction, and returns the associated transaction.
+     *
+     * @throws DuplicateRequestException If the key was already recorded; the balance is left unchanged.
+     */
+    public Transaction deposit(Account account, Money amount, IdempotencyKey idempotencyKey) {
+        return timed("deposit", () -> {
+            Transaction transaction = fillTransaction(account, amount, TransactionType.REFILL);
+            executeQuery(idempotencyKey, transaction, account);
+            return transaction;
+        });
     }
 
-    private void executeQuery(Account account) {
+    /**
+     * Applies an operation to the balances of its accounts in one transaction, which first records
+     * the Idempotency-Key if there is one. The key is inserted before the accounts are touched, so a concurrent
+     * request with the same key waits on it and then finds it recorded instead of applying the operation a second time.
+     * The rows of the accounts are then locked in the order of their ids, so concurrent operations never lock them
+     * in opposite orders, and their balances are read again under the locks: an operation taking an account below
+     * zero is rejected here whatever balance its caller saw. The balances are changed by the amounts posted rather
+     * than overwritten, and the operation itself and its postings are inserted in the same transaction,
+     * so the balances never disagree with the postings; the generated id is set on the operation.
+     * With derived balances, the accounts are locked and checked but not updated. The accounts given are set
+     * to their new balances.
+     *
+     * @param idempotencyKey The key of the request, or null.
+     * @param transaction    The operation changing the balances.
+     * @param accounts       The accounts of the operation.
+     * @throws DuplicateRequestException If the key was already recorded.
+     * @throws MoneyTransferException    If an account would be overdrawn; nothing is changed.
+     * @throws EntityNotFoundException   If an account is no longer active; nothing is changed.
+     * @throws RepositoryException       If the transaction fails; it is rolled back.
+     */
+    private void executeQuery(IdempotencyKey idempotencyKey, Transaction transaction, Account... accounts) {
+        boolean applied;
         try (Connection connection = getDataSource().getConnection();
-             PreparedStatement updateAccount = connection.prepareStatement(UPDATE_ACCOUNT_BALANCE_QUERY);
+             PreparedStatement lockAccounts = connection.prepareStatement(LOCK_ACCOUNTS_QUERY);
+             PreparedStatement selectBalance = connection.prepareStatement(selectBalanceByIdQuery);
+             PreparedStatement addToBalance = connection.prepareStatement(ADD_TO_BALANCE_QUERY);
+             PreparedStatement insertTransaction = connection.prepareStatement(
+                     TransactionRepository.INSERT_QUERY, new String[]{"id"})
         ) {
             try {
                 connection.setAutoCommit(false);
-                updateBalance(account, updateAccount);
+                applied = idempotencyKey == null || idempotencyKeys.insert(connection, idempotencyKey);
+                if (applied) {
+                    Map<Long, Money> changes = balanceChanges(Postings.of(transaction));
+                    Map<Long, Money> balances = lockBalances(lockAccounts, selectBalance, changes);
+                    for (Account account : accounts) {
+                        Money balance = balances.get(account.getId());
+                        if (balance == null) {
+                            throw new EntityNotFoundException(
+                                    "Account with number = " + account.getNumber() + " was not found");
+                        }
+                        if (balance.signum() < 0 && changes.get(account.getId()).signum() < 0) {
+                            throw new MoneyTransferException(
+                                    "Not enough money on account with number = " + account.getNumber());
+                        }
+                    }
+                    bindTransaction(transaction, insertTransaction);
+                    insertTransaction.executeUpdate();
+                    try (ResultSet generatedKeys = insertTransaction.getGeneratedKeys()) {
+                        generatedKeys.next();
+                        transaction.setId(generatedKeys.getLong(1));
+                    }
+                    List<Posting> posted = Postings.of(transaction);
+                    if (derivedBalances) {
+                        postings.lockShared(connection);
+                    }
+                    postings.insert(connection, posted);
+                    outbox.insert(connection, OutboxRepository.eventsOf(transaction, posted));
+                    if (!derivedBalances) {
+                        Map<Long, Long> checkpoints = lastPostingIds(posted);
+                        for (Map.Entry<Long, Money> change : changes.entrySet()) {
+                            setMoney(addToBalance, 1, change.getValue());
+                            addToBalance.setLong(2, checkpoints.getOrDefault(change.getKey(), 0L));
+                            addToBalance.setLong(3, change.getKey());
+                            addToBalance.executeUpdate();
+                        }
+                    }
+                    connection.commit();
+                    for (Account account : accounts) {
+                        account.setBalance(balances.get(account.getId()));
+                    }
+                } else {
+                    connection.rollback();
+                }
             } catch (Exception ex) {
-                connection.setAutoCommit(true);
                 connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            for (Account account : accounts) {
+                caches.invalidateAccount(account);
             }
-            connection.setAutoCommit(true);
+        } catch (MoneyTransferException | EntityNotFoundException ex) {
+            throw ex;
         } catch (Exception ex) {
-            throw new RepositoryException("Balance of " + account.getClass().getSimpleName() + "account was not updated [" + ex.getMessage() + "]");
+            throw new RepositoryException("Balance of accounts was not updated [" + ex.getMessage() + "]");
+        }
+        if (!applied) {
+            throw new DuplicateRequestException(
+                    "Request with Idempotency-Key = " + idempotencyKey.getKey() + " was already processed");
+        }
+    }
+
+    /**
+     * Locks the rows of the changed accounts in the order of their ids and returns the balances they will have
+     * after the changes. The balances are read by statements of their own after the lock was granted,
+     * so they include whatever the operations holding the lock before committed, postings included.
+     *
+     * @return The balances by account id, without the accounts that are no longer active.
+     */
+    private Map<Long, Money> lockBalances(
+            PreparedStatement lockAccounts,
+            PreparedStatement selectBalance,
+            Map<Long, Money> changes
+    ) throws SQLException {
+        lockAccounts.setArray(1, lockAccounts.getConnection().createArrayOf("bigint", changes.keySet().toArray()));
+        List<Long> locked = new ArrayList<>();
+        try (ResultSet resultSet = lockAccounts.executeQuery()) {
+            while (resultSet.next()) {
+                locked.add(resultSet.getLong(1));
+            }
+        }
+        Map<Long, Money> balances = new HashMap<>();
+        for (Long id : locked) {
+            selectBalance.setLong(1, id);
+            try (ResultSet resultSet = selectBalance.executeQuery()) {
+                resultSet.next();
+                Money balance = getMoney(resultSet, 1, getEnum(resultSet, 2, Currency.class));
+                balances.put(id, balance.plus(changes.get(id)));
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Sums the postings of an operation per account, in the order of the account ids.
+     */
+    private static Map<Long, Money> balanceChanges(List<Posting> posted) {
+        Map<Long, Money> changes = new TreeMap<>();
+        for (Posting posting : posted) {
+            if (posting.getAccountId() != null) {
+                changes.merge(posting.getAccountId(), posting.getAmount(), Money::plus);
+            }
         }
+        return changes;
     }
 
-    private void updateBalance(Account account, PreparedStatement updateAccount) throws SQLException {
-        updateAccount.setBigDecimal(1, account.getBalance());
-        updateAccount.setLong(2, account.getId());
-        updateAccount.executeUpdate();
+    /**
+     * Returns the id of the last of the given postings of every account, which becomes its checkpoint.
+     */
+    private static Map<Long, Long> lastPostingIds(List<Posting> posted) {
+        Map<Long, Long> checkpoints = new HashMap<>();
+        for (Posting posting : posted) {
+            if (posting.getAccountId() != null) {
+                checkpoints.merge(posting.getAccountId(), posting.getId(), Math::max);
+            }
+        }
+        return checkpoints;
     }
 
     /**
      * Transfers a specified amount from a sender account to a receiver account.
+     * The rate in force at the moment of the transfer and the amount credited to the receiver
+     * are stored on the returned transaction.
      *
      */
-    public Transaction transfer(Account sender, Account receiver, BigDecimal amount) {
-        BigDecimal senderBalance;
-        BigDecimal receiverBalance;
-        if (!sender.getCurrency().equals(receiver.getCurrency())) {
-            BigDecimal currencyRate = yamlParser.getYaml().getExchangeRates()
-                    .get(sender.getCurrency() + receiver.getCurrency());
-            senderBalance = sender.getBalance().subtract(amount);
-            receiverBalance = receiver.getBalance().add(amount.multiply(currencyRate));
-        } else {
-            senderBalance = sender.getBalance().subtract(amount);
-            receiverBalance = receiver.getBalance().add(amount);
-        }
-        sender.setBalance(senderBalance);
-        receiver.setBalance(receiverBalance);
+    public Transaction transfer(Account sender, Account receiver, Money amount) {
+        return transfer(sender, receiver, amount, null);
+    }
 
-        Transaction transaction = fillTransaction(sender, amount, "TRANSFER");
-        transaction.setReceiverAccountId(receiver.getId());
-        executeQuery(sender, receiver);
-        return transaction;
+    /**
+     * Transfers a specified amount from a sender account to a receiver account, recording the Idempotency-Key
+     * of the request in the same transaction.
+     *
+     * @throws DuplicateRequestException If the key was already recorded; the balances are left unchanged.
+     */
+    public Transaction transfer(Account sender, Account receiver, Money amount, IdempotencyKey idempotencyKey) {
+        return timed("transfer", () -> {
+            Transaction transaction = fillTransaction(sender, amount, TransactionType.TRANSFER);
+            Currency receiverCurrency = receiver.getBalance().currency();
+            BigDecimal exchangeRate = exchangeRateProvider.rateAt(
+                    amount.currency(),
+                    receiverCurrency,
+                    transaction.getCreatedDate()
+            );
+            Money received = amount.convert(exchangeRate, receiverCurrency);
+
+            transaction.setSenderAccountId(sender.getId());
+            transaction.setReceiverAccountId(receiver.getId());
+            transaction.setExchangeRate(exchangeRate);
+            transaction.setConvertedAmount(received);
+            executeQuery(idempotencyKey, transaction, sender, receiver);
+            return transaction;
+        });
     }
 
-    private void executeQuery(Account sender, Account receiver) {
-        try (Connection connection = getDataSource().getConnection();
-             PreparedStatement updateSender = connection.prepareStatement(UPDATE_ACCOUNT_BALANCE_QUERY);
-             PreparedStatement updateReceiver = connection.prepareStatement(UPDATE_ACCOUNT_BALANCE_QUERY);
-        ) {
-            try {
-                connection.setAutoCommit(false);
-                updateBalance(sender, updateSender);
-                updateBalance(receiver, updateReceiver);
+    @Override
+    public Optional<Money> findBalance(long accountId) throws RepositoryException {
+        return timed("findBalance", () -> {
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(selectBalanceByIdQuery)
+            ) {
+                preparedStatement.setLong(1, accountId);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    return resultSet.next()
+                            ? Optional.of(getMoney(resultSet, 1, getEnum(resultSet, 2, Currency.class)))
+                            : Optional.<Money>empty();
+                }
             } catch (Exception ex) {
-                connection.setAutoCommit(true);
-                connection.rollback();
+                throw new RepositoryException("The entity was not found[" + ex.getMessage() + "]");
             }
-            connection.setAutoCommit(true);
-        } catch (Exception ex) {
-            throw new RepositoryException("Balance of accounts was not updated [" + ex.getMessage() + "]");
-        }
+        });
+    }
+
+    /**
+     * Applies ledger entries of the balance engine in one transaction. Entries whose position is already
+     * in {@code ledger_applied} are skipped; the others add their transaction, its postings, events and Idempotency-Key,
+     * and their balance changes are summed per account and applied in the order of the ids, so concurrent appliers
+     * never lock rows in opposite orders. With derived balances, only the postings are added.
+     *
+     * @throws RepositoryException If the transaction fails; it is rolled back.
+     */
+    @Override
+    public void applyLedger(List<LedgerEntry> entries) throws RepositoryException {
+        timed("applyLedger", () -> {
+            Set<Long> touched = new HashSet<>();
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement markApplied = connection.prepareStatement(INSERT_LEDGER_APPLIED_QUERY);
+                 PreparedStatement insertTransaction = connection.prepareStatement(
+                         INSERT_LEDGER_TRANSACTION_QUERY, new String[]{"id"});
+                 PreparedStatement addToBalance = connection.prepareStatement(ADD_TO_BALANCE_QUERY)
+            ) {
+                try {
+                    connection.setAutoCommit(false);
+                    Map<Long, Long> deltas = new TreeMap<>();
+                    List<Transaction> transactions = new ArrayList<>();
+                    for (LedgerEntry entry : entries) {
+                        markApplied.setInt(1, entry.shard());
+                        markApplied.setLong(2, entry.sequence());
+                        if (markApplied.executeUpdate() == 0) {
+                            continue;
+                        }
+                        if (entry.debitAccountId() != 0) {
+                            deltas.merge(entry.debitAccountId(), -entry.amount(), Math::addExact);
+                        }
+                        if (entry.creditAccountId() != 0) {
+                            deltas.merge(entry.creditAccountId(), entry.convertedAmount(), Math::addExact);
+                        }
+                        Transaction transaction = entry.toTransaction();
+                        bindTransaction(transaction, insertTransaction);
+                        insertTransaction.setObject(10, transaction.getId(), Types.BIGINT);
+                        insertTransaction.addBatch();
+                        transactions.add(transaction);
+                        IdempotencyKey idempotencyKey = entry.toIdempotencyKey();
+                        if (idempotencyKey != null) {
+                            idempotencyKeys.insert(connection, idempotencyKey);
+                        }
+                    }
+                    insertTransaction.executeBatch();
+                    if (derivedBalances) {
+                        postings.lockShared(connection);
+                    }
+                    List<Posting> posted = new ArrayList<>();
+                    List<AccountEvent> events = new ArrayList<>();
+                    try (ResultSet generatedKeys = insertTransaction.getGeneratedKeys()) {
+                        for (Transaction transaction : transactions) {
+                            generatedKeys.next();
+                            transaction.setId(generatedKeys.getLong(1));
+                            List<Posting> transactionPostings = Postings.of(transaction);
+                            posted.addAll(transactionPostings);
+                            events.addAll(OutboxRepository.eventsOf(transaction, transactionPostings));
+                        }
+                    }
+                    postings.insert(connection, posted);
+                    outbox.insert(connection, events);
+                    if (!derivedBalances) {
+                        Map<Long, Long> checkpoints = lastPostingIds(posted);
+                        for (Map.Entry<Long, Long> delta : deltas.entrySet()) {
+                            addToBalance.setBigDecimal(1, BigDecimal.valueOf(delta.getValue(), Money.SCALE));
+                            addToBalance.setLong(2, checkpoints.getOrDefault(delta.getKey(), 0L));
+                            addToBalance.setLong(3, delta.getKey());
+                            addToBalance.addBatch();
+                        }
+                        addToBalance.executeBatch();
+                    }
+                    connection.commit();
+                    touched.addAll(deltas.keySet());
+                } catch (Exception ex) {
+                    connection.rollback();
+                    throw ex;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (Exception ex) {
+                throw new RepositoryException("Ledger was not applied [" + ex.getMessage() + "]");
+            }
+            touched.forEach(caches::invalidateAccount);
+        });
+    }
+
+    private void bindTransaction(Transaction transaction, PreparedStatement insertTransaction) throws SQLException {
+        setMoney(insertTransaction, 1, transaction.getAmount());
+        setEnum(insertTransaction, 2, transaction.getType());
+        setEnum(insertTransaction, 3, transaction.getCurrency());
+        insertTransaction.setObject(4, transaction.getSenderAccountId());
+        insertTransaction.setObject(5, transaction.getReceiverAccountId());
+        insertTransaction.setTimestamp(6, Timestamp.valueOf(transaction.getCreatedDate()));
+        insertTransaction.setBigDecimal(7, transaction.getExchangeRate());
+        setMoney(insertTransaction, 8, transaction.getConvertedAmount());
+        setEnum(insertTransaction, 9, transaction.getConvertedAmount().currency());
+    }
+
+    @Override
+    public long[] reserveTransactionIds(int count) throws RepositoryException {
+        return timed("reserveTransactionIds", () -> {
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(RESERVE_TRANSACTION_IDS_QUERY)
+            ) {
+                preparedStatement.setInt(1, count);
+                long[] ids = new long[count];
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    for (int i = 0; i < count && resultSet.next(); i++) {
+                        ids[i] = resultSet.getLong(1);
+                    }
+                }
+                return ids;
+            } catch (Exception ex) {
+                throw new RepositoryException("Transaction ids were not reserved [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    @Override
+    public Set<Long> findAppliedSequences(int shard, long fromSequence) throws RepositoryException {
+        return timed("findAppliedSequences", () -> {
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_LEDGER_APPLIED_QUERY)
+            ) {
+                preparedStatement.setInt(1, shard);
+                preparedStatement.setLong(2, fromSequence);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    Set<Long> found = new HashSet<>();
+                    while (resultSet.next()) {
+                        found.add(resultSet.getLong(1));
+                    }
+                    return found;
+                }
+            } catch (Exception ex) {
+                throw new RepositoryException("Applied ledger entries were not found [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    @Override
+    public long findLastAppliedSequence(int shard) throws RepositoryException {
+        return timed("findLastAppliedSequence", () -> {
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_LAST_LEDGER_APPLIED_QUERY)
+            ) {
+                preparedStatement.setInt(1, shard);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            } catch (Exception ex) {
+                throw new RepositoryException("Applied ledger entries were not found [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    @Override
+    public void deleteAppliedSequences(int shard, long belowSequence) throws RepositoryException {
+        timed("deleteAppliedSequences", () -> {
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(DELETE_LEDGER_APPLIED_QUERY)
+            ) {
+                preparedStatement.setInt(1, shard);
+                preparedStatement.setLong(2, belowSequence);
+                preparedStatement.executeUpdate();
+            } catch (Exception ex) {
+                throw new RepositoryException("Applied ledger entries were not deleted [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    /**
+     * Looks up a recorded Idempotency-Key in the database itself, since the balance engine relies on the answer
+     * to refuse a second application and the recent-key filter forgets keys.
+     */
+    @Override
+    public Optional<IdempotencyKey> findIdempotencyKey(String key) throws RepositoryException {
+        return idempotencyKeys.loadByKey(key);
     }
 }
@@ -2,6 +2,7 @@ package ru.clevertec.bank.repository;
 
 import ru.clevertec.bank.exception.RepositoryException;
 import ru.clevertec.bank.entity.Bank;
+import ru.clevertec.bank.util.cache.RepositoryCaches;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
@@ -19,20 +20,27 @@ import java.util.Optional;
  */
 public class BankRepository extends Repository<Bank> {
 
-    private static final String SELECT_BY_ID_QUERY = "SELECT * FROM banks WHERE active = TRUE AND id = ?";
+    private static final String SELECT_BY_ID_QUERY = "SELECT id, name, active FROM banks WHERE active = TRUE AND id = ?";
     private static final String SELECT_BY_ACCOUNT_ID_QUERY = """
-        SELECT * FROM banks b
-            LEFT JOIN accounts a on a.bank_id = b.id
+        SELECT b.id, b.name, b.active FROM banks b
+            JOIN accounts a on a.bank_id = b.id
         WHERE b.active = TRUE AND a.id = ?
     """;
-    private static final String SELECT_ALL_QUERY = "SELECT * FROM banks WHERE active = TRUE LIMIT ? OFFSET ?";
+    private static final String SELECT_ALL_QUERY = "SELECT id, name, active FROM banks WHERE active = TRUE LIMIT ? OFFSET ?";
     private static final String INSERT_QUERY = "INSERT INTO banks (name, active) VALUES (?, ?)";
     private static final String UPDATE_QUERY = "UPDATE banks SET name = ?, active = ? WHERE id = ?";
     private static final String DELETE_QUERY = "UPDATE banks SET active = FALSE WHERE id = ?";
     private static final String DELETE_BANK_ACCOUNTS_QUERY = "UPDATE accounts SET active = FALSE WHERE bank_id = ?";
 
+    private final RepositoryCaches caches;
+
     public BankRepository(DataSource dataSource) {
-        super(dataSource);
+        this(dataSource, RepositoryCaches.disabled());
+    }
+
+    public BankRepository(DataSource dataSource, RepositoryCaches caches) {
+        super(dataSource, caches.banks());
+        this.caches = caches;
     }
 
     @Override
@@ -63,9 +71,9 @@ public class BankRepository extends Repository<Bank> {
     @Override
     protected Bank construct(ResultSet resultSet) throws SQLException {
         Bank bank = new Bank();
-        bank.setId(resultSet.getLong("id"));
-        bank.setName(resultSet.getString("name"));
-        bank.setActive(resultSet.getBoolean("active"));
+        bank.setId(resultSet.getLong(1));
+        bank.setName(resultSet.getString(2));
+        bank.setActive(resultSet.getBoolean(3));
         return bank;
     }
 
@@ -83,6 +91,10 @@ public class BankRepository extends Repository<Bank> {
      * @throws RepositoryException If there is an error during the repository operation.
      */
     public Optional<Bank> findByAccountId(Long accountId) throws RepositoryException {
+        return timed("findByAccountId", () -> caches.banksByAccount().get(accountId, this::loadByAccountId));
+    }
+
+    private Optional<Bank> loadByAccountId(Long accountId) throws RepositoryException {
         try (Connection connection = getDataSource().getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_ACCOUNT_ID_QUERY)
         ) {
@@ -95,6 +107,25 @@ public class BankRepository extends Repository<Bank> {
         }
     }
 
+    /**
+     * Deletes the entity and drops the cached accounts it deactivated.
+     *
+     * @param id The unique identifier (id) of the entity to delete.
+     * @return True if the entity was successfully deleted, false otherwise.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    @Override
+    public boolean delete(Long id) throws RepositoryException {
+        boolean deleted = super.delete(id);
+        caches.invalidateAccounts();
+        return deleted;
+    }
+
+    @Override
+    protected void invalidate(Long id) {
+        caches.invalidateBank(id);
+    }
+
     @Override
     protected void deleteLinks(Connection connection, Long id) throws SQLException {
         deleteBankAccounts(connection, id);
@@ -0,0 +1,116 @@
+package ru.clevertec.bank.repository;
+
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.ExchangeRate;
+import ru.clevertec.bank.exception.RepositoryException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository class for managing operations on exchange rate versions.
+ *
+ * @author Andrei Yuryeu
+ * @see Repository
+ * @see ExchangeRate
+ */
+public class ExchangeRateRepository extends Repository<ExchangeRate> {
+
+    private static final String COLUMNS = "id, currency_from, currency_to, rate, effective_from";
+
+    private static final String SELECT_BY_ID_QUERY = "SELECT " + COLUMNS + " FROM exchange_rates WHERE id = ?";
+    private static final String SELECT_ALL_QUERY =
+            "SELECT " + COLUMNS + " FROM exchange_rates ORDER BY effective_from, id LIMIT ? OFFSET ?";
+    private static final String SELECT_HISTORY_QUERY =
+            "SELECT " + COLUMNS + " FROM exchange_rates ORDER BY effective_from, id";
+
+    private static final String INSERT_QUERY = """
+        INSERT INTO exchange_rates (currency_from, currency_to, rate, effective_from)
+        VALUES (?::currency_enum, ?::currency_enum, ?, ?)
+    """;
+
+    private static final String UPDATE_QUERY = """
+        UPDATE exchange_rates SET currency_from = ?::currency_enum, currency_to = ?::currency_enum, rate = ?,
+            effective_from = ?
+        WHERE id = ?
+    """;
+
+    private static final String DELETE_QUERY = "DELETE FROM exchange_rates WHERE id = ?";
+
+    public ExchangeRateRepository(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected String getSelectByIdQuery() {
+        return SELECT_BY_ID_QUERY;
+    }
+
+    @Override
+    protected String getSelectAllQuery() {
+        return SELECT_ALL_QUERY;
+    }
+
+    @Override
+    protected String getInsertQuery() {
+        return INSERT_QUERY;
+    }
+
+    @Override
+    protected String getUpdateQuery() {
+        return UPDATE_QUERY;
+    }
+
+    @Override
+    protected String getDeleteQuery() {
+        return DELETE_QUERY;
+    }
+
+    @Override
+    protected ExchangeRate construct(ResultSet resultSet) throws SQLException {
+        ExchangeRate exchangeRate = new ExchangeRate();
+        exchangeRate.setId(resultSet.getLong(1));
+        exchangeRate.setCurrencyFrom(Currency.valueOf(resultSet.getString(2)));
+        exchangeRate.setCurrencyTo(Currency.valueOf(resultSet.getString(3)));
+        exchangeRate.setRate(resultSet.getBigDecimal(4));
+        exchangeRate.setEffectiveFrom(resultSet.getTimestamp(5).toLocalDateTime());
+        return exchangeRate;
+    }
+
+    @Override
+    protected void settingPreparedStatement(PreparedStatement preparedStatement, ExchangeRate element) throws SQLException {
+        preparedStatement.setString(1, element.getCurrencyFrom().name());
+        preparedStatement.setString(2, element.getCurrencyTo().name());
+        preparedStatement.setBigDecimal(3, element.getRate());
+        preparedStatement.setTimestamp(4, Timestamp.valueOf(element.getEffectiveFrom()));
+    }
+
+    /**
+     * Retrieves every exchange rate version ordered by the moment it becomes effective.
+     *
+     * @return The full rate history.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public List<ExchangeRate> findHistory() throws RepositoryException {
+        return timed("findHistory", () -> {
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_HISTORY_QUERY);
+                 ResultSet resultSet = preparedStatement.executeQuery()
+            ) {
+                List<ExchangeRate> found = new ArrayList<>();
+                while (resultSet.next()) {
+                    found.add(construct(resultSet));
+                }
+                return found;
+            } catch (Exception ex) {
+                throw new RepositoryException("The entities were not found[" + ex.getMessage() + "]");
+            }
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package ru.clevertec.bank.repository;
+
+import ru.clevertec.bank.entity.IdempotencyKey;
+import ru.clevertec.bank.exception.RepositoryException;
+import ru.clevertec.bank.util.idempotency.RecentKeyFilter;
+import ru.clevertec.bank.util.metrics.Counter;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Optional;
+
+/**
+ * Repository class for the Idempotency-Keys of money operations.
+ * Keys are inserted on the connection of the balance update, so a key is recorded if and only if
+ * its operation is committed. Lookups are plain reads that take no row locks, and lookups of keys
+ * the {@link RecentKeyFilter} has certainly not seen are answered without a query.
+ *
+ * @author Andrei Yuryeu
+ * @see IdempotencyKey
+ */
+public class IdempotencyKeyRepository {
+
+    private static final String SELECT_BY_KEY_QUERY =
+            "SELECT key, fingerprint, created_date FROM idempotency_keys WHERE key = ?";
+
+    private static final String INSERT_QUERY = """
+        INSERT INTO idempotency_keys (key, fingerprint, created_date)
+        VALUES (?, ?, ?)
+        ON CONFLICT (key) DO NOTHING
+    """;
+
+    private final DataSource dataSource;
+    private final RecentKeyFilter filter;
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+
+    public IdempotencyKeyRepository(DataSource dataSource, RecentKeyFilter filter) {
+        this.dataSource = dataSource;
+        this.filter = filter;
+    }
+
+    /**
+     * Retrieves a recorded key, skipping the query if the key was certainly not recorded recently.
+     * Keys recorded before the filter forgot them, or before a restart, are only found by {@link #loadByKey}.
+     *
+     * @param key The key.
+     * @return An Optional containing the recorded key if found, or empty if not found.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public Optional<IdempotencyKey> findByKey(String key) throws RepositoryException {
+        if (!filter.mightContain(key)) {
+            lookups("skipped").increment();
+            return Optional.empty();
+        }
+        return loadByKey(key);
+    }
+
+    /**
+     * Retrieves a recorded key from the database.
+     *
+     * @param key The key.
+     * @return An Optional containing the recorded key if found, or empty if not found.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public Optional<IdempotencyKey> loadByKey(String key) throws RepositoryException {
+        return metrics.timer("bank_repository_seconds", "Time spent in repository methods.",
+                "repository", getClass().getSimpleName(), "method", "loadByKey").time(() -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_KEY_QUERY)
+            ) {
+                preparedStatement.setString(1, key);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        lookups("miss").increment();
+                        return Optional.empty();
+                    }
+                    lookups("hit").increment();
+                    filter.add(key);
+                    return Optional.of(new IdempotencyKey(
+                            resultSet.getString(1),
+                            resultSet.getString(2),
+                            resultSet.getTimestamp(3).toLocalDateTime()));
+                }
+            } catch (Exception ex) {
+                throw new RepositoryException("The entity was not found[" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    /**
+     * Records a key on the given connection, as part of the transaction of its operation.
+     * If the key is being recorded by a concurrent transaction, waits for it to finish.
+     *
+     * @param connection     The connection of the operation, with auto-commit disabled.
+     * @param idempotencyKey The key to record.
+     * @return True if the key was recorded, false if it had already been recorded.
+     * @throws SQLException If the insert fails.
+     */
+    public boolean insert(Connection connection, IdempotencyKey idempotencyKey) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_QUERY)) {
+            preparedStatement.setString(1, idempotencyKey.getKey());
+            preparedStatement.setString(2, idempotencyKey.getFingerprint());
+            preparedStatement.setTimestamp(3, Timestamp.valueOf(idempotencyKey.getCreatedDate()));
+            boolean inserted = preparedStatement.executeUpdate() == 1;
+            filter.add(idempotencyKey.getKey());
+            return inserted;
+        }
+    }
+
+    private Counter lookups(String result) {
+        return metrics.counter("bank_idempotency_lookups_total",
+                "Idempotency-Key lookups by result; skipped lookups were answered by the recent-key filter.",
+                "result", result);
+    }
+}
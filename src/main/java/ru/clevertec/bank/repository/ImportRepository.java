@@ -0,0 +1,261 @@
+package ru.clevertec.bank.repository;
+
+import org.postgresql.PGConnection;
+import ru.clevertec.bank.dto.ImportReportDto;
+import ru.clevertec.bank.exception.BadRequestException;
+import ru.clevertec.bank.exception.RepositoryException;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Repository class for the bulk import of users and accounts from CSV.
+ * The file is streamed with {@code COPY} into a temporary staging table, which lives until the import
+ * is committed. The rows are validated and deduplicated there with a few set-based statements and the valid ones
+ * are merged into {@code users} and {@code accounts} in a single statement, so the cost of an import is a handful
+ * of round trips however many rows it has. An account imported with a balance gets the opening postings
+ * of that balance, with its checkpoint at them, as the ledger would otherwise not explain the balance.
+ * Imports hold an advisory lock while they run, so they never reject each other's rows for a number that is not
+ * committed yet; account numbers are unique in {@code accounts}, so an account created through another request
+ * during an import fails the import rather than being duplicated. Rows are identified by their record number
+ * in the file, the header being record 1, which is their line number unless a quoted value spans several lines.
+ *
+ * @author Andrei Yuryeu
+ * @see ImportReportDto
+ */
+public class ImportRepository {
+
+    /**
+     * The columns of the file, which starts with a header line.
+     */
+    public static final String COLUMNS = "name,surname,birthdate,number,currency,balance";
+
+    private static final long IMPORT_LOCK = 0x696d706f7274L;
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final int MAXIMUM_REPORTED_ERRORS = 1000;
+
+    private static final String LOCK_QUERY = "SELECT pg_advisory_xact_lock(?)";
+
+    private static final String CREATE_STAGING_QUERY = """
+        CREATE TEMPORARY TABLE import_rows (
+            record_number bigint GENERATED ALWAYS AS IDENTITY (START WITH 2),
+            name text,
+            surname text,
+            birthdate text,
+            number text,
+            currency text,
+            balance text,
+            error text
+        ) ON COMMIT DROP
+    """;
+
+    private static final String COPY_QUERY = """
+        COPY import_rows (name, surname, birthdate, number, currency, balance)
+        FROM STDIN WITH (FORMAT csv, HEADER true)
+    """;
+
+    private static final String ANALYZE_QUERY = "ANALYZE import_rows";
+
+    private static final String VALIDATE_QUERY = """
+        WITH checked AS (
+            SELECT record_number, number, CASE
+                WHEN name IS NULL OR btrim(name) = '' THEN 'name is missing'
+                WHEN length(name) > 256 THEN 'name is longer than 256 characters'
+                WHEN surname IS NULL OR btrim(surname) = '' THEN 'surname is missing'
+                WHEN length(surname) > 256 THEN 'surname is longer than 256 characters'
+                WHEN birthdate IS NULL THEN 'birthdate is missing'
+                WHEN birthdate !~ '^[0-9]{4}-[0-9]{2}-[0-9]{2}$' THEN 'birthdate must be a date like 1990-01-31'
+                WHEN left(birthdate, 4) < '1900' THEN 'birthdate is before 1900'
+                WHEN substr(birthdate, 6, 2)::int NOT BETWEEN 1 AND 12
+                    THEN 'birthdate ' || birthdate || ' does not exist'
+                WHEN to_char((left(birthdate, 8) || '01')::date + (substr(birthdate, 9, 2)::int - 1), 'YYYY-MM-DD')
+                        <> birthdate
+                    THEN 'birthdate ' || birthdate || ' does not exist'
+                WHEN birthdate::date > CURRENT_DATE THEN 'birthdate is in the future'
+                WHEN number IS NULL OR number !~ '^[0-9]{16}$' THEN 'number must be 16 digits'
+                WHEN currency IS NULL OR currency <> ALL (enum_range(NULL::currency_enum)::text[])
+                    THEN 'currency must be one of ' || array_to_string(enum_range(NULL::currency_enum), ', ')
+                WHEN balance !~ '^[0-9]{1,8}([.][0-9]{1,2})?$' THEN 'balance must be a non-negative amount like 100.50'
+            END AS error
+            FROM import_rows
+        ), deduplicated AS (
+            SELECT record_number, number, error,
+                MIN(record_number) FILTER (WHERE error IS NULL) OVER (PARTITION BY number) AS first_record
+            FROM checked
+        )
+        UPDATE import_rows r
+        SET error = COALESCE(d.error, CASE
+            WHEN d.record_number > d.first_record THEN 'number ' || d.number || ' repeats record ' || d.first_record
+            ELSE 'account ' || d.number || ' already exists'
+        END)
+        FROM deduplicated d
+        WHERE r.record_number = d.record_number AND (d.error IS NOT NULL OR d.record_number > d.first_record
+            OR EXISTS (SELECT 1 FROM accounts a WHERE a.number = d.number))
+    """;
+
+    private static final String MERGE_QUERY = """
+        WITH valid AS MATERIALIZED (
+            SELECT name, surname, birthdate::date AS birthdate, number, currency::currency_enum AS currency,
+                COALESCE(balance::numeric(10,2), 0) AS balance
+            FROM import_rows
+            WHERE error IS NULL
+        ), people AS MATERIALIZED (
+            SELECT DISTINCT name, surname, birthdate FROM valid
+        ), existing AS (
+            SELECT u.name, u.surname, u.birthdate, MIN(u.id) AS id
+            FROM users u
+            JOIN people p ON p.name = u.name AND p.surname = u.surname AND p.birthdate = u.birthdate
+            WHERE u.active
+            GROUP BY u.name, u.surname, u.birthdate
+        ), created_users AS (
+            INSERT INTO users (name, surname, birthdate, active)
+            SELECT p.name, p.surname, p.birthdate, TRUE
+            FROM people p
+            WHERE NOT EXISTS (
+                SELECT 1 FROM existing e WHERE e.name = p.name AND e.surname = p.surname AND e.birthdate = p.birthdate
+            )
+            RETURNING id, name, surname, birthdate
+        ), owners AS (
+            SELECT name, surname, birthdate, id FROM existing
+            UNION ALL
+            SELECT name, surname, birthdate, id FROM created_users
+        ), opened AS (
+            SELECT v.number, v.currency, v.balance, o.id AS user_id,
+                CASE WHEN v.balance <> 0 THEN nextval(pg_get_serial_sequence('postings', 'id')) ELSE 0 END
+                    AS posting_id
+            FROM valid v
+            JOIN owners o ON o.name = v.name AND o.surname = v.surname AND o.birthdate = v.birthdate
+        ), created_accounts AS (
+            INSERT INTO accounts (number, balance, currency, user_id, bank_id, created_date, active,
+                checkpoint_posting_id)
+            SELECT number, balance, currency, user_id, ?, CURRENT_DATE, TRUE, posting_id FROM opened
+            RETURNING id, balance, currency, checkpoint_posting_id
+        ), opening_postings AS (
+            INSERT INTO postings (id, account_id, ledger, amount, currency, created_date)
+            SELECT checkpoint_posting_id, id, NULL, balance, currency, now()
+            FROM created_accounts WHERE checkpoint_posting_id > 0
+            UNION ALL
+            SELECT nextval(pg_get_serial_sequence('postings', 'id')), NULL, 'OPENING'::system_ledger_enum, -balance,
+                currency, now()
+            FROM created_accounts WHERE checkpoint_posting_id > 0
+        )
+        SELECT (SELECT COUNT(*) FROM created_users), (SELECT COUNT(*) FROM created_accounts)
+    """;
+
+    private static final String COUNT_REJECTED_QUERY = "SELECT COUNT(*) FROM import_rows WHERE error IS NOT NULL";
+
+    private static final String SELECT_ERRORS_QUERY = """
+        SELECT record_number, error FROM import_rows WHERE error IS NOT NULL ORDER BY record_number LIMIT ?
+    """;
+
+    private final DataSource dataSource;
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+
+    public ImportRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Imports users and accounts from a CSV file with the header {@value #COLUMNS}, creating every account
+     * in the given bank. A user is identified by name, surname and birthdate: the accounts of an existing
+     * active user are added to that user, others create the user. A row is rejected if any of its values is
+     * invalid, if its account number exists or if an earlier valid row has the same number.
+     *
+     * @param bankId The id of the bank of the accounts.
+     * @param csv    The file, which is read to its end.
+     * @return The report of the import.
+     * @throws BadRequestException If the file is not a CSV file with the expected columns, could not be read
+     *                             or has an account number that was created while it was imported.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public ImportReportDto importAccounts(Long bankId, InputStream csv) {
+        return timed("importAccounts", () -> {
+            try (Connection connection = dataSource.getConnection()) {
+                try {
+                    connection.setAutoCommit(false);
+                    ImportReportDto report = importAccounts(connection, bankId, csv);
+                    connection.commit();
+                    metrics.counter("bank_import_rows_total", "Rows read by bulk imports.",
+                            "result", "imported").add(report.rows() - report.rejected());
+                    metrics.counter("bank_import_rows_total", "Rows read by bulk imports.",
+                            "result", "rejected").add(report.rejected());
+                    return report;
+                } catch (Exception ex) {
+                    connection.rollback();
+                    throw ex;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                if (ex.getSQLState() != null && ex.getSQLState().startsWith("22")) {
+                    throw new BadRequestException("The file is not a valid CSV file with the columns " + COLUMNS
+                            + " [" + ex.getMessage() + "]");
+                }
+                if (UNIQUE_VIOLATION.equals(ex.getSQLState())) {
+                    throw new BadRequestException("An account number of the file was created by another request"
+                            + " during the import, nothing was imported [" + ex.getMessage() + "]");
+                }
+                throw new RepositoryException("Accounts were not imported [" + ex.getMessage() + "]");
+            } catch (IOException ex) {
+                throw new BadRequestException("The file could not be read [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    private ImportReportDto importAccounts(Connection connection, Long bankId, InputStream csv)
+            throws SQLException, IOException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(LOCK_QUERY)) {
+            preparedStatement.setLong(1, IMPORT_LOCK);
+            preparedStatement.executeQuery().close();
+        }
+        long rows;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGING_QUERY);
+            rows = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_QUERY, csv);
+            statement.execute(ANALYZE_QUERY);
+            statement.executeUpdate(VALIDATE_QUERY);
+        }
+        long createdUsers;
+        long createdAccounts;
+        try (PreparedStatement preparedStatement = connection.prepareStatement(MERGE_QUERY)) {
+            preparedStatement.setLong(1, bankId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                createdUsers = resultSet.getLong(1);
+                createdAccounts = resultSet.getLong(2);
+            }
+        }
+        long rejected;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(COUNT_REJECTED_QUERY)
+        ) {
+            resultSet.next();
+            rejected = resultSet.getLong(1);
+        }
+        List<ImportReportDto.RowError> errors = new ArrayList<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ERRORS_QUERY)) {
+            preparedStatement.setInt(1, MAXIMUM_REPORTED_ERRORS);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    errors.add(new ImportReportDto.RowError(resultSet.getLong(1), resultSet.getString(2)));
+                }
+            }
+        }
+        return new ImportReportDto(rows, createdUsers, createdAccounts, rejected, errors);
+    }
+
+    private <T> T timed(String method, Supplier<T> action) {
+        return metrics.timer("bank_repository_seconds", "Time spent in repository methods.",
+                "repository", getClass().getSimpleName(), "method", method).time(action);
+    }
+}
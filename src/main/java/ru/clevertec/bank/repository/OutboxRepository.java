@@ -0,0 +1,181 @@
+package ru.clevertec.bank.repository;
+
+import ru.clevertec.bank.entity.AccountEvent;
+import ru.clevertec.bank.entity.AccountEventType;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Posting;
+import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.exception.RepositoryException;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.outbox.OutboxSink;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Repository class for the outbox of account events.
+ * Events are inserted on the connection of the balance change, so an event exists if and only if its change
+ * is committed. They are taken off the outbox in batches locked with {@code FOR UPDATE SKIP LOCKED}, so several
+ * relays never publish the same event at once, and deleted only after the sink accepted the batch.
+ *
+ * @author Andrei Yuryeu
+ * @see AccountEvent
+ */
+public class OutboxRepository {
+
+    private static final String INSERT_QUERY = """
+        INSERT INTO outbox (account_id, transaction_id, type, amount, currency, created_date)
+        VALUES (?, ?, ?::account_event_type_enum, ?, ?::currency_enum, ?)
+    """;
+
+    private static final String SELECT_BATCH_FOR_UPDATE_QUERY = """
+        SELECT id, account_id, transaction_id, type, amount, currency, created_date
+        FROM outbox
+        ORDER BY id
+        LIMIT ?
+        FOR UPDATE SKIP LOCKED
+    """;
+
+    private static final String DELETE_QUERY = "DELETE FROM outbox WHERE id = ANY(?)";
+    private static final String COUNT_QUERY = "SELECT COUNT(*) FROM outbox";
+
+    private final DataSource dataSource;
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+
+    public OutboxRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Returns the events of a transaction: one for every account it was posted to.
+     *
+     * @param transaction The transaction, with its id.
+     * @param postings    The postings of the transaction.
+     * @return The events.
+     */
+    public static List<AccountEvent> eventsOf(Transaction transaction, List<Posting> postings) {
+        List<AccountEvent> events = new ArrayList<>(2);
+        for (Posting posting : postings) {
+            if (posting.getAccountId() != null) {
+                events.add(new AccountEvent(posting.getAccountId(), transaction.getId(),
+                        AccountEventType.valueOf(transaction.getType().name()), posting.getAmount(),
+                        posting.getAmount().currency(), posting.getCreatedDate()));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Writes events on the given connection, as part of the transaction of their balance change.
+     *
+     * @param connection The connection of the operation, with auto-commit disabled.
+     * @param events     The events to write.
+     * @throws SQLException If the insert fails.
+     */
+    public void insert(Connection connection, List<AccountEvent> events) throws SQLException {
+        if (events.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_QUERY)) {
+            for (AccountEvent event : events) {
+                preparedStatement.setLong(1, event.getAccountId());
+                preparedStatement.setObject(2, event.getTransactionId());
+                Repository.setEnum(preparedStatement, 3, event.getType());
+                Repository.setMoney(preparedStatement, 4, event.getAmount());
+                Repository.setEnum(preparedStatement, 5, event.getCurrency());
+                preparedStatement.setTimestamp(6, Timestamp.valueOf(event.getCreatedDate()));
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        }
+    }
+
+    /**
+     * Locks the oldest events no other relay holds, hands them to the sink in the order of their ids and deletes
+     * them in the same transaction. If the sink fails, the transaction is rolled back and the events stay
+     * in the outbox to be published again, so each event reaches the sink at least once.
+     *
+     * @param limit The maximum number of events to publish.
+     * @param sink  The sink.
+     * @return The number of events published.
+     * @throws RepositoryException If the events could not be read or deleted, or the sink failed.
+     */
+    public int publishBatch(int limit, OutboxSink sink) throws RepositoryException {
+        return timed("publishBatch", () -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement select = connection.prepareStatement(SELECT_BATCH_FOR_UPDATE_QUERY);
+                 PreparedStatement delete = connection.prepareStatement(DELETE_QUERY)
+            ) {
+                try {
+                    connection.setAutoCommit(false);
+                    select.setInt(1, limit);
+                    List<AccountEvent> events = new ArrayList<>();
+                    try (ResultSet resultSet = select.executeQuery()) {
+                        while (resultSet.next()) {
+                            events.add(construct(resultSet));
+                        }
+                    }
+                    if (!events.isEmpty()) {
+                        sink.publish(events);
+                        delete.setArray(1, connection.createArrayOf("bigint",
+                                events.stream().map(AccountEvent::getId).toArray()));
+                        delete.executeUpdate();
+                    }
+                    connection.commit();
+                    return events.size();
+                } catch (Exception ex) {
+                    connection.rollback();
+                    throw ex;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (Exception ex) {
+                throw new RepositoryException("Outbox events were not published [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    /**
+     * Counts the events waiting in the outbox.
+     *
+     * @return The number of events.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public long count() throws RepositoryException {
+        return timed("count", () -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(COUNT_QUERY);
+                 ResultSet resultSet = preparedStatement.executeQuery()
+            ) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            } catch (Exception ex) {
+                throw new RepositoryException("Outbox events were not counted [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    private AccountEvent construct(ResultSet resultSet) throws SQLException {
+        AccountEvent event = new AccountEvent();
+        event.setId(resultSet.getLong(1));
+        event.setAccountId(resultSet.getLong(2));
+        event.setTransactionId(resultSet.getObject(3, Long.class));
+        event.setType(Repository.getEnum(resultSet, 4, AccountEventType.class));
+        event.setCurrency(Repository.getEnum(resultSet, 6, Currency.class));
+        event.setAmount(Repository.getMoney(resultSet, 5, event.getCurrency()));
+        event.setCreatedDate(resultSet.getTimestamp(7).toLocalDateTime());
+        return event;
+    }
+
+    private <T> T timed(String method, Supplier<T> action) {
+        return metrics.timer("bank_repository_seconds", "Time spent in repository methods.",
+                "repository", getClass().getSimpleName(), "method", method).time(action);
+    }
+}
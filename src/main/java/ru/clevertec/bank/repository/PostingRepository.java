@@ -0,0 +1,315 @@
+package ru.clevertec.bank.repository;
+
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.Posting;
+import ru.clevertec.bank.exception.RepositoryException;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.posting.Mismatch;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Repository class for the double-entry postings of money operations.
+ * Postings are inserted on the connection of the balance update, so they are committed together with it,
+ * and are never updated or deleted afterwards. The balance of an account is the sum of its postings up to
+ * its {@code checkpoint_posting_id}; with derived balances, the postings after it are added on every read
+ * and folded into the balance by {@link #compact}. The reconciliation queries read the balances and the postings
+ * of a chunk of accounts in one statement, i.e. from one snapshot, so an operation committed while a chunk
+ * is being checked is seen either entirely or not at all.
+ *
+ * @author Andrei Yuryeu
+ * @see Posting
+ */
+public class PostingRepository {
+
+    private static final String INSERT_QUERY = """
+        INSERT INTO postings (transaction_id, account_id, ledger, amount, currency, created_date)
+        VALUES (?, ?, ?::system_ledger_enum, ?, ?::currency_enum, ?)
+    """;
+
+    private static final String SELECT_MISMATCHES_BY_ID_RANGE_QUERY = """
+        SELECT a.id, a.balance, a.currency, COALESCE(SUM(p.amount), 0)
+        FROM accounts a
+            LEFT JOIN postings p ON p.account_id = a.id AND p.id <= a.checkpoint_posting_id
+        WHERE a.id BETWEEN ? AND ?
+        GROUP BY a.id
+        HAVING a.balance <> COALESCE(SUM(p.amount), 0)
+    """;
+
+    private static final String SELECT_MISMATCHES_BY_IDS_QUERY = """
+        SELECT a.id, a.balance, a.currency, COALESCE(SUM(p.amount), 0)
+        FROM accounts a
+            LEFT JOIN postings p ON p.account_id = a.id AND p.id <= a.checkpoint_posting_id
+        WHERE a.id = ANY(?)
+        GROUP BY a.id
+        HAVING a.balance <> COALESCE(SUM(p.amount), 0)
+    """;
+
+    private static final String LOCK_SHARED_QUERY = "SELECT pg_advisory_xact_lock_shared(?)";
+    private static final String LOCK_EXCLUSIVE_QUERY = "SELECT pg_advisory_xact_lock(?)";
+    private static final String COMPACT_QUERY = """
+        WITH d AS (
+            SELECT p.account_id, SUM(p.amount) AS delta, MAX(p.id) AS last_id
+            FROM postings p
+                JOIN accounts c ON c.id = p.account_id
+            WHERE p.id > ? AND p.id <= ? AND p.id > c.checkpoint_posting_id
+            GROUP BY p.account_id
+        ), locked AS (
+            SELECT a.id FROM accounts a JOIN d ON d.account_id = a.id ORDER BY a.id FOR UPDATE OF a
+        )
+        UPDATE accounts a SET balance = a.balance + d.delta, checkpoint_posting_id = d.last_id
+        FROM d
+        WHERE a.id = d.account_id AND a.id IN (SELECT id FROM locked)
+    """;
+
+    /**
+     * Key of the advisory lock that writers appending postings hold shared until they commit.
+     */
+    private static final long APPEND_LOCK = 0x706f7374696e6773L;
+
+    private static final String SELECT_MAX_ACCOUNT_ID_QUERY = "SELECT COALESCE(MAX(id), 0) FROM accounts";
+    private static final String SELECT_LAST_ID_QUERY = "SELECT COALESCE(MAX(id), 0) FROM postings";
+    private static final String SELECT_ACCOUNTS_POSTED_BETWEEN_QUERY = """
+        SELECT DISTINCT account_id FROM postings
+        WHERE id > ? AND id <= ? AND account_id IS NOT NULL
+        ORDER BY account_id
+    """;
+
+    private final DataSource dataSource;
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+
+    public PostingRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Appends postings on the given connection, as part of the transaction of their operation,
+     * and sets their generated ids.
+     *
+     * @param connection The connection of the operation, with auto-commit disabled.
+     * @param postings   The postings to append.
+     * @throws SQLException If the insert fails.
+     */
+    public void insert(Connection connection, List<Posting> postings) throws SQLException {
+        if (postings.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_QUERY, new String[]{"id"})) {
+            for (Posting posting : postings) {
+                preparedStatement.setObject(1, posting.getTransactionId());
+                preparedStatement.setObject(2, posting.getAccountId());
+                Repository.setEnum(preparedStatement, 3, posting.getLedger());
+                Repository.setMoney(preparedStatement, 4, posting.getAmount());
+                Repository.setEnum(preparedStatement, 5, posting.getAmount().currency());
+                preparedStatement.setTimestamp(6, Timestamp.valueOf(posting.getCreatedDate()));
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
+                for (Posting posting : postings) {
+                    generatedKeys.next();
+                    posting.setId(generatedKeys.getLong(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the append lock in shared mode until the transaction of the connection ends.
+     * Writers that append postings without updating balances take it before allocating posting ids,
+     * so {@link #findCompactionWatermark} can wait for every id allocated so far to be committed or rolled back.
+     *
+     * @param connection The connection of the operation, with auto-commit disabled.
+     * @throws SQLException If the lock cannot be taken.
+     */
+    public void lockShared(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(LOCK_SHARED_QUERY)) {
+            preparedStatement.setLong(1, APPEND_LOCK);
+            preparedStatement.executeQuery().close();
+        }
+    }
+
+    /**
+     * Returns the id of the last posting such that every posting up to it is committed.
+     * Briefly takes the append lock exclusively, waiting for the writers in flight, and reads the last id
+     * while holding it; writers that start afterwards allocate greater ids.
+     *
+     * @return The watermark, or 0 if there are no postings.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public long findCompactionWatermark() throws RepositoryException {
+        return timed("findCompactionWatermark", () -> {
+            try (Connection connection = dataSource.getConnection()) {
+                try {
+                    connection.setAutoCommit(false);
+                    try (PreparedStatement lock = connection.prepareStatement(LOCK_EXCLUSIVE_QUERY);
+                         PreparedStatement select = connection.prepareStatement(SELECT_LAST_ID_QUERY)
+                    ) {
+                        lock.setLong(1, APPEND_LOCK);
+                        lock.executeQuery().close();
+                        try (ResultSet resultSet = select.executeQuery()) {
+                            resultSet.next();
+                            long watermark = resultSet.getLong(1);
+                            connection.commit();
+                            return watermark;
+                        }
+                    }
+                } catch (Exception ex) {
+                    connection.rollback();
+                    throw ex;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (Exception ex) {
+                throw new RepositoryException("Compaction watermark was not found [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    /**
+     * Folds the postings with ids in the given range into the balances of their accounts and advances
+     * the checkpoints of those accounts past them. Postings already behind a checkpoint are skipped,
+     * so a range may be compacted again. The rows are locked in the order of their ids, as money operations
+     * lock them, so compaction never deadlocks with an operation.
+     *
+     * @param afterPostingId The id after which to compact.
+     * @param upToPostingId  The last id to compact, at most the {@link #findCompactionWatermark watermark}.
+     * @return The number of accounts whose checkpoint was advanced.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public int compact(long afterPostingId, long upToPostingId) throws RepositoryException {
+        return timed("compact", () -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(COMPACT_QUERY)
+            ) {
+                preparedStatement.setLong(1, afterPostingId);
+                preparedStatement.setLong(2, upToPostingId);
+                return preparedStatement.executeUpdate();
+            } catch (Exception ex) {
+                throw new RepositoryException("Balances were not compacted [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    /**
+     * Retrieves the accounts with ids in the given range whose balance differs from the sum of their postings
+     * up to their checkpoint.
+     *
+     * @param fromAccountId The first id of the range.
+     * @param toAccountId   The last id of the range.
+     * @return The mismatches, empty if the chunk is consistent.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public List<Mismatch> findMismatches(long fromAccountId, long toAccountId) throws RepositoryException {
+        return timed("findMismatches", () -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_MISMATCHES_BY_ID_RANGE_QUERY)
+            ) {
+                preparedStatement.setLong(1, fromAccountId);
+                preparedStatement.setLong(2, toAccountId);
+                return readMismatches(preparedStatement);
+            } catch (Exception ex) {
+                throw new RepositoryException("Postings were not reconciled [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    /**
+     * Retrieves the given accounts whose balance differs from the sum of their postings up to their checkpoint.
+     *
+     * @param accountIds The ids of the accounts.
+     * @return The mismatches, empty if the accounts are consistent.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public List<Mismatch> findMismatches(Collection<Long> accountIds) throws RepositoryException {
+        return timed("findMismatches", () -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_MISMATCHES_BY_IDS_QUERY)
+            ) {
+                Array ids = connection.createArrayOf("bigint", accountIds.toArray());
+                preparedStatement.setArray(1, ids);
+                return readMismatches(preparedStatement);
+            } catch (Exception ex) {
+                throw new RepositoryException("Postings were not reconciled [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    /**
+     * Retrieves the ids of the accounts posted to after one posting and up to another, in ascending order.
+     *
+     * @param afterPostingId The id of the last posting already checked.
+     * @param upToPostingId  The id of the last posting to check.
+     * @return The account ids.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public List<Long> findAccountsPostedBetween(long afterPostingId, long upToPostingId) throws RepositoryException {
+        return timed("findAccountsPostedBetween", () -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ACCOUNTS_POSTED_BETWEEN_QUERY)
+            ) {
+                preparedStatement.setLong(1, afterPostingId);
+                preparedStatement.setLong(2, upToPostingId);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    List<Long> found = new ArrayList<>();
+                    while (resultSet.next()) {
+                        found.add(resultSet.getLong(1));
+                    }
+                    return found;
+                }
+            } catch (Exception ex) {
+                throw new RepositoryException("Posted accounts were not found [" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    public long findMaxAccountId() throws RepositoryException {
+        return timed("findMaxAccountId", () -> selectLong(SELECT_MAX_ACCOUNT_ID_QUERY));
+    }
+
+    public long findLastId() throws RepositoryException {
+        return timed("findLastId", () -> selectLong(SELECT_LAST_ID_QUERY));
+    }
+
+    private long selectLong(String query) throws RepositoryException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query);
+             ResultSet resultSet = preparedStatement.executeQuery()
+        ) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        } catch (Exception ex) {
+            throw new RepositoryException("The entity was not found[" + ex.getMessage() + "]");
+        }
+    }
+
+    private List<Mismatch> readMismatches(PreparedStatement preparedStatement) throws SQLException {
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            List<Mismatch> found = new ArrayList<>();
+            while (resultSet.next()) {
+                Currency currency = Repository.getEnum(resultSet, 3, Currency.class);
+                found.add(new Mismatch(
+                        resultSet.getLong(1),
+                        Repository.getMoney(resultSet, 2, currency),
+                        Money.of(resultSet.getBigDecimal(4), currency)));
+            }
+            return found;
+        }
+    }
+
+    private <T> T timed(String method, Supplier<T> action) {
+        return metrics.timer("bank_repository_seconds", "Time spent in repository methods.",
+                "repository", getClass().getSimpleName(), "method", method).time(action);
+    }
+}
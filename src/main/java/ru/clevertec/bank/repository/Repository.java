@@ -1,7 +1,14 @@
 package ru.clevertec.bank.repository;
 
+import ru.clevertec.bank.exception.BadRequestException;
 import ru.clevertec.bank.exception.RepositoryException;
 import ru.clevertec.bank.entity.BaseEntity;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.util.cache.Cache;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.metrics.Timer;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import javax.sql.DataSource;
@@ -12,10 +19,15 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Base repository class for managing database operations on entities.
+ * Lookups by id go through a read-through {@link Cache}, which is disabled unless one is passed
+ * to the constructor; every update or delete invalidates the cached entity.
  *
  * @param <E> The type of entity managed by the repository.
  * @author Andrei Yuryeu
@@ -23,10 +35,20 @@ import java.util.Optional;
 @Getter
 public abstract class Repository<E extends BaseEntity> {
 
+    private static final String UNIQUE_VIOLATION = "23505";
+
     private final DataSource dataSource;
+    private final Cache<Long, E> cache;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
 
     public Repository(DataSource dataSource) {
+        this(dataSource, Cache.disabled("byId"));
+    }
+
+    public Repository(DataSource dataSource, Cache<Long, E> cache) {
         this.dataSource = dataSource;
+        this.cache = cache;
     }
 
     protected abstract String getSelectByIdQuery();
@@ -39,6 +61,14 @@ public abstract class Repository<E extends BaseEntity> {
 
     protected abstract String getDeleteQuery();
 
+    /**
+     * Maps the current row of a result set into an entity.
+     * Columns are read by position, in the order every select query of the repository lists them.
+     *
+     * @param resultSet The result set positioned on a row.
+     * @return The entity.
+     * @throws SQLException If a column cannot be read.
+     */
     protected abstract E construct(ResultSet resultSet) throws SQLException;
 
     protected abstract void settingPreparedStatement(PreparedStatement preparedStatement, E element) throws SQLException;
@@ -51,6 +81,10 @@ public abstract class Repository<E extends BaseEntity> {
      * @throws RepositoryException If there is an error during the repository operation.
      */
     public Optional<E> findById(Long id) throws RepositoryException {
+        return timed("findById", () -> cache.get(id, this::loadById));
+    }
+
+    private Optional<E> loadById(Long id) throws RepositoryException {
         try (Connection connection = dataSource.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(getSelectByIdQuery())
         ) {
@@ -72,21 +106,23 @@ public abstract class Repository<E extends BaseEntity> {
      * @throws RepositoryException If there is an error during the repository operation.
      */
     public List<E> findAll(int limit, int offset) throws RepositoryException {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(getSelectAllQuery())
-        ) {
-            preparedStatement.setLong(1, limit);
-            preparedStatement.setLong(2, offset);
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                List<E> found = new ArrayList<>();
-                while (resultSet.next()) {
-                    found.add(construct(resultSet));
+        return timed("findAll", () -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(getSelectAllQuery())
+            ) {
+                preparedStatement.setLong(1, limit);
+                preparedStatement.setLong(2, offset);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    List<E> found = new ArrayList<>();
+                    while (resultSet.next()) {
+                        found.add(construct(resultSet));
+                    }
+                    return found;
                 }
-                return found;
+            } catch (Exception ex) {
+                throw new RepositoryException("The entities were not found[" + ex.getMessage() + "]");
             }
-        } catch (Exception ex) {
-            throw new RepositoryException("The entities were not found[" + ex.getMessage() + "]");
-        }
+        });
     }
 
     /**
@@ -94,28 +130,37 @@ public abstract class Repository<E extends BaseEntity> {
      *
      * @param element The entity to be saved.
      * @return The saved entity with an assigned id.
+     * @throws BadRequestException If the entity has a value that must be unique and is taken, e.g. an account number.
      * @throws RepositoryException If there is an error during the repository operation.
      */
     public E save(E element) throws RepositoryException {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(
-                     getInsertQuery(),
-                     Statement.RETURN_GENERATED_KEYS
-             )
-        ) {
-            settingPreparedStatement(preparedStatement, element);
-            int value = preparedStatement.executeUpdate();
-            if (value == 1) {
-                try (ResultSet resultSet = preparedStatement.getGeneratedKeys()) {
-                    if (resultSet.next()) {
-                        element.setId(resultSet.getLong(1));
+        return timed("save", () -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(
+                         getInsertQuery(),
+                         Statement.RETURN_GENERATED_KEYS
+                 )
+            ) {
+                settingPreparedStatement(preparedStatement, element);
+                int value = preparedStatement.executeUpdate();
+                if (value == 1) {
+                    try (ResultSet resultSet = preparedStatement.getGeneratedKeys()) {
+                        if (resultSet.next()) {
+                            element.setId(resultSet.getLong(1));
+                        }
                     }
                 }
+                return element;
+            } catch (SQLException ex) {
+                if (UNIQUE_VIOLATION.equals(ex.getSQLState())) {
+                    throw new BadRequestException(element.getClass().getSimpleName()
+                            + " conflicts with an existing one [" + ex.getMessage() + "]");
+                }
+                throw new RepositoryException(element.getClass().getSimpleName() + " was not added [" + ex.getMessage() + "]");
+            } catch (Exception ex) {
+                throw new RepositoryException(element.getClass().getSimpleName() + " was not added [" + ex.getMessage() + "]");
             }
-            return element;
-        } catch (Exception ex) {
-            throw new RepositoryException(element.getClass().getSimpleName() + " was not added [" + ex.getMessage() + "]");
-        }
+        });
     }
 
     /**
@@ -123,19 +168,30 @@ public abstract class Repository<E extends BaseEntity> {
      *
      * @param element The entity to be updated.
      * @return True if the entity was successfully updated, false otherwise.
+     * @throws BadRequestException If the entity has a value that must be unique and is taken, e.g. an account number.
      * @throws RepositoryException If there is an error during the repository operation.
      */
     public boolean update(E element) throws RepositoryException {
-        int idQueryIndex = findIdPosition(getUpdateQuery());
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(getUpdateQuery())
-        ) {
-            settingPreparedStatement(preparedStatement, element);
-            preparedStatement.setLong(idQueryIndex, element.getId());
-            return preparedStatement.executeUpdate() == 1;
-        } catch (Exception ex) {
-            throw new RepositoryException(element.getClass().getSimpleName() + " was not updated [" + ex.getMessage() + "]");
-        }
+        return timed("update", () -> {
+            int idQueryIndex = findIdPosition(getUpdateQuery());
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(getUpdateQuery())
+            ) {
+                settingPreparedStatement(preparedStatement, element);
+                preparedStatement.setLong(idQueryIndex, element.getId());
+                boolean updated = preparedStatement.executeUpdate() == 1;
+                invalidate(element.getId());
+                return updated;
+            } catch (SQLException ex) {
+                if (UNIQUE_VIOLATION.equals(ex.getSQLState())) {
+                    throw new BadRequestException(element.getClass().getSimpleName()
+                            + " conflicts with an existing one [" + ex.getMessage() + "]");
+                }
+                throw new RepositoryException(element.getClass().getSimpleName() + " was not updated [" + ex.getMessage() + "]");
+            } catch (Exception ex) {
+                throw new RepositoryException(element.getClass().getSimpleName() + " was not updated [" + ex.getMessage() + "]");
+            }
+        });
     }
 
     /**
@@ -158,23 +214,26 @@ public abstract class Repository<E extends BaseEntity> {
      * @throws RepositoryException If there is an error during the repository operation.
      */
     public boolean delete(Long id) throws RepositoryException {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(getDeleteQuery())
-        ) {
-            preparedStatement.setLong(1, id);
-            try {
-                connection.setAutoCommit(false);
-                deleteLinks(connection, id);
-                preparedStatement.executeUpdate();
-                connection.commit();
+        return timed("delete", () -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(getDeleteQuery())
+            ) {
+                preparedStatement.setLong(1, id);
+                try {
+                    connection.setAutoCommit(false);
+                    deleteLinks(connection, id);
+                    preparedStatement.executeUpdate();
+                    connection.commit();
+                } catch (Exception ex) {
+                    connection.setAutoCommit(true);
+                    connection.rollback();
+                }
+                invalidate(id);
+                return true;
             } catch (Exception ex) {
-                connection.setAutoCommit(true);
-                connection.rollback();
+                throw new RepositoryException("The entity was not deleted [" + ex.getMessage() + "]");
             }
-            return true;
-        } catch (Exception ex) {
-            throw new RepositoryException("The entity was not deleted [" + ex.getMessage() + "]");
-        }
+        });
     }
 
     /**
@@ -187,4 +246,96 @@ public abstract class Repository<E extends BaseEntity> {
      */
     protected void deleteLinks(Connection connection, Long id) throws SQLException {
     }
+
+    /**
+     * Drops cached data affected by a write of the entity with the given id.
+     * Subclasses can override this method to invalidate the caches of their own lookups.
+     *
+     * @param id The unique identifier (id) of the written entity.
+     */
+    protected void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    /**
+     * Reads a {@code numeric} money column.
+     *
+     * @param resultSet The result set positioned on a row.
+     * @param column    The position of the column.
+     * @param currency  The currency of the amount.
+     * @return The amount, or null if the column is null.
+     * @throws SQLException If the column cannot be read.
+     */
+    protected static Money getMoney(ResultSet resultSet, int column, Currency currency) throws SQLException {
+        return Money.of(resultSet.getBigDecimal(column), currency);
+    }
+
+    /**
+     * Binds an amount to a {@code numeric} money parameter.
+     *
+     * @param preparedStatement The statement.
+     * @param index             The position of the parameter.
+     * @param money             The amount, or null.
+     * @throws SQLException If the parameter cannot be bound.
+     */
+    protected static void setMoney(PreparedStatement preparedStatement, int index, Money money) throws SQLException {
+        preparedStatement.setBigDecimal(index, money == null ? null : money.toBigDecimal());
+    }
+
+    /**
+     * Reads a column of a Postgres enum type into the Java enum declaring the same constants.
+     *
+     * @param resultSet The result set positioned on a row.
+     * @param column    The position of the column.
+     * @param type      The Java enum.
+     * @return The constant, or null if the column is null.
+     * @throws SQLException If the column cannot be read.
+     */
+    protected static <E extends Enum<E>> E getEnum(ResultSet resultSet, int column, Class<E> type) throws SQLException {
+        String value = resultSet.getString(column);
+        return value == null ? null : Enum.valueOf(type, value);
+    }
+
+    /**
+     * Binds a Java enum to a parameter cast to the Postgres enum type declaring the same constants,
+     * e.g. {@code ?::currency_enum}.
+     *
+     * @param preparedStatement The statement.
+     * @param index             The position of the parameter.
+     * @param value             The constant, or null.
+     * @throws SQLException If the parameter cannot be bound.
+     */
+    protected static void setEnum(PreparedStatement preparedStatement, int index, Enum<?> value) throws SQLException {
+        preparedStatement.setString(index, value == null ? null : value.name());
+    }
+
+    /**
+     * Runs a repository method and records its duration and failure.
+     *
+     * @param method The name of the method.
+     * @param code   The body of the method.
+     * @return The value returned by the body.
+     */
+    protected <T> T timed(String method, Supplier<T> code) {
+        return timer(method).time(code);
+    }
+
+    /**
+     * Runs a repository method and records its duration and failure.
+     *
+     * @param method The name of the method.
+     * @param code   The body of the method.
+     */
+    protected void timed(String method, Runnable code) {
+        timer(method).time(code);
+    }
+
+    private Timer timer(String method) {
+        return timers.computeIfAbsent(method, key -> MetricsRegistry.global().timer(
+                "bank_repository_seconds",
+                "Time spent in repository methods.",
+                "repository", getClass().getSimpleName(),
+                "method", key
+        ));
+    }
 }
@@ -1,9 +1,14 @@
 package ru.clevertec.bank.repository;
 
 import ru.clevertec.bank.exception.RepositoryException;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
 import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.entity.TransactionType;
 
 import javax.sql.DataSource;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -13,6 +18,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Repository class for managing operations on transaction entities.
@@ -23,22 +29,37 @@ import java.util.List;
  */
 public class TransactionRepository extends Repository<Transaction> {
 
-    private static final String SELECT_BY_ID_QUERY = "SELECT * FROM transactions WHERE id = ?";
-    private static final String SELECT_ALL_QUERY = "SELECT * FROM transactions LIMIT ? OFFSET ?";
+    private static final String COLUMNS = """
+        id, amount, type, currency, sender_account_id, receiver_account_id, created_date, exchange_rate,
+            converted_amount, converted_currency""";
+
+    private static final String SELECT_BY_ID_QUERY = "SELECT " + COLUMNS + " FROM transactions WHERE id = ?";
+    private static final String SELECT_ALL_QUERY = "SELECT " + COLUMNS + " FROM transactions LIMIT ? OFFSET ?";
 
     private static final String SELECT_ALL_BY_ACCOUNT_FOR_PERIOD_QUERY = """
-        SELECT * FROM transactions t
+        SELECT t.id, t.amount, t.type, t.currency, t.sender_account_id, t.receiver_account_id, t.created_date,
+            t.exchange_rate, t.converted_amount, t.converted_currency
+        FROM transactions t
             LEFT JOIN accounts a ON t.sender_account_id = a.id OR t.receiver_account_id = a.id
         WHERE a.number = ? AND (t.created_date BETWEEN ? AND ?)
     """;
 
-    private static final String INSERT_QUERY = """
-        INSERT INTO transactions (amount, type, currency, sender_account_id, receiver_account_id, created_date)
-        VALUES (?, ?::transaction_type_enum, ?::currency_enum, ?, ?, ?)
+    private static final String SELECT_EXPORT_QUERY = "SELECT " + COLUMNS + """
+        FROM transactions
+        WHERE id > ? AND created_date >= ? AND created_date < ?
+        ORDER BY id
+    """;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    static final String INSERT_QUERY = """
+        INSERT INTO transactions (amount, type, currency, sender_account_id, receiver_account_id, created_date,
+            exchange_rate, converted_amount, converted_currency)
+        VALUES (?, ?::transaction_type_enum, ?::currency_enum, ?, ?, ?, ?, ?, ?::currency_enum)
     """;
     private static final String UPDATE_QUERY = """
         UPDATE transactions SET amount = ?, type = ?::transaction_type_enum, currency= ?::currency_enum,
-            sender_account_id = ?, receiver_account_id = ?, created_date = ?
+            sender_account_id = ?, receiver_account_id = ?, created_date = ?, exchange_rate = ?,
+            converted_amount = ?, converted_currency = ?::currency_enum
         WHERE id = ?
     """;
     private static final String DELETE_QUERY = "DELETE FROM transactions WHERE id = ?";
@@ -75,24 +96,33 @@ public class TransactionRepository extends Repository<Transaction> {
     @Override
     protected Transaction construct(ResultSet resultSet) throws SQLException {
         Transaction transaction = new Transaction();
-        transaction.setId(resultSet.getLong("id"));
-        transaction.setAmount(resultSet.getBigDecimal("amount"));
-        transaction.setType(resultSet.getString("type"));
-        transaction.setCurrency(resultSet.getString("currency"));
-        transaction.setSenderAccountId(resultSet.getLong("sender_account_id"));
-        transaction.setReceiverAccountId(resultSet.getLong("receiver_account_id"));
-        transaction.setCreatedDate(resultSet.getTimestamp("created_date").toLocalDateTime());
+        transaction.setId(resultSet.getLong(1));
+        transaction.setCurrency(getEnum(resultSet, 4, Currency.class));
+        transaction.setAmount(getMoney(resultSet, 2, transaction.getCurrency()));
+        transaction.setType(getEnum(resultSet, 3, TransactionType.class));
+        transaction.setSenderAccountId(resultSet.getLong(5));
+        transaction.setReceiverAccountId(resultSet.getLong(6));
+        transaction.setCreatedDate(resultSet.getTimestamp(7).toLocalDateTime());
+        transaction.setExchangeRate(resultSet.getBigDecimal(8));
+        transaction.setConvertedAmount(getMoney(resultSet, 9, getEnum(resultSet, 10, Currency.class)));
         return transaction;
     }
 
     @Override
     protected void settingPreparedStatement(PreparedStatement preparedStatement, Transaction element) throws SQLException {
-        preparedStatement.setBigDecimal(1, element.getAmount());
-        preparedStatement.setString(2, element.getType());
-        preparedStatement.setString(3, element.getCurrency());
+        setMoney(preparedStatement, 1, element.getAmount());
+        setEnum(preparedStatement, 2, element.getType());
+        setEnum(preparedStatement, 3, element.getCurrency());
         preparedStatement.setObject(4, element.getSenderAccountId());
         preparedStatement.setObject(5, element.getReceiverAccountId());
         preparedStatement.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
+        BigDecimal exchangeRate = element.getExchangeRate() != null ? element.getExchangeRate() : BigDecimal.ONE;
+        Money convertedAmount = element.getConvertedAmount() != null
+                ? element.getConvertedAmount()
+                : element.getAmount().convert(exchangeRate, element.getAmount().currency());
+        preparedStatement.setBigDecimal(7, exchangeRate);
+        setMoney(preparedStatement, 8, convertedAmount);
+        setEnum(preparedStatement, 9, convertedAmount.currency());
     }
 
     /**
@@ -105,21 +135,71 @@ public class TransactionRepository extends Repository<Transaction> {
      * @throws RepositoryException If there is an error during the repository operation.
      */
     public List<Transaction> findAllForPeriod(String number, LocalDate startDate, LocalDate endDate) {
-        try (Connection connection = getDataSource().getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_BY_ACCOUNT_FOR_PERIOD_QUERY)
-        ) {
-            preparedStatement.setString(1, number);
-            preparedStatement.setTimestamp(2, Timestamp.valueOf(startDate.atStartOfDay()));
-            preparedStatement.setTimestamp(3, Timestamp.valueOf(endDate.atStartOfDay()));
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                List<Transaction> found = new ArrayList<>();
-                while (resultSet.next()) {
-                    found.add(construct(resultSet));
+        return timed("findAllForPeriod", () -> {
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_BY_ACCOUNT_FOR_PERIOD_QUERY)
+            ) {
+                preparedStatement.setString(1, number);
+                preparedStatement.setTimestamp(2, Timestamp.valueOf(startDate.atStartOfDay()));
+                preparedStatement.setTimestamp(3, Timestamp.valueOf(endDate.atStartOfDay()));
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    List<Transaction> found = new ArrayList<>();
+                    while (resultSet.next()) {
+                        found.add(construct(resultSet));
+                    }
+                    return found;
+                }
+            } catch (Exception ex) {
+                throw new RepositoryException("The entities were not found[" + ex.getMessage() + "]");
+            }
+        });
+    }
+
+    /**
+     * Streams the transactions created in a period to the consumer in the order of their ids.
+     * The rows are read through a server-side cursor, {@value #EXPORT_FETCH_SIZE} at a time, so the memory used
+     * does not depend on how many there are. An interrupted export is resumed by passing the id of the last
+     * transaction the consumer received.
+     *
+     * @param from     The start of the period, inclusive.
+     * @param to       The end of the period, exclusive.
+     * @param afterId  The id after which to start; 0 to start from the first transaction of the period.
+     * @param consumer The consumer of the transactions, which may throw UncheckedIOException to stop the export.
+     * @return The number of transactions exported.
+     * @throws RepositoryException  If there is an error during the repository operation.
+     * @throws UncheckedIOException If the consumer failed.
+     */
+    public long exportBetween(LocalDateTime from, LocalDateTime to, long afterId, Consumer<Transaction> consumer) {
+        return timed("exportBetween", () -> {
+            try (Connection connection = getDataSource().getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_EXPORT_QUERY)
+            ) {
+                try {
+                    connection.setAutoCommit(false);
+                    preparedStatement.setFetchSize(EXPORT_FETCH_SIZE);
+                    preparedStatement.setLong(1, afterId);
+                    preparedStatement.setTimestamp(2, Timestamp.valueOf(from));
+                    preparedStatement.setTimestamp(3, Timestamp.valueOf(to));
+                    long exported = 0;
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            consumer.accept(construct(resultSet));
+                            exported++;
+                        }
+                    }
+                    connection.commit();
+                    return exported;
+                } catch (Exception ex) {
+                    connection.rollback();
+                    throw ex;
+                } finally {
+                    connection.setAutoCommit(true);
                 }
-                return found;
+            } catch (UncheckedIOException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new RepositoryException("Transactions were not exported [" + ex.getMessage() + "]");
             }
-        } catch (Exception ex) {
-            throw new RepositoryException("The entities were not found[" + ex.getMessage() + "]");
-        }
+        });
     }
 }
@@ -2,6 +2,7 @@ package ru.clevertec.bank.repository;
 
 import ru.clevertec.bank.exception.RepositoryException;
 import ru.clevertec.bank.entity.User;
+import ru.clevertec.bank.util.cache.RepositoryCaches;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
@@ -20,15 +21,17 @@ import java.util.Optional;
  */
 public class UserRepository extends Repository<User> {
 
-    private static final String SELECT_BY_ID_QUERY = "SELECT * FROM users WHERE active = TRUE AND id = ?";
+    private static final String COLUMNS = "id, name, surname, birthdate, active";
+
+    private static final String SELECT_BY_ID_QUERY = "SELECT " + COLUMNS + " FROM users WHERE active = TRUE AND id = ?";
 
     private static final String SELECT_BY_ACCOUNT_ID_QUERY = """
-        SELECT * FROM users u
-            LEFT JOIN accounts a on a.user_id = u.id
+        SELECT u.id, u.name, u.surname, u.birthdate, u.active FROM users u
+            JOIN accounts a on a.user_id = u.id
         WHERE u.active = TRUE AND a.id = ?
     """;
 
-    private static final String SELECT_ALL_QUERY = "SELECT * FROM users WHERE active = TRUE LIMIT ? OFFSET ?";
+    private static final String SELECT_ALL_QUERY = "SELECT " + COLUMNS + " FROM users WHERE active = TRUE LIMIT ? OFFSET ?";
 
     private static final String INSERT_QUERY = """
         INSERT INTO users (name, surname, birthdate, active) VALUES (?, ?, ?, ?)
@@ -44,8 +47,15 @@ public class UserRepository extends Repository<User> {
         UPDATE accounts SET active = FALSE WHERE bank_id = 1 AND user_id = ?
     """;
 
+    private final RepositoryCaches caches;
+
     public UserRepository(DataSource dataSource) {
-        super(dataSource);
+        this(dataSource, RepositoryCaches.disabled());
+    }
+
+    public UserRepository(DataSource dataSource, RepositoryCaches caches) {
+        super(dataSource, caches.users());
+        this.caches = caches;
     }
 
     @Override
@@ -76,11 +86,11 @@ public class UserRepository extends Repository<User> {
     @Override
     protected User construct(ResultSet resultSet) throws SQLException {
         User user = new User();
-        user.setId(resultSet.getLong("id"));
-        user.setName(resultSet.getString("name"));
-        user.setSurname(resultSet.getString("surname"));
-        user.setBirthdate(resultSet.getDate("birthdate").toLocalDate());
-        user.setActive(resultSet.getBoolean("active"));
+        user.setId(resultSet.getLong(1));
+        user.setName(resultSet.getString(2));
+        user.setSurname(resultSet.getString(3));
+        user.setBirthdate(resultSet.getDate(4).toLocalDate());
+        user.setActive(resultSet.getBoolean(5));
         return user;
     }
 
@@ -100,6 +110,10 @@ public class UserRepository extends Repository<User> {
      * @throws RepositoryException If there is an error during the repository operation.
      */
     public Optional<User> findByAccountId(Long accountId) throws RepositoryException {
+        return timed("findByAccountId", () -> caches.usersByAccount().get(accountId, this::loadByAccountId));
+    }
+
+    private Optional<User> loadByAccountId(Long accountId) throws RepositoryException {
         try (Connection connection = getDataSource().getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_ACCOUNT_ID_QUERY)
         ) {
@@ -112,6 +126,25 @@ public class UserRepository extends Repository<User> {
         }
     }
 
+    /**
+     * Deletes the entity and drops the cached accounts it deactivated.
+     *
+     * @param id The unique identifier (id) of the entity to delete.
+     * @return True if the entity was successfully deleted, false otherwise.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    @Override
+    public boolean delete(Long id) throws RepositoryException {
+        boolean deleted = super.delete(id);
+        caches.invalidateAccounts();
+        return deleted;
+    }
+
+    @Override
+    protected void invalidate(Long id) {
+        caches.invalidateUser(id);
+    }
+
     @Override
     protected void deleteLinks(Connection connection, Long id) throws SQLException {
         deleteUserAccounts(connection, id);
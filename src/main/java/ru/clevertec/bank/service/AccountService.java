@@ -27,7 +27,13 @@ public interface AccountService {
 
     boolean withdraw(String number, BigDecimal amount);
 
+    boolean withdraw(String number, BigDecimal amount, String idempotencyKey);
+
     boolean deposit(String number, BigDecimal amount);
 
+    boolean deposit(String number, BigDecimal amount, String idempotencyKey);
+
     boolean transfer(String senderNumber, String receiverNumber, BigDecimal amount);
+
+    boolean transfer(String senderNumber, String receiverNumber, BigDecimal amount, String idempotencyKey);
 }
@@ -0,0 +1,15 @@
+package ru.clevertec.bank.service;
+
+import ru.clevertec.bank.dto.ImportReportDto;
+
+import java.io.InputStream;
+
+/**
+ * Service interface for bulk imports.
+ *
+ * @author Andrei Yuryeu
+ */
+public interface ImportService {
+
+    ImportReportDto importAccounts(Long bankId, InputStream csv);
+}
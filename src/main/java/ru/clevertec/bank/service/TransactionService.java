@@ -5,6 +5,7 @@ import ru.clevertec.bank.dto.TransactionResponseDto;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service interface for managing transactions.
@@ -20,4 +21,6 @@ public interface TransactionService {
     List<TransactionResponseDto> findAllForPeriod(String number, LocalDate from, LocalDate to);
 
     TransactionResponseDto save(TransactionRequestDto transactionDto);
+
+    long export(LocalDate from, LocalDate to, long afterId, Consumer<TransactionResponseDto> consumer);
 }
@@ -5,47 +5,89 @@ import ru.clevertec.bank.config.ApplicationConfig;
 import ru.clevertec.bank.dto.AccountRequestDto;
 import ru.clevertec.bank.dto.AccountResponseDto;
 import ru.clevertec.bank.entity.Account;
+import ru.clevertec.bank.entity.IdempotencyKey;
+import ru.clevertec.bank.entity.Money;
 import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.exception.BadRequestException;
+import ru.clevertec.bank.exception.DuplicateRequestException;
 import ru.clevertec.bank.exception.EntityNotFoundException;
 import ru.clevertec.bank.exception.MoneyTransferException;
 import ru.clevertec.bank.mapper.AccountMapper;
 import ru.clevertec.bank.repository.AccountRepository;
-import ru.clevertec.bank.repository.TransactionRepository;
+import ru.clevertec.bank.repository.IdempotencyKeyRepository;
 import ru.clevertec.bank.service.AccountService;
+import ru.clevertec.bank.util.cache.AccountRef;
 import ru.clevertec.bank.util.check.CheckGenerator;
-import ru.clevertec.bank.util.yaml.Parser;
+import ru.clevertec.bank.util.ledger.BalanceEngine;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.metrics.Timer;
+import ru.clevertec.bank.util.yaml.PropertiesProvider;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Service implementation for managing accounts.
+ * The transaction and the postings of a money operation are stored by the repository in the same database
+ * transaction as the balance change.
+ * Money operations may carry an Idempotency-Key: the key is recorded in the transaction of the balance change,
+ * and a repeated request with the same key is answered as a replay without locking or touching the accounts.
+ * With a {@link BalanceEngine}, balances are decided by the engine instead of under row locks, and the database
+ * catches up with the ledger of the engine asynchronously.
  *
  * @author Andrei Yuryeu
  */
 public class AccountServiceImpl implements AccountService {
 
+    private static final long CLEVERBANK_ID = 1L;
+
     private final AccountRepository accountRepository;
-    private final TransactionRepository transactionRepository;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final BalanceEngine balanceEngine;
     private final AccountMapper accountMapper = Mappers.getMapper(AccountMapper.class);
-    private final Parser yamlParser;
+    private final PropertiesProvider propertiesProvider;
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+
+    public AccountServiceImpl(
+            AccountRepository accountRepository,
+            IdempotencyKeyRepository idempotencyKeyRepository
+    ) {
+        this(accountRepository, idempotencyKeyRepository, null);
+    }
 
-    public AccountServiceImpl(AccountRepository accountRepository, TransactionRepository transactionRepository) {
+    public AccountServiceImpl(
+            AccountRepository accountRepository,
+            IdempotencyKeyRepository idempotencyKeyRepository,
+            BalanceEngine balanceEngine
+    ) {
         this.accountRepository = accountRepository;
-        this.transactionRepository = transactionRepository;
-        this.yamlParser = ApplicationConfig.getYamlParser();
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.balanceEngine = balanceEngine;
+        this.propertiesProvider = ApplicationConfig.getPropertiesProvider();
     }
 
     /**
      * Process interest accrual on accounts.
+     * With a balance engine, the shards are paused and the ledger applied first, so the accrual
+     * sees every decided operation and the shards reload the new balances afterwards.
      */
     @Override
     public void applyPercentage() {
-        BigDecimal interestRate = yamlParser.getYaml().getInterestRate()
+        BigDecimal interestRate = propertiesProvider.getProperties().getInterestRate()
                 .divide(BigDecimal.valueOf(100));
         if (shouldApplyPercentage()) {
-            accountRepository.applyPercentage(interestRate);
+            metrics.timer("bank_money_operation_seconds", "Time spent in money operations.",
+                    "operation", "applyPercentage").time(() -> {
+                if (balanceEngine != null) {
+                    balanceEngine.quiesce(() -> accountRepository.applyPercentage(interestRate));
+                } else {
+                    accountRepository.applyPercentage(interestRate);
+                }
+            });
         }
     }
 
@@ -118,18 +160,45 @@ public class AccountServiceImpl implements AccountService {
      */
     @Override
     public boolean withdraw(String number, BigDecimal amount) {
-        Account account = accountRepository.blockingFindByNumber(number).orElseThrow(() ->
-                new EntityNotFoundException("Account with number = " + number + " was not found"));
-        if (!account.getBankId().equals(1L)) {
-            throw new MoneyTransferException("Only CleverBank account can be withdrawn");
-        }
-        if (account.getBalance().compareTo(amount) < 0) {
-            throw new MoneyTransferException("Not enough money on this account");
-        }
-        Transaction withdrawTransaction = accountRepository.withdraw(account, amount);
-        transactionRepository.save(withdrawTransaction);
-        CheckGenerator.generateCheck(withdrawTransaction, account, null);
-        return true;
+        return withdraw(number, amount, null);
+    }
+
+    /**
+     * Withdraw a specified amount from an account at most once per Idempotency-Key.
+     *
+     * @param number         The account number from which to withdraw funds.
+     * @param amount         The amount to be withdrawn.
+     * @param idempotencyKey The Idempotency-Key of the request, or null.
+     * @return True if the withdrawal was successful or had already been made with this key, otherwise false.
+     * @throws BadRequestException If the key was already used for another request.
+     * @see #withdraw(String, BigDecimal)
+     */
+    @Override
+    public boolean withdraw(String number, BigDecimal amount, String idempotencyKey) {
+        IdempotencyKey key = idempotencyKey(idempotencyKey, "withdraw", number, amount);
+        return moneyOperation("withdraw", key, () -> {
+            if (balanceEngine != null) {
+                Account account = findCleverBankAccount(number, "Only CleverBank account can be withdrawn");
+                CheckGenerator.generateCheck(balanceEngine.withdraw(account, moneyOf(amount, account), key), account, null);
+                return true;
+            }
+            Optional<AccountRef> ref = accountRepository.findRefByNumber(number);
+            if (ref.isPresent() && ref.get().bankId() != CLEVERBANK_ID) {
+                throw new MoneyTransferException("Only CleverBank account can be withdrawn");
+            }
+            Account account = blockingFind(number, ref).orElseThrow(() ->
+                    new EntityNotFoundException("Account with number = " + number + " was not found"));
+            if (ref.isEmpty() && !account.getBankId().equals(CLEVERBANK_ID)) {
+                throw new MoneyTransferException("Only CleverBank account can be withdrawn");
+            }
+            Money withdrawn = moneyOf(amount, account);
+            if (account.getBalance().isLessThan(withdrawn)) {
+                throw new MoneyTransferException("Not enough money on this account");
+            }
+            Transaction withdrawTransaction = accountRepository.withdraw(account, withdrawn, key);
+            CheckGenerator.generateCheck(withdrawTransaction, account, null);
+            return true;
+        });
     }
 
     /**
@@ -143,15 +212,41 @@ public class AccountServiceImpl implements AccountService {
      */
     @Override
     public boolean deposit(String number, BigDecimal amount) {
-        Account account = accountRepository.blockingFindByNumber(number).orElseThrow(() ->
-                new EntityNotFoundException("Account with id = " + number + " was not found"));
-        if (!account.getBankId().equals(1L)) {
-            throw new MoneyTransferException("Only CleverBank account can be deposited");
-        }
-        Transaction depositTransaction = accountRepository.deposit(account, amount);
-        transactionRepository.save(depositTransaction);
-        CheckGenerator.generateCheck(depositTransaction, null, account);
-        return true;
+        return deposit(number, amount, null);
+    }
+
+    /**
+     * Refill an account with a specified amount at most once per Idempotency-Key.
+     *
+     * @param number         The account number to be refilled.
+     * @param amount         The amount to be refilled.
+     * @param idempotencyKey The Idempotency-Key of the request, or null.
+     * @return True if the deposit was successful or had already been made with this key, otherwise false.
+     * @throws BadRequestException If the key was already used for another request.
+     * @see #deposit(String, BigDecimal)
+     */
+    @Override
+    public boolean deposit(String number, BigDecimal amount, String idempotencyKey) {
+        IdempotencyKey key = idempotencyKey(idempotencyKey, "deposit", number, amount);
+        return moneyOperation("deposit", key, () -> {
+            if (balanceEngine != null) {
+                Account account = findCleverBankAccount(number, "Only CleverBank account can be deposited");
+                CheckGenerator.generateCheck(balanceEngine.deposit(account, moneyOf(amount, account), key), null, account);
+                return true;
+            }
+            Optional<AccountRef> ref = accountRepository.findRefByNumber(number);
+            if (ref.isPresent() && ref.get().bankId() != CLEVERBANK_ID) {
+                throw new MoneyTransferException("Only CleverBank account can be deposited");
+            }
+            Account account = blockingFind(number, ref).orElseThrow(() ->
+                    new EntityNotFoundException("Account with id = " + number + " was not found"));
+            if (ref.isEmpty() && !account.getBankId().equals(CLEVERBANK_ID)) {
+                throw new MoneyTransferException("Only CleverBank account can be deposited");
+            }
+            Transaction depositTransaction = accountRepository.deposit(account, moneyOf(amount, account), key);
+            CheckGenerator.generateCheck(depositTransaction, null, account);
+            return true;
+        });
     }
 
     /**
@@ -167,22 +262,190 @@ public class AccountServiceImpl implements AccountService {
      */
     @Override
     public boolean transfer(String senderNumber, String receiverNumber, BigDecimal amount) {
-        Account sender = accountRepository.blockingFindByNumber(senderNumber).orElseThrow(() ->
-                new EntityNotFoundException("Account with number = " + senderNumber + " was not found"));
-        Account receiver = accountRepository.blockingFindByNumber(receiverNumber).orElseThrow(() ->
-                new EntityNotFoundException("Account with number = " + receiverNumber + " was not found"));
-        if (!(sender.getBankId().equals(1L) || receiver.getBankId().equals(1L))) {
-            throw new MoneyTransferException("Sender or receiver bank must be CleverBank");
+        return transfer(senderNumber, receiverNumber, amount, null);
+    }
+
+    /**
+     * Transfer a specified amount from one account to another at most once per Idempotency-Key.
+     *
+     * @param senderNumber   The account number from which to transfer funds.
+     * @param receiverNumber The account number to which funds are to be transferred.
+     * @param amount         The amount to be transferred.
+     * @param idempotencyKey The Idempotency-Key of the request, or null.
+     * @return True if the transfer was successful or had already been made with this key, otherwise false.
+     * @throws BadRequestException If the key was already used for another request.
+     * @see #transfer(String, String, BigDecimal)
+     */
+    @Override
+    public boolean transfer(String senderNumber, String receiverNumber, BigDecimal amount, String idempotencyKey) {
+        IdempotencyKey key = idempotencyKey(idempotencyKey, "transfer", senderNumber, receiverNumber, amount);
+        return moneyOperation("transfer", key, () -> {
+            if (balanceEngine != null) {
+                Account sender = accountRepository.findByNumber(senderNumber).orElseThrow(() ->
+                        new EntityNotFoundException("Account with number = " + senderNumber + " was not found"));
+                Account receiver = accountRepository.findByNumber(receiverNumber).orElseThrow(() ->
+                        new EntityNotFoundException("Account with number = " + receiverNumber + " was not found"));
+                if (!(sender.getBankId().equals(CLEVERBANK_ID) || receiver.getBankId().equals(CLEVERBANK_ID))) {
+                    throw new MoneyTransferException("Sender or receiver bank must be CleverBank");
+                }
+                Transaction transferTransaction = balanceEngine.transfer(sender, receiver, moneyOf(amount, sender), key);
+                CheckGenerator.generateCheck(transferTransaction, sender, receiver);
+                return true;
+            }
+            Optional<AccountRef> senderRef = accountRepository.findRefByNumber(senderNumber);
+            Optional<AccountRef> receiverRef = accountRepository.findRefByNumber(receiverNumber);
+            if (senderRef.isPresent() && receiverRef.isPresent()
+                    && senderRef.get().bankId() != CLEVERBANK_ID && receiverRef.get().bankId() != CLEVERBANK_ID) {
+                throw new MoneyTransferException("Sender or receiver bank must be CleverBank");
+            }
+            Account sender = blockingFind(senderNumber, senderRef).orElseThrow(() ->
+                    new EntityNotFoundException("Account with number = " + senderNumber + " was not found"));
+            Account receiver = blockingFind(receiverNumber, receiverRef).orElseThrow(() ->
+                    new EntityNotFoundException("Account with number = " + receiverNumber + " was not found"));
+            if ((senderRef.isEmpty() || receiverRef.isEmpty())
+                    && !(sender.getBankId().equals(CLEVERBANK_ID) || receiver.getBankId().equals(CLEVERBANK_ID))) {
+                throw new MoneyTransferException("Sender or receiver bank must be CleverBank");
+            }
+            Money transferred = moneyOf(amount, sender);
+            if (sender.getBalance().isLessThan(transferred)) {
+                throw new MoneyTransferException("Not enough money on sender account");
+            }
+            Transaction transferTransaction = accountRepository.transfer(sender, receiver, transferred, key);
+            CheckGenerator.generateCheck(transferTransaction, sender, receiver);
+            return true;
+        });
+    }
+
+    /**
+     * Runs a money operation, timing it into {@code bank_money_operation_seconds} and counting its outcome
+     * in {@code bank_money_operations_total}: completed, replayed, rejected by a business rule, or failed.
+     * An operation whose Idempotency-Key is already recorded is replayed instead of run. The recent-key filter
+     * lets fresh keys skip that lookup, so a key it no longer remembers is looked up when the operation is
+     * rejected, and a key recorded concurrently is found when its insert does nothing.
+     *
+     * @param operation The name of the operation.
+     * @param key       The Idempotency-Key of the request, or null.
+     * @param code      The operation.
+     * @return The result of the operation.
+     */
+    private boolean moneyOperation(String operation, IdempotencyKey key, Supplier<Boolean> code) {
+        Timer timer = metrics.timer("bank_money_operation_seconds", "Time spent in money operations.",
+                "operation", operation);
+        String outcome = "failed";
+        try {
+            if (key != null && replay(key, pendingKey(key).or(() -> idempotencyKeyRepository.findByKey(key.getKey())))) {
+                outcome = "replayed";
+                return true;
+            }
+            boolean result = timer.time(code);
+            outcome = "completed";
+            return result;
+        } catch (DuplicateRequestException | MoneyTransferException | EntityNotFoundException ex) {
+            outcome = "rejected";
+            if (key != null && replay(key, pendingKey(key).or(() -> idempotencyKeyRepository.loadByKey(key.getKey())))) {
+                outcome = "replayed";
+                return true;
+            }
+            throw ex;
+        } catch (BadRequestException ex) {
+            outcome = "rejected";
+            throw ex;
+        } finally {
+            metrics.counter("bank_money_operations_total", "Money operations by outcome.",
+                    "operation", operation, "outcome", outcome).increment();
         }
-        if (sender.getBalance().compareTo(amount) < 0) {
-            throw new MoneyTransferException("Not enough money on sender account");
+    }
+
+    /**
+     * Converts a requested amount into money in the currency of the account it is taken from or paid into.
+     */
+    private static Money moneyOf(BigDecimal amount, Account account) {
+        return Money.of(amount, account.getCurrency());
+    }
+
+    /**
+     * Looks up a key decided by the balance engine but not yet recorded in the database.
+     */
+    private Optional<IdempotencyKey> pendingKey(IdempotencyKey key) {
+        return balanceEngine == null ? Optional.empty() : balanceEngine.findPendingKey(key.getKey());
+    }
+
+    /**
+     * Checks that a recorded key was recorded for the same request.
+     *
+     * @param key    The key of the request.
+     * @param stored The recorded key, if any.
+     * @return True if the request is a replay of the recorded one, false if the key was not recorded.
+     * @throws BadRequestException If the key was recorded for another request.
+     */
+    private boolean replay(IdempotencyKey key, Optional<IdempotencyKey> stored) {
+        if (stored.isEmpty()) {
+            return false;
+        }
+        if (!stored.get().getFingerprint().equals(key.getFingerprint())) {
+            throw new BadRequestException("Idempotency-Key = " + key.getKey() + " was already used for another request");
         }
-        Transaction transferTransaction = accountRepository.transfer(sender, receiver, amount);
-        transactionRepository.save(transferTransaction);
-        CheckGenerator.generateCheck(transferTransaction, sender, receiver);
         return true;
     }
 
+    /**
+     * Describes a money request by its operation, accounts and amount, so that the same request sent again
+     * gets the same fingerprint whatever the scale of its amount.
+     *
+     * @param key       The Idempotency-Key of the request, or null.
+     * @param operation The name of the operation.
+     * @param arguments The accounts and the amount of the request.
+     * @return The key with its fingerprint, or null if the request has no key.
+     */
+    private static IdempotencyKey idempotencyKey(String key, String operation, Object... arguments) {
+        if (key == null) {
+            return null;
+        }
+        StringBuilder fingerprint = new StringBuilder(operation);
+        for (Object argument : arguments) {
+            fingerprint.append(':').append(argument instanceof BigDecimal decimal
+                    ? decimal.stripTrailingZeros().toPlainString()
+                    : argument);
+        }
+        return new IdempotencyKey(key, fingerprint.toString(), LocalDateTime.now());
+    }
+
+    /**
+     * Finds a CleverBank account for the balance engine, which decides on its balance without locking the row.
+     *
+     * @param number    The account number.
+     * @param rejection The message if the account belongs to another bank.
+     * @return The account.
+     */
+    private Account findCleverBankAccount(String number, String rejection) {
+        Account account = accountRepository.findByNumber(number).orElseThrow(() ->
+                new EntityNotFoundException("Account with number = " + number + " was not found"));
+        if (!account.getBankId().equals(CLEVERBANK_ID)) {
+            throw new MoneyTransferException(rejection);
+        }
+        return account;
+    }
+
+    /**
+     * Reads an account once the operations in flight on it have committed, by primary key if the number was already
+     * resolved through the index. No lock is held afterwards, so the balance read only serves to reject an operation
+     * early; the repository locks the rows and checks the balances again in the transaction of the operation.
+     * An account read by primary key is only used if it still has the number, otherwise it is read by number.
+     *
+     * @param number The account number.
+     * @param ref    The resolved account, if any.
+     * @return An Optional containing the account if found, or empty if not found.
+     */
+    private Optional<Account> blockingFind(String number, Optional<AccountRef> ref) {
+        if (ref.isPresent()) {
+            Optional<Account> account = accountRepository.blockingFindById(ref.get().id());
+            if (account.isPresent() && number.equals(account.get().getNumber())) {
+                return account;
+            }
+        }
+        return accountRepository.blockingFindByNumber(number);
+    }
+
     /**
      * Delete an account by its unique identifier (ID).
      *
@@ -194,7 +457,7 @@ public class AccountServiceImpl implements AccountService {
     public boolean delete(Long id) {
         Account account = accountRepository.findById(id).orElseThrow(() ->
                 new EntityNotFoundException("Account with id = " + id + " was not found"));
-        if (!account.getBankId().equals(1L)) {
+        if (!account.getBankId().equals(CLEVERBANK_ID)) {
             throw new UnsupportedOperationException("Only CleverBank account can be deleted");
         }
         return accountRepository.delete(id);
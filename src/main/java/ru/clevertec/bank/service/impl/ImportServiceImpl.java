@@ -0,0 +1,42 @@
+package ru.clevertec.bank.service.impl;
+
+import ru.clevertec.bank.dto.ImportReportDto;
+import ru.clevertec.bank.exception.BadRequestException;
+import ru.clevertec.bank.exception.EntityNotFoundException;
+import ru.clevertec.bank.repository.BankRepository;
+import ru.clevertec.bank.repository.ImportRepository;
+import ru.clevertec.bank.service.ImportService;
+
+import java.io.InputStream;
+
+/**
+ * Service implementation for bulk imports.
+ *
+ * @author Andrei Yuryeu
+ */
+public class ImportServiceImpl implements ImportService {
+
+    private final ImportRepository importRepository;
+    private final BankRepository bankRepository;
+
+    public ImportServiceImpl(ImportRepository importRepository, BankRepository bankRepository) {
+        this.importRepository = importRepository;
+        this.bankRepository = bankRepository;
+    }
+
+    /**
+     * Imports users and accounts of a bank from a CSV file.
+     *
+     * @param bankId The id of the bank of the accounts.
+     * @param csv    The file, with the header {@value ImportRepository#COLUMNS}.
+     * @return The report of the import, listing the rejected rows.
+     * @throws EntityNotFoundException If no bank with the given ID is found.
+     * @throws BadRequestException     If the file is not a CSV file with the expected columns.
+     */
+    @Override
+    public ImportReportDto importAccounts(Long bankId, InputStream csv) {
+        bankRepository.findById(bankId).orElseThrow(() ->
+                new EntityNotFoundException("Bank with id = " + bankId + " was not found"));
+        return importRepository.importAccounts(bankId, csv);
+    }
+}
@@ -12,6 +12,7 @@ import org.mapstruct.factory.Mappers;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service implementation for managing transactions.
@@ -74,4 +75,19 @@ public class TransactionServiceImpl implements TransactionService {
         Transaction transaction = transactionMapper.fromDto(transactionDto);
         return transactionMapper.toDto(transactionRepository.save(transaction));
     }
+
+    /**
+     * Streams the transactions created from the start of one date to the end of another, in the order of their ids.
+     *
+     * @param from     The first date of the period.
+     * @param to       The last date of the period.
+     * @param afterId  The id of the last transaction already exported, or 0.
+     * @param consumer The consumer of the transactions.
+     * @return The number of transactions exported.
+     */
+    @Override
+    public long export(LocalDate from, LocalDate to, long afterId, Consumer<TransactionResponseDto> consumer) {
+        return transactionRepository.exportBetween(from.atStartOfDay(), to.plusDays(1).atStartOfDay(), afterId,
+                transaction -> consumer.accept(transactionMapper.toDto(transaction)));
+    }
 }
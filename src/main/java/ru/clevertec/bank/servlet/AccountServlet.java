@@ -4,7 +4,11 @@ import ru.clevertec.bank.config.ApplicationConfig;
 import ru.clevertec.bank.dto.AccountRequestDto;
 import ru.clevertec.bank.dto.AccountResponseDto;
 import ru.clevertec.bank.exception.BadRequestException;
+import ru.clevertec.bank.exception.ServiceUnavailableException;
 import ru.clevertec.bank.service.AccountService;
+import ru.clevertec.bank.service.ImportService;
+import ru.clevertec.bank.util.concurrent.RequestExecutor;
+import ru.clevertec.bank.util.event.AccountEventBus;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -24,22 +28,32 @@ import java.util.concurrent.TimeUnit;
  *
  * @author Andrei Yuryeu
  */
-@WebServlet("/accounts/*")
+@WebServlet(value = "/accounts/*", asyncSupported = true)
 public class AccountServlet extends HttpServlet {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int MAXIMUM_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private AccountService accountService;
+    private ImportService importService;
     private ObjectMapper objectMapper;
+    private RequestExecutor transferExecutor;
+    private AccountEventBus accountEventBus;
 
     @Override
     public void init() {
         this.objectMapper = ApplicationConfig.getObjectMapper();
         this.accountService = ApplicationConfig.getAccountService();
+        this.importService = ApplicationConfig.getImportService();
+        this.transferExecutor = ApplicationConfig.getTransferExecutor();
+        this.accountEventBus = ApplicationConfig.getAccountEventBus();
     }
 
     /**
      * Retrieves account information based on the provided URI:
      * - If the URI contains an ID, it returns the corresponding account as an AccountDto.
      * - If the URI does not contain an ID, it lists accounts based on optional "page" and "size" query parameters.
+     * - If the URI is /accounts/{id}/events, it streams the balance changes of the account as Server-Sent Events.
      *
      * @param req  The HttpServletRequest object representing the HTTP request.
      * @param resp The HttpServletResponse object representing the HTTP response.
@@ -52,8 +66,12 @@ public class AccountServlet extends HttpServlet {
             HttpServletRequest req,
             HttpServletResponse resp
     ) throws IOException {
-        PrintWriter writer = resp.getWriter();
         String[] uriElements = req.getRequestURI().split("/");
+        if (uriElements.length == 4 && "events".equals(uriElements[3])) {
+            streamEvents(req, resp, uriElements[2]);
+            return;
+        }
+        PrintWriter writer = resp.getWriter();
         if (uriElements.length == 3) {
             validateRequestURIWithId(req);
             var accountDto = accountService.findById(Long.valueOf(uriElements[2]));
@@ -71,9 +89,27 @@ public class AccountServlet extends HttpServlet {
         writer.close();
     }
 
+    /**
+     * Opens an event stream for an existing account. The stream stays open until the client disconnects
+     * or reads too slowly, and carries the events committed after it was opened.
+     */
+    private void streamEvents(HttpServletRequest req, HttpServletResponse resp, String id) throws IOException {
+        if (!id.matches("^[1-9][0-9]*$")) {
+            throw new BadRequestException("Only an account ID must be set in this request");
+        }
+        if (accountEventBus == null) {
+            throw new ServiceUnavailableException("Account event streams are disabled");
+        }
+        long accountId = Long.parseLong(id);
+        accountService.findById(accountId);
+        accountEventBus.open(req, resp, accountId);
+    }
+
     /**
      * Creates a new account using the provided JSON request body. Upon successful creation,
      * it redirects to the newly created account's URI.
+     * If the URI is /accounts/import, it imports users and accounts of the bank given by the "bankId"
+     * query parameter from the CSV request body and answers with the report of the import.
      *
      * @param req  The HttpServletRequest object representing the HTTP request.
      * @param resp The HttpServletResponse object representing the HTTP response.
@@ -85,7 +121,8 @@ public class AccountServlet extends HttpServlet {
             HttpServletRequest req,
             HttpServletResponse resp
     ) throws IOException {
-        if (req.getRequestURI().split("/").length == 2) {
+        String[] uriElements = req.getRequestURI().split("/");
+        if (uriElements.length == 2) {
             AccountRequestDto accountRequestDto;
             try {
                 accountRequestDto = objectMapper.readValue(req.getInputStream(), AccountRequestDto.class);
@@ -94,6 +131,15 @@ public class AccountServlet extends HttpServlet {
             }
             var accountResponseDto = accountService.save(accountRequestDto);
             resp.sendRedirect(req.getContextPath() + req.getServletPath() + "/" + accountResponseDto.id());
+        } else if (uriElements.length == 3 && "import".equals(uriElements[2])) {
+            String bankId = req.getParameter("bankId");
+            if (bankId == null || !bankId.matches("^[1-9][0-9]*$")) {
+                throw new BadRequestException("Query parameter bankId must be a bank ID");
+            }
+            var report = importService.importAccounts(Long.valueOf(bankId), req.getInputStream());
+            try (PrintWriter writer = resp.getWriter()) {
+                writer.print(objectMapper.writeValueAsString(report));
+            }
         } else {
             throw new BadRequestException("Invalid HTTP request format");
         }
@@ -102,6 +148,11 @@ public class AccountServlet extends HttpServlet {
     /**
      * Performs account transactions, such as withdrawals, refills, or transfers, based on the URI and query parameters.
      * The transaction type is determined by the path segments in the URI.
+     * Transfers are processed asynchronously on the transfer executor, releasing the container thread;
+     * a transfer that is not started in time is answered with status 503, and one that started but is not finished
+     * in time keeps running and is answered with status 504, as its outcome is not known yet.
+     * An operation sent with an Idempotency-Key header is applied at most once; sending it again with the same key
+     * answers it as it was answered the first time, and reusing the key for another operation is a bad request.
      *
      * @param req  The HttpServletRequest object representing the HTTP request.
      * @param resp The HttpServletResponse object representing the HTTP response.
@@ -117,23 +168,38 @@ public class AccountServlet extends HttpServlet {
         String amount = req.getParameter("amount");
         String number = partsOfURI[2];
         String transactionType = partsOfURI[3];
+        String idempotencyKey = getIdempotencyKey(req);
         switch (transactionType) {
             case "withdraw" -> accountService.withdraw(
                     number,
-                    new BigDecimal(amount));
+                    new BigDecimal(amount),
+                    idempotencyKey);
             case "deposit" -> accountService.deposit(
                     number,
-                    new BigDecimal(amount));
+                    new BigDecimal(amount),
+                    idempotencyKey);
             case "transfer" -> {
                 String receiverNumber = partsOfURI[4];
-                accountService.transfer(
+                BigDecimal transferAmount = new BigDecimal(amount);
+                transferExecutor.execute(req, () -> accountService.transfer(
                         number,
                         receiverNumber,
-                        new BigDecimal(amount));
+                        transferAmount,
+                        idempotencyKey));
             }
         }
     }
 
+    private String getIdempotencyKey(HttpServletRequest req) {
+        String idempotencyKey = req.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey != null
+                && (idempotencyKey.isBlank() || idempotencyKey.length() > MAXIMUM_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new BadRequestException(IDEMPOTENCY_KEY_HEADER + " must be 1 to "
+                    + MAXIMUM_IDEMPOTENCY_KEY_LENGTH + " characters long");
+        }
+        return idempotencyKey;
+    }
+
     /**
      * Deletes an account based on the provided account ID in the URI. If the deletion is successful,
      * it sets the response status to 204 (No Content).
@@ -162,6 +228,11 @@ public class AccountServlet extends HttpServlet {
             throw new BadRequestException("Invalid HTTP request format");
         }
 
+        if (!partsOfURI[2].matches("^[0-9]{16}$")
+                || (partsOfURI.length == 5 && !partsOfURI[4].matches("^[0-9]{16}$"))) {
+            throw new BadRequestException("Account number must be 16 digits");
+        }
+
         String transactionType = partsOfURI[3];
         if (partsOfURI.length == 4 && !("withdraw".equals(transactionType) || "deposit".equals(transactionType))) {
             throw new BadRequestException("Invalid HTTP request format");
@@ -13,6 +13,10 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import ru.clevertec.bank.exception.MoneyTransferException;
+import ru.clevertec.bank.exception.OutcomeUnknownException;
+import ru.clevertec.bank.exception.ServiceUnavailableException;
+import ru.clevertec.bank.exception.TooManyRequestsException;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -20,6 +24,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
+import static jakarta.servlet.RequestDispatcher.ERROR_EXCEPTION;
 import static jakarta.servlet.RequestDispatcher.ERROR_EXCEPTION_TYPE;
 import static jakarta.servlet.RequestDispatcher.ERROR_MESSAGE;
 import static jakarta.servlet.RequestDispatcher.ERROR_REQUEST_URI;
@@ -27,6 +32,7 @@ import static jakarta.servlet.RequestDispatcher.ERROR_REQUEST_URI;
 @WebServlet("/error")
 public class ExceptionHandlerServlet extends HttpServlet {
 
+    private final MetricsRegistry metrics = MetricsRegistry.global();
     private ObjectMapper mapper;
 
     @Override
@@ -100,6 +106,7 @@ public class ExceptionHandlerServlet extends HttpServlet {
 
     /**
      * Generates and sends an error response based on the exception type and HTTP status code.
+     * Every response is counted in {@code bank_http_errors_total} by status and exception type.
      *
      * @param response The HTTP response object.
      * @param request  The HTTP request object containing information about the exception.
@@ -113,14 +120,29 @@ public class ExceptionHandlerServlet extends HttpServlet {
             String responseValue = mapper
                     .writeValueAsString(new ApiCallDetailedError("Something gone wrong", details));
             Class<?> clazz = (Class<?>) request.getAttribute(ERROR_EXCEPTION_TYPE);
+            int status;
             if (Objects.equals(clazz, BadRequestException.class) || Objects.equals(clazz, MoneyTransferException.class)
                     || Objects.equals(clazz, UnsupportedOperationException.class)) {
-                response.setStatus(400);
+                status = 400;
             } else if (Objects.equals(clazz, EntityNotFoundException.class)) {
-                response.setStatus(404);
+                status = 404;
+            } else if (Objects.equals(clazz, TooManyRequestsException.class)) {
+                status = 429;
+                TooManyRequestsException exception = (TooManyRequestsException) request.getAttribute(ERROR_EXCEPTION);
+                if (exception != null) {
+                    response.setHeader("Retry-After", String.valueOf(exception.getRetryAfterSeconds()));
+                }
+            } else if (Objects.equals(clazz, ServiceUnavailableException.class)) {
+                status = 503;
+            } else if (Objects.equals(clazz, OutcomeUnknownException.class)) {
+                status = 504;
             } else {
-                response.setStatus(500);
+                status = 500;
             }
+            response.setStatus(status);
+            metrics.counter("bank_http_errors_total", "Error responses by status and exception.",
+                    "status", String.valueOf(status),
+                    "exception", clazz == null ? "none" : clazz.getSimpleName()).increment();
             writer.print(responseValue);
             writer.flush();
         }
@@ -0,0 +1,45 @@
+package ru.clevertec.bank.servlet;
+
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+
+import java.io.IOException;
+
+/**
+ * Exposes the application metrics in the Prometheus text format.
+ *
+ * @author Andrei Yuryeu
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private MetricsRegistry metricsRegistry;
+
+    @Override
+    public void init(ServletConfig config) {
+        this.metricsRegistry = ApplicationConfig.getMetricsRegistry();
+    }
+
+    /**
+     * Writes every registered metric.
+     *
+     * @param req  The HttpServletRequest object representing the HTTP request.
+     * @param resp The HttpServletResponse object representing the HTTP response.
+     * @throws IOException If there is an issue with writing data.
+     */
+    @Override
+    protected void doGet(
+            HttpServletRequest req,
+            HttpServletResponse resp
+    ) throws IOException {
+        resp.setContentType(CONTENT_TYPE);
+        metricsRegistry.write(resp.getWriter());
+    }
+}
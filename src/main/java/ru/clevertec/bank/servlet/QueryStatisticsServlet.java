@@ -0,0 +1,90 @@
+package ru.clevertec.bank.servlet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ru.clevertec.bank.config.ApplicationConfig;
+import ru.clevertec.bank.exception.BadRequestException;
+import ru.clevertec.bank.util.jdbc.QueryStats;
+import ru.clevertec.bank.util.jdbc.QueryStatistics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Controller exposing per-statement SQL statistics collected by the monitored data source.
+ *
+ * @author Andrei Yuryeu
+ */
+@WebServlet("/admin/queries")
+public class QueryStatisticsServlet extends HttpServlet {
+
+    private QueryStatistics queryStatistics;
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void init(ServletConfig config) {
+        this.queryStatistics = ApplicationConfig.getQueryStatistics();
+        this.objectMapper = ApplicationConfig.getObjectMapper();
+    }
+
+    /**
+     * Returns the statistics of every statement template, slowest first.
+     * The optional "sort" parameter orders them by "total" (default), "max", "mean", "count" or "rows",
+     * and the optional "limit" parameter caps the number returned.
+     *
+     * @param req  The HttpServletRequest object representing the HTTP request.
+     * @param resp The HttpServletResponse object representing the HTTP response.
+     * @throws IOException         If there is an issue with writing data.
+     * @throws BadRequestException If the sort order is unknown.
+     * @see QueryStats
+     */
+    @Override
+    protected void doGet(
+            HttpServletRequest req,
+            HttpServletResponse resp
+    ) throws IOException {
+        String sort = req.getParameter("sort");
+        String limit = req.getParameter("limit");
+        List<QueryStats> stats = queryStatistics.snapshot()
+                .stream()
+                .sorted(comparator(sort == null ? "total" : sort).reversed())
+                .limit(limit == null ? Long.MAX_VALUE : Long.parseLong(limit))
+                .toList();
+        resp.setContentType("application/json");
+        PrintWriter writer = resp.getWriter();
+        writer.print(objectMapper.writeValueAsString(stats));
+        writer.close();
+    }
+
+    /**
+     * Resets the statistics and sets the response status to 204 (No Content).
+     *
+     * @param req  The HttpServletRequest object representing the HTTP request.
+     * @param resp The HttpServletResponse object representing the HTTP response.
+     */
+    @Override
+    protected void doDelete(
+            HttpServletRequest req,
+            HttpServletResponse resp
+    ) {
+        queryStatistics.reset();
+        resp.setStatus(204);
+    }
+
+    private Comparator<QueryStats> comparator(String sort) {
+        return switch (sort) {
+            case "total" -> Comparator.comparingDouble(QueryStats::totalMillis);
+            case "max" -> Comparator.comparingDouble(QueryStats::maxMillis);
+            case "mean" -> Comparator.comparingDouble(QueryStats::meanMillis);
+            case "count" -> Comparator.comparingLong(QueryStats::count);
+            case "rows" -> Comparator.comparingLong(QueryStats::rows);
+            default -> throw new BadRequestException("Unknown sort order: " + sort);
+        };
+    }
+}
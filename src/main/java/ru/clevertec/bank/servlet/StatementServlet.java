@@ -3,21 +3,23 @@ package ru.clevertec.bank.servlet;
 import ru.clevertec.bank.config.ApplicationConfig;
 import ru.clevertec.bank.dto.AccountResponseDto;
 import ru.clevertec.bank.dto.TransactionResponseDto;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.TransactionType;
 import ru.clevertec.bank.exception.BadRequestException;
 import ru.clevertec.bank.service.AccountService;
 import ru.clevertec.bank.service.TransactionService;
 import ru.clevertec.bank.service.UserService;
-import ru.clevertec.bank.util.yaml.Parser;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import ru.clevertec.bank.util.concurrent.RequestExecutor;
 import ru.clevertec.bank.util.statement.PdfStatementGenerator;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -27,20 +29,20 @@ import java.util.stream.Collectors;
  *
  * @author Andrei Yuryeu
  */
-@WebServlet("/statements/*")
+@WebServlet(value = "/statements/*", asyncSupported = true)
 public class StatementServlet extends HttpServlet {
 
     private AccountService accountService;
     private TransactionService transactionService;
     private UserService userService;
-    private Parser yamlParser;
+    private RequestExecutor statementExecutor;
 
     @Override
     public void init(ServletConfig config) {
         this.accountService = ApplicationConfig.getAccountService();
         this.transactionService = ApplicationConfig.getTransactionService();
         this.userService = ApplicationConfig.getUserService();
-        this.yamlParser = ApplicationConfig.getYamlParser();
+        this.statementExecutor = ApplicationConfig.getStatementExecutor();
     }
 
     /**
@@ -49,6 +51,8 @@ public class StatementServlet extends HttpServlet {
      * within the specified date range.
      * - If the URI specifies "money," it generates a money statement for the given account number
      * within the specified date range.
+     * The statement is generated asynchronously on the statement executor, so slow statements do not hold
+     * container threads; a statement that is not generated in time is answered with status 503.
      *
      * @param req  The HttpServletRequest object representing the HTTP request.
      * @param resp The HttpServletResponse object representing the HTTP response.
@@ -62,18 +66,14 @@ public class StatementServlet extends HttpServlet {
         validateRequest(req);
         String[] uriElements = req.getRequestURI().split("/");
         var formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
-        switch (uriElements[2]) {
-            case "account":
-                createAccountStatement(
-                        uriElements[3],
-                        LocalDate.parse(req.getParameter("from"), formatter),
-                        LocalDate.parse(req.getParameter("to"), formatter));
-            case "money":
-                createMoneyStatement(
-                        uriElements[3],
-                        LocalDate.parse(req.getParameter("from"), formatter),
-                        LocalDate.parse(req.getParameter("to"), formatter));
-        }
+        LocalDate from = LocalDate.parse(req.getParameter("from"), formatter);
+        LocalDate to = LocalDate.parse(req.getParameter("to"), formatter);
+        statementExecutor.execute(req, () -> {
+            switch (uriElements[2]) {
+                case "account" -> createAccountStatement(uriElements[3], from, to);
+                case "money" -> createMoneyStatement(uriElements[3], from, to);
+            }
+        });
     }
 
     /**
@@ -108,7 +108,8 @@ public class StatementServlet extends HttpServlet {
         }
         var transactions = transactionService.findAllForPeriod(accountNumber, from, to)
                 .stream()
-                .collect(Collectors.groupingBy(TransactionResponseDto::type));
+                .collect(Collectors.groupingBy(TransactionResponseDto::type,
+                        () -> new EnumMap<>(TransactionType.class), Collectors.toList()));
         var user = userService.findByAccountId(account.id());
         var income = calculateIncome(transactions, account);
         var outcome = calculateOutcome(transactions, account);
@@ -117,34 +118,25 @@ public class StatementServlet extends HttpServlet {
 
     /**
      * Calculates the income portion of the money statement based on transaction data.
+     * Incoming transfers are summed by the converted amount stored at the moment of the transfer.
      *
      * @param transactions The list of transactions for the account.
      * @param account      The account for which the statement is generated.
      * @return The calculated income amount.
      */
-    private BigDecimal calculateIncome(
-            Map<String, List<TransactionResponseDto>> transactions,
+    private Money calculateIncome(
+            Map<TransactionType, List<TransactionResponseDto>> transactions,
             AccountResponseDto account
     ) {
-        Map<String, BigDecimal> exchangeRates = yamlParser.getYaml().getExchangeRates();
-        BigDecimal incomeFromRefills = BigDecimal.ZERO;
-        BigDecimal incomeFromTransfers = BigDecimal.ZERO;
-        if (transactions.get("REFILL") != null) {
-            incomeFromRefills = transactions.get("REFILL")
-                    .stream()
-                    .map(TransactionResponseDto::amount)
-                    .reduce(BigDecimal::add)
-                    .orElse(BigDecimal.ZERO);
-        }
-        if (transactions.get("TRANSFER") != null) {
-            incomeFromTransfers = transactions.get("TRANSFER")
-                    .stream()
-                    .filter(tr -> tr.receiverAccountId().equals(account.id()))
-                    .map(tr -> tr.amount().multiply(exchangeRates.get(tr.currency() + account.currency())))
-                    .reduce(BigDecimal::add)
-                    .orElse(BigDecimal.ZERO);
-        }
-        return incomeFromRefills.add(incomeFromTransfers);
+        Money income = transactions.getOrDefault(TransactionType.REFILL, List.of())
+                .stream()
+                .map(TransactionResponseDto::amount)
+                .reduce(Money.zero(account.currency()), Money::plus);
+        return transactions.getOrDefault(TransactionType.TRANSFER, List.of())
+                .stream()
+                .filter(tr -> tr.receiverAccountId().equals(account.id()))
+                .map(TransactionResponseDto::convertedAmount)
+                .reduce(income, Money::plus);
     }
 
     /**
@@ -154,28 +146,19 @@ public class StatementServlet extends HttpServlet {
      * @param account      The account for which the statement is generated.
      * @return The calculated outcome amount.
      */
-    private BigDecimal calculateOutcome(
-            Map<String, List<TransactionResponseDto>> transactions,
+    private Money calculateOutcome(
+            Map<TransactionType, List<TransactionResponseDto>> transactions,
             AccountResponseDto account
     ) {
-        BigDecimal outcomeFromWithdraws = BigDecimal.ZERO;
-        BigDecimal outcomeFromTransfers = BigDecimal.ZERO;
-        if (transactions.get("WITHDRAW") != null) {
-            outcomeFromWithdraws = transactions.get("WITHDRAW")
-                    .stream()
-                    .map(TransactionResponseDto::amount)
-                    .reduce(BigDecimal::add)
-                    .orElse(BigDecimal.ZERO);
-        }
-        if (transactions.get("TRANSFER") != null) {
-            outcomeFromTransfers = transactions.get("TRANSFER")
-                    .stream()
-                    .filter(tr -> tr.senderAccountId().equals(account.id()))
-                    .map(TransactionResponseDto::amount)
-                    .reduce(BigDecimal::add)
-                    .orElse(BigDecimal.ZERO);
-        }
-        return outcomeFromWithdraws.add(outcomeFromTransfers);
+        Money outcome = transactions.getOrDefault(TransactionType.WITHDRAW, List.of())
+                .stream()
+                .map(TransactionResponseDto::amount)
+                .reduce(Money.zero(account.currency()), Money::plus);
+        return transactions.getOrDefault(TransactionType.TRANSFER, List.of())
+                .stream()
+                .filter(tr -> tr.senderAccountId().equals(account.id()))
+                .map(TransactionResponseDto::amount)
+                .reduce(outcome, Money::plus);
     }
 
     /**
@@ -4,6 +4,7 @@ import ru.clevertec.bank.config.ApplicationConfig;
 import ru.clevertec.bank.dto.TransactionResponseDto;
 import ru.clevertec.bank.exception.BadRequestException;
 import ru.clevertec.bank.service.TransactionService;
+import ru.clevertec.bank.util.export.ExportFormat;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.annotation.WebServlet;
@@ -11,9 +12,20 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Controller for Banks with doGet method
@@ -23,6 +35,9 @@ import java.util.List;
 @WebServlet("/transactions/*")
 public class TransactionServlet extends HttpServlet {
 
+    private static final Pattern ID_RANGE = Pattern.compile("^id=([1-9][0-9]*)-$");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private TransactionService transactionService;
     private ObjectMapper objectMapper;
 
@@ -36,6 +51,7 @@ public class TransactionServlet extends HttpServlet {
      * Retrieves transaction information based on the provided URI:
      * - If the URI contains an ID, it returns the corresponding transaction as a TransactionResponseDto.
      * - If the URI does not contain an ID, it lists transactions based on optional "page" and "size" query parameters.
+     * - If the URI is /transactions/export, it streams the transactions of a period as CSV or NDJSON.
      *
      * @param req  The HttpServletRequest object representing the HTTP request.
      * @param resp The HttpServletResponse object representing the HTTP response.
@@ -48,8 +64,12 @@ public class TransactionServlet extends HttpServlet {
             HttpServletRequest req,
             HttpServletResponse resp
     ) throws IOException {
-        PrintWriter writer = resp.getWriter();
         String[] uriElements = req.getRequestURI().split("/");
+        if (uriElements.length == 3 && "export".equals(uriElements[2])) {
+            export(req, resp);
+            return;
+        }
+        PrintWriter writer = resp.getWriter();
         if (uriElements.length == 3) {
             validateRequestURIWithId(req);
             var userDto = transactionService.findById(Long.valueOf(uriElements[2]));
@@ -67,6 +87,125 @@ public class TransactionServlet extends HttpServlet {
         writer.close();
     }
 
+    /**
+     * Streams the transactions created between the dates in the "from" and "to" parameters, both inclusive,
+     * in the order of their ids and in the "format" given, csv by default. The response is compressed
+     * if the client accepts gzip. An interrupted export is resumed with the id of the last transaction received
+     * in the "after" parameter, or with the first id wanted in a {@code Range: id=<id>-} header,
+     * which is answered with status 206; a resumed export has no header line. An export that fails is never
+     * finished normally, see {@link #abort(HttpServletResponse)}.
+     *
+     * @param req  The HttpServletRequest object representing the HTTP request.
+     * @param resp The HttpServletResponse object representing the HTTP response.
+     * @throws IOException         If the response could not be written.
+     * @throws BadRequestException If a parameter or the Range header is invalid.
+     */
+    private void export(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        LocalDate from = getDate(req, "from");
+        LocalDate to = getDate(req, "to");
+        if (to.isBefore(from)) {
+            throw new BadRequestException("The end of the period must not be before its start");
+        }
+        ExportFormat format = getFormat(req);
+        String range = req.getHeader("Range");
+        long afterId = range != null ? getFirstId(range) - 1 : getAfterId(req);
+        resp.setContentType(format.getContentType());
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setHeader("Content-Disposition",
+                "attachment; filename=\"transactions-" + from + "-" + to + "." + format.getExtension() + "\"");
+        resp.setHeader("Accept-Ranges", "id");
+        resp.setHeader("Vary", "Accept-Encoding");
+        if (range != null) {
+            resp.setStatus(206);
+            resp.setHeader("Content-Range", "id " + (afterId + 1) + "-*/*");
+        }
+        boolean gzip = acceptsGzip(req);
+        if (gzip) {
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        OutputStream out = gzip ? new GZIPOutputStream(resp.getOutputStream(), BUFFER_SIZE) : resp.getOutputStream();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            if (afterId == 0) {
+                writer.write(format.header());
+            }
+            transactionService.export(from, to, afterId, transaction -> {
+                try {
+                    format.write(writer, transaction, objectMapper);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            abort(resp);
+            throw e.getCause();
+        } catch (RuntimeException | IOException e) {
+            abort(resp);
+            throw e;
+        }
+        writer.close();
+    }
+
+    /**
+     * Prepares the response of a failed export for the error handler. The writer of the export is never closed,
+     * so a compressed export gets no gzip trailer. If nothing was sent yet, the response is reset and the error
+     * is answered with its own status; otherwise the container ends the response by closing the connection,
+     * so the client can not take a partial export for a complete one and resumes it with "after".
+     */
+    private void abort(HttpServletResponse resp) {
+        if (!resp.isCommitted()) {
+            resp.reset();
+        }
+    }
+
+    private LocalDate getDate(HttpServletRequest req, String name) {
+        String value = req.getParameter(name);
+        if (value == null) {
+            throw new BadRequestException("Parameter " + name + " must be set");
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Parameter " + name + " must be a date like 2023-09-15");
+        }
+    }
+
+    private ExportFormat getFormat(HttpServletRequest req) {
+        String format = req.getParameter("format");
+        if (format == null) {
+            return ExportFormat.CSV;
+        }
+        try {
+            return ExportFormat.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Parameter format must be csv or ndjson");
+        }
+    }
+
+    private long getAfterId(HttpServletRequest req) {
+        String after = req.getParameter("after");
+        if (after == null) {
+            return 0;
+        }
+        if (!after.matches("^[0-9]+$")) {
+            throw new BadRequestException("Parameter after must be a transaction ID");
+        }
+        return Long.parseLong(after);
+    }
+
+    private long getFirstId(String range) {
+        Matcher matcher = ID_RANGE.matcher(range.trim());
+        if (!matcher.matches()) {
+            throw new BadRequestException("Only ranges like id=<first ID>- are supported");
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private boolean acceptsGzip(HttpServletRequest req) {
+        String acceptEncoding = req.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
     /**
      * Validates the HTTP request to ensure it follows the expected format.
      *
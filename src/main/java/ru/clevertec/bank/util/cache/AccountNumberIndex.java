@@ -0,0 +1,262 @@
+package ru.clevertec.bank.util.cache;
+
+import ru.clevertec.bank.entity.Currency;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Compact map from an account number to the id, bank and currency of the account.
+ * Numbers of exactly 16 digits are parsed into primitive longs, so distinct numbers never share a key,
+ * and the three attributes are packed into one long,
+ * so the whole index is two {@code long[]} arrays with linear probing and no per-entry objects.
+ * Reads are optimistic and take no lock unless they race with a write.
+ *
+ * @author Andrei Yuryeu
+ * @see AccountRef
+ */
+public final class AccountNumberIndex {
+
+    private static final long EMPTY = -1L;
+    private static final int CURRENCY_BITS = 4;
+    private static final int BANK_BITS = 20;
+    private static final long CURRENCY_MASK = (1L << CURRENCY_BITS) - 1;
+    private static final long BANK_MASK = (1L << BANK_BITS) - 1;
+    private static final long MAX_ID = (1L << (Long.SIZE - 1 - BANK_BITS - CURRENCY_BITS)) - 1;
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final int NUMBER_DIGITS = 16;
+
+    private final boolean enabled;
+    private final int maximumSize;
+    private final StampedLock lock = new StampedLock();
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    public AccountNumberIndex(int maximumSize) {
+        this(true, maximumSize);
+    }
+
+    private AccountNumberIndex(boolean enabled, int maximumSize) {
+        this.enabled = enabled;
+        this.maximumSize = maximumSize;
+        this.keys = emptyKeys(16);
+        this.values = new long[16];
+    }
+
+    /**
+     * Creates an index that stores nothing.
+     *
+     * @return The disabled index.
+     */
+    public static AccountNumberIndex disabled() {
+        return new AccountNumberIndex(false, 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Parses an account number into the primitive key of the index.
+     *
+     * @param number The account number.
+     * @return The key, or -1 if the number is not exactly 16 digits.
+     */
+    public static long parse(String number) {
+        if (number == null || number.length() != NUMBER_DIGITS) {
+            return EMPTY;
+        }
+        long key = 0;
+        for (int i = 0; i < number.length(); i++) {
+            char digit = number.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return EMPTY;
+            }
+            key = key * 10 + (digit - '0');
+        }
+        return key;
+    }
+
+    /**
+     * Returns the account stored for the number.
+     *
+     * @param number The account number parsed by {@link #parse(String)}.
+     * @return The account reference, or empty if the number is not indexed.
+     */
+    public Optional<AccountRef> get(long number) {
+        if (!enabled || number == EMPTY) {
+            return Optional.empty();
+        }
+        long stamp = lock.tryOptimisticRead();
+        long[] currentKeys = keys;
+        long[] currentValues = values;
+        long packed = currentKeys.length == currentValues.length ? find(currentKeys, currentValues, number) : EMPTY;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                packed = find(keys, values, number);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return packed == EMPTY ? Optional.empty() : Optional.of(unpack(packed));
+    }
+
+    /**
+     * Stores the account for the number. Does nothing if the index is full or the ids do not fit.
+     *
+     * @param number  The account number parsed by {@link #parse(String)}.
+     * @param account The account reference.
+     */
+    public void put(long number, AccountRef account) {
+        if (!enabled || number == EMPTY || account.id() > MAX_ID || account.bankId() > BANK_MASK) {
+            return;
+        }
+        long packed = pack(account);
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(keys, number);
+            if (keys[slot] == number) {
+                values[slot] = packed;
+                return;
+            }
+            if (size >= maximumSize) {
+                return;
+            }
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize();
+                slot = slot(keys, number);
+            }
+            keys[slot] = number;
+            values[slot] = packed;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the account with the given id.
+     *
+     * @param id The id of the account.
+     */
+    public void removeById(long id) {
+        if (!enabled) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY && values[i] >>> (BANK_BITS + CURRENCY_BITS) == id) {
+                    delete(i);
+                    i--;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes every account.
+     */
+    public void clear() {
+        if (!enabled) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static long find(long[] keys, long[] values, long number) {
+        int mask = keys.length - 1;
+        for (int i = mix(number) & mask, probes = 0; probes < keys.length; i = (i + 1) & mask, probes++) {
+            long key = keys[i];
+            if (key == number) {
+                return values[i];
+            }
+            if (key == EMPTY) {
+                return EMPTY;
+            }
+        }
+        return EMPTY;
+    }
+
+    private static int slot(long[] keys, long number) {
+        int mask = keys.length - 1;
+        int i = mix(number) & mask;
+        while (keys[i] != EMPTY && keys[i] != number) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void delete(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        int i = (slot + 1) & mask;
+        while (keys[i] != EMPTY) {
+            int home = mix(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        long[] newKeys = emptyKeys(oldKeys.length * 2);
+        long[] newValues = new long[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(newKeys, oldKeys[i]);
+                newKeys[slot] = oldKeys[i];
+                newValues[slot] = oldValues[i];
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    private static long[] emptyKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long pack(AccountRef account) {
+        return account.id() << (BANK_BITS + CURRENCY_BITS)
+                | account.bankId() << CURRENCY_BITS
+                | account.currency().ordinal();
+    }
+
+    private static AccountRef unpack(long packed) {
+        return new AccountRef(
+                packed >>> (BANK_BITS + CURRENCY_BITS),
+                (packed >>> CURRENCY_BITS) & BANK_MASK,
+                CURRENCIES[(int) (packed & CURRENCY_MASK)]
+        );
+    }
+}
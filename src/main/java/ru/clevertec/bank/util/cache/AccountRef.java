@@ -0,0 +1,15 @@
+package ru.clevertec.bank.util.cache;
+
+import ru.clevertec.bank.entity.Currency;
+
+/**
+ * The attributes of an account that never change once it is created.
+ *
+ * @param id       The id of the account.
+ * @param bankId   The id of the bank of the account.
+ * @param currency The currency of the account.
+ * @author Andrei Yuryeu
+ * @see AccountNumberIndex
+ */
+public record AccountRef(long id, long bankId, Currency currency) {
+}
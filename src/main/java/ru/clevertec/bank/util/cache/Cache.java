@@ -0,0 +1,230 @@
+package ru.clevertec.bank.util.cache;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Size-bounded read-through cache with a time-to-live for every entry.
+ * Only present values are cached, so a lookup of a missing key always reaches the loader.
+ * Concurrent lookups of the same cold key share one in-flight load instead of all hitting the database.
+ * A load that overlaps with an invalidation of its key is handed to its callers but never stored,
+ * so a write followed by an invalidation can not be overwritten by a value read before the write.
+ * When the cache grows over its maximum size, a sample of entries is scanned and
+ * expired or least recently used ones are evicted. The samples are taken in turn by a sweep that goes round
+ * the whole cache, so every entry is considered, not only those at the start of the table.
+ *
+ * @param <K> The type of keys.
+ * @param <V> The type of cached values.
+ * @author Andrei Yuryeu
+ * @see CacheStats
+ */
+public final class Cache<K, V> {
+
+    private static final int EVICTION_SAMPLE = 16;
+
+    private final String name;
+    private final boolean enabled;
+    private final int maximumSize;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, CompletableFuture<Optional<V>>> loading = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Object sweepLock = new Object();
+    private Iterator<Map.Entry<K, Entry<V>>> sweep = Collections.emptyIterator();
+
+    public Cache(String name, int maximumSize, Duration ttl) {
+        this(name, true, maximumSize, ttl);
+    }
+
+    private Cache(String name, boolean enabled, int maximumSize, Duration ttl) {
+        this.name = name;
+        this.enabled = enabled;
+        this.maximumSize = maximumSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Creates a cache that stores nothing and passes every lookup to the loader.
+     *
+     * @param name The name of the cache.
+     * @return The disabled cache.
+     */
+    public static <K, V> Cache<K, V> disabled(String name) {
+        return new Cache<>(name, false, 0, Duration.ZERO);
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long loadedAt;
+        private volatile long accessedAt;
+
+        private Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.accessedAt = loadedAt;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the cached value for the key, loading and caching it if it is absent or expired.
+     *
+     * @param key    The key to look up.
+     * @param loader The function that reads the value from the underlying storage.
+     * @return The value, or empty if the loader did not find it.
+     */
+    public Optional<V> get(K key, Function<K, Optional<V>> loader) {
+        if (!enabled) {
+            return loader.apply(key);
+        }
+        long now = System.nanoTime();
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            if (now - entry.loadedAt < ttlNanos) {
+                entry.accessedAt = now;
+                hits.increment();
+                return Optional.of(entry.value);
+            }
+            if (entries.remove(key, entry)) {
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        CompletableFuture<Optional<V>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<V>> inFlight = loading.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            Optional<V> value = loader.apply(key);
+            store(key, value, load);
+            load.complete(value);
+            return value;
+        } catch (Throwable ex) {
+            loading.remove(key, load);
+            load.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Removes the value of the key and discards any load of it that is still in flight.
+     *
+     * @param key The key to invalidate.
+     */
+    public void invalidate(K key) {
+        if (enabled) {
+            entries.compute(key, (k, entry) -> {
+                loading.remove(k);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Removes every entry matching the predicate.
+     *
+     * @param predicate The predicate tested with the key and the cached value.
+     */
+    public void invalidateIf(BiPredicate<K, V> predicate) {
+        if (enabled) {
+            entries.forEach((key, entry) -> {
+                if (predicate.test(key, entry.value)) {
+                    invalidate(key);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes every entry and discards every load in flight.
+     */
+    public void invalidateAll() {
+        if (enabled) {
+            loading.clear();
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the statistics collected since the cache was created.
+     *
+     * @return The cache statistics.
+     */
+    public CacheStats stats() {
+        return new CacheStats(name, hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    private void store(K key, Optional<V> value, CompletableFuture<Optional<V>> load) {
+        entries.compute(key, (k, entry) -> {
+            if (!loading.remove(k, load)) {
+                return entry;
+            }
+            return value.map(v -> new Entry<>(v, System.nanoTime())).orElse(entry);
+        });
+        evictIfNeeded();
+    }
+
+    private Optional<V> await(CompletableFuture<Optional<V>> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private void evictIfNeeded() {
+        if (entries.size() <= maximumSize) {
+            return;
+        }
+        synchronized (sweepLock) {
+            while (entries.size() > maximumSize) {
+                long now = System.nanoTime();
+                Map.Entry<K, Entry<V>> victim = null;
+                for (int i = 0; i < EVICTION_SAMPLE; i++) {
+                    if (!sweep.hasNext()) {
+                        sweep = entries.entrySet().iterator();
+                        if (!sweep.hasNext()) {
+                            break;
+                        }
+                    }
+                    Map.Entry<K, Entry<V>> candidate = sweep.next();
+                    if (now - candidate.getValue().loadedAt >= ttlNanos) {
+                        victim = candidate;
+                        break;
+                    }
+                    if (victim == null || candidate.getValue().accessedAt < victim.getValue().accessedAt) {
+                        victim = candidate;
+                    }
+                }
+                if (victim == null) {
+                    return;
+                }
+                if (entries.remove(victim.getKey(), victim.getValue())) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ru.clevertec.bank.util.cache;
+
+/**
+ * An invalidation of cached entities, as sent to the other nodes: the kind of entity and its id.
+ * Encoded as {@code kind:id}, as {@code balance:id:number} for balance changes,
+ * or as the kind alone for the kinds that drop whole caches.
+ *
+ * @param kind   What was written.
+ * @param id     The id of the written entity, or 0 for {@link Kind#ACCOUNTS} and {@link Kind#ALL}.
+ * @param number The number of the account for {@link Kind#BALANCE}, otherwise {@code null}.
+ * @author Andrei Yuryeu
+ * @see CacheInvalidationChannel
+ */
+public record CacheInvalidation(Kind kind, long id, String number) {
+
+    public static final CacheInvalidation ACCOUNTS = new CacheInvalidation(Kind.ACCOUNTS, 0);
+    public static final CacheInvalidation ALL = new CacheInvalidation(Kind.ALL, 0);
+
+    public CacheInvalidation(Kind kind, long id) {
+        this(kind, id, null);
+    }
+
+    public enum Kind {
+
+        /**
+         * An account was updated or deactivated, which may remove its number from the index.
+         */
+        ACCOUNT,
+
+        /**
+         * An account had its balance changed; its entries are dropped by id and number and its number stays indexed.
+         */
+        BALANCE,
+
+        /**
+         * A user was updated or deleted.
+         */
+        USER,
+
+        /**
+         * A bank was updated or deleted.
+         */
+        BANK,
+
+        /**
+         * Any number of accounts changed, e.g. by interest accrual or by deleting their user or bank.
+         */
+        ACCOUNTS,
+
+        /**
+         * Anything may have changed, e.g. because notifications were missed.
+         */
+        ALL
+    }
+
+    public static CacheInvalidation account(long id) {
+        return new CacheInvalidation(Kind.ACCOUNT, id);
+    }
+
+    public static CacheInvalidation balance(long id, String number) {
+        return new CacheInvalidation(Kind.BALANCE, id, number);
+    }
+
+    public static CacheInvalidation user(long id) {
+        return new CacheInvalidation(Kind.USER, id);
+    }
+
+    public static CacheInvalidation bank(long id) {
+        return new CacheInvalidation(Kind.BANK, id);
+    }
+
+    /**
+     * Parses an encoded invalidation.
+     *
+     * @param token The encoded invalidation.
+     * @return The invalidation.
+     * @throws IllegalArgumentException If the token is not an encoded invalidation.
+     */
+    public static CacheInvalidation decode(String token) {
+        int separator = token.indexOf(':');
+        if (separator < 0) {
+            Kind kind = Kind.valueOf(token.toUpperCase());
+            if (kind != Kind.ACCOUNTS && kind != Kind.ALL) {
+                throw new IllegalArgumentException("Invalidation " + token + " has no id");
+            }
+            return kind == Kind.ALL ? ALL : ACCOUNTS;
+        }
+        Kind kind = Kind.valueOf(token.substring(0, separator).toUpperCase());
+        if (kind == Kind.BALANCE) {
+            int numberSeparator = token.indexOf(':', separator + 1);
+            if (numberSeparator < 0) {
+                throw new IllegalArgumentException("Invalidation " + token + " has no number");
+            }
+            return balance(Long.parseLong(token.substring(separator + 1, numberSeparator)),
+                    token.substring(numberSeparator + 1));
+        }
+        return new CacheInvalidation(kind, Long.parseLong(token.substring(separator + 1)));
+    }
+
+    public String encode() {
+        String name = kind.name().toLowerCase();
+        if (kind == Kind.BALANCE) {
+            return name + ":" + id + ":" + number;
+        }
+        return kind == Kind.ACCOUNTS || kind == Kind.ALL ? name : name + ":" + id;
+    }
+}
@@ -0,0 +1,276 @@
+package ru.clevertec.bank.util.cache;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.yaml.CacheInvalidationProperties;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the repository caches of several nodes consistent through a Postgres {@code LISTEN/NOTIFY} channel.
+ * <p>
+ * Local invalidations are queued and sent every {@code flushIntervalMillis} in one {@code pg_notify} round trip,
+ * after the writes behind them were committed; a burst of more than {@code maximumBatch} of them is sent
+ * as a single invalidation of everything. Each payload starts with the id of the sending node, so a node skips
+ * its own. Every node listens on one dedicated connection outside the pool. Notifications arriving within
+ * {@code coalesceMillis} of each other are applied as one batch. Whenever the listening connection is opened,
+ * all cached entities are dropped, as the notifications sent while it was closed were lost.
+ * <p>
+ * A node that stops between a commit and the next flush leaves the other nodes stale until the entries expire.
+ *
+ * @author Andrei Yuryeu
+ * @see RepositoryCaches#invalidate(Collection)
+ */
+public class CacheInvalidationChannel implements InvalidationPublisher, AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(CacheInvalidationChannel.class.getName());
+    private static final String NOTIFY_QUERY = "SELECT pg_notify(?, payload) FROM unnest(?::text[]) AS payload";
+    private static final int MAXIMUM_PAYLOAD_BYTES = 7900;
+
+    private final String node = UUID.randomUUID().toString();
+    private final String channel;
+    private final long flushIntervalMillis;
+    private final long coalesceMillis;
+    private final int maximumBatch;
+    private final int pollMillis;
+    private final long reconnectMillis;
+    private final DataSource dataSource;
+    private final DataSource listenDataSource;
+    private final RepositoryCaches caches;
+    private final Set<CacheInvalidation> pending = new LinkedHashSet<>();
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+    private volatile ScheduledExecutorService scheduler;
+    private volatile Thread listener;
+    private volatile Connection listenConnection;
+    private volatile boolean running;
+
+    /**
+     * @param properties       The channel settings.
+     * @param dataSource       The pool to send notifications through.
+     * @param listenDataSource The source of the listening connection, which is held for as long as the channel runs.
+     * @param caches           The caches to apply the invalidations of other nodes to.
+     */
+    public CacheInvalidationChannel(
+            CacheInvalidationProperties properties,
+            DataSource dataSource,
+            DataSource listenDataSource,
+            RepositoryCaches caches
+    ) {
+        this.channel = properties.getChannel();
+        this.flushIntervalMillis = properties.getFlushIntervalMillis();
+        this.coalesceMillis = properties.getCoalesceMillis();
+        this.maximumBatch = properties.getMaximumBatch();
+        this.pollMillis = (int) properties.getPollMillis();
+        this.reconnectMillis = properties.getReconnectMillis();
+        this.dataSource = dataSource;
+        this.listenDataSource = listenDataSource;
+        this.caches = caches;
+    }
+
+    /**
+     * Starts flushing local invalidations and listening for those of other nodes.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        synchronized (pending) {
+            if (pending.contains(CacheInvalidation.ALL)) {
+                return;
+            }
+            pending.add(invalidation);
+            if (pending.size() > maximumBatch) {
+                pending.clear();
+                pending.add(CacheInvalidation.ALL);
+            }
+        }
+    }
+
+    /**
+     * Sends the queued invalidations. If they could not be sent, they are queued again.
+     *
+     * @return The number of invalidations sent.
+     * @throws SQLException If the notifications could not be sent.
+     */
+    public int flush() throws SQLException {
+        List<CacheInvalidation> invalidations;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            invalidations = new ArrayList<>(pending);
+            pending.clear();
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(NOTIFY_QUERY)
+        ) {
+            preparedStatement.setString(1, channel);
+            preparedStatement.setArray(2, connection.createArrayOf("text", payloads(invalidations).toArray()));
+            preparedStatement.executeQuery().close();
+        } catch (SQLException | RuntimeException ex) {
+            invalidations.forEach(this::publish);
+            throw ex;
+        }
+        metrics.counter("bank_cache_invalidations_published_total", "Cache invalidations sent to other nodes.")
+                .add(invalidations.size());
+        return invalidations.size();
+    }
+
+    /**
+     * Applies the payloads of a burst of notifications as one batch, skipping those this node sent.
+     *
+     * @param payloads The payloads.
+     * @return The number of invalidations applied.
+     */
+    int apply(Collection<String> payloads) {
+        List<CacheInvalidation> invalidations = new ArrayList<>();
+        for (String payload : payloads) {
+            String[] tokens = payload.split(" ");
+            if (tokens[0].equals(node)) {
+                continue;
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                try {
+                    invalidations.add(CacheInvalidation.decode(tokens[i]));
+                } catch (IllegalArgumentException ex) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Unknown cache invalidation {0} was skipped", tokens[i]);
+                }
+            }
+        }
+        if (invalidations.isEmpty()) {
+            return 0;
+        }
+        caches.invalidate(invalidations.size() > maximumBatch ? List.of(CacheInvalidation.ALL) : invalidations);
+        metrics.counter("bank_cache_invalidations_received_total", "Cache invalidations applied from other nodes.")
+                .add(invalidations.size());
+        return invalidations.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            flushQuietly();
+        }
+        Connection connection = listenConnection;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // the listener thread stops on its next poll anyway
+            }
+        }
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    /**
+     * Splits the encoded invalidations into payloads Postgres accepts, each starting with the id of this node.
+     */
+    private List<String> payloads(List<CacheInvalidation> invalidations) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(node);
+        for (CacheInvalidation invalidation : invalidations) {
+            String token = invalidation.encode();
+            if (payload.length() + 1 + token.length() > MAXIMUM_PAYLOAD_BYTES) {
+                payloads.add(payload.toString());
+                payload = new StringBuilder(node);
+            }
+            payload.append(' ').append(token);
+        }
+        payloads.add(payload.toString());
+        return payloads;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = listenDataSource.getConnection();
+                 Statement statement = connection.createStatement()
+            ) {
+                listenConnection = connection;
+                statement.execute("LISTEN \"" + channel.replace("\"", "\"\"") + "\"");
+                caches.invalidate(List.of(CacheInvalidation.ALL));
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    receive(pgConnection);
+                }
+            } catch (SQLException | RuntimeException ex) {
+                if (running) {
+                    metrics.counter("bank_cache_invalidation_reconnects_total",
+                            "Times the cache invalidation listener lost its connection.").increment();
+                    LOGGER.log(System.Logger.Level.WARNING, "Cache invalidation listener lost its connection", ex);
+                    sleep(reconnectMillis);
+                }
+            } finally {
+                listenConnection = null;
+            }
+        }
+    }
+
+    private void receive(PGConnection connection) throws SQLException {
+        PGNotification[] notifications = connection.getNotifications(pollMillis);
+        if (notifications == null || notifications.length == 0) {
+            return;
+        }
+        List<String> payloads = new ArrayList<>();
+        while (notifications != null && notifications.length > 0) {
+            for (PGNotification notification : notifications) {
+                payloads.add(notification.getParameter());
+            }
+            if (payloads.size() > maximumBatch || !sleep(coalesceMillis)) {
+                break;
+            }
+            notifications = connection.getNotifications();
+        }
+        apply(payloads);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException ex) {
+            LOGGER.log(System.Logger.Level.WARNING, "Cache invalidations were not sent, they will be sent again", ex);
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.clevertec.bank.util.cache;
+
+/**
+ * Point-in-time statistics of a {@link Cache}.
+ *
+ * @param name      The name of the cache.
+ * @param hits      The number of lookups served from the cache.
+ * @param misses    The number of lookups that had to load the value.
+ * @param evictions The number of entries removed because they expired or the cache was full.
+ * @param size      The current number of entries.
+ * @author Andrei Yuryeu
+ */
+public record CacheStats(String name, long hits, long misses, long evictions, int size) {
+
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.clevertec.bank.util.cache;
+
+/**
+ * Tells other nodes about a local cache invalidation, once the write behind it is committed.
+ *
+ * @author Andrei Yuryeu
+ * @see RepositoryCaches#publishingTo(InvalidationPublisher)
+ */
+@FunctionalInterface
+public interface InvalidationPublisher {
+
+    /**
+     * A publisher for a single node, which tells no one.
+     */
+    InvalidationPublisher NONE = invalidation -> {
+    };
+
+    /**
+     * Publishes an invalidation. Must not block the writing thread on the network.
+     *
+     * @param invalidation The invalidation.
+     */
+    void publish(CacheInvalidation invalidation);
+}
@@ -0,0 +1,229 @@
+package ru.clevertec.bank.util.cache;
+
+import ru.clevertec.bank.entity.Account;
+import ru.clevertec.bank.entity.Bank;
+import ru.clevertec.bank.entity.User;
+import ru.clevertec.bank.util.yaml.CacheProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Caches shared by the account, user and bank repositories.
+ * They are kept together because a write through one repository may change what another one reads,
+ * e.g. deleting a user deactivates the accounts of that user.
+ * Every invalidation is also handed to the publisher, which tells the other nodes to drop the same entries;
+ * the invalidations they send back are applied with {@link #invalidate(Collection)}.
+ *
+ * @param accounts         Active accounts by id.
+ * @param accountsByNumber Active accounts by number.
+ * @param users            Active users by id.
+ * @param usersByAccount   Active users by the id of one of their accounts.
+ * @param banks            Active banks by id.
+ * @param banksByAccount   Active banks by the id of one of their accounts.
+ * @param accountNumbers   Id, bank and currency of active accounts by number.
+ * @param publisher        The publisher of invalidations to other nodes.
+ * @author Andrei Yuryeu
+ * @see Cache
+ */
+public record RepositoryCaches(
+        Cache<Long, Account> accounts,
+        Cache<String, Account> accountsByNumber,
+        Cache<Long, User> users,
+        Cache<Long, User> usersByAccount,
+        Cache<Long, Bank> banks,
+        Cache<Long, Bank> banksByAccount,
+        AccountNumberIndex accountNumbers,
+        InvalidationPublisher publisher
+) {
+
+    /**
+     * Creates caches that store nothing.
+     *
+     * @return The disabled caches.
+     */
+    public static RepositoryCaches disabled() {
+        return new RepositoryCaches(
+                Cache.disabled("accounts"),
+                Cache.disabled("accountsByNumber"),
+                Cache.disabled("users"),
+                Cache.disabled("usersByAccount"),
+                Cache.disabled("banks"),
+                Cache.disabled("banksByAccount"),
+                AccountNumberIndex.disabled(),
+                InvalidationPublisher.NONE
+        );
+    }
+
+    /**
+     * Creates caches configured by the given properties.
+     *
+     * @param properties The cache properties.
+     * @return The configured caches, or disabled ones if caching is switched off.
+     */
+    public static RepositoryCaches of(CacheProperties properties) {
+        if (!properties.isEnabled()) {
+            return disabled();
+        }
+        int maximumSize = properties.getMaximumSize();
+        Duration ttl = Duration.ofSeconds(properties.getTtlSeconds());
+        return new RepositoryCaches(
+                new Cache<>("accounts", maximumSize, ttl),
+                new Cache<>("accountsByNumber", maximumSize, ttl),
+                new Cache<>("users", maximumSize, ttl),
+                new Cache<>("usersByAccount", maximumSize, ttl),
+                new Cache<>("banks", maximumSize, ttl),
+                new Cache<>("banksByAccount", maximumSize, ttl),
+                new AccountNumberIndex(maximumSize),
+                InvalidationPublisher.NONE
+        );
+    }
+
+    /**
+     * Returns the same caches, whose invalidations are also handed to the given publisher.
+     *
+     * @param publisher The publisher.
+     * @return The caches.
+     */
+    public RepositoryCaches publishingTo(InvalidationPublisher publisher) {
+        return new RepositoryCaches(accounts, accountsByNumber, users, usersByAccount, banks, banksByAccount,
+                accountNumbers, publisher);
+    }
+
+    /**
+     * Drops every cached account together with the users and banks looked up by account.
+     */
+    public void invalidateAccounts() {
+        dropAccounts();
+        publisher.publish(CacheInvalidation.ACCOUNTS);
+    }
+
+    /**
+     * Drops one cached account together with the user and bank looked up by it.
+     * Used when the account is updated or deactivated, so its number is dropped from the index as well.
+     *
+     * @param id The id of the account.
+     */
+    public void invalidateAccount(Long id) {
+        accounts.invalidate(id);
+        accountsByNumber.invalidateIf((number, account) -> account.getId().equals(id));
+        usersByAccount.invalidate(id);
+        banksByAccount.invalidate(id);
+        accountNumbers.removeById(id);
+        publisher.publish(CacheInvalidation.account(id));
+    }
+
+    /**
+     * Drops one cached account whose number is known, without scanning the cache by number.
+     * Used after balance changes, which keep the account in the number index.
+     *
+     * @param account The account that was written.
+     */
+    public void invalidateAccount(Account account) {
+        accounts.invalidate(account.getId());
+        accountsByNumber.invalidate(account.getNumber());
+        usersByAccount.invalidate(account.getId());
+        banksByAccount.invalidate(account.getId());
+        publisher.publish(CacheInvalidation.balance(account.getId(), account.getNumber()));
+    }
+
+    /**
+     * Drops one cached user, also where it was looked up by one of its accounts.
+     *
+     * @param id The id of the user.
+     */
+    public void invalidateUser(Long id) {
+        users.invalidate(id);
+        usersByAccount.invalidateIf((accountId, user) -> user.getId().equals(id));
+        publisher.publish(CacheInvalidation.user(id));
+    }
+
+    /**
+     * Drops one cached bank, also where it was looked up by one of its accounts.
+     *
+     * @param id The id of the bank.
+     */
+    public void invalidateBank(Long id) {
+        banks.invalidate(id);
+        banksByAccount.invalidateIf((accountId, bank) -> bank.getId().equals(id));
+        publisher.publish(CacheInvalidation.bank(id));
+    }
+
+    /**
+     * Applies invalidations received from other nodes, without publishing them again.
+     * The caches looked up by number or by account are scanned once for the whole batch, not once per entity,
+     * and a batch that drops all accounts skips the invalidations of single ones.
+     * Balance changes carry the account number, so they drop their entries by key without any scan.
+     *
+     * @param invalidations The invalidations.
+     */
+    public void invalidate(Collection<CacheInvalidation> invalidations) {
+        Set<Long> accountIds = new HashSet<>();
+        List<CacheInvalidation> balances = new ArrayList<>();
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> bankIds = new HashSet<>();
+        boolean allAccounts = false;
+        for (CacheInvalidation invalidation : invalidations) {
+            switch (invalidation.kind()) {
+                case ACCOUNT -> accountIds.add(invalidation.id());
+                case BALANCE -> balances.add(invalidation);
+                case USER -> userIds.add(invalidation.id());
+                case BANK -> bankIds.add(invalidation.id());
+                case ACCOUNTS -> allAccounts = true;
+                case ALL -> {
+                    dropAccounts();
+                    users.invalidateAll();
+                    banks.invalidateAll();
+                    return;
+                }
+            }
+        }
+        if (allAccounts) {
+            dropAccounts();
+        } else if (!accountIds.isEmpty()) {
+            accountIds.forEach(accounts::invalidate);
+            accountsByNumber.invalidateIf((number, account) -> accountIds.contains(account.getId()));
+            accountIds.forEach(usersByAccount::invalidate);
+            accountIds.forEach(banksByAccount::invalidate);
+            accountIds.forEach(accountNumbers::removeById);
+        }
+        if (!allAccounts) {
+            for (CacheInvalidation balance : balances) {
+                accounts.invalidate(balance.id());
+                accountsByNumber.invalidate(balance.number());
+                usersByAccount.invalidate(balance.id());
+                banksByAccount.invalidate(balance.id());
+            }
+        }
+        if (!userIds.isEmpty()) {
+            userIds.forEach(users::invalidate);
+            usersByAccount.invalidateIf((accountId, user) -> userIds.contains(user.getId()));
+        }
+        if (!bankIds.isEmpty()) {
+            bankIds.forEach(banks::invalidate);
+            banksByAccount.invalidateIf((accountId, bank) -> bankIds.contains(bank.getId()));
+        }
+    }
+
+    private void dropAccounts() {
+        accounts.invalidateAll();
+        accountsByNumber.invalidateAll();
+        usersByAccount.invalidateAll();
+        banksByAccount.invalidateAll();
+        accountNumbers.clear();
+    }
+
+    public List<Cache<?, ?>> caches() {
+        return List.of(accounts, accountsByNumber, users, usersByAccount, banks, banksByAccount);
+    }
+
+    public List<CacheStats> stats() {
+        return caches().stream()
+                .map(Cache::stats)
+                .toList();
+    }
+}
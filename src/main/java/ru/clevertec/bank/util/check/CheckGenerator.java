@@ -3,6 +3,8 @@ package ru.clevertec.bank.util.check;
 import ru.clevertec.bank.exception.CheckGenerationException;
 import ru.clevertec.bank.entity.Account;
 import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.metrics.Timer;
 import lombok.experimental.UtilityClass;
 
 import java.io.IOException;
@@ -19,6 +21,8 @@ import java.util.List;
 @UtilityClass
 public class CheckGenerator {
 
+    private static final Timer timer = MetricsRegistry.global().timer(
+            "bank_generator_seconds", "Time spent generating checks and statements.", "generator", "check");
     private static Long checkCounter = 12345L;
 
     public static void generateCheck(
@@ -26,29 +30,31 @@ public class CheckGenerator {
             Account sender,
             Account receiver
     ) {
-        try {
-            List<String> lines = new ArrayList<>(List.of(
-                    "Banking check",
-                    "Check No: \t\t" + checkCounter,
-                    LocalDate.now() + "\t\t" + LocalTime.now().truncatedTo(ChronoUnit.MINUTES),
-                    "Type: \t\t" + transaction.getType()
-            ));
-            if ("TRANSFER".equals(transaction.getType())) {
-                lines.add("Sender: \t" + sender.getNumber());
-                lines.add("Receiver: \t" + receiver.getNumber());
-            } else if ("WITHDRAW".equals(transaction.getType())) {
-                lines.add("Client: \t" + sender.getNumber());
-            } else {
-                lines.add("Client: \t" + receiver.getNumber());
+        timer.time(() -> {
+            try {
+                List<String> lines = new ArrayList<>(List.of(
+                        "Banking check",
+                        "Check No: \t\t" + checkCounter,
+                        LocalDate.now() + "\t\t" + LocalTime.now().truncatedTo(ChronoUnit.MINUTES),
+                        "Type: \t\t" + transaction.getType()
+                ));
+                switch (transaction.getType()) {
+                    case TRANSFER -> {
+                        lines.add("Sender: \t" + sender.getNumber());
+                        lines.add("Receiver: \t" + receiver.getNumber());
+                    }
+                    case WITHDRAW -> lines.add("Client: \t" + sender.getNumber());
+                    case REFILL -> lines.add("Client: \t" + receiver.getNumber());
+                }
+                lines.add("Sum: \t\t" + transaction.getAmount() + " " + transaction.getCurrency());
+                String rootPath = System.getProperty("user.dir");
+                Path filePath = Paths.get(rootPath, "checks", "Check No" + checkCounter + ".txt");
+                Files.createDirectories(filePath.getParent());
+                Files.write(filePath, lines, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new CheckGenerationException("Unable to generate the check for this operation");
             }
-            lines.add("Sum: \t\t" + transaction.getAmount() + " " + transaction.getCurrency());
-            String rootPath = System.getProperty("user.dir");
-            Path filePath = Paths.get(rootPath, "checks", "Check No" + checkCounter + ".txt");
-            Files.createDirectories(filePath.getParent());
-            Files.write(filePath, lines, StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            throw new CheckGenerationException("Unable to generate the check for this operation");
-        }
-        ++checkCounter;
+            ++checkCounter;
+        });
     }
 }
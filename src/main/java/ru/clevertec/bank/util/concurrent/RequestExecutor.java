@@ -0,0 +1,192 @@
+package ru.clevertec.bank.util.concurrent;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.http.HttpServletRequest;
+import ru.clevertec.bank.exception.OutcomeUnknownException;
+import ru.clevertec.bank.exception.ServiceUnavailableException;
+import ru.clevertec.bank.util.yaml.ExecutionProperties;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the work of an asynchronous servlet request on a dedicated executor, so the container thread
+ * returns to the pool while the database and file work is done.
+ * The response is completed when the work returns. If the work throws, does not start within the timeout
+ * or finds the queue full, the request is dispatched to {@value #ERROR_PATH} with the usual error attributes,
+ * the last two as a {@link ServiceUnavailableException}; work that did not start never runs.
+ * Work that started but does not finish within the timeout is interrupted and answered the same way if the executor
+ * is interruptible. Otherwise, as for money operations, which JDBC may still commit after an interrupt, it is left
+ * to finish and the request is answered with an {@link OutcomeUnknownException}.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class RequestExecutor implements AutoCloseable {
+
+    private static final String ERROR_PATH = "/error";
+
+    private final String name;
+    private final ExecutorService executor;
+    private final Duration timeout;
+    private final boolean interruptible;
+
+    public RequestExecutor(String name, ExecutorService executor, Duration timeout) {
+        this(name, executor, timeout, true);
+    }
+
+    public RequestExecutor(String name, ExecutorService executor, Duration timeout, boolean interruptible) {
+        this.name = name;
+        this.executor = executor;
+        this.timeout = timeout;
+        this.interruptible = interruptible;
+    }
+
+    /**
+     * Creates an executor with a virtual thread per request if configured and available,
+     * or with the given number of platform threads and a bounded queue.
+     *
+     * @param name       The name of the executor, used for its threads.
+     * @param threads    The number of platform threads.
+     * @param properties The execution settings.
+     * @return The executor.
+     */
+    public static RequestExecutor of(String name, int threads, ExecutionProperties properties) {
+        return of(name, threads, properties, true);
+    }
+
+    /**
+     * Creates an executor with a virtual thread per request if configured and available,
+     * or with the given number of platform threads and a bounded queue.
+     *
+     * @param name          The name of the executor, used for its threads.
+     * @param threads       The number of platform threads.
+     * @param properties    The execution settings.
+     * @param interruptible Whether work that runs out of time may be interrupted and answered with status 503,
+     *                      {@code false} for work that must not be abandoned once it has started.
+     * @return The executor.
+     */
+    public static RequestExecutor of(String name, int threads, ExecutionProperties properties,
+                                     boolean interruptible) {
+        Duration timeout = Duration.ofMillis(properties.getAsyncTimeoutMillis());
+        if (properties.isVirtualThreads() && VirtualThreads.isSupported()) {
+            return new RequestExecutor(name, VirtualThreads.newExecutor(), timeout, interruptible);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ExecutorService executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()), threadFactory);
+        return new RequestExecutor(name, executor, timeout, interruptible);
+    }
+
+    /**
+     * Puts the request into asynchronous mode and runs the work on the executor.
+     *
+     * @param request The request, whose servlet must support asynchronous processing.
+     * @param work    The work producing the response.
+     */
+    public void execute(HttpServletRequest request, Runnable work) {
+        AsyncContext context = request.startAsync();
+        context.setTimeout(timeout.toMillis());
+        AtomicBoolean started = new AtomicBoolean();
+        AtomicBoolean finished = new AtomicBoolean();
+        AtomicReference<Future<?>> future = new AtomicReference<>();
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if (!finished.compareAndSet(false, true)) {
+                    return;
+                }
+                if (started.compareAndSet(false, true)) {
+                    cancel(future.get(), false);
+                    dispatchError(context, new ServiceUnavailableException(
+                            "The " + name + " request was not started in " + timeout.toMillis() + " ms"));
+                } else if (interruptible) {
+                    cancel(future.get(), true);
+                    dispatchError(context, new ServiceUnavailableException(
+                            "The " + name + " request was not processed in " + timeout.toMillis() + " ms"));
+                } else {
+                    dispatchError(context, new OutcomeUnknownException("The " + name
+                            + " request was still being processed after " + timeout.toMillis()
+                            + " ms and may yet succeed; repeat it with the same Idempotency-Key to get its outcome"));
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                if (finished.compareAndSet(false, true)) {
+                    if (started.compareAndSet(false, true)) {
+                        cancel(future.get(), false);
+                    } else if (interruptible) {
+                        cancel(future.get(), true);
+                    }
+                    context.complete();
+                }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        try {
+            future.set(executor.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    work.run();
+                    if (finished.compareAndSet(false, true)) {
+                        context.complete();
+                    }
+                } catch (RuntimeException e) {
+                    if (finished.compareAndSet(false, true)) {
+                        dispatchError(context, e);
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            if (finished.compareAndSet(false, true)) {
+                dispatchError(context, new ServiceUnavailableException("Too many " + name + " requests in progress"));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static void cancel(Future<?> future, boolean interrupt) {
+        if (future != null) {
+            future.cancel(interrupt);
+        }
+    }
+
+    private static void dispatchError(AsyncContext context, RuntimeException exception) {
+        HttpServletRequest request = (HttpServletRequest) context.getRequest();
+        request.setAttribute(RequestDispatcher.ERROR_EXCEPTION, exception);
+        request.setAttribute(RequestDispatcher.ERROR_EXCEPTION_TYPE, exception.getClass());
+        request.setAttribute(RequestDispatcher.ERROR_MESSAGE, exception.getMessage());
+        request.setAttribute(RequestDispatcher.ERROR_REQUEST_URI, request.getRequestURI());
+        context.dispatch(ERROR_PATH);
+    }
+}
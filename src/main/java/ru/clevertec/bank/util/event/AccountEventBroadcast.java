@@ -0,0 +1,237 @@
+package ru.clevertec.bank.util.event;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import ru.clevertec.bank.entity.AccountEvent;
+import ru.clevertec.bank.entity.AccountEventType;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.outbox.OutboxSink;
+import ru.clevertec.bank.util.yaml.EventStreamProperties;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Broadcasts the account events relayed from the outbox to every node through a Postgres {@code LISTEN/NOTIFY}
+ * channel, so the event streams of a node receive the events whichever node's relay published them.
+ * <p>
+ * As a sink of the relay, it sends each batch in one {@code pg_notify} round trip; a batch counts as delivered
+ * once it is sent. Every node, the sending one included, listens on one dedicated connection outside the pool
+ * and hands the events it receives to its local subscribers. Events sent while the listening connection of a node
+ * is closed are not seen by the streams of that node, as streams only get events published after they opened.
+ *
+ * @author Andrei Yuryeu
+ * @see AccountEventBus
+ */
+public class AccountEventBroadcast implements OutboxSink, AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(AccountEventBroadcast.class.getName());
+    private static final String NOTIFY_QUERY = "SELECT pg_notify(?, payload) FROM unnest(?::text[]) AS payload";
+    private static final int MAXIMUM_PAYLOAD_BYTES = 7900;
+
+    private final String channel;
+    private final int pollMillis;
+    private final long reconnectMillis;
+    private final DataSource dataSource;
+    private final DataSource listenDataSource;
+    private final OutboxSink subscribers;
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+    private volatile Thread listener;
+    private volatile Connection listenConnection;
+    private volatile boolean running;
+
+    /**
+     * @param properties       The event stream settings.
+     * @param dataSource       The pool to send notifications through.
+     * @param listenDataSource The source of the listening connection, which is held for as long as the broadcast runs.
+     * @param subscribers      The local subscribers, which get the events of every node.
+     */
+    public AccountEventBroadcast(
+            EventStreamProperties properties,
+            DataSource dataSource,
+            DataSource listenDataSource,
+            OutboxSink subscribers
+    ) {
+        this.channel = properties.getChannel();
+        this.pollMillis = (int) properties.getPollMillis();
+        this.reconnectMillis = properties.getReconnectMillis();
+        this.dataSource = dataSource;
+        this.listenDataSource = listenDataSource;
+        this.subscribers = subscribers;
+    }
+
+    /**
+     * Starts listening for the events of all nodes.
+     */
+    public synchronized void start() {
+        if (listener != null) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "account-event-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void publish(List<AccountEvent> events) throws SQLException {
+        if (events.isEmpty()) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(NOTIFY_QUERY)
+        ) {
+            preparedStatement.setString(1, channel);
+            preparedStatement.setArray(2, connection.createArrayOf("text", payloads(events).toArray()));
+            preparedStatement.executeQuery().close();
+        }
+    }
+
+    /**
+     * Hands the events of a burst of notifications to the local subscribers, in the order they were sent.
+     *
+     * @param payloads The payloads.
+     * @return The number of events handed over.
+     */
+    int apply(Collection<String> payloads) {
+        List<AccountEvent> events = new ArrayList<>();
+        for (String payload : payloads) {
+            for (String line : payload.split("\n")) {
+                try {
+                    events.add(decode(line));
+                } catch (IllegalArgumentException ex) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Unknown account event {0} was skipped", line);
+                }
+            }
+        }
+        if (events.isEmpty()) {
+            return 0;
+        }
+        try {
+            subscribers.publish(events);
+        } catch (Exception ex) {
+            metrics.counter("bank_event_broadcast_failures_total",
+                    "Broadcast account event batches the local subscribers failed on.").increment();
+            LOGGER.log(System.Logger.Level.WARNING, "Broadcast account events were not delivered locally", ex);
+        }
+        return events.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        Connection connection = listenConnection;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // the listener thread stops on its next poll anyway
+            }
+        }
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    /**
+     * Encodes an event as one line: {@code id accountId transactionId type amount currency createdDate},
+     * with {@code -} for an event without a transaction.
+     */
+    static String encode(AccountEvent event) {
+        return event.getId() + " " + event.getAccountId() + " "
+                + (event.getTransactionId() == null ? "-" : event.getTransactionId()) + " "
+                + event.getType() + " " + event.getAmount() + " " + event.getCurrency() + " " + event.getCreatedDate();
+    }
+
+    static AccountEvent decode(String line) {
+        String[] fields = line.split(" ");
+        if (fields.length != 7) {
+            throw new IllegalArgumentException("Account event " + line + " has " + fields.length + " fields");
+        }
+        try {
+            Currency currency = Currency.valueOf(fields[5]);
+            AccountEvent event = new AccountEvent(Long.valueOf(fields[1]),
+                    fields[2].equals("-") ? null : Long.valueOf(fields[2]), AccountEventType.valueOf(fields[3]),
+                    Money.of(new BigDecimal(fields[4]), currency), currency, LocalDateTime.parse(fields[6]));
+            event.setId(Long.valueOf(fields[0]));
+            return event;
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Account event " + line + " is malformed", ex);
+        }
+    }
+
+    /**
+     * Splits the encoded events into payloads Postgres accepts.
+     */
+    private static List<String> payloads(List<AccountEvent> events) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder();
+        for (AccountEvent event : events) {
+            String line = encode(event);
+            if (!payload.isEmpty() && payload.length() + 1 + line.length() > MAXIMUM_PAYLOAD_BYTES) {
+                payloads.add(payload.toString());
+                payload = new StringBuilder();
+            }
+            if (!payload.isEmpty()) {
+                payload.append('\n');
+            }
+            payload.append(line);
+        }
+        payloads.add(payload.toString());
+        return payloads;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = listenDataSource.getConnection();
+                 Statement statement = connection.createStatement()
+            ) {
+                listenConnection = connection;
+                statement.execute("LISTEN \"" + channel.replace("\"", "\"\"") + "\"");
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    receive(pgConnection);
+                }
+            } catch (SQLException | RuntimeException ex) {
+                if (running) {
+                    metrics.counter("bank_event_broadcast_reconnects_total",
+                            "Times the account event listener lost its connection.").increment();
+                    LOGGER.log(System.Logger.Level.WARNING, "Account event listener lost its connection", ex);
+                    sleep(reconnectMillis);
+                }
+            } finally {
+                listenConnection = null;
+            }
+        }
+    }
+
+    private void receive(PGConnection connection) throws SQLException {
+        PGNotification[] notifications = connection.getNotifications(pollMillis);
+        if (notifications == null || notifications.length == 0) {
+            return;
+        }
+        List<String> payloads = new ArrayList<>();
+        for (PGNotification notification : notifications) {
+            payloads.add(notification.getParameter());
+        }
+        apply(payloads);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package ru.clevertec.bank.util.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ru.clevertec.bank.entity.AccountEvent;
+import ru.clevertec.bank.exception.ServiceUnavailableException;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.outbox.OutboxSubscriber;
+import ru.clevertec.bank.util.yaml.EventStreamProperties;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans the account events relayed from the outbox out to the Server-Sent Events streams open for their accounts.
+ * Streams run on asynchronous requests with non-blocking output, so an open stream costs a buffer and a socket
+ * but no thread. Each event is encoded once and queued in the bounded buffer of every stream of its account;
+ * a stream whose buffer is full either misses the event or is closed, depending on {@code overflow}.
+ * The bus never rejects a batch, so a slow client cannot hold back the outbox. Every {@code heartbeatSeconds}
+ * a comment is sent to all streams, which keeps proxies from timing them out and closes those of gone clients.
+ *
+ * @author Andrei Yuryeu
+ * @see EventStream
+ */
+public class AccountEventBus implements OutboxSubscriber, AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(AccountEventBus.class.getName());
+    private static final byte[] CONNECTED = ": connected\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEARTBEAT = ": heartbeat\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper;
+    private final int maximumStreams;
+    private final int bufferSize;
+    private final OverflowPolicy overflow;
+    private final long heartbeatSeconds;
+    private final Map<Long, Set<EventStream>> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+    private volatile ScheduledExecutorService scheduler;
+
+    public AccountEventBus(EventStreamProperties properties, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.maximumStreams = properties.getMaximumStreams();
+        this.bufferSize = properties.getBufferSize();
+        this.overflow = properties.getOverflow();
+        this.heartbeatSeconds = properties.getHeartbeatSeconds();
+        metrics.register("bank_event_streams", "Open account event streams.",
+                MetricsRegistry.Type.GAUGE, open::get);
+    }
+
+    /**
+     * Schedules the heartbeats at the configured interval.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-stream-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Puts the request into asynchronous mode and streams the events of the account to it until the client
+     * disconnects or the stream overflows.
+     *
+     * @param request   The request, whose servlet must support asynchronous processing.
+     * @param response  The response, not yet written to.
+     * @param accountId The id of the account.
+     * @throws IOException                 If the response could not be switched to non-blocking output.
+     * @throws ServiceUnavailableException If the maximum number of streams is open.
+     */
+    public void open(HttpServletRequest request, HttpServletResponse response, long accountId) throws IOException {
+        if (open.incrementAndGet() > maximumStreams) {
+            open.decrementAndGet();
+            throw new ServiceUnavailableException("Too many account event streams are open");
+        }
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Cache-Control", "no-cache");
+        AsyncContext context;
+        try {
+            context = request.startAsync();
+        } catch (IllegalStateException ex) {
+            open.decrementAndGet();
+            throw ex;
+        }
+        context.setTimeout(0);
+        EventStream stream = new EventStream(accountId, context, bufferSize, this::remove);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                stream.close();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                stream.close();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                stream.close();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        streams.compute(accountId, (id, subscribed) -> {
+            Set<EventStream> added = subscribed == null ? ConcurrentHashMap.newKeySet() : subscribed;
+            added.add(stream);
+            return added;
+        });
+        stream.send(CONNECTED);
+        try {
+            stream.start();
+        } catch (IOException | RuntimeException ex) {
+            stream.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void onEvents(List<AccountEvent> events) {
+        for (AccountEvent event : events) {
+            Set<EventStream> subscribed = streams.get(event.getAccountId());
+            if (subscribed == null || subscribed.isEmpty()) {
+                continue;
+            }
+            byte[] frame;
+            try {
+                frame = encode(event);
+            } catch (JsonProcessingException ex) {
+                LOGGER.log(System.Logger.Level.WARNING, "Account event " + event.getId() + " was not encoded", ex);
+                continue;
+            }
+            for (EventStream stream : subscribed) {
+                send(stream, frame);
+            }
+            metrics.counter("bank_event_stream_events_total", "Account events sent to event streams.")
+                    .add(subscribed.size());
+        }
+    }
+
+    /**
+     * Returns the number of open streams.
+     *
+     * @return The number of streams.
+     */
+    public int getOpenStreams() {
+        return open.get();
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        streams.values().forEach(subscribed -> subscribed.forEach(EventStream::close));
+    }
+
+    /**
+     * Encodes an event as a frame whose id is the id of the event, so a client can skip an event
+     * it already received, as the outbox delivers events at least once.
+     */
+    private byte[] encode(AccountEvent event) throws JsonProcessingException {
+        return ("id: " + event.getId() + "\n"
+                + "event: " + event.getType() + "\n"
+                + "data: " + objectMapper.writeValueAsString(event) + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void send(EventStream stream, byte[] frame) {
+        if (stream.send(frame)) {
+            return;
+        }
+        metrics.counter("bank_event_stream_overflows_total", "Frames that did not fit the buffer of a stream.",
+                "policy", overflow.name()).increment();
+        if (overflow == OverflowPolicy.DISCONNECT) {
+            stream.close();
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            streams.values().forEach(subscribed -> subscribed.forEach(stream -> send(stream, HEARTBEAT)));
+        } catch (RuntimeException ex) {
+            LOGGER.log(System.Logger.Level.WARNING, "Heartbeat of account event streams failed", ex);
+        }
+    }
+
+    private void remove(EventStream stream) {
+        streams.computeIfPresent(stream.getAccountId(), (id, subscribed) -> {
+            subscribed.remove(stream);
+            return subscribed.isEmpty() ? null : subscribed;
+        });
+        open.decrementAndGet();
+    }
+}
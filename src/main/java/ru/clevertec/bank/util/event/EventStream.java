@@ -0,0 +1,115 @@
+package ru.clevertec.bank.util.event;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * One open {@code text/event-stream} response. Frames are queued in a bounded buffer and written with
+ * non-blocking output, so an idle or slow client never holds a thread: whatever the socket does not take
+ * right away is written when the container reports it writable again.
+ *
+ * @author Andrei Yuryeu
+ */
+final class EventStream implements WriteListener {
+
+    private final long accountId;
+    private final AsyncContext context;
+    private final BlockingQueue<byte[]> buffer;
+    private final Consumer<EventStream> onClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private ServletOutputStream out;
+
+    EventStream(long accountId, AsyncContext context, int bufferSize, Consumer<EventStream> onClose) {
+        this.accountId = accountId;
+        this.context = context;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.onClose = onClose;
+    }
+
+    long getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * Switches the response to non-blocking output, after which the container starts writing the buffer.
+     *
+     * @throws IOException If the output stream is not available.
+     */
+    synchronized void start() throws IOException {
+        out = context.getResponse().getOutputStream();
+        out.setWriteListener(this);
+    }
+
+    /**
+     * Queues a frame and writes as much of the buffer as the socket takes.
+     *
+     * @param frame The encoded frame, shared by all streams it is sent to.
+     * @return False if the buffer is full and the frame was not queued.
+     */
+    boolean send(byte[] frame) {
+        if (closed.get()) {
+            return true;
+        }
+        if (!buffer.offer(frame)) {
+            return false;
+        }
+        flush();
+        return true;
+    }
+
+    @Override
+    public void onWritePossible() {
+        flush();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        close();
+    }
+
+    /**
+     * Completes the response and stops taking frames. Closing twice has no effect.
+     */
+    void close() {
+        if (closed.compareAndSet(false, true)) {
+            buffer.clear();
+            onClose.accept(this);
+            try {
+                context.complete();
+            } catch (IllegalStateException ignored) {
+                // the container already completed the request
+            }
+        }
+    }
+
+    private synchronized void flush() {
+        if (out == null || closed.get()) {
+            return;
+        }
+        try {
+            boolean written = false;
+            while (out.isReady()) {
+                byte[] frame = buffer.poll();
+                if (frame == null) {
+                    if (!written) {
+                        return;
+                    }
+                    out.flush();
+                    written = false;
+                } else {
+                    out.write(frame);
+                    written = true;
+                }
+            }
+        } catch (IOException | IllegalStateException ex) {
+            close();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.clevertec.bank.util.event;
+
+/**
+ * What happens to an account event stream whose buffer is full because its client reads too slowly.
+ *
+ * @author Andrei Yuryeu
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The event is not sent to the stream, which stays open.
+     */
+    DROP,
+
+    /**
+     * The stream is closed, so the client reconnects and reads the balance again.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,115 @@
+package ru.clevertec.bank.util.exchange;
+
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.ExchangeRate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable interval index over exchange rate versions.
+ * For every currency pair the versions are kept as parallel arrays sorted by the moment they become effective,
+ * in epoch microseconds like the {@code timestamp} column they are read from, so the rate in force at any instant
+ * is found with a binary search and versions recorded within the same second keep their order.
+ *
+ * @author Andrei Yuryeu
+ * @see ExchangeRate
+ */
+public final class ExchangeRateHistory {
+
+    private static final int SIZE = Currency.values().length;
+    private static final long[] NO_INSTANTS = new long[0];
+    private static final BigDecimal[] NO_RATES = new BigDecimal[0];
+
+    private final long[][] effectiveFrom;
+    private final BigDecimal[][] rates;
+
+    private ExchangeRateHistory(long[][] effectiveFrom, BigDecimal[][] rates) {
+        this.effectiveFrom = effectiveFrom;
+        this.rates = rates;
+    }
+
+    /**
+     * Builds the index from rate versions given in any order.
+     *
+     * @param versions The exchange rate versions.
+     * @return The interval index.
+     */
+    public static ExchangeRateHistory of(List<ExchangeRate> versions) {
+        List<List<ExchangeRate>> byPair = new ArrayList<>(SIZE * SIZE);
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            byPair.add(new ArrayList<>());
+        }
+        for (ExchangeRate version : versions) {
+            byPair.get(index(version.getCurrencyFrom(), version.getCurrencyTo())).add(version);
+        }
+        long[][] effectiveFrom = new long[SIZE * SIZE][];
+        BigDecimal[][] rates = new BigDecimal[SIZE * SIZE][];
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            List<ExchangeRate> pair = byPair.get(i);
+            pair.sort(Comparator.comparing(ExchangeRate::getEffectiveFrom));
+            effectiveFrom[i] = pair.isEmpty() ? NO_INSTANTS : new long[pair.size()];
+            rates[i] = pair.isEmpty() ? NO_RATES : new BigDecimal[pair.size()];
+            for (int j = 0; j < pair.size(); j++) {
+                effectiveFrom[i][j] = toInstant(pair.get(j).getEffectiveFrom());
+                rates[i][j] = pair.get(j).getRate();
+            }
+        }
+        return new ExchangeRateHistory(effectiveFrom, rates);
+    }
+
+    /**
+     * Returns the rate that was in force for a currency pair at the given moment.
+     *
+     * @param from The source currency.
+     * @param to   The target currency.
+     * @param at   The moment of interest.
+     * @return The rate, {@link BigDecimal#ONE} for the same currency, or null if no version was effective yet.
+     */
+    public BigDecimal rateAt(Currency from, Currency to, LocalDateTime at) {
+        if (from == to) {
+            return BigDecimal.ONE;
+        }
+        int pair = index(from, to);
+        int position = Arrays.binarySearch(effectiveFrom[pair], toInstant(at));
+        int floor = position >= 0 ? position : -position - 2;
+        return floor >= 0 ? rates[pair][floor] : null;
+    }
+
+    /**
+     * Returns the most recent version of the rate of a currency pair, whenever it becomes effective.
+     *
+     * @param from The source currency.
+     * @param to   The target currency.
+     * @return The rate, {@link BigDecimal#ONE} for the same currency, or null if the pair has no version.
+     */
+    public BigDecimal latestRate(Currency from, Currency to) {
+        if (from == to) {
+            return BigDecimal.ONE;
+        }
+        BigDecimal[] versions = rates[index(from, to)];
+        return versions.length == 0 ? null : versions[versions.length - 1];
+    }
+
+    /**
+     * Checks whether the index holds no versions at all.
+     *
+     * @return True if there are no versions.
+     */
+    public boolean isEmpty() {
+        return Arrays.stream(effectiveFrom).allMatch(instants -> instants.length == 0);
+    }
+
+    private static int index(Currency from, Currency to) {
+        return from.ordinal() * SIZE + to.ordinal();
+    }
+
+    private static long toInstant(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1_000;
+    }
+}
@@ -0,0 +1,103 @@
+package ru.clevertec.bank.util.exchange;
+
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.ExchangeRate;
+import ru.clevertec.bank.exception.RepositoryException;
+import ru.clevertec.bank.repository.ExchangeRateRepository;
+import ru.clevertec.bank.util.yaml.PropertiesProvider;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Resolves the exchange rate that was in force at a given moment.
+ * Rate versions are read from the {@code exchange_rates} table into an immutable {@link ExchangeRateHistory},
+ * which is published through a volatile reference and replaced on {@link #refresh()}.
+ * Until the history is loaded, or for moments before the first stored version,
+ * the rates of the current configuration are used.
+ *
+ * @author Andrei Yuryeu
+ * @see ExchangeRateHistory
+ * @see ExchangeRateRepository
+ */
+public class ExchangeRateProvider {
+
+    /**
+     * Scale of stored rates, matching the {@code numeric(19,10)} columns.
+     */
+    public static final int RATE_SCALE = 10;
+
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private final ExchangeRateRepository exchangeRateRepository;
+    private final PropertiesProvider propertiesProvider;
+    private volatile ExchangeRateHistory history = ExchangeRateHistory.of(List.of());
+
+    public ExchangeRateProvider(ExchangeRateRepository exchangeRateRepository, PropertiesProvider propertiesProvider) {
+        this.exchangeRateRepository = exchangeRateRepository;
+        this.propertiesProvider = propertiesProvider;
+    }
+
+    /**
+     * Returns the rate for converting between currencies that was in force at the given moment.
+     *
+     * @param from The source currency.
+     * @param to   The target currency.
+     * @param at   The moment of interest.
+     * @return The exchange rate, {@link BigDecimal#ONE} for the same currency.
+     */
+    public BigDecimal rateAt(Currency from, Currency to, LocalDateTime at) {
+        BigDecimal rate = history.rateAt(from, to, at);
+        if (rate != null) {
+            return rate;
+        }
+        return propertiesProvider.getExchangeRates().rate(from, to).setScale(RATE_SCALE, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Reloads the rate history from the database.
+     *
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public void refresh() throws RepositoryException {
+        history = ExchangeRateHistory.of(exchangeRateRepository.findHistory());
+    }
+
+    /**
+     * Stores a new version for every pair whose configured rate changed and differs from the latest stored version,
+     * and reloads the history. The history is reloaded first, so versions stored by other nodes are compared against.
+     * A pair whose configured rate did not change is only stored if it has no version yet: a node started with
+     * an outdated configuration therefore never replaces a newer rate recorded by another node.
+     *
+     * @param previousRates The rates configured before, or null when the configuration is first loaded.
+     * @param exchangeRates The rates to record.
+     * @param effectiveFrom The moment the rates become effective.
+     * @throws RepositoryException If there is an error during the repository operation.
+     */
+    public void record(ExchangeRates previousRates, ExchangeRates exchangeRates, LocalDateTime effectiveFrom)
+            throws RepositoryException {
+        refresh();
+        ExchangeRateHistory current = history;
+        boolean changed = false;
+        for (Currency from : CURRENCIES) {
+            for (Currency to : CURRENCIES) {
+                if (from == to) {
+                    continue;
+                }
+                BigDecimal rate = exchangeRates.rate(from, to).setScale(RATE_SCALE, RoundingMode.HALF_EVEN);
+                BigDecimal latest = current.latestRate(from, to);
+                boolean configured = previousRates != null && previousRates.rate(from, to)
+                        .setScale(RATE_SCALE, RoundingMode.HALF_EVEN).compareTo(rate) != 0;
+                if (latest == null || configured && latest.compareTo(rate) != 0) {
+                    exchangeRateRepository.save(new ExchangeRate(from, to, rate, effectiveFrom));
+                    changed = true;
+                }
+            }
+        }
+        if (changed) {
+            refresh();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package ru.clevertec.bank.util.exchange;
+
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Map;
+
+/**
+ * Immutable matrix of exchange rates between all supported currencies.
+ * The matrix is built once from the configured pairs: same-currency pairs are set to one, missing pairs are
+ * derived from the inverse quote or triangulated through the base currency. Lookups are plain array reads
+ * indexed by {@link Currency#ordinal()}, so they neither concatenate strings nor allocate.
+ *
+ * @author Andrei Yuryeu
+ * @see Currency
+ */
+public final class ExchangeRates {
+
+    /**
+     * Precision and rounding applied to derived (inverted or triangulated) rates.
+     */
+    public static final MathContext RATE_CONTEXT = new MathContext(12, RoundingMode.HALF_EVEN);
+
+    /**
+     * Scale of monetary amounts, matching the {@code numeric(10,2)} columns.
+     */
+    public static final int MONEY_SCALE = Money.SCALE;
+
+    /**
+     * Rounding of converted amounts, matching the rounding Postgres applies to {@code numeric} columns.
+     */
+    public static final RoundingMode MONEY_ROUNDING = Money.ROUNDING;
+
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final int SIZE = CURRENCIES.length;
+
+    private final BigDecimal[] matrix;
+    private final Currency baseCurrency;
+
+    private ExchangeRates(BigDecimal[] matrix, Currency baseCurrency) {
+        this.matrix = matrix;
+        this.baseCurrency = baseCurrency;
+    }
+
+    /**
+     * Builds the rate matrix from the configured pairs.
+     *
+     * @param rates        Rates keyed by concatenated currency codes, e.g. {@code USDBYN}.
+     * @param baseCurrency The currency used to triangulate pairs that are not quoted directly.
+     * @return The complete exchange-rate matrix.
+     * @throws IllegalArgumentException If a pair is malformed, a rate is not positive or a pair cannot be derived.
+     */
+    public static ExchangeRates of(Map<String, BigDecimal> rates, Currency baseCurrency) {
+        BigDecimal[] matrix = new BigDecimal[SIZE * SIZE];
+        for (Currency currency : CURRENCIES) {
+            matrix[index(currency.ordinal(), currency.ordinal())] = BigDecimal.ONE;
+        }
+        if (rates != null) {
+            rates.forEach((pair, rate) -> putQuoted(matrix, pair, rate));
+        }
+        fillInverses(matrix);
+        triangulate(matrix, baseCurrency.ordinal());
+        for (int i = 0; i < matrix.length; i++) {
+            if (matrix[i] == null) {
+                throw new IllegalArgumentException("No exchange rate can be derived for "
+                        + CURRENCIES[i / SIZE] + CURRENCIES[i % SIZE]);
+            }
+        }
+        return new ExchangeRates(matrix, baseCurrency);
+    }
+
+    /**
+     * Returns the rate for converting from one currency into another.
+     *
+     * @param from The source currency.
+     * @param to   The target currency.
+     * @return The exchange rate, {@link BigDecimal#ONE} for the same currency.
+     */
+    public BigDecimal rate(Currency from, Currency to) {
+        return matrix[index(from.ordinal(), to.ordinal())];
+    }
+
+    /**
+     * Returns the rate for converting between currencies given by their ordinals.
+     *
+     * @param fromOrdinal The ordinal of the source currency.
+     * @param toOrdinal   The ordinal of the target currency.
+     * @return The exchange rate.
+     */
+    public BigDecimal rate(int fromOrdinal, int toOrdinal) {
+        return matrix[index(fromOrdinal, toOrdinal)];
+    }
+
+    /**
+     * Converts an amount into another currency and rounds it to the money scale.
+     *
+     * @param amount The amount in the source currency.
+     * @param from   The source currency.
+     * @param to     The target currency.
+     * @return The converted amount, or the amount itself if the currencies are equal.
+     */
+    public BigDecimal convert(BigDecimal amount, Currency from, Currency to) {
+        if (from == to) {
+            return amount;
+        }
+        return convert(amount, rate(from, to));
+    }
+
+    /**
+     * Converts an amount with an already resolved rate and rounds it to the money scale.
+     *
+     * @param amount The amount in the source currency.
+     * @param rate   The exchange rate to apply.
+     * @return The converted amount.
+     */
+    public static BigDecimal convert(BigDecimal amount, BigDecimal rate) {
+        return amount.multiply(rate).setScale(MONEY_SCALE, MONEY_ROUNDING);
+    }
+
+    public Currency getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    private static void putQuoted(BigDecimal[] matrix, String pair, BigDecimal rate) {
+        if (pair == null || pair.length() != 6) {
+            throw new IllegalArgumentException("Invalid currency pair: " + pair);
+        }
+        if (rate == null || rate.signum() <= 0) {
+            throw new IllegalArgumentException("Exchange rate for " + pair + " must be positive");
+        }
+        int from = Currency.valueOf(pair.substring(0, 3)).ordinal();
+        int to = Currency.valueOf(pair.substring(3)).ordinal();
+        if (from != to) {
+            matrix[index(from, to)] = rate;
+        }
+    }
+
+    private static void fillInverses(BigDecimal[] matrix) {
+        for (int from = 0; from < SIZE; from++) {
+            for (int to = 0; to < SIZE; to++) {
+                BigDecimal reverse = matrix[index(to, from)];
+                if (matrix[index(from, to)] == null && reverse != null) {
+                    matrix[index(from, to)] = BigDecimal.ONE.divide(reverse, RATE_CONTEXT);
+                }
+            }
+        }
+    }
+
+    private static void triangulate(BigDecimal[] matrix, int base) {
+        for (int from = 0; from < SIZE; from++) {
+            for (int to = 0; to < SIZE; to++) {
+                BigDecimal toBase = matrix[index(from, base)];
+                BigDecimal fromBase = matrix[index(base, to)];
+                if (matrix[index(from, to)] == null && toBase != null && fromBase != null) {
+                    matrix[index(from, to)] = toBase.multiply(fromBase, RATE_CONTEXT);
+                }
+            }
+        }
+    }
+
+    private static int index(int from, int to) {
+        return from * SIZE + to;
+    }
+}
@@ -0,0 +1,96 @@
+package ru.clevertec.bank.util.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.clevertec.bank.dto.TransactionResponseDto;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Formats of the transaction export, each writing one line per transaction.
+ *
+ * @author Andrei Yuryeu
+ */
+public enum ExportFormat {
+
+    /**
+     * Comma-separated values with a header line. No value contains a comma, a quote or a line break,
+     * so none is quoted; amounts are plain decimals and dates ISO-8601.
+     */
+    CSV("text/csv", "csv") {
+        @Override
+        public String header() {
+            return "id,type,amount,currency,sender_account_id,receiver_account_id,created_date,exchange_rate,"
+                    + "converted_amount,converted_currency\n";
+        }
+
+        @Override
+        public void write(Writer writer, TransactionResponseDto transaction, ObjectMapper objectMapper)
+                throws IOException {
+            writer.append(String.valueOf(transaction.id())).append(',')
+                    .append(transaction.type().name()).append(',')
+                    .append(transaction.amount().toString()).append(',')
+                    .append(transaction.currency().name()).append(',')
+                    .append(idOf(transaction.senderAccountId())).append(',')
+                    .append(idOf(transaction.receiverAccountId())).append(',')
+                    .append(transaction.createdDate().toString()).append(',')
+                    .append(transaction.exchangeRate().toPlainString()).append(',')
+                    .append(transaction.convertedAmount().toString()).append(',')
+                    .append(transaction.convertedAmount().currency().name()).append('\n');
+        }
+    },
+
+    /**
+     * One JSON object per line, as the transactions are returned by {@code GET /transactions/{id}}.
+     */
+    NDJSON("application/x-ndjson", "ndjson") {
+        @Override
+        public String header() {
+            return "";
+        }
+
+        @Override
+        public void write(Writer writer, TransactionResponseDto transaction, ObjectMapper objectMapper)
+                throws IOException {
+            writer.append(objectMapper.writeValueAsString(transaction)).append('\n');
+        }
+    };
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Returns what precedes the first transaction, which is left out when an export is resumed.
+     *
+     * @return The header, or an empty string.
+     */
+    public abstract String header();
+
+    /**
+     * Writes one transaction as a line.
+     *
+     * @param writer       The writer.
+     * @param transaction  The transaction.
+     * @param objectMapper The mapper for formats written as JSON.
+     * @throws IOException If the line could not be written.
+     */
+    public abstract void write(Writer writer, TransactionResponseDto transaction, ObjectMapper objectMapper)
+            throws IOException;
+
+    private static String idOf(Long id) {
+        return id == null ? "" : id.toString();
+    }
+}
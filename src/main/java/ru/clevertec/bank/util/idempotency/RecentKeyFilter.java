@@ -0,0 +1,151 @@
+package ru.clevertec.bank.util.idempotency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compact in-memory filter of recently used idempotency keys, answering whether a key may have been seen.
+ * It is a Bloom filter split into two generations: keys are added to the current one, and once it holds
+ * the configured number of keys it becomes the previous one and the oldest is dropped. A key is therefore
+ * remembered for at least one generation, at a fixed cost of two bit arrays and no per-key objects.
+ * A negative answer is certain only for keys added within the last two generations, so callers use the filter
+ * to skip lookups of fresh keys and rely on the database for everything else.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class RecentKeyFilter {
+
+    private static final int MIN_BITS = Long.SIZE;
+    private static final int MAX_BITS = 1 << 30;
+
+    private final boolean enabled;
+    private final int bits;
+    private final int hashes;
+    private final long keysPerGeneration;
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * Creates a filter.
+     *
+     * @param bits              The number of bits in every generation, rounded up to a power of two.
+     * @param hashes            The number of bits set for every key.
+     * @param keysPerGeneration The number of keys added to a generation before it is rotated.
+     */
+    public RecentKeyFilter(int bits, int hashes, long keysPerGeneration) {
+        this(true, bits, hashes, keysPerGeneration);
+    }
+
+    private RecentKeyFilter(boolean enabled, int bits, int hashes, long keysPerGeneration) {
+        if (hashes < 1 || keysPerGeneration < 1) {
+            throw new IllegalArgumentException("Hashes and keys per generation must be positive");
+        }
+        this.enabled = enabled;
+        this.bits = Math.max(MIN_BITS, Integer.highestOneBit(Math.min(MAX_BITS, Math.max(1, bits - 1))) << 1);
+        this.hashes = hashes;
+        this.keysPerGeneration = keysPerGeneration;
+        this.current = new Generation(enabled ? this.bits : MIN_BITS);
+        this.previous = new Generation(enabled ? this.bits : MIN_BITS);
+    }
+
+    /**
+     * Creates a filter that remembers nothing and reports every key as possibly seen.
+     *
+     * @return The disabled filter.
+     */
+    public static RecentKeyFilter disabled() {
+        return new RecentKeyFilter(false, MIN_BITS, 1, Long.MAX_VALUE);
+    }
+
+    /**
+     * Tells whether the key may have been added to one of the two kept generations.
+     *
+     * @param key The key.
+     * @return False if the key was certainly not added since the previous generation started, otherwise true.
+     */
+    public boolean mightContain(String key) {
+        if (!enabled) {
+            return true;
+        }
+        long hash = hash(key);
+        return current.contains(hash) || previous.contains(hash);
+    }
+
+    /**
+     * Adds the key to the current generation, rotating it once it is full.
+     *
+     * @param key The key.
+     */
+    public void add(String key) {
+        if (!enabled) {
+            return;
+        }
+        Generation generation = current;
+        generation.add(hash(key));
+        if (generation.added.incrementAndGet() == keysPerGeneration) {
+            rotate(generation);
+        }
+    }
+
+    private synchronized void rotate(Generation full) {
+        if (current == full) {
+            previous = full;
+            current = new Generation(bits);
+        }
+    }
+
+    /**
+     * FNV-1a over the characters of the key, finished with the MurmurHash3 mixer
+     * so that both halves of the result are usable as independent hashes.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private final class Generation {
+
+        private final AtomicLongArray words;
+        private final int mask;
+        private final AtomicLong added = new AtomicLong();
+
+        private Generation(int bits) {
+            this.words = new AtomicLongArray(bits / Long.SIZE);
+            this.mask = bits - 1;
+        }
+
+        private void add(long hash) {
+            int first = (int) hash;
+            int second = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < hashes; i++) {
+                int bit = (first + i * second) & mask;
+                long flag = 1L << bit;
+                int index = bit >>> 6;
+                if ((words.get(index) & flag) == 0) {
+                    words.getAndAccumulate(index, flag, (word, set) -> word | set);
+                }
+            }
+        }
+
+        private boolean contains(long hash) {
+            int first = (int) hash;
+            int second = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < hashes; i++) {
+                int bit = (first + i * second) & mask;
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ru.clevertec.bank.util.jdbc;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * {@link DataSource} that lets at most as many callers hold a connection as the pool behind it has,
+ * and at most {@code maximumWaiters} wait for one. With request threads capped by Tomcat this never
+ * triggers; with a virtual thread per request, thousands of callers would otherwise queue inside the pool
+ * and each time out on its own. Here the excess fails at once, and the waiters that are admitted are
+ * served in arrival order.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class LimitingDataSource implements DataSource {
+
+    private final DataSource delegate;
+    private final Semaphore permits;
+    private final int maximumWaiters;
+    private final Duration timeout;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * @param delegate       The pooled data source.
+     * @param maximumHolders The number of connections that may be held at once, the size of the pool.
+     * @param maximumWaiters The number of callers that may wait for a connection.
+     * @param timeout        How long a caller waits before giving up.
+     */
+    public LimitingDataSource(DataSource delegate, int maximumHolders, int maximumWaiters, Duration timeout) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maximumHolders, true);
+        this.maximumWaiters = maximumWaiters;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the number of callers currently waiting for a connection.
+     *
+     * @return The number of waiters.
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return releasing(delegate.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return releasing(delegate.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    private void acquire() throws SQLException {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (waiting.incrementAndGet() > maximumWaiters) {
+            waiting.decrementAndGet();
+            throw new SQLTransientConnectionException("Too many callers waiting for a connection");
+        }
+        try {
+            if (!permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new SQLTransientConnectionException("No connection available in " + timeout.toMillis() + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private Connection releasing(Connection target) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(LimitingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,233 @@
+package ru.clevertec.bank.util.jdbc;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * {@link DataSource} that times every statement executed through its connections into {@link QueryStatistics}.
+ * Connections, statements and result sets are JDK proxies around the driver objects; everything that is not
+ * an execution is passed straight through, including {@code unwrap}, so driver extensions stay reachable.
+ * Rows are counted as result sets are read, so a query whose rows are never read is counted with none.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class MonitoredDataSource implements DataSource {
+
+    private final DataSource delegate;
+    private final QueryStatistics statistics;
+
+    public MonitoredDataSource(DataSource delegate, QueryStatistics statistics) {
+        this.delegate = delegate;
+        this.statistics = statistics;
+    }
+
+    public QueryStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(delegate.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(delegate.getConnection(username, password));
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    private Connection connection(Connection target) {
+        return proxy(Connection.class, new ConnectionHandler(target));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(MonitoredDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = MonitoredDataSource.invoke(target, method, args);
+            return switch (method.getName()) {
+                case "createStatement" -> proxy(Statement.class,
+                        new StatementHandler((Statement) result, null, (Connection) proxy));
+                case "prepareStatement" -> proxy(PreparedStatement.class,
+                        new StatementHandler((Statement) result, (String) args[0], (Connection) proxy));
+                case "prepareCall" -> proxy(CallableStatement.class,
+                        new StatementHandler((Statement) result, (String) args[0], (Connection) proxy));
+                default -> result;
+            };
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String sql;
+        private final Connection connection;
+        private final Map<Integer, String> binds = new TreeMap<>();
+
+        private StatementHandler(Statement target, String sql, Connection connection) {
+            this.target = target;
+            this.sql = sql;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                binds.put(index, args[1] == null || name.equals("setNull") ? "null" : args[1].getClass().getSimpleName());
+            } else if (name.equals("clearParameters")) {
+                binds.clear();
+            } else if (name.equals("getConnection")) {
+                return connection;
+            }
+            Object result = MonitoredDataSource.invoke(target, method, args);
+            if (name.equals("getResultSet") && result != null) {
+                return resultSet((ResultSet) result, sql);
+            }
+            return result;
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String executed = sql != null ? sql : args != null && args.length > 0 ? (String) args[0] : null;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = MonitoredDataSource.invoke(target, method, args);
+            } catch (Throwable ex) {
+                statistics.recordExecution(executed, System.nanoTime() - start, 0, true, binds);
+                throw ex;
+            }
+            long elapsed = System.nanoTime() - start;
+            statistics.recordExecution(executed, elapsed, changedRows(result), false, binds);
+            return result instanceof ResultSet resultSet ? resultSet(resultSet, executed) : result;
+        }
+
+        private long changedRows(Object result) {
+            if (result instanceof Number count) {
+                return Math.max(0, count.longValue());
+            }
+            long rows = 0;
+            if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    rows += Math.max(0, count);
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    rows += Math.max(0, count);
+                }
+            }
+            return rows;
+        }
+    }
+
+    private ResultSet resultSet(ResultSet target, String sql) {
+        return proxy(ResultSet.class, new ResultSetHandler(target, sql));
+    }
+
+    private final class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet target;
+        private final String sql;
+        private long rows;
+        private boolean recorded;
+
+        private ResultSetHandler(ResultSet target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                record();
+            }
+            Object result = MonitoredDataSource.invoke(target, method, args);
+            if (name.equals("next")) {
+                if ((Boolean) result) {
+                    rows++;
+                } else {
+                    record();
+                }
+            }
+            return result;
+        }
+
+        private void record() {
+            if (!recorded) {
+                recorded = true;
+                statistics.recordRows(sql, rows);
+            }
+        }
+    }
+}
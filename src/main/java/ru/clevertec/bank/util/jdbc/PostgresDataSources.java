@@ -0,0 +1,54 @@
+package ru.clevertec.bank.util.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.postgresql.ds.PGSimpleDataSource;
+import ru.clevertec.bank.util.yaml.PostgresProperties;
+
+/**
+ * Factory of the Postgres data sources used by the application.
+ * Connections are pooled, so the statements pgJDBC prepares on the server outlive a single repository call:
+ * with {@code prepareThreshold} 1 every query constant is parsed and planned once per pooled connection
+ * and then only bound and executed, instead of being re-parsed on a fresh connection by every call.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class PostgresDataSources {
+
+    private static final String POOL_NAME = "bank";
+
+    private PostgresDataSources() {
+    }
+
+    /**
+     * Creates a driver data source that opens a new physical connection on every call.
+     *
+     * @param properties The connection and statement cache settings.
+     * @return The data source.
+     */
+    public static PGSimpleDataSource simple(PostgresProperties properties) {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setURL(properties.getUrl());
+        dataSource.setUser(properties.getUser());
+        dataSource.setPassword(properties.getPassword());
+        dataSource.setPrepareThreshold(properties.getPrepareThreshold());
+        dataSource.setPreparedStatementCacheQueries(properties.getPreparedStatementCacheQueries());
+        dataSource.setPreparedStatementCacheSizeMiB(properties.getPreparedStatementCacheSizeMiB());
+        return dataSource;
+    }
+
+    /**
+     * Creates a connection pool over {@link #simple(PostgresProperties)}.
+     * The pool connects lazily on the first borrowed connection, so creating it never touches the database.
+     *
+     * @param properties The connection, pool and statement cache settings.
+     * @return The pool, to be closed when the application stops.
+     */
+    public static HikariDataSource pooled(PostgresProperties properties) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(POOL_NAME);
+        dataSource.setDataSource(simple(properties));
+        dataSource.setMaximumPoolSize(properties.getMaximumPoolSize());
+        dataSource.setConnectionTimeout(properties.getConnectionTimeoutMillis());
+        return dataSource;
+    }
+}
@@ -0,0 +1,128 @@
+package ru.clevertec.bank.util.jdbc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution statistics of every SQL statement template run through a {@link MonitoredDataSource}.
+ * Templates are keyed by their SQL text, which is a constant in every repository, so a lookup is
+ * a hash of an interned string. Once {@code maximumTemplates} are tracked, further ones are counted
+ * together under {@value #OTHER}, so ad hoc SQL with inlined values cannot grow the map without bound.
+ * Executions slower than the threshold are logged with the types of their bind parameters only,
+ * never their values.
+ *
+ * @author Andrei Yuryeu
+ * @see QueryStats
+ */
+public final class QueryStatistics {
+
+    static final String OTHER = "<other>";
+
+    private static final System.Logger log = System.getLogger(QueryStatistics.class.getName());
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Map<String, Counters> templates = new ConcurrentHashMap<>();
+    private final int maximumTemplates;
+    private volatile long slowThresholdNanos;
+
+    public QueryStatistics(int maximumTemplates, Duration slowThreshold) {
+        this.maximumTemplates = maximumTemplates;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    public void setSlowThreshold(Duration slowThreshold) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    /**
+     * Records one execution of a statement.
+     *
+     * @param sql    The SQL text of the statement.
+     * @param nanos  The execution time in nanoseconds.
+     * @param rows   The number of rows changed by the statement, 0 for queries.
+     * @param failed Whether the execution threw.
+     * @param binds  The types of the bind parameters by their index.
+     */
+    void recordExecution(String sql, long nanos, long rows, boolean failed, Map<Integer, String> binds) {
+        Counters counters = counters(sql);
+        counters.count.increment();
+        counters.totalNanos.add(nanos);
+        counters.maxNanos.accumulate(nanos);
+        counters.rows.add(rows);
+        if (failed) {
+            counters.errors.increment();
+        }
+        if (nanos >= slowThresholdNanos) {
+            log.log(System.Logger.Level.WARNING, "Slow query took {0} ms: {1} binds {2}",
+                    nanos / NANOS_PER_MILLI, counters.sql, binds);
+        }
+    }
+
+    /**
+     * Adds rows read from a result set of a statement.
+     *
+     * @param sql  The SQL text of the statement.
+     * @param rows The number of rows read.
+     */
+    void recordRows(String sql, long rows) {
+        counters(sql).rows.add(rows);
+    }
+
+    /**
+     * Returns the statistics of every tracked template.
+     *
+     * @return The statistics in no particular order.
+     */
+    public List<QueryStats> snapshot() {
+        List<QueryStats> stats = new ArrayList<>(templates.size());
+        for (Counters counters : templates.values()) {
+            stats.add(new QueryStats(
+                    counters.sql,
+                    counters.count.sum(),
+                    counters.errors.sum(),
+                    counters.totalNanos.sum() / NANOS_PER_MILLI,
+                    counters.maxNanos.get() / NANOS_PER_MILLI,
+                    counters.rows.sum()
+            ));
+        }
+        return stats;
+    }
+
+    /**
+     * Forgets every template.
+     */
+    public void reset() {
+        templates.clear();
+    }
+
+    private Counters counters(String sql) {
+        String key = sql == null ? OTHER : sql;
+        Counters counters = templates.get(key);
+        if (counters != null) {
+            return counters;
+        }
+        if (templates.size() >= maximumTemplates) {
+            key = OTHER;
+        }
+        return templates.computeIfAbsent(key, Counters::new);
+    }
+
+    private static final class Counters {
+
+        private final String sql;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder rows = new LongAdder();
+
+        private Counters(String sql) {
+            this.sql = sql.strip().replaceAll("\\s+", " ");
+        }
+    }
+}
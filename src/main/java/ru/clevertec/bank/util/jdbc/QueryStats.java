@@ -0,0 +1,23 @@
+package ru.clevertec.bank.util.jdbc;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Point-in-time statistics of one SQL statement template.
+ *
+ * @param sql         The statement with its whitespace collapsed.
+ * @param count       The number of executions.
+ * @param errors      The number of executions that threw.
+ * @param totalMillis The total execution time in milliseconds.
+ * @param maxMillis   The longest execution time in milliseconds.
+ * @param rows        The number of rows read from its result sets or changed by it.
+ * @author Andrei Yuryeu
+ * @see QueryStatistics
+ */
+public record QueryStats(String sql, long count, long errors, double totalMillis, double maxMillis, long rows) {
+
+    @JsonProperty
+    public double meanMillis() {
+        return count == 0 ? 0 : totalMillis / count;
+    }
+}
@@ -0,0 +1,359 @@
+package ru.clevertec.bank.util.ledger;
+
+import ru.clevertec.bank.entity.Account;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.IdempotencyKey;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.entity.TransactionType;
+import ru.clevertec.bank.exception.ServiceUnavailableException;
+import ru.clevertec.bank.util.exchange.ExchangeRateProvider;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.yaml.LedgerProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executes withdrawals, deposits and transfers in memory, in the style of the LMAX architecture.
+ * Every account is owned by one {@link BalanceShard}, a single thread holding the balances of its accounts,
+ * so operations on a hot account are decided one after another without row locks.
+ * A decided operation is appended to the write-ahead log of its shard and acknowledged once the log is forced
+ * to disk; a {@link LedgerApplier} then applies it to the database asynchronously.
+ * A transfer is decided by the shard of the sender, which can refuse it, and then credited by the shard
+ * of the receiver, which cannot. The logs are compacted as they grow, and on start the entries that did not reach
+ * the database are replayed into memory and applied again.
+ * Balances read from the database lag the engine until the applier catches up.
+ *
+ * @author Andrei Yuryeu
+ * @see LedgerStore
+ * @see WriteAheadLog
+ */
+public final class BalanceEngine implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(BalanceEngine.class.getName());
+    private final LedgerStore store;
+    private final ExchangeRateProvider exchangeRateProvider;
+    private final Path directory;
+    private final int shardCount;
+    private final int queueCapacity;
+    private final int maximumBatch;
+    private final int transactionIdBlock;
+    private final long maximumLogBytes;
+    private final Duration operationTimeout;
+    private final LedgerApplier applier;
+    private final Map<String, IdempotencyKey> pendingKeys = new ConcurrentHashMap<>();
+    private final Object quiesceLock = new Object();
+    private BalanceShard[] shards;
+    private List<Thread> threads;
+    private volatile boolean started;
+
+    public BalanceEngine(LedgerProperties properties, LedgerStore store, ExchangeRateProvider exchangeRateProvider) {
+        this.store = store;
+        this.exchangeRateProvider = exchangeRateProvider;
+        this.directory = Path.of(properties.getDirectory());
+        this.shardCount = properties.getShards();
+        this.queueCapacity = properties.getQueueCapacity();
+        this.maximumBatch = properties.getMaximumBatch();
+        this.transactionIdBlock = properties.getTransactionIdBlock();
+        this.maximumLogBytes = properties.getMaximumLogBytes();
+        this.operationTimeout = Duration.ofMillis(properties.getOperationTimeoutMillis());
+        this.applier = new LedgerApplier(store, properties.getApplyBatch(), this::applied);
+    }
+
+    /**
+     * Opens the logs, replays the entries that were not applied to the database and starts the threads.
+     *
+     * @throws UncheckedIOException If a log cannot be opened or compacted.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        BalanceShard[] opened = new BalanceShard[shardCount];
+        List<LedgerEntry> unapplied = new ArrayList<>();
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                WriteAheadLog log = WriteAheadLog.open(i, directory.resolve("shard-" + i + ".wal"));
+                opened[i] = new BalanceShard(i, this, log, store, queueCapacity, maximumBatch,
+                        transactionIdBlock, maximumLogBytes);
+                opened[i].setNextSequence(recover(log, unapplied) + 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Balance engine could not open its ledger in " + directory, e);
+        }
+        shards = opened;
+        for (LedgerEntry entry : unapplied) {
+            shards[entry.shard()].logged(entry);
+            if (entry.debitAccountId() != 0) {
+                shardOf(entry.debitAccountId()).recover(entry.debitAccountId(), -entry.amount());
+            }
+            if (entry.creditAccountId() != 0) {
+                shardOf(entry.creditAccountId()).recover(entry.creditAccountId(), entry.convertedAmount());
+            }
+            IdempotencyKey key = entry.toIdempotencyKey();
+            if (key != null) {
+                pendingKeys.put(key.getKey(), key);
+            }
+            applier.submit(entry);
+        }
+        threads = new ArrayList<>();
+        threads.add(startThread(applier, "ledger-applier"));
+        for (BalanceShard shard : shards) {
+            threads.add(startThread(shard, "ledger-shard-" + shard.getIndex()));
+            MetricsRegistry.global().register("bank_ledger_shard_queued", "Commands queued for a ledger shard.",
+                    MetricsRegistry.Type.GAUGE, shard::getQueued, "shard", String.valueOf(shard.getIndex()));
+        }
+        MetricsRegistry.global().register("bank_ledger_apply_backlog", "Ledger entries not yet applied to the database.",
+                MetricsRegistry.Type.GAUGE, applier::getOutstanding);
+        started = true;
+        LOGGER.log(System.Logger.Level.INFO, "Balance engine started with {0} shards, {1} entries replayed",
+                shardCount, unapplied.size());
+    }
+
+    /**
+     * Streams the log of a shard, keeps only the entries the database has not seen and forgets
+     * the applied positions that can no longer be replayed.
+     *
+     * @return The last position used by the shard.
+     */
+    private long recover(WriteAheadLog log, List<LedgerEntry> unapplied) throws IOException {
+        int shard = log.getShard();
+        long lastApplied = store.findLastAppliedSequence(shard);
+        long lastSequence = Math.max(lastApplied, log.getLastRecoveredSequence());
+        List<LedgerEntry> kept = new ArrayList<>();
+        if (log.getLastRecoveredSequence() != 0) {
+            Set<Long> applied = store.findAppliedSequences(shard, log.getFirstRecoveredSequence());
+            log.read(entry -> {
+                if (!applied.contains(entry.sequence())) {
+                    kept.add(entry);
+                }
+            });
+        }
+        log.rewrite(kept);
+        long firstKept = kept.isEmpty() ? lastApplied : Math.min(kept.get(0).sequence(), lastApplied);
+        store.deleteAppliedSequences(shard, firstKept);
+        unapplied.addAll(kept);
+        return lastSequence;
+    }
+
+    /**
+     * Withdraws money from an account.
+     *
+     * @param account        The account.
+     * @param amount         The amount, in the currency of the account.
+     * @param idempotencyKey The Idempotency-Key of the request, or null.
+     * @return The transaction, already durable in the ledger.
+     * @throws ru.clevertec.bank.exception.MoneyTransferException    If the balance is too low.
+     * @throws ru.clevertec.bank.exception.DuplicateRequestException If the key was already used.
+     * @throws ServiceUnavailableException                          If the engine cannot take the operation.
+     */
+    public Transaction withdraw(Account account, Money amount, IdempotencyKey idempotencyKey) {
+        return execute(account.getId(), new BalanceShard.Operation(TransactionType.WITHDRAW, account.getId(), 0,
+                amount.minorUnits(), amount.minorUnits(), BigDecimal.ONE, amount.currency(), amount.currency(),
+                idempotencyKey, "Not enough money on this account", new CompletableFuture<>()));
+    }
+
+    /**
+     * Deposits money into an account.
+     *
+     * @param account        The account.
+     * @param amount         The amount, in the currency of the account.
+     * @param idempotencyKey The Idempotency-Key of the request, or null.
+     * @return The transaction, already durable in the ledger.
+     */
+    public Transaction deposit(Account account, Money amount, IdempotencyKey idempotencyKey) {
+        return execute(account.getId(), new BalanceShard.Operation(TransactionType.REFILL, 0, account.getId(),
+                amount.minorUnits(), amount.minorUnits(), BigDecimal.ONE, amount.currency(), amount.currency(),
+                idempotencyKey, null, new CompletableFuture<>()));
+    }
+
+    /**
+     * Transfers money between accounts at the exchange rate in force now.
+     *
+     * @param sender         The account to debit.
+     * @param receiver       The account to credit.
+     * @param amount         The amount, in the currency of the sender.
+     * @param idempotencyKey The Idempotency-Key of the request, or null.
+     * @return The transaction, already durable in the ledger.
+     */
+    public Transaction transfer(Account sender, Account receiver, Money amount, IdempotencyKey idempotencyKey) {
+        Currency to = receiver.getCurrency();
+        BigDecimal exchangeRate = exchangeRateProvider.rateAt(amount.currency(), to, LocalDateTime.now());
+        return execute(sender.getId(), new BalanceShard.Operation(TransactionType.TRANSFER, sender.getId(), receiver.getId(),
+                amount.minorUnits(), amount.convert(exchangeRate, to).minorUnits(), exchangeRate, amount.currency(),
+                to, idempotencyKey, "Not enough money on sender account", new CompletableFuture<>()));
+    }
+
+    private Transaction execute(long accountId, BalanceShard.Operation operation) {
+        if (!started) {
+            throw new ServiceUnavailableException("Balance engine is not running");
+        }
+        shardOf(accountId).submit(operation);
+        try {
+            return operation.result().get(operationTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("Balance engine did not answer in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for the balance engine");
+        }
+    }
+
+    /**
+     * Looks up an Idempotency-Key recorded in the ledger but not yet applied to the database.
+     *
+     * @param key The key.
+     * @return The key, or empty if it is not pending.
+     */
+    public Optional<IdempotencyKey> findPendingKey(String key) {
+        return Optional.ofNullable(pendingKeys.get(key));
+    }
+
+    /**
+     * Runs an action against the database while no shard is working and every entry is applied,
+     * after which the shards reload the balances they need. Used for changes of many balances at once,
+     * such as the accrual of interest. A transfer is outstanding from the moment the shard of its sender
+     * has made it durable, and parked shards still credit the transfers they receive, so the action never runs
+     * before a transfer that was acknowledged reaches the database.
+     *
+     * @param action The action.
+     */
+    public void quiesce(Runnable action) {
+        if (!started) {
+            action.run();
+            return;
+        }
+        synchronized (quiesceLock) {
+            CountDownLatch arrived = new CountDownLatch(shards.length);
+            CountDownLatch released = new CountDownLatch(1);
+            try {
+                for (BalanceShard shard : shards) {
+                    shard.submitBarrier(new BalanceShard.Barrier(arrived, released));
+                }
+                arrived.await();
+                while (!applier.awaitApplied(operationTimeout)) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Still waiting for the ledger to be applied, {0} entries left",
+                            applier.getOutstanding());
+                }
+                action.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceUnavailableException("Interrupted while waiting for the balance engine");
+            } finally {
+                released.countDown();
+            }
+        }
+    }
+
+    /**
+     * Stops the shards after their queued work, waits for the applier to catch up and closes the logs.
+     * Entries left unapplied are replayed on the next start.
+     */
+    @Override
+    public synchronized void close() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        for (BalanceShard shard : shards) {
+            shard.submitStop();
+        }
+        try {
+            for (Thread thread : threads.subList(1, threads.size())) {
+                thread.join(operationTimeout.toMillis());
+            }
+            if (!applier.awaitApplied(operationTimeout)) {
+                LOGGER.log(System.Logger.Level.WARNING, "{0} ledger entries are left to replay on the next start",
+                        applier.getOutstanding());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        threads.get(0).interrupt();
+        for (BalanceShard shard : shards) {
+            try {
+                shard.getLog().close();
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Ledger of shard " + shard.getIndex() + " was not closed", e);
+            }
+        }
+    }
+
+    boolean reserve(IdempotencyKey key) {
+        if (pendingKeys.putIfAbsent(key.getKey(), key) != null) {
+            return false;
+        }
+        if (store.findIdempotencyKey(key.getKey()).isPresent()) {
+            pendingKeys.remove(key.getKey(), key);
+            return false;
+        }
+        return true;
+    }
+
+    void release(IdempotencyKey key) {
+        pendingKeys.remove(key.getKey(), key);
+    }
+
+    void credit(LedgerEntry entry, BalanceShard from) {
+        BalanceShard receiver = shardOf(entry.creditAccountId());
+        if (receiver == from) {
+            receiver.credit(entry);
+        } else {
+            applier.expect();
+            receiver.submitCredit(entry);
+        }
+    }
+
+    void apply(LedgerEntry entry) {
+        applier.submit(entry);
+    }
+
+    /**
+     * Hands the applier a transfer credited by the shard of its receiver, counted when its sender made it durable.
+     */
+    void applyCredited(LedgerEntry entry) {
+        applier.submitExpected(entry);
+    }
+
+    private void applied(List<LedgerEntry> entries) {
+        for (LedgerEntry entry : entries) {
+            shards[entry.shard()].markApplied(entry.sequence());
+            if (entry.idempotencyKey() != null) {
+                pendingKeys.remove(entry.idempotencyKey());
+            }
+        }
+    }
+
+    private BalanceShard shardOf(long accountId) {
+        return shards[(int) Math.floorMod(accountId, (long) shards.length)];
+    }
+
+    private static Thread startThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
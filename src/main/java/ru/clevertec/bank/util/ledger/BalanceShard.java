@@ -0,0 +1,512 @@
+package ru.clevertec.bank.util.ledger;
+
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.IdempotencyKey;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.entity.TransactionType;
+import ru.clevertec.bank.exception.DuplicateRequestException;
+import ru.clevertec.bank.exception.EntityNotFoundException;
+import ru.clevertec.bank.exception.MoneyTransferException;
+import ru.clevertec.bank.exception.ServiceUnavailableException;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.metrics.Timer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single thread owning the balances of the accounts assigned to one shard of a {@link BalanceEngine}.
+ * Balances are kept in minor units in primitive arrays and are only read and written by the shard thread,
+ * so deciding an operation takes no lock. The thread drains its queue in batches: it decides every operation,
+ * appends the accepted ones to the write-ahead log, forces the log once and only then answers the callers.
+ * Once the log outgrows its limit, it is rewritten with only the entries the applier has not applied yet.
+ *
+ * @author Andrei Yuryeu
+ */
+final class BalanceShard implements Runnable {
+
+    private static final System.Logger LOGGER = System.getLogger(BalanceShard.class.getName());
+    private static final long PARKED_POLL_MILLIS = 10;
+
+    private final int index;
+    private final BalanceEngine engine;
+    private final WriteAheadLog log;
+    private final LedgerStore store;
+    private final int capacity;
+    private final int maximumBatch;
+    private final int transactionIdBlock;
+    private final long maximumLogBytes;
+    private final LinkedBlockingQueue<Command> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final BalanceTable balances = new BalanceTable();
+    private final List<Decision> decided = new ArrayList<>();
+    private final ConcurrentSkipListMap<Long, LedgerEntry> unapplied = new ConcurrentSkipListMap<>();
+    private final Timer syncTimer;
+    private long nextSequence;
+    private long[] transactionIds = new long[0];
+    private int nextTransactionId;
+    private long compactAt;
+    private volatile boolean failed;
+
+    BalanceShard(int index, BalanceEngine engine, WriteAheadLog log, LedgerStore store, int capacity, int maximumBatch,
+                 int transactionIdBlock, long maximumLogBytes) {
+        this.index = index;
+        this.engine = engine;
+        this.log = log;
+        this.store = store;
+        this.capacity = capacity;
+        this.maximumBatch = maximumBatch;
+        this.transactionIdBlock = transactionIdBlock;
+        this.maximumLogBytes = maximumLogBytes;
+        this.compactAt = maximumLogBytes;
+        this.syncTimer = MetricsRegistry.global().timer("bank_ledger_sync_seconds",
+                "Time spent forcing batches of ledger entries to disk.", "shard", String.valueOf(index));
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int getQueued() {
+        return queue.size();
+    }
+
+    WriteAheadLog getLog() {
+        return log;
+    }
+
+    void setNextSequence(long nextSequence) {
+        this.nextSequence = nextSequence;
+    }
+
+    /**
+     * Queues an operation decided by this shard.
+     *
+     * @throws ServiceUnavailableException If the shard already holds as many operations as it may queue.
+     */
+    void submit(Operation operation) {
+        if (admitted.incrementAndGet() > capacity) {
+            admitted.decrementAndGet();
+            throw new ServiceUnavailableException("Balance engine shard " + index + " is overloaded");
+        }
+        queue.add(operation);
+    }
+
+    /**
+     * Queues the credit of a transfer decided by another shard; credits are never refused.
+     */
+    void submitCredit(LedgerEntry entry) {
+        queue.add(new Credit(entry));
+    }
+
+    void submitBarrier(Barrier barrier) {
+        queue.add(barrier);
+    }
+
+    void submitStop() {
+        queue.add(new Stop());
+    }
+
+    /**
+     * Remembers an entry of the log that the applier has not applied yet.
+     */
+    void logged(LedgerEntry entry) {
+        unapplied.put(entry.sequence(), entry);
+    }
+
+    /**
+     * Forgets an entry once the applier has applied it, so the next compaction drops it from the log.
+     */
+    void markApplied(long sequence) {
+        unapplied.remove(sequence);
+    }
+
+    /**
+     * Applies a change of balance of a recovered entry before the shard thread is started.
+     */
+    void recover(long accountId, long delta) {
+        int slot = slot(accountId);
+        if (slot >= 0) {
+            balances.add(slot, delta);
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Command> batch = new ArrayList<>(maximumBatch);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maximumBatch - 1);
+                for (int i = 0; i < batch.size(); i++) {
+                    Command command = batch.get(i);
+                    if (command instanceof Operation operation) {
+                        admitted.decrementAndGet();
+                        decide(operation);
+                    } else if (command instanceof Credit credit) {
+                        creditReceived(credit.entry());
+                    } else if (command instanceof Barrier barrier) {
+                        flush();
+                        List<Command> rest = batch.subList(i + 1, batch.size());
+                        List<Command> held = park(barrier, rest);
+                        rest.clear();
+                        batch.addAll(held);
+                        balances.clear();
+                    } else if (command instanceof Stop) {
+                        flush();
+                        return;
+                    }
+                }
+                flush();
+                compactIfNeeded();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void decide(Operation operation) {
+        if (failed) {
+            operation.result().completeExceptionally(
+                    new ServiceUnavailableException("Balance engine shard " + index + " has failed"));
+            return;
+        }
+        IdempotencyKey key = operation.idempotencyKey();
+        long transactionId;
+        try {
+            if (key != null && !engine.reserve(key)) {
+                throw new DuplicateRequestException(
+                        "Request with Idempotency-Key = " + key.getKey() + " was already processed");
+            }
+            transactionId = peekTransactionId();
+            if (operation.debitAccountId() != 0) {
+                int slot = requireSlot(operation.debitAccountId());
+                if (balances.get(slot) < operation.amount()) {
+                    throw new MoneyTransferException(operation.rejection());
+                }
+                balances.add(slot, -operation.amount());
+            } else {
+                balances.add(requireSlot(operation.creditAccountId()), operation.convertedAmount());
+            }
+        } catch (RuntimeException ex) {
+            if (key != null && !(ex instanceof DuplicateRequestException)) {
+                engine.release(key);
+            }
+            operation.result().completeExceptionally(ex);
+            return;
+        }
+        nextTransactionId++;
+        LedgerEntry entry = new LedgerEntry(index, nextSequence++, transactionId, operation.type(), operation.debitAccountId(),
+                operation.creditAccountId(), operation.amount(), operation.convertedAmount(),
+                operation.exchangeRate(), operation.currency(), operation.creditCurrency(),
+                System.currentTimeMillis(), key == null ? null : key.getKey(), key == null ? null : key.getFingerprint());
+        decided.add(new Decision(entry, operation.result()));
+        try {
+            log.append(entry);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Returns the next reserved transaction id without using it up, reserving a block of ids when none is left,
+     * so a refused operation does not waste an id.
+     */
+    private long peekTransactionId() {
+        if (nextTransactionId == transactionIds.length) {
+            transactionIds = store.reserveTransactionIds(transactionIdBlock);
+            nextTransactionId = 0;
+        }
+        return transactionIds[nextTransactionId];
+    }
+
+    /**
+     * Waits at a barrier until it is released. Credits of transfers decided by other shards are still applied
+     * meanwhile, as the barrier is only lifted once they reach the database; every other command, those already
+     * taken from the queue included, is held back.
+     *
+     * @param barrier The barrier.
+     * @param rest    The commands taken from the queue after the barrier.
+     * @return The held commands, in the order they were queued.
+     */
+    private List<Command> park(Barrier barrier, List<Command> rest) {
+        List<Command> held = new ArrayList<>();
+        for (Command command : rest) {
+            hold(command, held);
+        }
+        barrier.arrived().countDown();
+        boolean interrupted = false;
+        while (barrier.released().getCount() > 0) {
+            try {
+                Command command = queue.poll(PARKED_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (command != null) {
+                    hold(command, held);
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return held;
+    }
+
+    private void hold(Command command, List<Command> held) {
+        if (command instanceof Credit credit) {
+            creditReceived(credit.entry());
+        } else {
+            held.add(command);
+        }
+    }
+
+    /**
+     * Applies the credit of a transfer within the shard to the receiver and hands the entry to the applier.
+     */
+    void credit(LedgerEntry entry) {
+        try {
+            creditBalance(entry);
+        } finally {
+            engine.apply(entry);
+        }
+    }
+
+    /**
+     * Applies the credit of a transfer decided by another shard, which counted it for the applier already.
+     */
+    private void creditReceived(LedgerEntry entry) {
+        try {
+            creditBalance(entry);
+        } finally {
+            engine.applyCredited(entry);
+        }
+    }
+
+    private void creditBalance(LedgerEntry entry) {
+        try {
+            int slot = slot(entry.creditAccountId());
+            if (slot >= 0) {
+                balances.add(slot, entry.convertedAmount());
+            } else {
+                LOGGER.log(System.Logger.Level.WARNING, "Credited account {0} of ledger entry {1}/{2} was not found",
+                        entry.creditAccountId(), entry.shard(), entry.sequence());
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.log(System.Logger.Level.ERROR, "Credit of ledger entry " + entry.shard() + "/" + entry.sequence()
+                    + " was not applied in memory; the stored balance stays correct", ex);
+        }
+    }
+
+    /**
+     * Makes the decided entries durable and answers their callers.
+     * Transfers are handed to the shard of the receiver, everything else straight to the applier.
+     */
+    private void flush() {
+        if (decided.isEmpty() || failed) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            log.sync();
+            syncTimer.record(System.nanoTime() - start);
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        for (Decision decision : decided) {
+            LedgerEntry entry = decision.entry();
+            logged(entry);
+            if (entry.debitAccountId() != 0 && entry.creditAccountId() != 0) {
+                engine.credit(entry, this);
+            } else {
+                engine.apply(entry);
+            }
+            decision.result().complete(entry.toTransaction());
+        }
+        decided.clear();
+    }
+
+    /**
+     * Rewrites the log with only the entries not applied yet once it has grown by its limit, and then forgets
+     * the applied positions below them. The next compaction waits until as much is written again, so a backlog
+     * left by a lagging applier is not rewritten after every batch.
+     */
+    private void compactIfNeeded() {
+        if (failed || log.size() < compactAt) {
+            return;
+        }
+        List<LedgerEntry> kept = new ArrayList<>(unapplied.values());
+        long firstKept = kept.isEmpty() ? nextSequence - 1 : kept.get(0).sequence();
+        try {
+            log.rewrite(kept);
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        compactAt = log.size() + maximumLogBytes;
+        try {
+            store.deleteAppliedSequences(index, firstKept);
+        } catch (RuntimeException ex) {
+            LOGGER.log(System.Logger.Level.WARNING, "Applied positions of shard " + index + " were not deleted", ex);
+        }
+    }
+
+    /**
+     * Stops the shard after the log could not be written: the undecided balance changes are reverted,
+     * their callers fail and every later operation is refused until the engine is restarted and recovers.
+     */
+    private void fail(IOException cause) {
+        LOGGER.log(System.Logger.Level.ERROR, "Ledger of shard " + index + " could not be written", cause);
+        failed = true;
+        for (Decision decision : decided) {
+            LedgerEntry entry = decision.entry();
+            if (entry.debitAccountId() != 0) {
+                recover(entry.debitAccountId(), entry.amount());
+            } else {
+                recover(entry.creditAccountId(), -entry.convertedAmount());
+            }
+            IdempotencyKey key = entry.toIdempotencyKey();
+            if (key != null) {
+                engine.release(key);
+            }
+            decision.result().completeExceptionally(
+                    new ServiceUnavailableException("Balance engine shard " + index + " has failed"));
+        }
+        decided.clear();
+    }
+
+    private int requireSlot(long accountId) {
+        int slot = slot(accountId);
+        if (slot < 0) {
+            throw new EntityNotFoundException("Account with id = " + accountId + " was not found");
+        }
+        return slot;
+    }
+
+    private int slot(long accountId) {
+        int slot = balances.find(accountId);
+        if (slot >= 0) {
+            return slot;
+        }
+        Optional<Money> balance = store.findBalance(accountId);
+        return balance.map(value -> balances.put(accountId, value.minorUnits())).orElse(-1);
+    }
+
+    sealed interface Command permits Operation, Credit, Barrier, Stop {
+    }
+
+    /**
+     * An operation to decide: a withdrawal or the debit of a transfer by the shard of the debited account,
+     * or a deposit by the shard of the credited one.
+     */
+    record Operation(
+            TransactionType type,
+            long debitAccountId,
+            long creditAccountId,
+            long amount,
+            long convertedAmount,
+            BigDecimal exchangeRate,
+            Currency currency,
+            Currency creditCurrency,
+            IdempotencyKey idempotencyKey,
+            String rejection,
+            CompletableFuture<Transaction> result
+    ) implements Command {
+    }
+
+    record Credit(LedgerEntry entry) implements Command {
+    }
+
+    /**
+     * Parks the shard until it is released, after which it forgets its balances and reloads them on demand.
+     */
+    record Barrier(CountDownLatch arrived, CountDownLatch released) implements Command {
+    }
+
+    record Stop() implements Command {
+    }
+
+    private record Decision(LedgerEntry entry, CompletableFuture<Transaction> result) {
+    }
+
+    /**
+     * Map from account id to balance with linear probing over two primitive arrays; ids are positive,
+     * so 0 marks an empty slot.
+     */
+    private static final class BalanceTable {
+
+        private long[] ids = new long[64];
+        private long[] values = new long[64];
+        private int size;
+
+        int find(long id) {
+            int mask = ids.length - 1;
+            for (int slot = mix(id) & mask; ; slot = (slot + 1) & mask) {
+                if (ids[slot] == id) {
+                    return slot;
+                }
+                if (ids[slot] == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        int put(long id, long value) {
+            if ((size + 1) * 2 > ids.length) {
+                grow();
+            }
+            int mask = ids.length - 1;
+            int slot = mix(id) & mask;
+            while (ids[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            ids[slot] = id;
+            values[slot] = value;
+            size++;
+            return slot;
+        }
+
+        long get(int slot) {
+            return values[slot];
+        }
+
+        void add(int slot, long delta) {
+            values[slot] = Math.addExact(values[slot], delta);
+        }
+
+        void clear() {
+            Arrays.fill(ids, 0);
+            size = 0;
+        }
+
+        private void grow() {
+            long[] oldIds = ids;
+            long[] oldValues = values;
+            ids = new long[oldIds.length * 2];
+            values = new long[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != 0) {
+                    put(oldIds[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int mix(long id) {
+            long hash = id * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package ru.clevertec.bank.util.ledger;
+
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.metrics.Timer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Thread applying the entries decided by the shards of a {@link BalanceEngine} to the {@link LedgerStore},
+ * in batches of up to the configured size, each in one database transaction.
+ * A batch that fails is retried with a growing pause until it is applied; nothing is dropped,
+ * and entries still unapplied when the application stops are replayed from the logs on the next start.
+ *
+ * @author Andrei Yuryeu
+ */
+final class LedgerApplier implements Runnable {
+
+    private static final System.Logger LOGGER = System.getLogger(LedgerApplier.class.getName());
+    private static final long MAXIMUM_PAUSE_MILLIS = 5_000;
+
+    private final LedgerStore store;
+    private final int maximumBatch;
+    private final Consumer<List<LedgerEntry>> onApplied;
+    private final LinkedBlockingQueue<LedgerEntry> queue = new LinkedBlockingQueue<>();
+    private final Timer timer = MetricsRegistry.global().timer("bank_ledger_apply_seconds",
+            "Time spent applying batches of ledger entries to the database.");
+    private long outstanding;
+
+    LedgerApplier(LedgerStore store, int maximumBatch, Consumer<List<LedgerEntry>> onApplied) {
+        this.store = store;
+        this.maximumBatch = maximumBatch;
+        this.onApplied = onApplied;
+    }
+
+    void submit(LedgerEntry entry) {
+        expect();
+        queue.add(entry);
+    }
+
+    /**
+     * Counts an entry that is submitted later with {@link #submitExpected(LedgerEntry)}, such as a transfer
+     * on its way to the shard of its receiver, so waiting for the applier also waits for it.
+     */
+    synchronized void expect() {
+        outstanding++;
+    }
+
+    void submitExpected(LedgerEntry entry) {
+        queue.add(entry);
+    }
+
+    synchronized long getOutstanding() {
+        return outstanding;
+    }
+
+    /**
+     * Waits until every submitted entry is applied.
+     *
+     * @param timeout The longest time to wait.
+     * @return True if every entry was applied, false if the time ran out.
+     * @throws InterruptedException If the wait is interrupted.
+     */
+    synchronized boolean awaitApplied(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (outstanding > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(Math.max(1, remaining / 1_000_000));
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        List<LedgerEntry> batch = new ArrayList<>(maximumBatch);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maximumBatch - 1);
+                long pause = 10;
+                while (true) {
+                    try {
+                        timer.time(() -> store.applyLedger(batch));
+                        break;
+                    } catch (RuntimeException ex) {
+                        LOGGER.log(System.Logger.Level.WARNING, "Ledger batch of " + batch.size()
+                                + " entries was not applied, retrying in " + pause + " ms", ex);
+                        Thread.sleep(pause);
+                        pause = Math.min(MAXIMUM_PAUSE_MILLIS, pause * 2);
+                    }
+                }
+                onApplied.accept(batch);
+                synchronized (this) {
+                    outstanding -= batch.size();
+                    notifyAll();
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
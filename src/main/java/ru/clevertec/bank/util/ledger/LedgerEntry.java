@@ -0,0 +1,142 @@
+package ru.clevertec.bank.util.ledger;
+
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.IdempotencyKey;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.entity.TransactionType;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * One money operation decided by a {@link BalanceEngine} shard, as written to its write-ahead log.
+ * Amounts are in {@link Money#minorUnits() minor units}. A withdrawal has only a debited account,
+ * a deposit only a credited one, and a transfer both, the credit being in the currency of the receiver.
+ *
+ * @param shard            The shard that decided the operation.
+ * @param sequence         The position of the entry in the log of the shard.
+ * @param transactionId    The id reserved for the transaction of the operation,
+ *                         or 0 for an entry logged before ids were reserved.
+ * @param type             The transaction type.
+ * @param debitAccountId   The id of the debited account, or 0.
+ * @param creditAccountId  The id of the credited account, or 0.
+ * @param amount           The debited amount, or the deposited one, in minor units of {@code currency}.
+ * @param convertedAmount  The credited amount in minor units of the receiver currency.
+ * @param exchangeRate     The rate applied to the credited amount.
+ * @param currency         The currency of the operation.
+ * @param creditCurrency   The currency of the credited amount.
+ * @param createdMillis    The moment the operation was decided, in epoch milliseconds.
+ * @param idempotencyKey   The Idempotency-Key of the request, or null.
+ * @param fingerprint      The fingerprint of the request the key was sent with, or null.
+ * @author Andrei Yuryeu
+ */
+public record LedgerEntry(
+        int shard,
+        long sequence,
+        long transactionId,
+        TransactionType type,
+        long debitAccountId,
+        long creditAccountId,
+        long amount,
+        long convertedAmount,
+        BigDecimal exchangeRate,
+        Currency currency,
+        Currency creditCurrency,
+        long createdMillis,
+        String idempotencyKey,
+        String fingerprint
+) {
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    public LocalDateTime createdDate() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(createdMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * Returns the transaction recorded for this entry, in the shape the repositories have always stored it:
+     * a withdrawal and a deposit name their account as the receiver.
+     *
+     * @return The transaction with its reserved id, or without an id if none was reserved.
+     */
+    public Transaction toTransaction() {
+        Transaction transaction = new Transaction();
+        if (transactionId != 0) {
+            transaction.setId(transactionId);
+        }
+        transaction.setAmount(new Money(amount, currency));
+        transaction.setType(type);
+        transaction.setCurrency(currency);
+        if (creditAccountId != 0 && debitAccountId != 0) {
+            transaction.setSenderAccountId(debitAccountId);
+            transaction.setReceiverAccountId(creditAccountId);
+        } else {
+            transaction.setReceiverAccountId(debitAccountId != 0 ? debitAccountId : creditAccountId);
+        }
+        transaction.setCreatedDate(createdDate());
+        transaction.setExchangeRate(exchangeRate);
+        transaction.setConvertedAmount(new Money(convertedAmount, creditCurrency));
+        return transaction;
+    }
+
+    /**
+     * Returns the Idempotency-Key recorded with this entry.
+     *
+     * @return The key, or null if the request had none.
+     */
+    public IdempotencyKey toIdempotencyKey() {
+        return idempotencyKey == null ? null : new IdempotencyKey(idempotencyKey, fingerprint, createdDate());
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeLong(sequence);
+        output.writeByte(type.ordinal());
+        output.writeLong(debitAccountId);
+        output.writeLong(creditAccountId);
+        output.writeLong(amount);
+        output.writeLong(convertedAmount);
+        output.writeUTF(exchangeRate.toPlainString());
+        output.writeByte(currency.ordinal());
+        output.writeByte(creditCurrency.ordinal());
+        output.writeLong(createdMillis);
+        output.writeBoolean(idempotencyKey != null);
+        if (idempotencyKey != null) {
+            output.writeUTF(idempotencyKey);
+            output.writeUTF(fingerprint);
+        }
+        output.writeLong(transactionId);
+    }
+
+    /**
+     * Reads an entry written by {@link #write}. The transaction id comes last,
+     * so entries written before it was added are read with an id of 0.
+     */
+    static LedgerEntry read(int shard, DataInputStream input) throws IOException {
+        long sequence = input.readLong();
+        TransactionType type = TYPES[input.readByte()];
+        long debitAccountId = input.readLong();
+        long creditAccountId = input.readLong();
+        long amount = input.readLong();
+        long convertedAmount = input.readLong();
+        BigDecimal exchangeRate = new BigDecimal(input.readUTF());
+        Currency currency = CURRENCIES[input.readByte()];
+        Currency creditCurrency = CURRENCIES[input.readByte()];
+        long createdMillis = input.readLong();
+        String idempotencyKey = null;
+        String fingerprint = null;
+        if (input.readBoolean()) {
+            idempotencyKey = input.readUTF();
+            fingerprint = input.readUTF();
+        }
+        long transactionId = input.available() >= Long.BYTES ? input.readLong() : 0;
+        return new LedgerEntry(shard, sequence, transactionId, type, debitAccountId, creditAccountId, amount, convertedAmount,
+                exchangeRate, currency, creditCurrency, createdMillis, idempotencyKey, fingerprint);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.clevertec.bank.util.ledger;
+
+import ru.clevertec.bank.entity.IdempotencyKey;
+import ru.clevertec.bank.entity.Money;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Database side of a {@link BalanceEngine}: where balances are loaded from and ledger entries applied to.
+ * Every entry is applied at most once, however often it is handed over, so entries replayed
+ * from the write-ahead log after a crash can simply be applied again.
+ *
+ * @author Andrei Yuryeu
+ */
+public interface LedgerStore {
+
+    /**
+     * Loads the stored balance of an account, whether or not it is active.
+     *
+     * @param accountId The id of the account.
+     * @return The balance, or empty if there is no such account.
+     */
+    Optional<Money> findBalance(long accountId);
+
+    /**
+     * Applies entries in one transaction: their balance changes, their transactions and their Idempotency-Keys.
+     * The transactions keep the ids reserved for them. Entries that were already applied are skipped.
+     *
+     * @param entries The entries.
+     */
+    void applyLedger(List<LedgerEntry> entries);
+
+    /**
+     * Reserves ids of transactions, so the transaction of an operation has its id as soon as it is decided.
+     * Reserved ids are never handed out again, whether or not they are used.
+     *
+     * @param count The number of ids.
+     * @return The ids.
+     */
+    long[] reserveTransactionIds(int count);
+
+    /**
+     * Returns which entries of a shard from the given position on were applied.
+     *
+     * @param shard        The shard.
+     * @param fromSequence The first position to report.
+     * @return The positions of the applied entries.
+     */
+    Set<Long> findAppliedSequences(int shard, long fromSequence);
+
+    /**
+     * Returns the highest position of an applied entry of a shard.
+     *
+     * @param shard The shard.
+     * @return The position, or 0 if no entry of the shard was applied.
+     */
+    long findLastAppliedSequence(int shard);
+
+    /**
+     * Forgets which entries of a shard below the given position were applied,
+     * once no entry below it is left in the log of the shard.
+     *
+     * @param shard          The shard.
+     * @param belowSequence The first position to keep.
+     */
+    void deleteAppliedSequences(int shard, long belowSequence);
+
+    /**
+     * Looks up a recorded Idempotency-Key.
+     *
+     * @param key The key.
+     * @return The recorded key, or empty if it was not recorded.
+     */
+    Optional<IdempotencyKey> findIdempotencyKey(String key);
+}
@@ -0,0 +1,222 @@
+package ru.clevertec.bank.util.ledger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of the {@link LedgerEntry ledger entries} of one shard.
+ * Every record is its length, the entry and a CRC32 of the entry. Appended records are buffered in memory
+ * until {@link #sync()} writes them and forces them to the device, so a whole batch costs one fsync.
+ * On opening, the records are checked up to the first one that is incomplete or damaged,
+ * which is what a crash in the middle of a write leaves behind, and the file is cut there;
+ * the intact records are then read back one at a time with {@link #read(Consumer)}, so a long log is never
+ * held in memory. Not thread-safe: a log is written only by the thread of its shard.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class WriteAheadLog implements AutoCloseable {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final int shard;
+    private final Path file;
+    private final long firstRecoveredSequence;
+    private final long lastRecoveredSequence;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOutput = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long size;
+
+    private WriteAheadLog(int shard, Path file, LongSummaryStatistics recovered, FileChannel channel, long size) {
+        this.shard = shard;
+        this.file = file;
+        this.firstRecoveredSequence = recovered.getCount() == 0 ? 0 : recovered.getMin();
+        this.lastRecoveredSequence = recovered.getCount() == 0 ? 0 : recovered.getMax();
+        this.channel = channel;
+        this.size = size;
+    }
+
+    /**
+     * Opens the log of a shard, creating it if it does not exist, and cuts it after its last intact record.
+     *
+     * @param shard The shard the log belongs to.
+     * @param file  The file of the log.
+     * @return The opened log.
+     * @throws IOException If the file cannot be read or opened.
+     */
+    public static WriteAheadLog open(int shard, Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        LongSummaryStatistics recovered = new LongSummaryStatistics();
+        long validLength = Files.exists(file) ? scan(shard, file, entry -> recovered.accept(entry.sequence())) : 0;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        return new WriteAheadLog(shard, file, recovered, channel, validLength);
+    }
+
+    /**
+     * Reads the intact records of a log file in order, stopping at the first incomplete or damaged one.
+     *
+     * @return The length of the intact records.
+     */
+    private static long scan(int shard, Path file, Consumer<LedgerEntry> consumer) throws IOException {
+        long validLength = 0;
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file));
+             DataInputStream input = new DataInputStream(inputStream)
+        ) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = input.readInt();
+                    if (length <= 0) {
+                        break;
+                    }
+                    payload = input.readNBytes(length);
+                    if (payload.length < length) {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != input.readInt()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                consumer.accept(LedgerEntry.read(shard, new DataInputStream(new ByteArrayInputStream(payload))));
+                validLength += Integer.BYTES * 2L + payload.length;
+            }
+        }
+        return validLength;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * Returns the lowest position of the records found when the log was opened.
+     *
+     * @return The position, or 0 if the log was empty.
+     */
+    public long getFirstRecoveredSequence() {
+        return firstRecoveredSequence;
+    }
+
+    /**
+     * Returns the highest position of the records found when the log was opened.
+     *
+     * @return The position, or 0 if the log was empty.
+     */
+    public long getLastRecoveredSequence() {
+        return lastRecoveredSequence;
+    }
+
+    /**
+     * Returns the length of the log, including the entries buffered for the next {@link #sync()}.
+     *
+     * @return The length in bytes.
+     */
+    public long size() {
+        return size + pending.size();
+    }
+
+    /**
+     * Reads the records of the log one at a time, in the order they were written.
+     *
+     * @param consumer The consumer of the entries.
+     * @throws IOException If the log cannot be read.
+     */
+    public void read(Consumer<LedgerEntry> consumer) throws IOException {
+        scan(shard, file, consumer);
+    }
+
+    /**
+     * Buffers an entry; it is written and made durable by the next {@link #sync()}.
+     *
+     * @param entry The entry.
+     * @throws IOException If the entry cannot be serialized.
+     */
+    public void append(LedgerEntry entry) throws IOException {
+        record.reset();
+        entry.write(recordOutput);
+        recordOutput.flush();
+        crc.reset();
+        crc.update(record.toByteArray());
+        DataOutputStream output = new DataOutputStream(pending);
+        output.writeInt(record.size());
+        record.writeTo(output);
+        output.writeInt((int) crc.getValue());
+        output.flush();
+    }
+
+    /**
+     * Writes the buffered entries and forces them to the storage device.
+     *
+     * @return The number of bytes written.
+     * @throws IOException If writing or forcing fails; the log must not be used any more.
+     */
+    public int sync() throws IOException {
+        int size = pending.size();
+        if (size == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        pending.reset();
+        this.size += size;
+        return size;
+    }
+
+    /**
+     * Replaces the content of the log with the given entries, through a temporary file moved into place,
+     * so the log is never left half rewritten. Entries buffered for the next {@link #sync()} are dropped.
+     *
+     * @param entries The entries to keep.
+     * @throws IOException If the log cannot be rewritten.
+     */
+    public void rewrite(List<LedgerEntry> entries) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (WriteAheadLog rewritten = new WriteAheadLog(shard, temporary, new LongSummaryStatistics(),
+                FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING), 0)) {
+            for (LedgerEntry entry : entries) {
+                rewritten.append(entry);
+            }
+            rewritten.sync();
+        }
+        channel.close();
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        size = channel.size();
+        channel.position(size);
+        pending.reset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
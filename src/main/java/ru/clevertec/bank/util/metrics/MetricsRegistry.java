@@ -0,0 +1,206 @@
+package ru.clevertec.bank.util.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+
+/**
+ * Registry of the application metrics, written out in the Prometheus text exposition format.
+ * A metric is identified by its family name and label values; asking for the same one twice returns
+ * the same instance, so callers may either keep the instance or look it up on every use.
+ * Timers are exposed as summaries in seconds with the 0.5, 0.99 and 0.999 quantiles,
+ * and the number of failures of a timer named {@code x_seconds} as the counter {@code x_errors_total}.
+ *
+ * @author Andrei Yuryeu
+ * @see Counter
+ * @see Timer
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the registry shared by the whole application.
+     *
+     * @return The global registry.
+     */
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the counter with the given name and labels, creating it on first use.
+     *
+     * @param name   The family name, ending with {@code _total}.
+     * @param help   The description of the family.
+     * @param labels Label names and values, alternating.
+     * @return The counter.
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER, labels).metric(labels, key -> new Counter());
+    }
+
+    /**
+     * Returns the timer with the given name and labels, creating it on first use.
+     *
+     * @param name   The family name, ending with {@code _seconds}.
+     * @param help   The description of the family.
+     * @param labels Label names and values, alternating.
+     * @return The timer.
+     */
+    public Timer timer(String name, String help, String... labels) {
+        return (Timer) family(name, help, Type.SUMMARY, labels).metric(labels, key -> new Timer());
+    }
+
+    /**
+     * Registers a value read when the metrics are written, such as the size of a cache.
+     *
+     * @param name   The family name.
+     * @param help   The description of the family.
+     * @param type   Whether the value only grows or may go up and down.
+     * @param value  The supplier of the current value.
+     * @param labels Label names and values, alternating.
+     */
+    public void register(String name, String help, Type type, DoubleSupplier value, String... labels) {
+        family(name, help, type, labels).metric(labels, key -> value);
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format.
+     *
+     * @param writer The writer to write to.
+     * @throws UncheckedIOException If writing fails.
+     */
+    public void write(Writer writer) {
+        try {
+            for (Map.Entry<String, Family> entry : families.entrySet()) {
+                entry.getValue().write(entry.getKey(), writer);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Family family(String name, String help, Type type, String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        }
+        String[] labelNames = new String[labels.length / 2];
+        for (int i = 0; i < labelNames.length; i++) {
+            labelNames[i] = labels[i * 2];
+        }
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type, labelNames));
+        if (family.type != type || !Arrays.equals(family.labelNames, labelNames)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered with other labels or type");
+        }
+        return family;
+    }
+
+    /**
+     * Prometheus metric types.
+     */
+    public enum Type {
+        COUNTER,
+        GAUGE,
+        SUMMARY
+    }
+
+    private static final class Family {
+
+        private final String help;
+        private final Type type;
+        private final String[] labelNames;
+        private final Map<List<String>, Object> metrics = new ConcurrentHashMap<>();
+
+        private Family(String help, Type type, String[] labelNames) {
+            this.help = help;
+            this.type = type;
+            this.labelNames = labelNames;
+        }
+
+        private Object metric(String[] labels, Function<List<String>, Object> factory) {
+            String[] values = new String[labelNames.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = labels[i * 2 + 1];
+            }
+            return metrics.computeIfAbsent(List.of(values), factory);
+        }
+
+        private void write(String name, Writer writer) throws IOException {
+            header(writer, name, help, type);
+            for (Map.Entry<List<String>, Object> entry : metrics.entrySet()) {
+                String labels = labels(entry.getKey(), null);
+                Object metric = entry.getValue();
+                if (metric instanceof Counter counter) {
+                    sample(writer, name, labels, counter.get());
+                } else if (metric instanceof DoubleSupplier supplier) {
+                    sample(writer, name, labels, supplier.getAsDouble());
+                } else if (metric instanceof Timer timer) {
+                    LatencyHistogram histogram = timer.getHistogram();
+                    for (double quantile : QUANTILES) {
+                        sample(writer, name, labels(entry.getKey(), quantile),
+                                histogram.quantile(quantile) / NANOS_PER_SECOND);
+                    }
+                    sample(writer, name + "_sum", labels, histogram.getSumNanos() / NANOS_PER_SECOND);
+                    sample(writer, name + "_count", labels, histogram.getCount());
+                }
+            }
+            if (type == Type.SUMMARY) {
+                String errors = name.replaceFirst("_seconds$", "") + "_errors_total";
+                header(writer, errors, "Failures counted by " + name + ".", Type.COUNTER);
+                for (Map.Entry<List<String>, Object> entry : metrics.entrySet()) {
+                    sample(writer, errors, labels(entry.getKey(), null), ((Timer) entry.getValue()).getErrors());
+                }
+            }
+        }
+
+        private String labels(List<String> values, Double quantile) {
+            if (values.isEmpty() && quantile == null) {
+                return "";
+            }
+            StringBuilder builder = new StringBuilder("{");
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(labelNames[i]).append("=\"").append(escape(values.get(i))).append('"');
+            }
+            if (quantile != null) {
+                builder.append(values.isEmpty() ? "" : ",").append("quantile=\"").append(quantile).append('"');
+            }
+            return builder.append('}').toString();
+        }
+
+        private static void header(Writer writer, String name, String help, Type type) throws IOException {
+            writer.write("# HELP " + name + " " + help + "\n");
+            writer.write("# TYPE " + name + " " + type.name().toLowerCase(Locale.ROOT) + "\n");
+        }
+
+        private static void sample(Writer writer, String name, String labels, double value) throws IOException {
+            writer.write(name + labels + " " + format(value) + "\n");
+        }
+
+        private static String format(double value) {
+            return value == Math.rint(value) && Math.abs(value) < 1e15
+                    ? Long.toString((long) value)
+                    : Double.toString(value);
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ru.clevertec.bank.util.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Measures how long a piece of code takes and how often it fails.
+ *
+ * @author Andrei Yuryeu
+ * @see LatencyHistogram
+ */
+public final class Timer {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final Counter errors = new Counter();
+
+    /**
+     * Runs the code and records its duration. A thrown exception is counted as an error and rethrown.
+     *
+     * @param code The code to run.
+     * @return The value returned by the code.
+     */
+    public <T> T time(Supplier<T> code) {
+        long start = System.nanoTime();
+        try {
+            return code.get();
+        } catch (RuntimeException | Error ex) {
+            errors.increment();
+            throw ex;
+        } finally {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs the code and records its duration. A thrown exception is counted as an error and rethrown.
+     *
+     * @param code The code to run.
+     */
+    public void time(Runnable code) {
+        time(() -> {
+            code.run();
+            return null;
+        });
+    }
+
+    /**
+     * Records a duration measured by the caller.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+}
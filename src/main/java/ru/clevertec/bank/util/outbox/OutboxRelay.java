@@ -0,0 +1,96 @@
+package ru.clevertec.bank.util.outbox;
+
+import ru.clevertec.bank.entity.AccountEvent;
+import ru.clevertec.bank.repository.OutboxRepository;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.yaml.OutboxProperties;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the account events of the outbox to its sinks. Every {@code pollIntervalMillis} the relay takes
+ * batches of up to {@code batchSize} events in the order of their ids, hands each batch to every sink in turn
+ * and deletes it once all of them accepted it, until the outbox is drained. A batch a sink rejected is
+ * published again on the next poll, to every sink, so delivery is at least once.
+ * Relays on several nodes share the outbox without publishing an event twice at once, but then order events
+ * only within their own batches. An event whose transaction commits after later events were published
+ * is published in a later batch.
+ *
+ * @author Andrei Yuryeu
+ */
+public class OutboxRelay implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(OutboxRelay.class.getName());
+
+    private final OutboxRepository repository;
+    private final List<OutboxSink> sinks;
+    private final long pollIntervalMillis;
+    private final int batchSize;
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+    private volatile ScheduledExecutorService scheduler;
+
+    public OutboxRelay(OutboxProperties properties, OutboxRepository repository, List<OutboxSink> sinks) {
+        this.repository = repository;
+        this.sinks = List.copyOf(sinks);
+        this.pollIntervalMillis = properties.getPollIntervalMillis();
+        this.batchSize = properties.getBatchSize();
+    }
+
+    /**
+     * Schedules the polls at the configured interval, the first one right away.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runQuietly, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publishes batches until the outbox has no more unlocked events.
+     *
+     * @return The number of events published.
+     * @throws ru.clevertec.bank.exception.RepositoryException If a batch was not published;
+     *                                                         the batches before it stay published.
+     */
+    public synchronized int drain() {
+        int published = 0;
+        int batch;
+        do {
+            batch = repository.publishBatch(batchSize, this::publish);
+            published += batch;
+            metrics.counter("bank_outbox_published_total", "Account events relayed from the outbox.").add(batch);
+        } while (batch == batchSize);
+        return published;
+    }
+
+    private void publish(List<AccountEvent> events) throws Exception {
+        for (OutboxSink sink : sinks) {
+            sink.publish(events);
+        }
+    }
+
+    private void runQuietly() {
+        try {
+            drain();
+        } catch (RuntimeException ex) {
+            metrics.counter("bank_outbox_failures_total", "Outbox batches that were not published.").increment();
+            LOGGER.log(System.Logger.Level.WARNING, "Outbox batch was not published, retrying on the next poll", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ru.clevertec.bank.util.outbox;
+
+import ru.clevertec.bank.entity.AccountEvent;
+
+import java.util.List;
+
+/**
+ * A destination of the account events relayed from the outbox.
+ * A batch counts as delivered once {@link #publish} returns; if it throws, the whole batch is published again
+ * later, so a sink must tolerate events it has already seen.
+ *
+ * @author Andrei Yuryeu
+ * @see OutboxRelay
+ */
+@FunctionalInterface
+public interface OutboxSink {
+
+    /**
+     * Delivers a batch of events, in the order of their ids.
+     *
+     * @param events The events.
+     * @throws Exception If the batch was not delivered.
+     */
+    void publish(List<AccountEvent> events) throws Exception;
+}
@@ -0,0 +1,23 @@
+package ru.clevertec.bank.util.outbox;
+
+import ru.clevertec.bank.entity.AccountEvent;
+
+import java.util.List;
+
+/**
+ * Receives the account events relayed from the outbox, at least once each.
+ *
+ * @author Andrei Yuryeu
+ * @see SubscriberSink
+ */
+@FunctionalInterface
+public interface OutboxSubscriber {
+
+    /**
+     * Handles a batch of events, in the order of their ids.
+     *
+     * @param events The events.
+     * @throws Exception If the batch was not handled; it is delivered again later.
+     */
+    void onEvents(List<AccountEvent> events) throws Exception;
+}
@@ -0,0 +1,35 @@
+package ru.clevertec.bank.util.outbox;
+
+import ru.clevertec.bank.entity.AccountEvent;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers account events to subscribers in the same process, in the order they subscribed.
+ * A subscriber that throws fails the batch, which is then published again to every subscriber.
+ *
+ * @author Andrei Yuryeu
+ */
+public class SubscriberSink implements OutboxSink {
+
+    private final List<OutboxSubscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Subscribes to the events published from now on.
+     *
+     * @param subscriber The subscriber.
+     * @return A handle that unsubscribes when closed.
+     */
+    public AutoCloseable subscribe(OutboxSubscriber subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    @Override
+    public void publish(List<AccountEvent> events) throws Exception {
+        for (OutboxSubscriber subscriber : subscribers) {
+            subscriber.onEvents(events);
+        }
+    }
+}
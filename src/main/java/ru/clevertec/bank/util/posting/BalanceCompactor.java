@@ -0,0 +1,91 @@
+package ru.clevertec.bank.util.posting;
+
+import ru.clevertec.bank.repository.PostingRepository;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.yaml.BalanceProperties;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Advances the balance checkpoints of accounts when balances are derived from postings, so that reads
+ * only add the few postings after a checkpoint. Each run waits for the postings allocated so far to be committed,
+ * then folds them into the balances in windows of {@code compactionBatch} posting ids. Only this thread updates
+ * account rows; operations only append postings. The postings not yet folded in are reported in
+ * {@code bank_balance_compaction_lag}.
+ *
+ * @author Andrei Yuryeu
+ */
+public class BalanceCompactor implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(BalanceCompactor.class.getName());
+
+    private final PostingRepository repository;
+    private final long intervalMillis;
+    private final int batch;
+    private final AtomicLong lag = new AtomicLong();
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+    private volatile ScheduledExecutorService scheduler;
+    private long compacted;
+
+    public BalanceCompactor(BalanceProperties properties, PostingRepository repository) {
+        this.repository = repository;
+        this.intervalMillis = properties.getCompactionIntervalMillis();
+        this.batch = properties.getCompactionBatch();
+        metrics.register("bank_balance_compaction_lag", "Postings not yet folded into balance checkpoints.",
+                MetricsRegistry.Type.GAUGE, lag::get);
+    }
+
+    /**
+     * Schedules the runs at the configured interval, the first one right away.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runQuietly, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Folds every committed posting after the last compacted one into the balances.
+     * The first run starts from the first posting; postings already behind a checkpoint are skipped.
+     *
+     * @return The id of the last compacted posting.
+     * @throws ru.clevertec.bank.exception.RepositoryException If a window could not be compacted;
+     *                                                         the windows before it stay compacted.
+     */
+    public synchronized long compact() {
+        long watermark = repository.findCompactionWatermark();
+        while (compacted < watermark) {
+            long to = Math.min(watermark, compacted + batch);
+            int accounts = repository.compact(compacted, to);
+            metrics.counter("bank_balance_compactions_total", "Account checkpoints advanced by compaction.")
+                    .add(accounts);
+            compacted = to;
+            lag.set(watermark - to);
+        }
+        return compacted;
+    }
+
+    private void runQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException ex) {
+            LOGGER.log(System.Logger.Level.WARNING, "Balances were not compacted, retrying on the next run", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ru.clevertec.bank.util.posting;
+
+import ru.clevertec.bank.entity.Money;
+
+/**
+ * An account whose balance differs from the sum of its postings.
+ *
+ * @param accountId The id of the account.
+ * @param balance   The balance of the account.
+ * @param posted    The sum of the postings of the account.
+ * @author Andrei Yuryeu
+ */
+public record Mismatch(long accountId, Money balance, Money posted) {
+
+    public Money difference() {
+        return balance.minus(posted);
+    }
+}
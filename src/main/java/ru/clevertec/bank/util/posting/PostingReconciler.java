@@ -0,0 +1,155 @@
+package ru.clevertec.bank.util.posting;
+
+import ru.clevertec.bank.repository.PostingRepository;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.yaml.ReconciliationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that the balance of every account equals the sum of its postings up to its checkpoint.
+ * The first run, and every {@code fullSweepRuns}-th run after it, sweeps all accounts in chunks of consecutive ids;
+ * the runs in between only check the accounts posted to since the last posting the previous run saw.
+ * Chunks are checked in parallel, each in one statement, so operations committed during a run never show up
+ * as mismatches. A full sweep also catches postings whose id was taken before the previous run but which
+ * were committed after it. Mismatches are logged and counted in {@code bank_reconciliation_mismatches}.
+ *
+ * @author Andrei Yuryeu
+ */
+public class PostingReconciler implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(PostingReconciler.class.getName());
+
+    private final PostingRepository repository;
+    private final long intervalSeconds;
+    private final int chunkSize;
+    private final int fullSweepRuns;
+    private final ExecutorService executor;
+    private final AtomicLong mismatches = new AtomicLong();
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+    private volatile ScheduledExecutorService scheduler;
+    private long watermark = -1;
+    private int runs;
+
+    public PostingReconciler(ReconciliationProperties properties, PostingRepository repository) {
+        this.repository = repository;
+        this.intervalSeconds = properties.getIntervalSeconds();
+        this.chunkSize = properties.getChunkSize();
+        this.fullSweepRuns = properties.getFullSweepRuns();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(properties.getParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        metrics.register("bank_reconciliation_mismatches", "Accounts whose balance differed from their postings "
+                + "in the last reconciliation.", MetricsRegistry.Type.GAUGE, mismatches::get);
+    }
+
+    /**
+     * Schedules the runs at the configured interval, the first one right away.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runQuietly, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Runs one reconciliation. A failed run leaves the watermark where it was, so the next run
+     * checks the same postings again.
+     *
+     * @return The accounts whose balance differs from the sum of their postings.
+     * @throws ru.clevertec.bank.exception.RepositoryException If a chunk could not be checked.
+     */
+    public synchronized List<Mismatch> reconcile() {
+        long lastPostingId = repository.findLastId();
+        boolean fullSweep = watermark < 0 || (fullSweepRuns > 0 && runs % fullSweepRuns == 0);
+        List<Callable<List<Mismatch>>> chunks = fullSweep ? sweepChunks() : postedChunks(lastPostingId);
+        List<Mismatch> found = check(chunks);
+        for (Mismatch mismatch : found) {
+            LOGGER.log(System.Logger.Level.WARNING, "Account {0} has balance {1} but postings sum to {2}",
+                    mismatch.accountId(), mismatch.balance(), mismatch.posted());
+        }
+        mismatches.set(found.size());
+        metrics.counter("bank_reconciliation_runs_total", "Reconciliation runs by kind.",
+                "kind", fullSweep ? "full" : "incremental").increment();
+        metrics.counter("bank_reconciliation_chunks_total", "Chunks of accounts checked by reconciliation.")
+                .add(chunks.size());
+        watermark = lastPostingId;
+        runs++;
+        return found;
+    }
+
+    private List<Callable<List<Mismatch>>> sweepChunks() {
+        long maxAccountId = repository.findMaxAccountId();
+        List<Callable<List<Mismatch>>> chunks = new ArrayList<>();
+        for (long from = 1; from <= maxAccountId; from += chunkSize) {
+            long first = from;
+            long last = Math.min(from + chunkSize - 1, maxAccountId);
+            chunks.add(() -> repository.findMismatches(first, last));
+        }
+        return chunks;
+    }
+
+    private List<Callable<List<Mismatch>>> postedChunks(long lastPostingId) {
+        List<Long> posted = lastPostingId > watermark
+                ? repository.findAccountsPostedBetween(watermark, lastPostingId)
+                : List.of();
+        List<Callable<List<Mismatch>>> chunks = new ArrayList<>();
+        for (int from = 0; from < posted.size(); from += chunkSize) {
+            List<Long> accountIds = posted.subList(from, Math.min(from + chunkSize, posted.size()));
+            chunks.add(() -> repository.findMismatches(accountIds));
+        }
+        return chunks;
+    }
+
+    private List<Mismatch> check(List<Callable<List<Mismatch>>> chunks) {
+        List<Mismatch> found = new ArrayList<>();
+        try {
+            for (Future<List<Mismatch>> chunk : executor.invokeAll(chunks)) {
+                found.addAll(chunk.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconciliation was interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause
+                    ? cause
+                    : new IllegalStateException("Reconciliation failed", ex.getCause());
+        }
+        return found;
+    }
+
+    private void runQuietly() {
+        try {
+            reconcile();
+        } catch (RuntimeException ex) {
+            LOGGER.log(System.Logger.Level.WARNING, "Reconciliation failed, the postings will be checked again", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.clevertec.bank.util.posting;
+
+import lombok.experimental.UtilityClass;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.Posting;
+import ru.clevertec.bank.entity.SystemLedger;
+import ru.clevertec.bank.entity.Transaction;
+
+import java.util.List;
+
+/**
+ * Derives the double-entry postings of a transaction.
+ * <ul>
+ *     <li>A withdrawal debits the account and credits {@link SystemLedger#CASH}.</li>
+ *     <li>A deposit debits {@link SystemLedger#CASH} and credits the account.</li>
+ *     <li>A transfer in one currency debits the sender and credits the receiver.</li>
+ *     <li>A transfer between currencies goes through {@link SystemLedger#FX_CLEARING}: the sender is debited
+ *     against it in the currency of the transfer, and the receiver credited from it in the converted one.</li>
+ * </ul>
+ *
+ * @author Andrei Yuryeu
+ */
+@UtilityClass
+public class Postings {
+
+    /**
+     * Returns the postings of a transaction, which sum to zero per currency.
+     * A withdrawal and a deposit name their account as the receiver, as transactions always have.
+     *
+     * @param transaction The transaction, with its id if it was already stored.
+     * @return The postings, debits first.
+     */
+    public static List<Posting> of(Transaction transaction) {
+        return switch (transaction.getType()) {
+            case WITHDRAW -> List.of(
+                    account(transaction, transaction.getReceiverAccountId(), true),
+                    ledger(transaction, SystemLedger.CASH, false));
+            case REFILL -> List.of(
+                    ledger(transaction, SystemLedger.CASH, true),
+                    account(transaction, transaction.getReceiverAccountId(), false));
+            case TRANSFER -> transaction.getAmount().currency() == transaction.getConvertedAmount().currency()
+                    ? List.of(
+                            account(transaction, transaction.getSenderAccountId(), true),
+                            account(transaction, transaction.getReceiverAccountId(), false))
+                    : List.of(
+                            account(transaction, transaction.getSenderAccountId(), true),
+                            ledger(transaction, SystemLedger.FX_CLEARING, false),
+                            ledger(transaction, SystemLedger.FX_CLEARING, true),
+                            account(transaction, transaction.getReceiverAccountId(), false));
+        };
+    }
+
+    /**
+     * Posts to an account: a debit of the amount of the transaction, or a credit of its converted amount.
+     */
+    private static Posting account(Transaction transaction, Long accountId, boolean debit) {
+        return new Posting(transaction.getId(), accountId, null, side(transaction, debit), transaction.getCreatedDate());
+    }
+
+    /**
+     * Posts to a system ledger the other side of an account posting: a credit of the amount of the transaction,
+     * or a debit of its converted amount.
+     */
+    private static Posting ledger(Transaction transaction, SystemLedger ledger, boolean debit) {
+        return new Posting(transaction.getId(), null, ledger, side(transaction, !debit).negate(),
+                transaction.getCreatedDate());
+    }
+
+    private static Money side(Transaction transaction, boolean debit) {
+        return debit ? transaction.getAmount().negate() : transaction.getConvertedAmount();
+    }
+}
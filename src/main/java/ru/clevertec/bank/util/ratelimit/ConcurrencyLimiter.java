@@ -0,0 +1,90 @@
+package ru.clevertec.bank.util.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the number of requests processed at once, queueing a bounded number of the rest.
+ * While the recent latency of admitted requests stays within the target, a request that finds every slot
+ * taken waits up to {@code queueTimeout} in the queue. Once the latency exceeds the target, queueing would
+ * only add to it, so such requests are shed at once until the latency recovers.
+ * The latency is an exponentially weighted moving average of the durations passed to {@link #release(long)}.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class ConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.1;
+
+    private final int maximumConcurrent;
+    private final Semaphore permits;
+    private final int maximumQueued;
+    private final Duration queueTimeout;
+    private final long latencyTargetNanos;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong latencyNanos = new AtomicLong();
+
+    /**
+     * @param maximumConcurrent The number of requests processed at once.
+     * @param maximumQueued     The number of requests that may wait for a slot.
+     * @param queueTimeout      How long a request may wait for a slot.
+     * @param latencyTarget     The latency above which requests are no longer queued.
+     */
+    public ConcurrencyLimiter(int maximumConcurrent, int maximumQueued, Duration queueTimeout, Duration latencyTarget) {
+        this.maximumConcurrent = maximumConcurrent;
+        this.permits = new Semaphore(maximumConcurrent, true);
+        this.maximumQueued = maximumQueued;
+        this.queueTimeout = queueTimeout;
+        this.latencyTargetNanos = latencyTarget.toNanos();
+    }
+
+    /**
+     * Takes a slot, waiting in the queue if allowed.
+     *
+     * @return True if the request was admitted and must call {@link #release(long)}, false if it was shed.
+     * @throws InterruptedException If the thread is interrupted while queued.
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (isOverloaded()) {
+            return false;
+        }
+        if (queued.incrementAndGet() > maximumQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(queueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Frees the slot of an admitted request.
+     *
+     * @param elapsedNanos How long the request took.
+     */
+    public void release(long elapsedNanos) {
+        latencyNanos.accumulateAndGet(elapsedNanos,
+                (average, sample) -> average == 0 ? sample : (long) (average + SMOOTHING * (sample - average)));
+        permits.release();
+    }
+
+    public boolean isOverloaded() {
+        return latencyNanos.get() > latencyTargetNanos;
+    }
+
+    public int getInFlight() {
+        return maximumConcurrent - permits.availablePermits();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+}
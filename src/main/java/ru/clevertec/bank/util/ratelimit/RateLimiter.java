@@ -0,0 +1,72 @@
+package ru.clevertec.bank.util.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token buckets keyed by client or account, with a fixed memory footprint.
+ * Keys are hashed onto a power-of-two number of stripes, each holding one bucket as a single {@code long}:
+ * the theoretical arrival time of the generic cell rate algorithm, which is equivalent to a token bucket
+ * refilled at {@code permitsPerSecond} and holding at most {@code burst} tokens. Taking a token is one
+ * compare-and-set, so there is no lock and no map to grow or evict. Keys that land on the same stripe share
+ * a bucket, which with enough stripes only rarely makes a limit stricter than configured.
+ *
+ * @author Andrei Yuryeu
+ */
+public final class RateLimiter {
+
+    private final AtomicLongArray arrivals;
+    private final int mask;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final LongSupplier clock;
+
+    public RateLimiter(double permitsPerSecond, int burst, int stripes) {
+        this(permitsPerSecond, burst, stripes, System::nanoTime);
+    }
+
+    RateLimiter(double permitsPerSecond, int burst, int stripes, LongSupplier clock) {
+        if (permitsPerSecond <= 0 || burst < 1 || stripes < 1) {
+            throw new IllegalArgumentException("Rate, burst and stripes must be positive");
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.arrivals = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.clock = clock;
+        long start = clock.getAsLong();
+        for (int i = 0; i < size; i++) {
+            arrivals.set(i, start);
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of the key if it has one.
+     *
+     * @param key The client or account the request is counted against.
+     * @return 0 if a token was taken, otherwise how long in nanoseconds until the bucket has one.
+     */
+    public long tryAcquire(Object key) {
+        int stripe = stripe(key);
+        while (true) {
+            long now = clock.getAsLong();
+            long arrival = arrivals.get(stripe);
+            long wait = arrival - toleranceNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrivals.compareAndSet(stripe, arrival, Math.max(arrival, now) + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    private int stripe(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        hash ^= hash >>> 16;
+        return hash & mask;
+    }
+}
@@ -4,7 +4,10 @@ import lombok.experimental.UtilityClass;
 import ru.clevertec.bank.dto.AccountResponseDto;
 import ru.clevertec.bank.dto.TransactionResponseDto;
 import ru.clevertec.bank.dto.UserResponseDto;
+import ru.clevertec.bank.entity.Money;
 import ru.clevertec.bank.exception.CheckGenerationException;
+import ru.clevertec.bank.util.metrics.MetricsRegistry;
+import ru.clevertec.bank.util.metrics.Timer;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
@@ -12,8 +15,6 @@ import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -28,57 +29,63 @@ import java.util.List;
 public class PdfStatementGenerator {
 
     private final static DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final Timer moneyStatementTimer = MetricsRegistry.global().timer(
+            "bank_generator_seconds", "Time spent generating checks and statements.", "generator", "money_statement");
+    private static final Timer accountStatementTimer = MetricsRegistry.global().timer(
+            "bank_generator_seconds", "Time spent generating checks and statements.", "generator", "account_statement");
     private static Long statementCounter = 1L;
 
     public static boolean generatePdfMoneyStatement(
             UserResponseDto user,
             AccountResponseDto account,
-            BigDecimal income,
-            BigDecimal outcome,
+            Money income,
+            Money outcome,
             LocalDate from,
             LocalDate to
     ) {
-        try (PDDocument document = new PDDocument()) {
-            PDPage page = new PDPage();
-            document.addPage(page);
-            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
-                contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 14);
-                contentStream.beginText();
-                contentStream.newLineAtOffset(250, page.getMediaBox().getHeight() - 100);
-                List<String> lines = new ArrayList<>(List.of(
-                        "Client: " + user.name() + " " + user.surname(),
-                        "Account: " + account.number(),
-                        "Currency: " + account.currency(),
-                        "Account create date: " + account.createdDate().format(formatter),
-                        "Period: " + from.format(formatter) + "-" + to.format(formatter),
-                        "Created at: " + LocalDate.now().format(formatter) + " " + LocalTime.now().truncatedTo(ChronoUnit.MINUTES)
-                ));
-                contentStream.showText("Money statement");
-                contentStream.newLineAtOffset(25, -15);
-                contentStream.showText("CleverBank");
-                contentStream.newLineAtOffset(-55, -15);
-                for (String line : lines) {
-                    contentStream.showText(line);
+        return moneyStatementTimer.time(() -> {
+            try (PDDocument document = new PDDocument()) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 14);
+                    contentStream.beginText();
+                    contentStream.newLineAtOffset(250, page.getMediaBox().getHeight() - 100);
+                    List<String> lines = new ArrayList<>(List.of(
+                            "Client: " + user.name() + " " + user.surname(),
+                            "Account: " + account.number(),
+                            "Currency: " + account.currency(),
+                            "Account create date: " + account.createdDate().format(formatter),
+                            "Period: " + from.format(formatter) + "-" + to.format(formatter),
+                            "Created at: " + LocalDate.now().format(formatter) + " " + LocalTime.now().truncatedTo(ChronoUnit.MINUTES)
+                    ));
+                    contentStream.showText("Money statement");
+                    contentStream.newLineAtOffset(25, -15);
+                    contentStream.showText("CleverBank");
+                    contentStream.newLineAtOffset(-55, -15);
+                    for (String line : lines) {
+                        contentStream.showText(line);
+                        contentStream.newLineAtOffset(0, -15);
+                    }
+                    contentStream.newLineAtOffset(-35, -15);
+                    contentStream.setWordSpacing(50);
+                    contentStream.showText("Income   Outcome");
                     contentStream.newLineAtOffset(0, -15);
+                    contentStream.showText(
+                            income.toString() + account.currency() + "  "
+                                    + outcome + account.currency()
+                    );
+                    contentStream.endText();
                 }
-                contentStream.newLineAtOffset(-35, -15);
-                contentStream.setWordSpacing(50);
-                contentStream.showText("Income   Outcome");
-                contentStream.newLineAtOffset(0, -15);
-                contentStream.showText(
-                        income.setScale(2, RoundingMode.CEILING) + account.currency() + "  "
-                                + outcome.setScale(2, RoundingMode.CEILING) + account.currency()
-                );
-                contentStream.endText();
+                String rootPath = System.getProperty("user.dir");
+                Path filePath = Paths.get(rootPath, "statements", "money", "Statement" + statementCounter + ".pdf");
+                Files.createDirectories(filePath.getParent());
+                document.save(filePath.toFile());
+            } catch (IOException e) {
+                throw new CheckGenerationException("Unable to generate the PDF statement for this account");
             }
-            String rootPath = System.getProperty("user.dir");
-            Path filePath = Paths.get(rootPath, "statements", "money", "Statement" + statementCounter + ".pdf");
-            Files.createDirectories(filePath.getParent());
-            document.save(filePath.toFile());
-        } catch (IOException e) {
-            throw new CheckGenerationException("Unable to generate the PDF statement for this account");
-        }
-        return true;
+            return true;
+        });
     }
 
     public static boolean generatePdfAccountStatement(
@@ -88,54 +95,55 @@ public class PdfStatementGenerator {
             LocalDate from,
             LocalDate to
     ) {
-        try (PDDocument document = new PDDocument()) {
-            PDPage page = new PDPage();
-            document.addPage(page);
-            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
-                contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 14);
-                contentStream.beginText();
-                contentStream.newLineAtOffset(250, page.getMediaBox().getHeight() - 100);
-                List<String> lines = new ArrayList<>(List.of(
-                        "Client: " + user.name() + " " + user.surname(),
-                        "Account: " + account.number(),
-                        "Currency: " + account.currency(),
-                        "Account create date: " + account.createdDate().format(formatter),
-                        "Period: " + from.format(formatter) + "-" + to.format(formatter),
-                        "Created at: " + LocalDate.now().format(formatter) + " " + LocalTime.now().truncatedTo(ChronoUnit.MINUTES)
-                ));
-                contentStream.showText("Account statement");
-                contentStream.newLineAtOffset(25, -15);
-                contentStream.showText("CleverBank");
-                contentStream.newLineAtOffset(-55, -15);
-                for (String line : lines) {
-                    contentStream.showText(line);
-                    contentStream.newLineAtOffset(0, -15);
-                }
-                contentStream.newLineAtOffset(-35, -15);
-                contentStream.setWordSpacing(80);
-                contentStream.showText("Date Note Sum");
-                contentStream.newLineAtOffset(0, -15);
-                contentStream.setWordSpacing(32);
-                for (TransactionResponseDto transaction : transactions) {
-                    if ("REFILL".equals(transaction.type())) {
-                        contentStream.showText(transaction.createdDate().format(formatter) + " " + transaction.type() + "  " + transaction.amount());
+        return accountStatementTimer.time(() -> {
+            try (PDDocument document = new PDDocument()) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 14);
+                    contentStream.beginText();
+                    contentStream.newLineAtOffset(250, page.getMediaBox().getHeight() - 100);
+                    List<String> lines = new ArrayList<>(List.of(
+                            "Client: " + user.name() + " " + user.surname(),
+                            "Account: " + account.number(),
+                            "Currency: " + account.currency(),
+                            "Account create date: " + account.createdDate().format(formatter),
+                            "Period: " + from.format(formatter) + "-" + to.format(formatter),
+                            "Created at: " + LocalDate.now().format(formatter) + " " + LocalTime.now().truncatedTo(ChronoUnit.MINUTES)
+                    ));
+                    contentStream.showText("Account statement");
+                    contentStream.newLineAtOffset(25, -15);
+                    contentStream.showText("CleverBank");
+                    contentStream.newLineAtOffset(-55, -15);
+                    for (String line : lines) {
+                        contentStream.showText(line);
                         contentStream.newLineAtOffset(0, -15);
-                    } else {
-                        contentStream.showText(transaction.createdDate().format(formatter) + " " + transaction.type() + " " + transaction.amount());
+                    }
+                    contentStream.newLineAtOffset(-35, -15);
+                    contentStream.setWordSpacing(80);
+                    contentStream.showText("Date Note Sum");
+                    contentStream.newLineAtOffset(0, -15);
+                    contentStream.setWordSpacing(32);
+                    for (TransactionResponseDto transaction : transactions) {
+                        String separator = switch (transaction.type()) {
+                            case REFILL -> "  ";
+                            case WITHDRAW, TRANSFER -> " ";
+                        };
+                        contentStream.showText(transaction.createdDate().format(formatter) + " " + transaction.type() + separator + transaction.amount());
                         contentStream.newLineAtOffset(0, -15);
                     }
-                }
 
-                contentStream.endText();
+                    contentStream.endText();
+                }
+                String rootPath = System.getProperty("user.dir");
+                Path filePath = Paths.get(rootPath, "statements", "accounts", "Statement" + statementCounter + ".pdf");
+                Files.createDirectories(filePath.getParent());
+                document.save(filePath.toFile());
+                ++statementCounter;
+            } catch (IOException e) {
+                throw new CheckGenerationException("Unable to generate the PDF statement for this account");
             }
-            String rootPath = System.getProperty("user.dir");
-            Path filePath = Paths.get(rootPath, "statements", "accounts", "Statement" + statementCounter + ".pdf");
-            Files.createDirectories(filePath.getParent());
-            document.save(filePath.toFile());
-            ++statementCounter;
-        } catch (IOException e) {
-            throw new CheckGenerationException("Unable to generate the PDF statement for this account");
-        }
-        return true;
+            return true;
+        });
     }
 }
\ No newline at end of file
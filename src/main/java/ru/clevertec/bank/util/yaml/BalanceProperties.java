@@ -0,0 +1,11 @@
+package ru.clevertec.bank.util.yaml;
+
+import lombok.Data;
+
+@Data
+public class BalanceProperties {
+
+    private boolean derived = false;
+    private long compactionIntervalMillis = 1000;
+    private int compactionBatch = 10_000;
+}
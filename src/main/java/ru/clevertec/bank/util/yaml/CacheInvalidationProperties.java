@@ -0,0 +1,15 @@
+package ru.clevertec.bank.util.yaml;
+
+import lombok.Data;
+
+@Data
+public class CacheInvalidationProperties {
+
+    private boolean enabled = true;
+    private String channel = "bank_cache";
+    private long flushIntervalMillis = 20;
+    private long coalesceMillis = 20;
+    private int maximumBatch = 1000;
+    private long pollMillis = 1000;
+    private long reconnectMillis = 1000;
+}
@@ -0,0 +1,12 @@
+package ru.clevertec.bank.util.yaml;
+
+import lombok.Data;
+
+@Data
+public class CacheProperties {
+
+    private boolean enabled = true;
+    private int maximumSize = 10_000;
+    private long ttlSeconds = 60;
+    private CacheInvalidationProperties invalidation = new CacheInvalidationProperties();
+}
@@ -0,0 +1,17 @@
+package ru.clevertec.bank.util.yaml;
+
+import lombok.Data;
+import ru.clevertec.bank.util.event.OverflowPolicy;
+
+@Data
+public class EventStreamProperties {
+
+    private boolean enabled = true;
+    private int maximumStreams = 5000;
+    private int bufferSize = 64;
+    private OverflowPolicy overflow = OverflowPolicy.DISCONNECT;
+    private long heartbeatSeconds = 15;
+    private String channel = "bank_events";
+    private long pollMillis = 1000;
+    private long reconnectMillis = 1000;
+}
@@ -0,0 +1,13 @@
+package ru.clevertec.bank.util.yaml;
+
+import lombok.Data;
+
+@Data
+public class ExecutionProperties {
+
+    private boolean virtualThreads = false;
+    private int transferThreads = 16;
+    private int statementThreads = 4;
+    private int queueCapacity = 1_000;
+    private long asyncTimeoutMillis = 30_000;
+}
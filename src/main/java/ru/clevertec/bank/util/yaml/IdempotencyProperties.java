@@ -0,0 +1,11 @@
+package ru.clevertec.bank.util.yaml;
+
+import lombok.Data;
+
+@Data
+public class IdempotencyProperties {
+
+    private int filterBits = 8_388_608;
+    private int filterHashes = 5;
+    private long filterKeysPerGeneration = 500_000;
+}
@@ -0,0 +1,17 @@
+package ru.clevertec.bank.util.yaml;
+
+import lombok.Data;
+
+@Data
+public class LedgerProperties {
+
+    private boolean enabled = false;
+    private String directory = "ledger";
+    private int shards = 4;
+    private int queueCapacity = 10_000;
+    private int maximumBatch = 256;
+    private int applyBatch = 512;
+    private long operationTimeoutMillis = 30_000;
+    private int transactionIdBlock = 1000;
+    private long maximumLogBytes = 64L * 1024 * 1024;
+}
@@ -0,0 +1,12 @@
+package ru.clevertec.bank.util.yaml;
+
+import lombok.Data;
+
+@Data
+public class OutboxProperties {
+
+    private boolean enabled = true;
+    private long pollIntervalMillis = 200;
+    private int batchSize = 500;
+    private String file;
+}
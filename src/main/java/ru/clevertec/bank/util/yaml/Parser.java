@@ -7,21 +7,62 @@ import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.Constructor;
 
 import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Optional;
 
+/**
+ * Loads application properties from YAML.
+ * The file given by the {@value #CONFIG_PROPERTY} system property is used if it is set,
+ * otherwise {@value #DEFAULT_RESOURCE} is taken from the classpath.
+ *
+ * @author Andrei Yuryeu
+ */
 @Getter
 public class Parser {
 
-    private final Properties yaml;
+    public static final String CONFIG_PROPERTY = "bank.config";
+    public static final String DEFAULT_RESOURCE = "application.yml";
+
+    private final URL location;
 
     @SneakyThrows
     public Parser() {
+        String configured = System.getProperty(CONFIG_PROPERTY);
+        if (configured != null) {
+            this.location = Path.of(configured).toUri().toURL();
+        } else {
+            this.location = this.getClass()
+                    .getClassLoader()
+                    .getResource(DEFAULT_RESOURCE);
+        }
+        if (this.location == null) {
+            throw new IllegalStateException(DEFAULT_RESOURCE + " was not found on the classpath");
+        }
+    }
+
+    /**
+     * Reads and parses the current content of the configuration file.
+     *
+     * @return The parsed properties.
+     */
+    @SneakyThrows
+    public Properties parse() {
         Yaml yaml = new Yaml(new Constructor(Properties.class, new LoaderOptions()));
-        InputStream inputStream = this.getClass()
-                .getClassLoader()
-                .getResourceAsStream("application.yml");
-        this.yaml = yaml.load(inputStream);
-        if (inputStream != null) {
-            inputStream.close();
+        try (InputStream inputStream = location.openStream()) {
+            return yaml.load(inputStream);
         }
     }
+
+    /**
+     * Returns the path of the configuration file if it is a plain file that can be watched for changes.
+     *
+     * @return The file path, or empty if the configuration is packed into an archive.
+     */
+    @SneakyThrows
+    public Optional<Path> getPath() {
+        return "file".equals(location.getProtocol())
+                ? Optional.of(Path.of(location.toURI()))
+                : Optional.empty();
+    }
 }
@@ -9,4 +9,10 @@ public class PostgresProperties {
     private String url;
     private String user;
     private String password;
+    private int maximumPoolSize = 10;
+    private long connectionTimeoutMillis = 30_000;
+    private int maximumConnectionWaiters = 1_000;
+    private int prepareThreshold = 1;
+    private int preparedStatementCacheQueries = 256;
+    private int preparedStatementCacheSizeMiB = 5;
 }
@@ -1,6 +1,7 @@
 package ru.clevertec.bank.util.yaml;
 
 import lombok.Data;
+import ru.clevertec.bank.entity.Currency;
 
 import java.math.BigDecimal;
 import java.util.Map;
@@ -11,4 +12,15 @@ public class Properties {
     private PostgresProperties postgres;
     private BigDecimal interestRate;
     private Map<String, BigDecimal> exchangeRates;
+    private Currency baseCurrency = Currency.BYN;
+    private CacheProperties cache = new CacheProperties();
+    private QueryProperties queries = new QueryProperties();
+    private ExecutionProperties execution = new ExecutionProperties();
+    private RateLimitProperties rateLimit = new RateLimitProperties();
+    private IdempotencyProperties idempotency = new IdempotencyProperties();
+    private LedgerProperties ledger = new LedgerProperties();
+    private ReconciliationProperties reconciliation = new ReconciliationProperties();
+    private BalanceProperties balances = new BalanceProperties();
+    private OutboxProperties outbox = new OutboxProperties();
+    private EventStreamProperties events = new EventStreamProperties();
 }
@@ -0,0 +1,175 @@
+package ru.clevertec.bank.util.yaml;
+
+import ru.clevertec.bank.util.exchange.ExchangeRates;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Holds the current application properties together with the exchange rates derived from them.
+ * Both are published as one immutable {@link Snapshot} through a volatile reference, so readers on the
+ * transfer path never take a lock and never see rates from one version of the file mixed with another.
+ * When {@link #watch()} is called, the configuration file is watched with a {@link WatchService}
+ * and a new snapshot is published whenever the file changes.
+ *
+ * @author Andrei Yuryeu
+ * @see Parser
+ * @see ExchangeRates
+ */
+public class PropertiesProvider implements Closeable {
+
+    private static final System.Logger log = System.getLogger(PropertiesProvider.class.getName());
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Parser parser;
+    private final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot;
+    private WatchService watchService;
+    private Thread watcher;
+
+    public PropertiesProvider(Parser parser) {
+        this.parser = parser;
+        this.snapshot = load();
+    }
+
+    /**
+     * Immutable view of one version of the configuration.
+     *
+     * @param properties    The parsed properties.
+     * @param exchangeRates The exchange-rate matrix built from these properties.
+     */
+    public record Snapshot(Properties properties, ExchangeRates exchangeRates) {
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Properties getProperties() {
+        return snapshot.properties();
+    }
+
+    public ExchangeRates getExchangeRates() {
+        return snapshot.exchangeRates();
+    }
+
+    /**
+     * Registers a callback invoked with every snapshot published by {@link #reload()}.
+     *
+     * @param listener The callback.
+     */
+    public void addListener(Consumer<Snapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Re-reads the configuration file and publishes a new snapshot.
+     * If the file cannot be parsed or contains invalid rates, the current snapshot is kept.
+     *
+     * @return True if a new snapshot was published, false otherwise.
+     */
+    public boolean reload() {
+        Snapshot reloaded;
+        try {
+            reloaded = load();
+        } catch (RuntimeException ex) {
+            log.log(System.Logger.Level.WARNING, "Configuration was not reloaded, keeping the previous one", ex);
+            return false;
+        }
+        snapshot = reloaded;
+        log.log(System.Logger.Level.INFO, "Configuration reloaded from {0}", parser.getLocation());
+        for (Consumer<Snapshot> listener : listeners) {
+            try {
+                listener.accept(reloaded);
+            } catch (RuntimeException ex) {
+                log.log(System.Logger.Level.WARNING, "Configuration listener failed", ex);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a daemon thread that reloads the configuration whenever its file changes.
+     * Does nothing if the configuration is not a plain file or is already watched.
+     *
+     * @throws IOException If the watch service cannot be registered.
+     */
+    public synchronized void watch() throws IOException {
+        Optional<Path> path = parser.getPath();
+        if (watcher != null || path.isEmpty()) {
+            return;
+        }
+        Path file = path.get().toAbsolutePath();
+        watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = new Thread(() -> watchLoop(file), "properties-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Stops watching the configuration file.
+     *
+     * @throws IOException If the watch service cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+            watcher = null;
+        }
+    }
+
+    private Snapshot load() {
+        Properties properties = parser.parse();
+        ExchangeRates exchangeRates = ExchangeRates.of(properties.getExchangeRates(), properties.getBaseCurrency());
+        return new Snapshot(properties, exchangeRates);
+    }
+
+    private void watchLoop(Path file) {
+        WatchService service = watchService;
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = drain(key, file);
+                WatchKey next;
+                while ((next = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(next, file);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ex) {
+            // watching was stopped
+        }
+    }
+
+    private boolean drain(WatchKey key, Path file) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.clevertec.bank.util.yaml;
+
+import lombok.Data;
+
+@Data
+public class QueryProperties {
+
+    private long slowThresholdMillis = 200;
+    private int maximumTemplates = 1_000;
+}
@@ -0,0 +1,19 @@
+package ru.clevertec.bank.util.yaml;
+
+import lombok.Data;
+
+@Data
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    private String clientHeader = "X-Client-Id";
+    private double clientPermitsPerSecond = 50;
+    private int clientBurst = 100;
+    private double accountPermitsPerSecond = 20;
+    private int accountBurst = 40;
+    private int stripes = 65_536;
+    private int maximumConcurrent = 64;
+    private int maximumQueued = 256;
+    private long queueTimeoutMillis = 1_000;
+    private long latencyTargetMillis = 500;
+}
@@ -0,0 +1,13 @@
+package ru.clevertec.bank.util.yaml;
+
+import lombok.Data;
+
+@Data
+public class ReconciliationProperties {
+
+    private boolean enabled = true;
+    private long intervalSeconds = 60;
+    private int chunkSize = 1000;
+    private int parallelism = 2;
+    private int fullSweepRuns = 60;
+}
@@ -0,0 +1,72 @@
+package ru.clevertec.bank.entity;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.clevertec.bank.util.exchange.ExchangeRates;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+
+class MoneyTest {
+
+    @Test
+    void ofTest_shouldRoundHalfUpToMinorUnits() {
+        //given
+        BigDecimal amount = new BigDecimal("10.125");
+
+        //when
+        Money actual = Money.of(amount, Currency.BYN);
+
+        //then
+        Assertions.assertEquals(new Money(1013, Currency.BYN), actual);
+        Assertions.assertEquals(new BigDecimal("10.13"), actual.toBigDecimal());
+    }
+
+    @Test
+    void convertTest_shouldRoundExactlyAsDecimalConversion() {
+        //given
+        Random random = new Random(42);
+        List<BigDecimal> rates = List.of(new BigDecimal("0.315288"), new BigDecimal("102.26"),
+                new BigDecimal("3.4200000000"), new BigDecimal("0.033488"), BigDecimal.ONE,
+                new BigDecimal("0.005"), new BigDecimal("1.2345678901234567"));
+
+        for (int i = 0; i < 10_000; i++) {
+            long minorUnits = random.nextLong(-100_000_000L, 100_000_000L);
+            BigDecimal rate = rates.get(i % rates.size());
+            Money amount = new Money(minorUnits, Currency.EUR);
+
+            //when
+            Money actual = amount.convert(rate, Currency.RUB);
+
+            //then
+            Assertions.assertEquals(ExchangeRates.convert(amount.toBigDecimal(), rate), actual.toBigDecimal(),
+                    () -> amount + " * " + rate);
+            Assertions.assertEquals(Currency.RUB, actual.currency());
+        }
+    }
+
+    @Test
+    void convertTest_shouldFallBackToDecimalWhenProductOverflows() {
+        //given
+        Money amount = new Money(Long.MAX_VALUE / 10, Currency.BYN);
+        BigDecimal rate = new BigDecimal("0.123456789");
+
+        //when
+        Money actual = amount.convert(rate, Currency.USD);
+
+        //then
+        Assertions.assertEquals(ExchangeRates.convert(amount.toBigDecimal(), rate), actual.toBigDecimal());
+    }
+
+    @Test
+    void plusTest_shouldThrowExceptionForDifferentCurrencies() {
+        //given
+        Money byn = Money.of(BigDecimal.TEN, Currency.BYN);
+        Money usd = Money.of(BigDecimal.TEN, Currency.USD);
+
+        //then
+        Assertions.assertThrows(IllegalArgumentException.class, () -> byn.plus(usd));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> byn.isLessThan(usd));
+    }
+}
@@ -3,6 +3,8 @@ package ru.clevertec.bank.mapper;
 import ru.clevertec.bank.dto.AccountRequestDto;
 import ru.clevertec.bank.dto.AccountResponseDto;
 import ru.clevertec.bank.entity.Account;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.mapstruct.factory.Mappers;
@@ -19,7 +21,7 @@ class AccountMapperTest {
     @Test
     void toDtoTest_shouldMapAccountToAccountResponseDto() {
         //given
-        Account account = new Account("0123400100000001", BigDecimal.valueOf(49734.62), "USD", 2L, 2L, LocalDate.of(2013, 11, 12), true);
+        Account account = new Account("0123400100000001", Money.of(BigDecimal.valueOf(49734.62), Currency.USD), Currency.USD, 2L, 2L, LocalDate.of(2013, 11, 12), true);
         account.setId(3L);
 
         var expected = new AccountResponseDto(account.getId(), account.getNumber(), account.getBalance(),
@@ -35,7 +37,7 @@ class AccountMapperTest {
     @Test
     void fromDtoTest_shouldMapAccountRequestDtoIntoAccount() {
         //given
-        AccountRequestDto accountRequestDto = new AccountRequestDto("0123400100000001", "USD", 2L, 2L);
+        AccountRequestDto accountRequestDto = new AccountRequestDto("0123400100000001", Currency.USD, 2L, 2L);
 
         var expected = new Account(accountRequestDto.number(), null, accountRequestDto.currency(), accountRequestDto.bankId(),
                 accountRequestDto.bankId(), null, null);
@@ -51,9 +53,9 @@ class AccountMapperTest {
     @Test
     void toListOfDtoTest_shouldMapListOfAccountsIntoListOfAccountResponseDto() {
         //given
-        Account account1 = new Account("0123400100000001", BigDecimal.valueOf(49734.62), "USD", 2L, 2L, LocalDate.of(2013, 11, 12), true);
+        Account account1 = new Account("0123400100000001", Money.of(BigDecimal.valueOf(49734.62), Currency.USD), Currency.USD, 2L, 2L, LocalDate.of(2013, 11, 12), true);
         account1.setId(3L);
-        Account account2 = new Account("0104123400000001", BigDecimal.valueOf(98753.34), "EUR", 4L, 3L, LocalDate.of(2023, 12, 4), true);
+        Account account2 = new Account("0104123400000001", Money.of(BigDecimal.valueOf(98753.34), Currency.EUR), Currency.EUR, 4L, 3L, LocalDate.of(2023, 12, 4), true);
         account2.setId(4L);
 
         List<Account> accounts = new ArrayList<>() {{
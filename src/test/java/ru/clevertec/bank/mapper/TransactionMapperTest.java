@@ -2,7 +2,10 @@ package ru.clevertec.bank.mapper;
 
 import ru.clevertec.bank.dto.TransactionRequestDto;
 import ru.clevertec.bank.dto.TransactionResponseDto;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
 import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.entity.TransactionType;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.mapstruct.factory.Mappers;
@@ -20,12 +23,13 @@ class TransactionMapperTest {
     void toDtoTest_shouldMapTransactionToTransactionResponseDto() {
         //given
         Transaction transaction = new Transaction(
-                BigDecimal.valueOf(100.11), "WITHDRAW", "BYN", 0L, 2L,
-                LocalDateTime.of(2023, 12, 18, 12, 11, 7, 0));
+                Money.of(BigDecimal.valueOf(100.11), Currency.BYN), TransactionType.WITHDRAW, Currency.BYN, 0L, 2L,
+                LocalDateTime.of(2023, 12, 18, 12, 11, 7, 0), null, null);
         transaction.setId(1L);
         var expected = new TransactionResponseDto(
                 transaction.getId(), transaction.getAmount(), transaction.getType(), transaction.getCurrency(),
-                transaction.getSenderAccountId(), transaction.getReceiverAccountId(), transaction.getCreatedDate());
+                transaction.getSenderAccountId(), transaction.getReceiverAccountId(), transaction.getCreatedDate(),
+                transaction.getExchangeRate(), transaction.getConvertedAmount());
 
         //when
         TransactionResponseDto actual = transactionMapper.toDto(transaction);
@@ -38,11 +42,11 @@ class TransactionMapperTest {
     void fromDtoTest_shouldMapTransactionRequestDtoIntoTransaction() {
         //given
         TransactionRequestDto transactionRequestDto = new TransactionRequestDto(
-                BigDecimal.valueOf(100.11), "WITHDRAW", "BYN", 0L, 2L
+                BigDecimal.valueOf(100.11), TransactionType.WITHDRAW, Currency.BYN, 0L, 2L
         );
         var expected = new Transaction(
-                transactionRequestDto.amount(), transactionRequestDto.type(), transactionRequestDto.currency(),
-                transactionRequestDto.senderAccountId(), transactionRequestDto.receiverAccountId(), null);
+                Money.of(transactionRequestDto.amount(), Currency.BYN), transactionRequestDto.type(),
+                transactionRequestDto.currency(), transactionRequestDto.senderAccountId(), transactionRequestDto.receiverAccountId(), null, null, null);
         expected.setId(3L);
 
         //when
@@ -56,12 +60,12 @@ class TransactionMapperTest {
     void toListOfDtoTest_shouldMapListOfTransactionsIntoListOfTransactionResponseDto() {
         //given
         Transaction transaction1 = new Transaction(
-                BigDecimal.valueOf(100.11), "WITHDRAW", "BYN", 0L, 2L,
-                LocalDateTime.of(2023, 12, 18, 12, 11, 7, 0));
+                Money.of(BigDecimal.valueOf(100.11), Currency.BYN), TransactionType.WITHDRAW, Currency.BYN, 0L, 2L,
+                LocalDateTime.of(2023, 12, 18, 12, 11, 7, 0), null, null);
         transaction1.setId(1L);
         Transaction transaction2 = new Transaction(
-                BigDecimal.valueOf(123.22), "WITHDRAW", "RUB", 0L, 1L,
-                LocalDateTime.of(2023, 9, 22, 10, 11, 7, 0));
+                Money.of(BigDecimal.valueOf(123.22), Currency.RUB), TransactionType.WITHDRAW, Currency.RUB, 0L, 1L,
+                LocalDateTime.of(2023, 9, 22, 10, 11, 7, 0), null, null);
         transaction2.setId(2L);
 
         List<Transaction> transactions = new ArrayList<>() {{
@@ -70,7 +74,8 @@ class TransactionMapperTest {
         }};
 
         List<TransactionResponseDto> expected = transactions.stream().map(t -> new TransactionResponseDto(t.getId(), t.getAmount(), t.getType(), t.getCurrency(),
-                t.getSenderAccountId(), t.getReceiverAccountId(), t.getCreatedDate())).toList();
+                t.getSenderAccountId(), t.getReceiverAccountId(), t.getCreatedDate(),
+                t.getExchangeRate(), t.getConvertedAmount())).toList();
 
         //when
         List<TransactionResponseDto> actual = transactionMapper.toListOfDto(transactions);
@@ -1,5 +1,10 @@
 package ru.clevertec.bank.repository;
 
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.TransactionType;
+import ru.clevertec.bank.exception.BadRequestException;
+import ru.clevertec.bank.exception.MoneyTransferException;
 import ru.clevertec.bank.exception.RepositoryException;
 import ru.clevertec.bank.entity.Account;
 import ru.clevertec.bank.entity.Transaction;
@@ -24,7 +29,7 @@ class AccountRepositoryTest extends BaseRepositoryTest {
         void findByIdTest_shouldReturnAccountWithId1() {
             //given
             Long id = 1L;
-            Account expected = new Account("0104100100000001", BigDecimal.valueOf(1234.31), "BYN",
+            Account expected = new Account("0104100100000001", Money.of(BigDecimal.valueOf(1234.31), Currency.BYN), Currency.BYN,
                     1L, 1L, LocalDate.of(2001, 11, 18), true);
             expected.setId(id);
 
@@ -53,7 +58,7 @@ class AccountRepositoryTest extends BaseRepositoryTest {
     void findByNumberTest_shouldReturnAccountWithNumber0104100100000001() {
         //given
         String number = "0104100100000001";
-        Account account = new Account("0104100100000001", BigDecimal.valueOf(1234.31), "BYN",
+        Account account = new Account("0104100100000001", Money.of(BigDecimal.valueOf(1234.31), Currency.BYN), Currency.BYN,
                 1L, 1L, LocalDate.of(2001, 11, 18), true);
         account.setId(1L);
         Optional<Account> expected = Optional.of(account);
@@ -69,7 +74,7 @@ class AccountRepositoryTest extends BaseRepositoryTest {
     void blockingFindByNumberTest_shouldReturnAndBlockAccountWithNumber0104100100000001() {
         //given
         String number = "0104100100000001";
-        Account account = new Account("0104100100000001", BigDecimal.valueOf(1234.31), "BYN",
+        Account account = new Account("0104100100000001", Money.of(BigDecimal.valueOf(1234.31), Currency.BYN), Currency.BYN,
                 1L, 1L, LocalDate.of(2001, 11, 18), true);
         account.setId(1L);
         Optional<Account> expected = Optional.of(account);
@@ -84,10 +89,10 @@ class AccountRepositoryTest extends BaseRepositoryTest {
     @Test
     void findAllTest_shouldReturnAccountsWithId3And4() {
         //given
-        Account account1 = new Account("0104100100000001", BigDecimal.valueOf(1234.31), "BYN",
+        Account account1 = new Account("0104100100000001", Money.of(BigDecimal.valueOf(1234.31), Currency.BYN), Currency.BYN,
                 1L, 1L, LocalDate.of(2001, 11, 18), true);
         account1.setId(1L);
-        Account account2 = new Account("0104100100000002", BigDecimal.valueOf(500123.01), "RUB",
+        Account account2 = new Account("0104100100000002", Money.of(BigDecimal.valueOf(500123.01), Currency.RUB), Currency.RUB,
                 3L, 1L, LocalDate.of(2022, 9, 22), true);
         account2.setId(2L);
 
@@ -109,9 +114,9 @@ class AccountRepositoryTest extends BaseRepositoryTest {
         @Test
         void saveTest_shouldReturnAccountWithId7AndAddAccountToDB() {
             //given
-            Account accountWithoutId = new Account("0123400100000001", BigDecimal.valueOf(0), "BYN",
+            Account accountWithoutId = new Account("0123400100000001", Money.of(BigDecimal.valueOf(0), Currency.BYN), Currency.BYN,
                     2L, 4L, LocalDate.of(2022, 11, 12), true);
-            Account expected = new Account("0123400100000001", BigDecimal.valueOf(0), "BYN",
+            Account expected = new Account("0123400100000001", Money.of(BigDecimal.valueOf(0), Currency.BYN), Currency.BYN,
                     2L, 4L, LocalDate.of(2022, 11, 12), true);
             expected.setId(7L);
 
@@ -125,12 +130,22 @@ class AccountRepositoryTest extends BaseRepositoryTest {
         @Test
         void saveTest_shouldThrowExceptionIfAnyFieldIsNull() {
             //given
-            Account accountWithoutId = new Account(null, BigDecimal.valueOf(41233.61), "BYN",
+            Account accountWithoutId = new Account(null, Money.of(BigDecimal.valueOf(41233.61), Currency.BYN), Currency.BYN,
                     2L, 4L, LocalDate.of(2022, 11, 12), true);
 
             //then
             Assertions.assertThrows(RepositoryException.class, () -> accountRepository.save(accountWithoutId));
         }
+
+        @Test
+        void saveTest_shouldThrowBadRequestExceptionIfNumberExists() {
+            //given
+            Account accountWithTakenNumber = new Account("0104100100000001", Money.of(BigDecimal.valueOf(0), Currency.BYN),
+                    Currency.BYN, 2L, 4L, LocalDate.of(2022, 11, 12), true);
+
+            //then
+            Assertions.assertThrows(BadRequestException.class, () -> accountRepository.save(accountWithTakenNumber));
+        }
     }
 
     @Nested
@@ -168,22 +183,23 @@ class AccountRepositoryTest extends BaseRepositoryTest {
     @Test
     void withdrawTest_shouldWithdrawMoneyFromAccountWithId3() {
         //given
-        BigDecimal amount = BigDecimal.valueOf(123);
-        Account account = new Account("0123400100000001", BigDecimal.valueOf(49734.62), "USD",
+        Money amount = Money.of(BigDecimal.valueOf(123), Currency.USD);
+        Account account = new Account("0123400100000001", Money.of(BigDecimal.valueOf(49734.62), Currency.USD), Currency.USD,
                 2L, 2L, LocalDate.of(2013, 11, 12), true);
         account.setId(3L);
 
-        Account expectedAccount = new Account("0123400100000001", BigDecimal.valueOf(49611.62), "USD",
+        Account expectedAccount = new Account("0123400100000001", Money.of(BigDecimal.valueOf(49611.62), Currency.USD), Currency.USD,
                 2L, 2L, LocalDate.of(2013, 11, 12), true);
         expectedAccount.setId(3L);
-        Transaction expectedTransaction = new Transaction(amount, "WITHDRAW", account.getCurrency(),
-                null, account.getId(), null);
+        Transaction expectedTransaction = new Transaction(amount, TransactionType.WITHDRAW, account.getCurrency(),
+                null, account.getId(), null, BigDecimal.ONE, amount);
 
         //when
         Transaction transaction = accountRepository.withdraw(account, amount);
         Transaction actualTransaction = new Transaction(transaction.getAmount(), transaction.getType(),
                 transaction.getCurrency(), transaction.getSenderAccountId(),
-                transaction.getReceiverAccountId(), null);
+                transaction.getReceiverAccountId(), null,
+                transaction.getExchangeRate(), transaction.getConvertedAmount());
         Account actualAccount = accountRepository.findByNumber("0123400100000001").get();
 
         //then
@@ -191,25 +207,41 @@ class AccountRepositoryTest extends BaseRepositoryTest {
         Assertions.assertEquals(expectedAccount, actualAccount);
     }
 
+    @Test
+    void withdrawTest_shouldCheckBalanceUnderLockAndThrowMoneyTransferExceptionForStaleAccount() {
+        //given
+        Money amount = Money.of(BigDecimal.valueOf(1000), Currency.EUR);
+        Account stale = new Account("0104100100000003", Money.of(BigDecimal.valueOf(5000), Currency.EUR), Currency.EUR,
+                4L, 1L, LocalDate.of(2023, 12, 4), true);
+        stale.setId(6L);
+        Money expectedBalance = Money.of(BigDecimal.valueOf(100.92), Currency.EUR);
+
+        //when
+        //then
+        Assertions.assertThrows(MoneyTransferException.class, () -> accountRepository.withdraw(stale, amount));
+        Assertions.assertEquals(expectedBalance, accountRepository.findById(6L).get().getBalance());
+    }
+
     @Test
     void depositTest_shouldRefillMoneyToAccountWithId4() {
         //given
-        BigDecimal amount = BigDecimal.valueOf(77);
-        Account account = new Account("0104123400000001", BigDecimal.valueOf(98753.34), "EUR",
+        Money amount = Money.of(BigDecimal.valueOf(77), Currency.EUR);
+        Account account = new Account("0104123400000001", Money.of(BigDecimal.valueOf(98753.34), Currency.EUR), Currency.EUR,
                 4L, 3L, LocalDate.of(2023, 12, 4), true);
         account.setId(4L);
 
-        Account expectedAccount = new Account("0104123400000001", BigDecimal.valueOf(98830.34), "EUR",
+        Account expectedAccount = new Account("0104123400000001", Money.of(BigDecimal.valueOf(98830.34), Currency.EUR), Currency.EUR,
                 4L, 3L, LocalDate.of(2023, 12, 4), true);
         expectedAccount.setId(4L);
-        Transaction expectedTransaction = new Transaction(amount, "REFILL", account.getCurrency(),
-                null, account.getId(), null);
+        Transaction expectedTransaction = new Transaction(amount, TransactionType.REFILL, account.getCurrency(),
+                null, account.getId(), null, BigDecimal.ONE, amount);
 
         //when
         Transaction transaction = accountRepository.deposit(account, amount);
         Transaction actualTransaction = new Transaction(transaction.getAmount(), transaction.getType(),
                 transaction.getCurrency(), transaction.getSenderAccountId(),
-                transaction.getReceiverAccountId(), null);
+                transaction.getReceiverAccountId(), null,
+                transaction.getExchangeRate(), transaction.getConvertedAmount());
         Account actualAccount = accountRepository.findById(4L).get();
 
         //then
@@ -220,30 +252,32 @@ class AccountRepositoryTest extends BaseRepositoryTest {
     @Test
     void transferTest_shouldTransferMoneyFromAccountWithId5To6() {
         //given
-        BigDecimal amount = BigDecimal.valueOf(123);
+        Money amount = Money.of(BigDecimal.valueOf(123), Currency.EUR);
 
-        Account sender = new Account("0104100100000002", BigDecimal.valueOf(10025.85), "EUR",
+        Account sender = new Account("0104100100000002", Money.of(BigDecimal.valueOf(10025.85), Currency.EUR), Currency.EUR,
                 4L, 4L, LocalDate.of(2023, 12, 4), true);
         sender.setId(5L);
-        Account receiver = new Account("0123400100000001", BigDecimal.valueOf(0.00), "RUB",
+        Account receiver = new Account("0123400100000001", Money.of(BigDecimal.valueOf(0.00), Currency.RUB), Currency.RUB,
                 2L, 1L, LocalDate.of(2023, 12, 4), true);
         receiver.setId(7L);
 
-        Account expectedSender = new Account("0001000100000001", BigDecimal.valueOf(9902.85), "EUR",
+        Account expectedSender = new Account("0001000100000001", Money.of(BigDecimal.valueOf(9902.85), Currency.EUR), Currency.EUR,
                 4L, 4L, LocalDate.of(2023, 12, 4), true);
         expectedSender.setId(5L);
-        Account expectedReceiver = new Account("0104100100000004", BigDecimal.valueOf(12577.98), "RUB",
+        Account expectedReceiver = new Account("0104100100000004", Money.of(BigDecimal.valueOf(12577.98), Currency.RUB), Currency.RUB,
                 2L, 1L, LocalDate.of(2023, 12, 4), true);
         expectedReceiver.setId(7L);
 
-        Transaction expectedTransaction = new Transaction(amount, "TRANSFER", sender.getCurrency(),
-                null, receiver.getId(), null);
+        Transaction expectedTransaction = new Transaction(amount, TransactionType.TRANSFER, sender.getCurrency(),
+                null, receiver.getId(), null,
+                new BigDecimal("102.2600000000"), Money.of(BigDecimal.valueOf(12577.98), Currency.RUB));
 
         //when
         Transaction transaction = accountRepository.transfer(sender, receiver, amount);
         Transaction actualTransaction = new Transaction(transaction.getAmount(), transaction.getType(),
                 transaction.getCurrency(), transaction.getSenderAccountId(),
-                transaction.getReceiverAccountId(), null);
+                transaction.getReceiverAccountId(), null,
+                transaction.getExchangeRate(), transaction.getConvertedAmount());
 
         Account actualSender = accountRepository.findById(5L).get();
         Account actualReceiver = accountRepository.findById(7L).get();
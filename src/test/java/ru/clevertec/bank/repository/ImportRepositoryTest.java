@@ -0,0 +1,55 @@
+package ru.clevertec.bank.repository;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.clevertec.bank.dto.ImportReportDto;
+import ru.clevertec.bank.exception.BadRequestException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class ImportRepositoryTest extends BaseRepositoryTest {
+
+    private final ImportRepository importRepository = new ImportRepository(dataSource);
+
+    @Test
+    void importAccountsTest_shouldImportValidRowsAndReportRejectedOnes() {
+        //given
+        String csv = """
+                name,surname,birthdate,number,currency,balance
+                Anna,Import,1990-01-31,9900000000000001,BYN,100.50
+                Anna,Import,1990-01-31,9900000000000002,USD,
+                Anna,Import,1990-01-31,9900000000000001,BYN,1
+                Boris,Import,1990-02-30,9900000000000003,BYN,
+                Boris,Import,1985-05-05,9900000000000004,XYZ,
+                Boris,Import,1985-05-05,0104100100000001,BYN,
+                """;
+        List<ImportReportDto.RowError> expectedErrors = List.of(
+                new ImportReportDto.RowError(4, "number 9900000000000001 repeats record 2"),
+                new ImportReportDto.RowError(5, "birthdate 1990-02-30 does not exist"),
+                new ImportReportDto.RowError(6, "currency must be one of BYN, RUB, USD, EUR"),
+                new ImportReportDto.RowError(7, "account 0104100100000001 already exists"));
+
+        //when
+        ImportReportDto actual = importRepository.importAccounts(1L,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        //then
+        Assertions.assertEquals(new ImportReportDto(6, 1, 2, 4, expectedErrors), actual);
+    }
+
+    @Test
+    void importAccountsTest_shouldThrowBadRequestExceptionForRowsWithExtraColumns() {
+        //given
+        String csv = """
+                name,surname,birthdate,number,currency,balance
+                Anna,Import,1990-01-31,9900000000000005,BYN,0,extra
+                """;
+
+        //when
+        //then
+        Assertions.assertThrows(BadRequestException.class, () -> importRepository.importAccounts(1L,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+    }
+}
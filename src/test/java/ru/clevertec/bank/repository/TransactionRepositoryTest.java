@@ -1,5 +1,8 @@
 package ru.clevertec.bank.repository;
 
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.TransactionType;
 import ru.clevertec.bank.exception.RepositoryException;
 import ru.clevertec.bank.entity.Transaction;
 import org.junit.jupiter.api.Assertions;
@@ -24,12 +27,14 @@ class TransactionRepositoryTest extends BaseRepositoryTest {
         void findAllTest_shouldReturnTransactionsWithId1And2() {
             //given
             Transaction transaction1 = new Transaction(
-                    BigDecimal.valueOf(100.11), "WITHDRAW", "BYN", 0L, 2L,
-                    LocalDateTime.of(2023, 12, 18, 12, 11, 7, 0));
+                    Money.of(BigDecimal.valueOf(100.11), Currency.BYN), TransactionType.WITHDRAW, Currency.BYN, 0L, 2L,
+                    LocalDateTime.of(2023, 12, 18, 12, 11, 7, 0),
+                    new BigDecimal("1.0000000000"), Money.of(BigDecimal.valueOf(100.11), Currency.BYN));
             transaction1.setId(1L);
             Transaction transaction2 = new Transaction(
-                    BigDecimal.valueOf(123.22), "WITHDRAW", "RUB", 0L, 1L,
-                    LocalDateTime.of(2023, 9, 22, 10, 11, 7, 0));
+                    Money.of(BigDecimal.valueOf(123.22), Currency.RUB), TransactionType.WITHDRAW, Currency.RUB, 0L, 1L,
+                    LocalDateTime.of(2023, 9, 22, 10, 11, 7, 0),
+                    new BigDecimal("1.0000000000"), Money.of(BigDecimal.valueOf(123.22), Currency.RUB));
             transaction2.setId(2L);
 
             List<Transaction> expected = new ArrayList<>() {{
@@ -48,8 +53,9 @@ class TransactionRepositoryTest extends BaseRepositoryTest {
         void findAllForPeriodTest_shouldReturnTransactionsForAccountWithNumber0104100100000001BetweenTwoDates() {
             //given
             Transaction transaction1 = new Transaction(
-                    BigDecimal.valueOf(567.55), "TRANSFER", "EUR", 5L, 1L,
-                    LocalDateTime.of(2023, 12, 4, 12, 45, 7, 0));
+                    Money.of(BigDecimal.valueOf(567.55), Currency.EUR), TransactionType.TRANSFER, Currency.EUR, 5L, 1L,
+                    LocalDateTime.of(2023, 12, 4, 12, 45, 7, 0),
+                    new BigDecimal("3.4200000000"), Money.of(BigDecimal.valueOf(1941.02), Currency.BYN));
             transaction1.setId(1L);
 
             List<Transaction> expected = new ArrayList<>() {{
@@ -66,13 +72,31 @@ class TransactionRepositoryTest extends BaseRepositoryTest {
         }
     }
 
+    @Test
+    void exportBetweenTest_shouldStreamTransactionsInOrderOfIdsAndResumeAfterGivenId() {
+        //given
+        LocalDateTime from = LocalDateTime.of(2000, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2100, 1, 1, 0, 0);
+        List<Long> exported = new ArrayList<>();
+        List<Long> resumed = new ArrayList<>();
+
+        //when
+        long count = transactionRepository.exportBetween(from, to, 0, transaction -> exported.add(transaction.getId()));
+        transactionRepository.exportBetween(from, to, exported.get(0), transaction -> resumed.add(transaction.getId()));
+
+        //then
+        Assertions.assertEquals(transactionRepository.findAll(1000, 0).size(), count);
+        Assertions.assertEquals(exported.stream().sorted().toList(), exported);
+        Assertions.assertEquals(exported.subList(1, exported.size()), resumed);
+    }
+
     @Test
     void updateTest_shouldUpdateTransactionWithId6AndReturnTrue() {
         //given
         Long id = 6L;
         Transaction expected = new Transaction(
-                BigDecimal.valueOf(12.66), "TRANSFER", "USD", 2L, 4L,
-                null);
+                Money.of(BigDecimal.valueOf(12.66), Currency.USD), TransactionType.TRANSFER, Currency.USD, 2L, 4L,
+                null, null, null);
         expected.setId(id);
 
         //when
@@ -104,8 +128,9 @@ class TransactionRepositoryTest extends BaseRepositoryTest {
             //given
             Long id = 1L;
             Transaction transaction = new Transaction(
-                    BigDecimal.valueOf(100.11), "WITHDRAW", "BYN", 0L, 2L,
-                    LocalDateTime.of(2023, 12, 18, 12, 11, 7, 0));
+                    Money.of(BigDecimal.valueOf(100.11), Currency.BYN), TransactionType.WITHDRAW, Currency.BYN, 0L, 2L,
+                    LocalDateTime.of(2023, 12, 18, 12, 11, 7, 0),
+                    new BigDecimal("1.0000000000"), Money.of(BigDecimal.valueOf(100.11), Currency.BYN));
             transaction.setId(id);
             Optional<Transaction> expected = Optional.of(transaction);
 
@@ -138,8 +163,8 @@ class TransactionRepositoryTest extends BaseRepositoryTest {
         void saveTest_shouldReturnSavedTransactionAndAddTransactionToDB() {
             //given
             Transaction transaction = new Transaction(
-                    BigDecimal.valueOf(4567), "REFILL", "BYN", 1L, 5L,
-                    LocalDateTime.of(2023, 11, 12, 18, 15, 7, 0));
+                    Money.of(BigDecimal.valueOf(4567), Currency.BYN), TransactionType.REFILL, Currency.BYN, 1L, 5L,
+                    LocalDateTime.of(2023, 11, 12, 18, 15, 7, 0), null, null);
 
             //when
             Transaction actual = transactionRepository.save(transaction);
@@ -153,8 +178,8 @@ class TransactionRepositoryTest extends BaseRepositoryTest {
         void saveTest_shouldThrowExceptionIfAnyFieldIsNull() {
             //given
             Transaction transactionWithoutId = new Transaction(
-                    BigDecimal.valueOf(1000.33), null, "BYN", 1L, 5L,
-                    LocalDateTime.of(2023, 11, 12, 18, 15, 7, 0));
+                    Money.of(BigDecimal.valueOf(1000.33), Currency.BYN), null, Currency.BYN, 1L, 5L,
+                    LocalDateTime.of(2023, 11, 12, 18, 15, 7, 0), null, null);
 
             //then
             Assertions.assertThrows(RepositoryException.class, () -> transactionRepository.save(transactionWithoutId));
@@ -2,11 +2,18 @@ package ru.clevertec.bank.service.impl;
 
 import ru.clevertec.bank.dto.AccountRequestDto;
 import ru.clevertec.bank.dto.AccountResponseDto;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.IdempotencyKey;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.TransactionType;
+import ru.clevertec.bank.exception.BadRequestException;
 import ru.clevertec.bank.exception.EntityNotFoundException;
+import ru.clevertec.bank.exception.MoneyTransferException;
 import ru.clevertec.bank.entity.Account;
 import ru.clevertec.bank.entity.Transaction;
 import ru.clevertec.bank.repository.AccountRepository;
-import ru.clevertec.bank.repository.TransactionRepository;
+import ru.clevertec.bank.repository.IdempotencyKeyRepository;
+import ru.clevertec.bank.util.cache.AccountRef;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Nested;
@@ -31,6 +38,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -39,10 +47,10 @@ import static org.mockito.Mockito.when;
 class AccountServiceImplTest {
 
     @Mock
-    private TransactionRepository transactionRepository;
+    private AccountRepository accountRepository;
 
     @Mock
-    private AccountRepository accountRepository;
+    private IdempotencyKeyRepository idempotencyKeyRepository;
 
     @InjectMocks
     private AccountServiceImpl accountService;
@@ -73,11 +81,11 @@ class AccountServiceImplTest {
     void findAllTest_shouldReturnAccountsWrappedIntoResponseDto() {
         //given
         LocalDate now = LocalDate.now();
-        Account account1 = new Account("12345", BigDecimal.ONE,
-                "USD", 3L, 3L, now, true);
+        Account account1 = new Account("12345", Money.of(BigDecimal.ONE, Currency.USD),
+                Currency.USD, 3L, 3L, now, true);
         account1.setId(3L);
-        Account account2 = new Account("12345", BigDecimal.ONE,
-                "USD", 6L, 2L, now, true);
+        Account account2 = new Account("12345", Money.of(BigDecimal.ONE, Currency.USD),
+                Currency.USD, 6L, 2L, now, true);
         account2.setId(4L);
 
         List<Account> accounts = new ArrayList<>() {{
@@ -104,14 +112,14 @@ class AccountServiceImplTest {
         Long id = 5L;
         LocalDate now = LocalDate.now();
         Account accountWithoutId = new Account("12345", null,
-                "USD", 1L, 1L, null, null);
-        Account accountWithId = new Account("12345", BigDecimal.ONE,
-                "USD", 1L, 1L, now, true);
+                Currency.USD, 1L, 1L, null, null);
+        Account accountWithId = new Account("12345", Money.of(BigDecimal.ONE, Currency.USD),
+                Currency.USD, 1L, 1L, now, true);
         accountWithId.setId(id);
 
-        AccountRequestDto requestDto = new AccountRequestDto("12345", "USD", 1L, 1L);
-        AccountResponseDto expected = new AccountResponseDto(id, "12345", BigDecimal.ONE,
-                "USD", 1L, 1L, now);
+        AccountRequestDto requestDto = new AccountRequestDto("12345", Currency.USD, 1L, 1L);
+        AccountResponseDto expected = new AccountResponseDto(id, "12345", Money.of(BigDecimal.ONE, Currency.USD),
+                Currency.USD, 1L, 1L, now);
 
         //when
         when(accountRepository.save(accountWithoutId)).thenReturn(accountWithId);
@@ -130,11 +138,11 @@ class AccountServiceImplTest {
             Long id = 1L;
             String number = "12345";
             LocalDate now = LocalDate.now();
-            AccountResponseDto expected = new AccountResponseDto(id, number, BigDecimal.ONE,
-                    "USD", 1L, 1L, now);
+            AccountResponseDto expected = new AccountResponseDto(id, number, Money.of(BigDecimal.ONE, Currency.USD),
+                    Currency.USD, 1L, 1L, now);
 
-            Account account = new Account(number, BigDecimal.ONE,
-                    "USD", 1L, 1L, now, true);
+            Account account = new Account(number, Money.of(BigDecimal.ONE, Currency.USD),
+                    Currency.USD, 1L, 1L, now, true);
             account.setId(id);
 
             //when
@@ -167,11 +175,11 @@ class AccountServiceImplTest {
             Long id = 1L;
             String number = "12345";
             LocalDate now = LocalDate.now();
-            AccountResponseDto expected = new AccountResponseDto(id, number, BigDecimal.ONE,
-                    "USD", 1L, 1L, now);
+            AccountResponseDto expected = new AccountResponseDto(id, number, Money.of(BigDecimal.ONE, Currency.USD),
+                    Currency.USD, 1L, 1L, now);
 
-            Account account = new Account(number, BigDecimal.ONE,
-                    "USD", 1L, 1L, now, true);
+            Account account = new Account(number, Money.of(BigDecimal.ONE, Currency.USD),
+                    Currency.USD, 1L, 1L, now, true);
             account.setId(id);
 
             //when
@@ -204,8 +212,8 @@ class AccountServiceImplTest {
             Long id = 3L;
             String number = "12345";
             LocalDate now = LocalDate.now();
-            Account account = new Account(number, BigDecimal.ONE,
-                    "USD", 1L, 1L, now, true);
+            Account account = new Account(number, Money.of(BigDecimal.ONE, Currency.USD),
+                    Currency.USD, 1L, 1L, now, true);
             account.setId(id);
 
             //when
@@ -243,22 +251,58 @@ class AccountServiceImplTest {
             Long bankId = 1L;
             LocalDate now = LocalDate.now();
 
-            Account account = new Account(number, BigDecimal.valueOf(50),
-                    "USD", 1L, bankId, now, true);
+            Account account = new Account(number, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 1L, bankId, now, true);
             account.setId(id);
 
             LocalDateTime trTime = LocalDateTime.now();
-            Transaction transaction = new Transaction(amount, "WITHDRAW", "USD",
-                    null, id, trTime);
+            Transaction transaction = new Transaction(Money.of(amount, Currency.USD), TransactionType.WITHDRAW, Currency.USD,
+                    null, id, trTime, null, null);
 
             //when
             when(accountRepository.blockingFindByNumber(number)).thenReturn(Optional.of(account));
-            when(accountRepository.withdraw(account, amount)).thenReturn(transaction);
+            when(accountRepository.withdraw(account, Money.of(amount, Currency.USD), null)).thenReturn(transaction);
             boolean result = accountService.withdraw(number, amount);
 
             //then
             Assertions.assertTrue(result);
-            Mockito.verify(transactionRepository, times(1)).save(transaction);
+            Mockito.verify(accountRepository, times(1)).withdraw(account, Money.of(amount, Currency.USD), null);
+        }
+
+        @Test
+        void withdrawTest_shouldRejectResolvedForeignAccountWithoutLockingIt() {
+            //given
+            String number = "0123400100000001";
+            BigDecimal amount = BigDecimal.valueOf(5);
+
+            //when
+            when(accountRepository.findRefByNumber(number))
+                    .thenReturn(Optional.of(new AccountRef(3L, 2L, Currency.USD)));
+
+            //then
+            Assertions.assertThrows(MoneyTransferException.class, () -> accountService.withdraw(number, amount));
+            verify(accountRepository, never()).blockingFindById(3L);
+            verify(accountRepository, never()).blockingFindByNumber(number);
+        }
+
+        @Test
+        void withdrawTest_shouldNotUseResolvedAccountWithAnotherNumber() {
+            //given
+            String number = "0123400100000001";
+            BigDecimal amount = BigDecimal.valueOf(5);
+            Account other = new Account("0123400100000002", Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 1L, 1L, LocalDate.now(), true);
+            other.setId(3L);
+
+            //when
+            when(accountRepository.findRefByNumber(number))
+                    .thenReturn(Optional.of(new AccountRef(3L, 1L, Currency.USD)));
+            when(accountRepository.blockingFindById(3L)).thenReturn(Optional.of(other));
+            when(accountRepository.blockingFindByNumber(number)).thenReturn(Optional.empty());
+
+            //then
+            Assertions.assertThrows(EntityNotFoundException.class, () -> accountService.withdraw(number, amount));
+            verify(accountRepository, never()).withdraw(Mockito.any(), Mockito.any(), Mockito.any());
         }
 
         @Test
@@ -283,8 +327,8 @@ class AccountServiceImplTest {
             Long bankId = 2L;
             LocalDate now = LocalDate.now();
 
-            Account account = new Account(number, BigDecimal.valueOf(50),
-                    "USD", 1L, bankId, now, true);
+            Account account = new Account(number, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 1L, bankId, now, true);
             account.setId(id);
 
             //when
@@ -302,8 +346,8 @@ class AccountServiceImplTest {
             BigDecimal amount = BigDecimal.valueOf(50);
             Long bankId = 1L;
             LocalDate now = LocalDate.now();
-            Account account = new Account(number, BigDecimal.valueOf(5),
-                    "USD", 1L, bankId, now, true);
+            Account account = new Account(number, Money.of(BigDecimal.valueOf(5), Currency.USD),
+                    Currency.USD, 1L, bankId, now, true);
             account.setId(id);
 
             //when
@@ -312,6 +356,39 @@ class AccountServiceImplTest {
             //then
             Assertions.assertThrows(UnsupportedOperationException.class, () -> accountService.withdraw(number, amount));
         }
+
+        @Test
+        void withdrawTest_shouldReplayRecordedIdempotencyKeyWithoutLockingAccount() {
+            //given
+            String number = "12345";
+            String key = "0b6f4a1e-withdraw";
+            IdempotencyKey stored = new IdempotencyKey(key, "withdraw:12345:5", LocalDateTime.now());
+
+            //when
+            when(idempotencyKeyRepository.findByKey(key)).thenReturn(Optional.of(stored));
+            boolean result = accountService.withdraw(number, new BigDecimal("5.00"), key);
+
+            //then
+            Assertions.assertTrue(result);
+            verify(accountRepository, never()).blockingFindByNumber(number);
+            verify(accountRepository, never()).withdraw(Mockito.any(), Mockito.any(), Mockito.any());
+        }
+
+        @Test
+        void withdrawTest_shouldThrowBadRequestExceptionWhenIdempotencyKeyWasUsedForAnotherRequest() {
+            //given
+            String number = "12345";
+            String key = "0b6f4a1e-withdraw";
+            IdempotencyKey stored = new IdempotencyKey(key, "withdraw:12345:7", LocalDateTime.now());
+
+            //when
+            when(idempotencyKeyRepository.findByKey(key)).thenReturn(Optional.of(stored));
+
+            //then
+            Assertions.assertThrows(BadRequestException.class,
+                    () -> accountService.withdraw(number, BigDecimal.valueOf(5), key));
+            verify(accountRepository, never()).blockingFindByNumber(number);
+        }
     }
 
     @Nested
@@ -325,22 +402,22 @@ class AccountServiceImplTest {
             BigDecimal amount = BigDecimal.valueOf(5);
             Long bankId = 1L;
             LocalDate now = LocalDate.now();
-            Account account = new Account(number, BigDecimal.valueOf(50),
-                    "USD", 1L, bankId, now, true);
+            Account account = new Account(number, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 1L, bankId, now, true);
             account.setId(id);
 
             LocalDateTime trTime = LocalDateTime.now();
-            Transaction transaction = new Transaction(amount, "REFILL", "USD",
-                    null, id, trTime);
+            Transaction transaction = new Transaction(Money.of(amount, Currency.USD), TransactionType.REFILL, Currency.USD,
+                    null, id, trTime, null, null);
 
             //when
             when(accountRepository.blockingFindByNumber(number)).thenReturn(Optional.of(account));
-            when(accountRepository.deposit(account, amount)).thenReturn(transaction);
+            when(accountRepository.deposit(account, Money.of(amount, Currency.USD), null)).thenReturn(transaction);
             boolean result = accountService.deposit(number, amount);
 
             //then
             Assertions.assertTrue(result);
-            Mockito.verify(transactionRepository, times(1)).save(transaction);
+            Mockito.verify(accountRepository, times(1)).deposit(account, Money.of(amount, Currency.USD), null);
         }
 
         @Test
@@ -364,8 +441,8 @@ class AccountServiceImplTest {
             BigDecimal amount = BigDecimal.valueOf(5);
             Long bankId = 2L;
             LocalDate now = LocalDate.now();
-            Account account = new Account(number, BigDecimal.valueOf(50),
-                    "USD", 1L, bankId, now, true);
+            Account account = new Account(number, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 1L, bankId, now, true);
             account.setId(id);
 
             //when
@@ -389,26 +466,26 @@ class AccountServiceImplTest {
             BigDecimal amount = BigDecimal.valueOf(15);
             LocalDate now = LocalDate.now();
 
-            Account sender = new Account(senderNumber, BigDecimal.valueOf(50),
-                    "USD", 1L, 1L, now, true);
+            Account sender = new Account(senderNumber, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 1L, 1L, now, true);
             sender.setId(senderId);
-            Account receiver = new Account(receiverNumber, BigDecimal.valueOf(50),
-                    "USD", 2L, 1L, now, true);
+            Account receiver = new Account(receiverNumber, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 2L, 1L, now, true);
             receiver.setId(receiverId);
 
             LocalDateTime trTime = LocalDateTime.now();
-            Transaction transaction = new Transaction(amount, "TRANSFER", "USD",
-                    senderId, receiverId, trTime);
+            Transaction transaction = new Transaction(Money.of(amount, Currency.USD), TransactionType.TRANSFER, Currency.USD,
+                    senderId, receiverId, trTime, null, null);
 
             //when
             when(accountRepository.blockingFindByNumber(senderNumber)).thenReturn(Optional.of(sender));
             when(accountRepository.blockingFindByNumber(receiverNumber)).thenReturn(Optional.of(receiver));
-            when(accountRepository.transfer(sender, receiver, amount)).thenReturn(transaction);
+            when(accountRepository.transfer(sender, receiver, Money.of(amount, Currency.USD), null)).thenReturn(transaction);
             boolean result = accountService.transfer(senderNumber, receiverNumber, amount);
 
             //then
             Assertions.assertTrue(result);
-            Mockito.verify(transactionRepository, times(1)).save(transaction);
+            Mockito.verify(accountRepository, times(1)).transfer(sender, receiver, Money.of(amount, Currency.USD), null);
         }
 
         @Test
@@ -421,26 +498,26 @@ class AccountServiceImplTest {
             BigDecimal amount = BigDecimal.valueOf(15);
             LocalDate now = LocalDate.now();
 
-            Account sender = new Account(senderNumber, BigDecimal.valueOf(50),
-                    "USD", 1L, 1L, now, true);
+            Account sender = new Account(senderNumber, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 1L, 1L, now, true);
             sender.setId(senderId);
-            Account receiver = new Account(receiverNumber, BigDecimal.valueOf(50),
-                    "USD", 2L, 2L, now, true);
+            Account receiver = new Account(receiverNumber, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 2L, 2L, now, true);
             receiver.setId(receiverId);
 
             LocalDateTime trTime = LocalDateTime.now();
-            Transaction transaction = new Transaction(amount, "TRANSFER", "USD",
-                    senderId, receiverId, trTime);
+            Transaction transaction = new Transaction(Money.of(amount, Currency.USD), TransactionType.TRANSFER, Currency.USD,
+                    senderId, receiverId, trTime, null, null);
 
             //when
             when(accountRepository.blockingFindByNumber(senderNumber)).thenReturn(Optional.of(sender));
             when(accountRepository.blockingFindByNumber(receiverNumber)).thenReturn(Optional.of(receiver));
-            when(accountRepository.transfer(sender, receiver, amount)).thenReturn(transaction);
+            when(accountRepository.transfer(sender, receiver, Money.of(amount, Currency.USD), null)).thenReturn(transaction);
             boolean result = accountService.transfer(senderNumber, receiverNumber, amount);
 
             //then
             Assertions.assertTrue(result);
-            Mockito.verify(transactionRepository, times(1)).save(transaction);
+            Mockito.verify(accountRepository, times(1)).transfer(sender, receiver, Money.of(amount, Currency.USD), null);
         }
 
         @Test
@@ -453,26 +530,26 @@ class AccountServiceImplTest {
             BigDecimal amount = BigDecimal.valueOf(15);
             LocalDate now = LocalDate.now();
 
-            Account sender = new Account(senderNumber, BigDecimal.valueOf(50),
-                    "USD", 1L, 2L, now, true);
+            Account sender = new Account(senderNumber, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 1L, 2L, now, true);
             sender.setId(senderId);
-            Account receiver = new Account(receiverNumber, BigDecimal.valueOf(50),
-                    "USD", 2L, 1L, now, true);
+            Account receiver = new Account(receiverNumber, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 2L, 1L, now, true);
             receiver.setId(receiverId);
 
             LocalDateTime trTime = LocalDateTime.now();
-            Transaction transaction = new Transaction(amount, "TRANSFER", "USD",
-                    senderId, receiverId, trTime);
+            Transaction transaction = new Transaction(Money.of(amount, Currency.USD), TransactionType.TRANSFER, Currency.USD,
+                    senderId, receiverId, trTime, null, null);
 
             //when
             when(accountRepository.blockingFindByNumber(senderNumber)).thenReturn(Optional.of(sender));
             when(accountRepository.blockingFindByNumber(receiverNumber)).thenReturn(Optional.of(receiver));
-            when(accountRepository.transfer(sender, receiver, amount)).thenReturn(transaction);
+            when(accountRepository.transfer(sender, receiver, Money.of(amount, Currency.USD), null)).thenReturn(transaction);
             boolean result = accountService.transfer(senderNumber, receiverNumber, amount);
 
             //then
             Assertions.assertTrue(result);
-            Mockito.verify(transactionRepository, times(1)).save(transaction);
+            Mockito.verify(accountRepository, times(1)).transfer(sender, receiver, Money.of(amount, Currency.USD), null);
         }
 
         @Test
@@ -485,11 +562,11 @@ class AccountServiceImplTest {
             BigDecimal amount = BigDecimal.valueOf(15);
             LocalDate now = LocalDate.now();
 
-            Account sender = new Account(senderNumber, BigDecimal.valueOf(50),
-                    "USD", 1L, 2L, now, true);
+            Account sender = new Account(senderNumber, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 1L, 2L, now, true);
             sender.setId(senderId);
-            Account receiver = new Account(receiverNumber, BigDecimal.valueOf(50),
-                    "USD", 2L, 2L, now, true);
+            Account receiver = new Account(receiverNumber, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 2L, 2L, now, true);
             receiver.setId(receiverId);
 
             //when
@@ -511,11 +588,11 @@ class AccountServiceImplTest {
             BigDecimal amount = BigDecimal.valueOf(150);
             LocalDate now = LocalDate.now();
 
-            Account sender = new Account(senderNumber, BigDecimal.valueOf(50),
-                    "USD", 1L, 2L, now, true);
+            Account sender = new Account(senderNumber, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 1L, 2L, now, true);
             sender.setId(senderId);
-            Account receiver = new Account(receiverNumber, BigDecimal.valueOf(50),
-                    "USD", 2L, 2L, now, true);
+            Account receiver = new Account(receiverNumber, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 2L, 2L, now, true);
             receiver.setId(receiverId);
 
             //when
@@ -550,8 +627,8 @@ class AccountServiceImplTest {
             String receiverNumber = "67890";
             BigDecimal amount = BigDecimal.valueOf(150);
             LocalDate now = LocalDate.now();
-            Account sender = new Account(senderNumber, BigDecimal.valueOf(50),
-                    "USD", 1L, 2L, now, true);
+            Account sender = new Account(senderNumber, Money.of(BigDecimal.valueOf(50), Currency.USD),
+                    Currency.USD, 1L, 2L, now, true);
             sender.setId(senderId);
 
             //when
@@ -0,0 +1,66 @@
+package ru.clevertec.bank.service.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.clevertec.bank.dto.ImportReportDto;
+import ru.clevertec.bank.entity.Bank;
+import ru.clevertec.bank.exception.EntityNotFoundException;
+import ru.clevertec.bank.repository.BankRepository;
+import ru.clevertec.bank.repository.ImportRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ImportServiceImplTest {
+
+    @Mock
+    private ImportRepository importRepository;
+
+    @Mock
+    private BankRepository bankRepository;
+
+    @InjectMocks
+    private ImportServiceImpl importService;
+
+    @Test
+    void importAccountsTest_shouldImportIntoExistingBank() {
+        //given
+        Long bankId = 2L;
+        InputStream csv = new ByteArrayInputStream(new byte[0]);
+        ImportReportDto expected = new ImportReportDto(1, 1, 1, 0, List.of());
+
+        //when
+        when(bankRepository.findById(bankId)).thenReturn(Optional.of(new Bank("Bank", true)));
+        when(importRepository.importAccounts(bankId, csv)).thenReturn(expected);
+        ImportReportDto actual = importService.importAccounts(bankId, csv);
+
+        //then
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    void importAccountsTest_shouldThrowEntityNotFoundExceptionWithoutReadingFileForMissingBank() {
+        //given
+        Long bankId = 200L;
+
+        //when
+        when(bankRepository.findById(bankId)).thenReturn(Optional.empty());
+
+        //then
+        Assertions.assertThrows(EntityNotFoundException.class,
+                () -> importService.importAccounts(bankId, new ByteArrayInputStream(new byte[0])));
+        verify(importRepository, never()).importAccounts(any(), any());
+    }
+}
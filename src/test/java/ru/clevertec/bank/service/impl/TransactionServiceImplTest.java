@@ -2,6 +2,9 @@ package ru.clevertec.bank.service.impl;
 
 import ru.clevertec.bank.dto.TransactionRequestDto;
 import ru.clevertec.bank.dto.TransactionResponseDto;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.TransactionType;
 import ru.clevertec.bank.exception.EntityNotFoundException;
 import ru.clevertec.bank.entity.Transaction;
 import ru.clevertec.bank.repository.TransactionRepository;
@@ -19,7 +22,10 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,9 +42,9 @@ class TransactionServiceImplTest {
         //given
         BigDecimal amount = new BigDecimal(100);
         LocalDateTime now = LocalDateTime.now();
-        Transaction transaction1 = new Transaction(amount, "WITHDRAW", "USD", 1L, 3L, now);
+        Transaction transaction1 = new Transaction(Money.of(amount, Currency.USD), TransactionType.WITHDRAW, Currency.USD, 1L, 3L, now, null, null);
         transaction1.setId(3L);
-        Transaction transaction2 = new Transaction(amount, "WITHDRAW", "USD", 1L, 3L, now);
+        Transaction transaction2 = new Transaction(Money.of(amount, Currency.USD), TransactionType.WITHDRAW, Currency.USD, 1L, 3L, now, null, null);
         transaction2.setId(4L);
 
         List<Transaction> transactions = new ArrayList<>() {{
@@ -48,7 +54,8 @@ class TransactionServiceImplTest {
         List<TransactionResponseDto> expected = transactions.stream()
                 .map(tr -> new TransactionResponseDto(tr.getId(),
                         tr.getAmount(), tr.getType(), tr.getCurrency(),
-                        tr.getSenderAccountId(), tr.getReceiverAccountId(), tr.getCreatedDate()))
+                        tr.getSenderAccountId(), tr.getReceiverAccountId(), tr.getCreatedDate(),
+                        tr.getExchangeRate(), tr.getConvertedAmount()))
                 .toList();
 
         //when
@@ -64,11 +71,11 @@ class TransactionServiceImplTest {
         //given
         BigDecimal amount = new BigDecimal(100);
         LocalDateTime now = LocalDateTime.now();
-        Transaction transaction1 = new Transaction(amount, "WITHDRAW", "USD",
-                1L, 3L, now);
+        Transaction transaction1 = new Transaction(Money.of(amount, Currency.USD), TransactionType.WITHDRAW, Currency.USD,
+                1L, 3L, now, null, null);
         transaction1.setId(3L);
-        Transaction transaction2 = new Transaction(amount, "WITHDRAW", "USD",
-                1L, 3L, now);
+        Transaction transaction2 = new Transaction(Money.of(amount, Currency.USD), TransactionType.WITHDRAW, Currency.USD,
+                1L, 3L, now, null, null);
         transaction2.setId(4L);
 
         List<Transaction> transactions = new ArrayList<>() {{
@@ -78,7 +85,8 @@ class TransactionServiceImplTest {
         List<TransactionResponseDto> expected = transactions.stream()
                 .map(tr -> new TransactionResponseDto(tr.getId(),
                         tr.getAmount(), tr.getType(), tr.getCurrency(),
-                        tr.getSenderAccountId(), tr.getReceiverAccountId(), tr.getCreatedDate()))
+                        tr.getSenderAccountId(), tr.getReceiverAccountId(), tr.getCreatedDate(),
+                        tr.getExchangeRate(), tr.getConvertedAmount()))
                 .toList();
 
         //when
@@ -97,16 +105,16 @@ class TransactionServiceImplTest {
         Long id = 5L;
         BigDecimal amount = new BigDecimal(100);
         LocalDateTime now = LocalDateTime.now();
-        Transaction transactionWithoutId = new Transaction(amount, "WITHDRAW", "USD",
-                1L, 3L, null);
-        Transaction transactionWithId = new Transaction(amount, "WITHDRAW", "USD",
-                1L, 3L, now);
+        Transaction transactionWithoutId = new Transaction(Money.of(amount, Currency.USD), TransactionType.WITHDRAW, Currency.USD,
+                1L, 3L, null, null, null);
+        Transaction transactionWithId = new Transaction(Money.of(amount, Currency.USD), TransactionType.WITHDRAW, Currency.USD,
+                1L, 3L, now, null, null);
         transactionWithId.setId(id);
 
-        TransactionRequestDto requestDto = new TransactionRequestDto(amount, "WITHDRAW", "USD",
+        TransactionRequestDto requestDto = new TransactionRequestDto(amount, TransactionType.WITHDRAW, Currency.USD,
                 1L, 3L);
-        TransactionResponseDto expected = new TransactionResponseDto(id, amount, "WITHDRAW", "USD",
-                1L, 3L, now);
+        TransactionResponseDto expected = new TransactionResponseDto(id, Money.of(amount, Currency.USD), TransactionType.WITHDRAW, Currency.USD,
+                1L, 3L, now, null, null);
 
         //when
         when(transactionRepository.save(transactionWithoutId)).thenReturn(transactionWithId);
@@ -116,6 +124,31 @@ class TransactionServiceImplTest {
         Assertions.assertEquals(expected, actual);
     }
 
+    @Test
+    void exportTest_shouldStreamTransactionsOfWholeDaysWrappedIntoResponseDto() {
+        //given
+        LocalDate from = LocalDate.of(2023, 9, 1);
+        LocalDate to = LocalDate.of(2023, 9, 30);
+        LocalDateTime createdDate = LocalDateTime.of(2023, 9, 15, 12, 0);
+        Transaction transaction = new Transaction(Money.of(new BigDecimal(100), Currency.USD), TransactionType.WITHDRAW,
+                Currency.USD, 1L, 3L, createdDate, BigDecimal.ONE, Money.of(new BigDecimal(100), Currency.USD));
+        transaction.setId(8L);
+        List<TransactionResponseDto> exported = new ArrayList<>();
+
+        //when
+        when(transactionRepository.exportBetween(eq(from.atStartOfDay()), eq(LocalDate.of(2023, 10, 1).atStartOfDay()),
+                eq(7L), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<Transaction>>getArgument(3).accept(transaction);
+            return 1L;
+        });
+        long actual = transactionService.export(from, to, 7L, exported::add);
+
+        //then
+        Assertions.assertEquals(1L, actual);
+        Assertions.assertEquals(List.of(new TransactionResponseDto(8L, transaction.getAmount(), TransactionType.WITHDRAW,
+                Currency.USD, 1L, 3L, createdDate, BigDecimal.ONE, transaction.getConvertedAmount())), exported);
+    }
+
     @Nested
     class FindById {
 
@@ -125,10 +158,10 @@ class TransactionServiceImplTest {
             Long id = 5L;
             BigDecimal amount = new BigDecimal(100);
             LocalDateTime now = LocalDateTime.now();
-            TransactionResponseDto expected = new TransactionResponseDto(id, amount, "WITHDRAW", "USD",
-                    1L, 3L, now);
-            Transaction transaction = new Transaction(amount, "WITHDRAW", "USD",
-                    1L, 3L, now);
+            TransactionResponseDto expected = new TransactionResponseDto(id, Money.of(amount, Currency.USD), TransactionType.WITHDRAW, Currency.USD,
+                    1L, 3L, now, null, null);
+            Transaction transaction = new Transaction(Money.of(amount, Currency.USD), TransactionType.WITHDRAW, Currency.USD,
+                    1L, 3L, now, null, null);
             transaction.setId(id);
 
             //when
@@ -0,0 +1,104 @@
+package ru.clevertec.bank.servlet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.clevertec.bank.exception.RepositoryException;
+import ru.clevertec.bank.service.TransactionService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionServletTest {
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private ObjectMapper objectMapper;
+
+    @InjectMocks
+    private TransactionServlet transactionServlet;
+
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private ByteArrayOutputStream body;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        body = new ByteArrayOutputStream();
+        when(request.getRequestURI()).thenReturn("/transactions/export");
+        Map<String, String> parameters = Map.of("from", "2023-09-01", "to", "2023-09-30");
+        when(request.getParameter(anyString())).thenAnswer(invocation -> parameters.get(invocation.getArgument(0)));
+        Map<String, String> headers = Map.of("Accept-Encoding", "gzip");
+        when(request.getHeader(anyString())).thenAnswer(invocation -> headers.get(invocation.getArgument(0)));
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        });
+        when(transactionService.export(eq(LocalDate.of(2023, 9, 1)), eq(LocalDate.of(2023, 9, 30)), eq(0L), any()))
+                .thenThrow(new RepositoryException("The cursor was closed"));
+    }
+
+    @Test
+    void doGetExportTest_shouldNotFinishCompressedExportThatFailedAfterItWasSent() {
+        //given
+        when(response.isCommitted()).thenReturn(true);
+
+        //when
+        Assertions.assertThrows(RepositoryException.class, () -> transactionServlet.doGet(request, response));
+
+        //then
+        Assertions.assertThrows(EOFException.class,
+                () -> new GZIPInputStream(new ByteArrayInputStream(body.toByteArray())).readAllBytes());
+        verify(response, never()).reset();
+    }
+
+    @Test
+    void doGetExportTest_shouldResetResponseOfExportThatFailedBeforeItWasSent() {
+        //given
+        when(response.isCommitted()).thenReturn(false);
+
+        //when
+        Assertions.assertThrows(RepositoryException.class, () -> transactionServlet.doGet(request, response));
+
+        //then
+        verify(response).reset();
+    }
+}
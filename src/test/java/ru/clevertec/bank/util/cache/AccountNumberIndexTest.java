@@ -0,0 +1,87 @@
+package ru.clevertec.bank.util.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.clevertec.bank.entity.Currency;
+
+import java.util.Optional;
+
+class AccountNumberIndexTest {
+
+    @Test
+    void getTest_shouldReturnPackedAccountUnchanged() {
+        //given
+        AccountNumberIndex index = new AccountNumberIndex(10);
+        long number = AccountNumberIndex.parse("0104100100000003");
+        AccountRef expected = new AccountRef(123_456_789L, 1_000L, Currency.EUR);
+
+        //when
+        index.put(number, expected);
+        Optional<AccountRef> actual = index.get(number);
+
+        //then
+        Assertions.assertEquals(Optional.of(expected), actual);
+    }
+
+    @Test
+    void removeByIdTest_shouldKeepOtherAccountsReachableAfterGrowing() {
+        //given
+        AccountNumberIndex index = new AccountNumberIndex(1_000);
+        for (long id = 1; id <= 500; id++) {
+            index.put(1_000_000_000_000_000L + id, new AccountRef(id, 1L, Currency.BYN));
+        }
+
+        //when
+        for (long id = 1; id <= 500; id += 2) {
+            index.removeById(id);
+        }
+
+        //then
+        Assertions.assertEquals(250, index.size());
+        for (long id = 1; id <= 500; id++) {
+            Optional<AccountRef> actual = index.get(1_000_000_000_000_000L + id);
+            Assertions.assertEquals(id % 2 == 0, actual.isPresent());
+        }
+    }
+
+    @Test
+    void putTest_shouldNotGrowOverMaximumSize() {
+        //given
+        AccountNumberIndex index = new AccountNumberIndex(2);
+
+        //when
+        for (long id = 1; id <= 5; id++) {
+            index.put(id, new AccountRef(id, 1L, Currency.USD));
+        }
+
+        //then
+        Assertions.assertEquals(2, index.size());
+    }
+
+    @Test
+    void parseTest_shouldRejectNonDigitNumber() {
+        //given
+        String number = "01041001000000x3";
+
+        //when
+        long actual = AccountNumberIndex.parse(number);
+
+        //then
+        Assertions.assertEquals(-1, actual);
+    }
+
+    @Test
+    void parseTest_shouldRejectNumberThatIsNotSixteenDigits() {
+        //given
+        String padded = "05555555555555555";
+        String shortened = "0123";
+
+        //when
+        long actualPadded = AccountNumberIndex.parse(padded);
+        long actualShortened = AccountNumberIndex.parse(shortened);
+
+        //then
+        Assertions.assertEquals(-1, actualPadded);
+        Assertions.assertEquals(-1, actualShortened);
+    }
+}
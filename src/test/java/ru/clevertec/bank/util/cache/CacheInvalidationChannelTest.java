@@ -0,0 +1,180 @@
+package ru.clevertec.bank.util.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.clevertec.bank.entity.Account;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.User;
+import ru.clevertec.bank.util.yaml.CacheInvalidationProperties;
+import ru.clevertec.bank.util.yaml.CacheProperties;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class CacheInvalidationChannelTest {
+
+    private Connection connection;
+    private PreparedStatement preparedStatement;
+    private RepositoryCaches caches;
+    private CacheInvalidationProperties properties;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = mock(Connection.class);
+        preparedStatement = mock(PreparedStatement.class);
+        doReturn(preparedStatement).when(connection).prepareStatement(anyString());
+        doReturn(mock(ResultSet.class)).when(preparedStatement).executeQuery();
+        doReturn(mock(Array.class)).when(connection).createArrayOf(eq("text"), any());
+        caches = RepositoryCaches.of(new CacheProperties());
+        properties = new CacheInvalidationProperties();
+    }
+
+    @Test
+    void flushTest_shouldSendDeduplicatedInvalidationsInOneNotification() throws SQLException {
+        //given
+        CacheInvalidationChannel channel = channel();
+        RepositoryCaches publishing = caches.publishingTo(channel);
+        publishing.invalidateAccount(1L);
+        publishing.invalidateAccount(1L);
+        publishing.invalidateUser(2L);
+
+        //when
+        int actual = channel.flush();
+
+        //then
+        Assertions.assertEquals(2, actual);
+        String payload = sentPayloads()[0].toString();
+        Assertions.assertTrue(payload.endsWith(" account:1 user:2"));
+        Assertions.assertEquals(0, channel.flush());
+    }
+
+    @Test
+    void flushTest_shouldSendInvalidationOfEverythingWhenBurstExceedsMaximumBatch() throws SQLException {
+        //given
+        properties.setMaximumBatch(2);
+        CacheInvalidationChannel channel = channel();
+        for (long id = 1; id <= 3; id++) {
+            channel.publish(CacheInvalidation.account(id));
+        }
+
+        //when
+        channel.flush();
+
+        //then
+        Assertions.assertTrue(sentPayloads()[0].toString().endsWith(" all"));
+    }
+
+    @Test
+    void applyTest_shouldInvalidateEntitiesChangedByOtherNodesOnly() throws SQLException {
+        //given
+        CacheInvalidationChannel channel = channel();
+        channel.publish(CacheInvalidation.user(7L));
+        channel.flush();
+        String own = sentPayloads()[0].toString();
+        AtomicInteger accountLoads = new AtomicInteger();
+        AtomicInteger userLoads = new AtomicInteger();
+        loadAccount(1L, accountLoads);
+        loadUser(7L, userLoads);
+
+        //when
+        int actual = channel.apply(List.of("other-node account:1", own));
+
+        //then
+        loadAccount(1L, accountLoads);
+        loadUser(7L, userLoads);
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(1, actual),
+                () -> Assertions.assertEquals(2, accountLoads.get()),
+                () -> Assertions.assertEquals(1, userLoads.get())
+        );
+    }
+
+    @Test
+    void applyTest_shouldDropChangedBalanceByNumberAndKeepAccountNumberIndexed() throws SQLException {
+        //given
+        CacheInvalidationChannel channel = channel();
+        String number = "0104100100000003";
+        caches.accountNumbers().put(AccountNumberIndex.parse(number), new AccountRef(6L, 1L, Currency.EUR));
+        AtomicInteger numberLoads = new AtomicInteger();
+        loadAccountByNumber(number, numberLoads);
+
+        //when
+        int actual = channel.apply(List.of("other-node " + CacheInvalidation.balance(6L, number).encode()));
+
+        //then
+        loadAccountByNumber(number, numberLoads);
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(1, actual),
+                () -> Assertions.assertEquals(2, numberLoads.get()),
+                () -> Assertions.assertTrue(caches.accountNumbers().get(AccountNumberIndex.parse(number)).isPresent())
+        );
+    }
+
+    @Test
+    void decodeTest_shouldReadBalanceInvalidationWithNumber() {
+        //given
+        CacheInvalidation expected = CacheInvalidation.balance(6L, "0104100100000003");
+
+        //when
+        CacheInvalidation actual = CacheInvalidation.decode(expected.encode());
+
+        //then
+        Assertions.assertEquals(expected, actual);
+    }
+
+    private CacheInvalidationChannel channel() throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        doReturn(connection).when(dataSource).getConnection();
+        return new CacheInvalidationChannel(properties, dataSource, mock(DataSource.class), caches);
+    }
+
+    private Object[] sentPayloads() throws SQLException {
+        ArgumentCaptor<Object[]> payloads = ArgumentCaptor.forClass(Object[].class);
+        verify(connection).createArrayOf(eq("text"), payloads.capture());
+        return payloads.getValue();
+    }
+
+    private void loadAccount(long id, AtomicInteger loads) {
+        caches.accounts().get(id, key -> {
+            loads.incrementAndGet();
+            Account account = new Account();
+            account.setId(key);
+            return Optional.of(account);
+        });
+    }
+
+    private void loadAccountByNumber(String number, AtomicInteger loads) {
+        caches.accountsByNumber().get(number, key -> {
+            loads.incrementAndGet();
+            Account account = new Account();
+            account.setId(6L);
+            account.setNumber(key);
+            return Optional.of(account);
+        });
+    }
+
+    private void loadUser(long id, AtomicInteger loads) {
+        caches.users().get(id, key -> {
+            loads.incrementAndGet();
+            User user = new User();
+            user.setId(key);
+            return Optional.of(user);
+        });
+    }
+}
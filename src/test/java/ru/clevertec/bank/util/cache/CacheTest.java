@@ -0,0 +1,185 @@
+package ru.clevertec.bank.util.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CacheTest {
+
+    @Test
+    void getTest_shouldLoadOnceAndServeNextLookupsFromCache() {
+        //given
+        Cache<Long, String> cache = new Cache<>("test", 10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        cache.get(1L, id -> Optional.of("value" + loads.incrementAndGet()));
+        Optional<String> actual = cache.get(1L, id -> Optional.of("value" + loads.incrementAndGet()));
+
+        //then
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(Optional.of("value1"), actual),
+                () -> Assertions.assertEquals(new CacheStats("test", 1, 1, 0, 1), cache.stats())
+        );
+    }
+
+    @Test
+    void getTest_shouldNotCacheMissingValues() {
+        //given
+        Cache<Long, String> cache = new Cache<>("test", 10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        cache.get(1L, id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        cache.get(1L, id -> Optional.of("value" + loads.incrementAndGet()));
+
+        //then
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    void getTest_shouldReloadExpiredValue() {
+        //given
+        Cache<Long, String> cache = new Cache<>("test", 10, Duration.ZERO);
+        cache.get(1L, id -> Optional.of("old"));
+
+        //when
+        Optional<String> actual = cache.get(1L, id -> Optional.of("new"));
+
+        //then
+        Assertions.assertEquals(Optional.of("new"), actual);
+        Assertions.assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    void invalidateTest_shouldReloadValueAfterWrite() {
+        //given
+        Cache<Long, String> cache = new Cache<>("test", 10, Duration.ofMinutes(1));
+        cache.get(1L, id -> Optional.of("old"));
+
+        //when
+        cache.invalidate(1L);
+        Optional<String> actual = cache.get(1L, id -> Optional.of("new"));
+
+        //then
+        Assertions.assertEquals(Optional.of("new"), actual);
+    }
+
+    @Test
+    void getTest_shouldEvictWhenMaximumSizeIsExceeded() {
+        //given
+        Cache<Long, String> cache = new Cache<>("test", 2, Duration.ofMinutes(1));
+
+        //when
+        for (long id = 0; id < 5; id++) {
+            cache.get(id, key -> Optional.of("value" + key));
+        }
+
+        //then
+        Assertions.assertEquals(2, cache.stats().size());
+        Assertions.assertEquals(3, cache.stats().evictions());
+    }
+
+    @Test
+    void getTest_shouldEvictLeastRecentlyUsedEntriesFromTheWholeCache() {
+        //given
+        Cache<Long, String> cache = new Cache<>("test", 32, Duration.ofMinutes(1));
+        for (long id = 40; id < 56; id++) {
+            cache.get(id, key -> Optional.of("cold"));
+        }
+        for (long id = 0; id < 16; id++) {
+            cache.get(id, key -> Optional.of("hot"));
+        }
+
+        //when
+        for (int i = 0; i < 100; i++) {
+            for (long id = 0; id < 16; id++) {
+                cache.get(id, key -> Optional.of("hot"));
+            }
+            cache.get(64L * (i + 1) + i % 16, key -> Optional.of("new"));
+        }
+
+        //then
+        for (long id = 40; id < 56; id++) {
+            Assertions.assertEquals(Optional.of("reloaded"), cache.get(id, key -> Optional.of("reloaded")));
+        }
+    }
+
+    @Test
+    void getTest_shouldNotBlockNextLookupsIfLoaderThrowsError() throws Exception {
+        //given
+        Cache<Long, String> cache = new Cache<>("test", 10, Duration.ofMinutes(1));
+        Assertions.assertThrows(AssertionError.class, () -> cache.get(1L, id -> {
+            throw new AssertionError("loader failed");
+        }));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        //when
+        Future<Optional<String>> actual = executor.submit(() -> cache.get(1L, id -> Optional.of("value")));
+
+        //then
+        Assertions.assertEquals(Optional.of("value"), actual.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    void getTest_shouldLoadColdKeyOnceForConcurrentLookups() throws Exception {
+        //given
+        Cache<Long, String> cache = new Cache<>("test", 10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        List<Future<Optional<String>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> cache.get(1L, id -> {
+                loads.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return Optional.of("value");
+            })));
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+        release.countDown();
+        for (Future<Optional<String>> result : results) {
+            Assertions.assertEquals(Optional.of("value"), result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        //then
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidateTest_shouldNotStoreLoadThatOverlapsWithInvalidation() {
+        //given
+        Cache<Long, String> cache = new Cache<>("test", 10, Duration.ofMinutes(1));
+
+        //when
+        cache.get(1L, id -> {
+            cache.invalidate(id);
+            return Optional.of("stale");
+        });
+        Optional<String> actual = cache.get(1L, id -> Optional.of("fresh"));
+
+        //then
+        Assertions.assertEquals(Optional.of("fresh"), actual);
+    }
+}
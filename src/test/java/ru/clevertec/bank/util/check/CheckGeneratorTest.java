@@ -1,7 +1,10 @@
 package ru.clevertec.bank.util.check;
 
 import ru.clevertec.bank.entity.Account;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
 import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.entity.TransactionType;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -46,13 +49,13 @@ public class CheckGeneratorTest {
     void generateCheckTest_shouldSaveTxtFileWithTransactionInfo() throws IOException {
         //given
         Transaction transaction = new Transaction(
-                BigDecimal.valueOf(100.11), "TRANSFER", "BYN", 1L, 2L,
-                LocalDateTime.of(2023, 12, 18, 12, 11, 7, 0));
+                Money.of(BigDecimal.valueOf(100.11), Currency.BYN), TransactionType.TRANSFER, Currency.BYN, 1L, 2L,
+                LocalDateTime.of(2023, 12, 18, 12, 11, 7, 0), null, null);
 
-        Account sender = new Account("0104100100000001", BigDecimal.valueOf(1234.31), "BYN",
+        Account sender = new Account("0104100100000001", Money.of(BigDecimal.valueOf(1234.31), Currency.BYN), Currency.BYN,
                 1L, 1L, LocalDate.of(2001, 11, 18), true);
         sender.setId(1L);
-        Account receiver = new Account("0104100100000002", BigDecimal.valueOf(500123.01), "RUB",
+        Account receiver = new Account("0104100100000002", Money.of(BigDecimal.valueOf(500123.01), Currency.RUB), Currency.RUB,
                 3L, 1L, LocalDate.of(2022, 9, 22), true);
         receiver.setId(2L);
 
@@ -0,0 +1,169 @@
+package ru.clevertec.bank.util.concurrent;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.clevertec.bank.exception.EntityNotFoundException;
+import ru.clevertec.bank.exception.OutcomeUnknownException;
+import ru.clevertec.bank.exception.ServiceUnavailableException;
+import ru.clevertec.bank.util.yaml.ExecutionProperties;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class RequestExecutorTest {
+
+    private HttpServletRequest request;
+    private AsyncContext context;
+    private RequestExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        request = mock(HttpServletRequest.class);
+        context = mock(AsyncContext.class);
+        doReturn(context).when(request).startAsync();
+        doReturn(request).when(context).getRequest();
+        executor = new RequestExecutor("test", Executors.newSingleThreadExecutor(), Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void executeTest_shouldCompleteResponseWhenWorkIsDone() {
+        //given
+        Runnable work = () -> {
+        };
+
+        //when
+        executor.execute(request, work);
+
+        //then
+        verify(context, timeout(1_000)).complete();
+        verify(context, never()).dispatch("/error");
+    }
+
+    @Test
+    void executeTest_shouldDispatchFailureToErrorHandler() {
+        //given
+        Runnable work = () -> {
+            throw new EntityNotFoundException("Account was not found");
+        };
+
+        //when
+        executor.execute(request, work);
+
+        //then
+        verify(context, timeout(1_000)).dispatch("/error");
+        verify(request).setAttribute(RequestDispatcher.ERROR_EXCEPTION_TYPE, EntityNotFoundException.class);
+        verify(context, never()).complete();
+    }
+
+    @Test
+    void executeTest_shouldAnswerServiceUnavailableWhenQueueIsFull() {
+        //given
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setQueueCapacity(1);
+        RequestExecutor bounded = RequestExecutor.of("bounded", 1, properties);
+        Runnable blocking = () -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        bounded.execute(request, blocking);
+        bounded.execute(request, blocking);
+
+        //when
+        bounded.execute(request, blocking);
+
+        //then
+        verify(request).setAttribute(RequestDispatcher.ERROR_EXCEPTION_TYPE, ServiceUnavailableException.class);
+        verify(context).dispatch("/error");
+        bounded.close();
+    }
+
+    @Test
+    void executeTest_shouldNotRunWorkThatTimedOutInQueue() throws Exception {
+        //given
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+        executor.execute(request, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(request, () -> ran.set(true));
+        ArgumentCaptor<AsyncListener> listeners = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(context, times(2)).addListener(listeners.capture());
+
+        //when
+        listeners.getAllValues().get(1).onTimeout(null);
+        release.countDown();
+
+        //then
+        verify(request).setAttribute(RequestDispatcher.ERROR_EXCEPTION_TYPE, ServiceUnavailableException.class);
+        CountDownLatch drained = new CountDownLatch(1);
+        executor.execute(request, drained::countDown);
+        assertTrue(drained.await(1, TimeUnit.SECONDS));
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void executeTest_shouldLetStartedWorkFinishAndAnswerOutcomeUnknownWhenNotInterruptible() throws Exception {
+        //given
+        RequestExecutor transfers = new RequestExecutor("transfer", Executors.newSingleThreadExecutor(),
+                Duration.ofMinutes(1), false);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        transfers.execute(request, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            done.countDown();
+        });
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(context).addListener(listener.capture());
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        //when
+        listener.getValue().onTimeout(null);
+        release.countDown();
+
+        //then
+        verify(request).setAttribute(RequestDispatcher.ERROR_EXCEPTION_TYPE, OutcomeUnknownException.class);
+        verify(context).dispatch("/error");
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+        verify(context, never()).complete();
+        transfers.close();
+    }
+}
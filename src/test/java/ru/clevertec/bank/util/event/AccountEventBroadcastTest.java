@@ -0,0 +1,91 @@
+package ru.clevertec.bank.util.event;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.clevertec.bank.entity.AccountEvent;
+import ru.clevertec.bank.entity.AccountEventType;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.util.outbox.SubscriberSink;
+import ru.clevertec.bank.util.yaml.EventStreamProperties;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class AccountEventBroadcastTest {
+
+    private Connection connection;
+    private SubscriberSink subscribers;
+    private AccountEventBroadcast broadcast;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        doReturn(preparedStatement).when(connection).prepareStatement(anyString());
+        doReturn(mock(ResultSet.class)).when(preparedStatement).executeQuery();
+        doReturn(mock(Array.class)).when(connection).createArrayOf(eq("text"), any());
+        DataSource dataSource = mock(DataSource.class);
+        doReturn(connection).when(dataSource).getConnection();
+        subscribers = new SubscriberSink();
+        broadcast = new AccountEventBroadcast(new EventStreamProperties(), dataSource, mock(DataSource.class),
+                subscribers);
+    }
+
+    @Test
+    void publishTest_shouldSendBatchInOneNotification() throws SQLException {
+        //given
+        List<AccountEvent> events = List.of(event(7L, 10L), event(8L, null));
+
+        //when
+        broadcast.publish(events);
+
+        //then
+        ArgumentCaptor<Object[]> payloads = ArgumentCaptor.forClass(Object[].class);
+        verify(connection).createArrayOf(eq("text"), payloads.capture());
+        Assertions.assertEquals(1, payloads.getValue().length);
+        Assertions.assertEquals(2, payloads.getValue()[0].toString().split("\n").length);
+    }
+
+    @Test
+    void applyTest_shouldHandReceivedEventsToLocalSubscribers() {
+        //given
+        List<AccountEvent> expected = List.of(event(7L, 10L), event(8L, null));
+        List<AccountEvent> received = new ArrayList<>();
+        subscribers.subscribe(received::addAll);
+        String payload = AccountEventBroadcast.encode(expected.get(0)) + "\n"
+                + AccountEventBroadcast.encode(expected.get(1));
+
+        //when
+        int actual = broadcast.apply(List.of(payload, "unknown"));
+
+        //then
+        Assertions.assertEquals(2, actual);
+        Assertions.assertEquals(expected, received);
+        Assertions.assertEquals(expected.get(0).getId(), received.get(0).getId());
+    }
+
+    private static AccountEvent event(Long id, Long transactionId) {
+        AccountEvent event = new AccountEvent(1L, transactionId, AccountEventType.WITHDRAW,
+                Money.of(new BigDecimal("-10.50"), Currency.BYN), Currency.BYN, LocalDateTime.of(2023, 8, 27, 10, 0));
+        event.setId(id);
+        return event;
+    }
+}
@@ -0,0 +1,146 @@
+package ru.clevertec.bank.util.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.clevertec.bank.entity.AccountEvent;
+import ru.clevertec.bank.entity.AccountEventType;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.exception.ServiceUnavailableException;
+import ru.clevertec.bank.util.yaml.EventStreamProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class AccountEventBusTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private EventStreamProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new EventStreamProperties();
+        properties.setBufferSize(2);
+    }
+
+    @Test
+    void onEventsTest_shouldSendEventsOnlyToStreamsOfTheirAccount() throws IOException {
+        //given
+        AccountEventBus bus = new AccountEventBus(properties, objectMapper);
+        Client first = new Client(true);
+        Client second = new Client(true);
+        bus.open(first.request, first.response, 1L);
+        bus.open(second.request, second.response, 2L);
+
+        //when
+        bus.onEvents(List.of(event(7L, 1L)));
+
+        //then
+        String written = first.written();
+        Assertions.assertTrue(written.startsWith(": connected\n\n"));
+        Assertions.assertTrue(written.contains("id: 7\nevent: WITHDRAW\ndata: {"));
+        Assertions.assertTrue(written.endsWith("}\n\n"));
+        Assertions.assertEquals(": connected\n\n", second.written());
+    }
+
+    @Test
+    void onEventsTest_shouldDisconnectStreamWhoseBufferIsFull() throws IOException {
+        //given
+        AccountEventBus bus = new AccountEventBus(properties, objectMapper);
+        Client slow = new Client(false);
+        bus.open(slow.request, slow.response, 1L);
+
+        //when
+        bus.onEvents(List.of(event(1L, 1L), event(2L, 1L)));
+
+        //then
+        verify(slow.context).complete();
+        Assertions.assertEquals(0, bus.getOpenStreams());
+    }
+
+    @Test
+    void onEventsTest_shouldKeepStreamOpenWhenOverflowIsDropped() throws IOException {
+        //given
+        properties.setOverflow(OverflowPolicy.DROP);
+        AccountEventBus bus = new AccountEventBus(properties, objectMapper);
+        Client slow = new Client(false);
+        bus.open(slow.request, slow.response, 1L);
+
+        //when
+        bus.onEvents(List.of(event(1L, 1L), event(2L, 1L)));
+
+        //then
+        verify(slow.context, never()).complete();
+        Assertions.assertEquals(1, bus.getOpenStreams());
+    }
+
+    @Test
+    void openTest_shouldThrowServiceUnavailableExceptionWhenTooManyStreamsAreOpen() throws IOException {
+        //given
+        properties.setMaximumStreams(1);
+        AccountEventBus bus = new AccountEventBus(properties, objectMapper);
+        Client open = new Client(true);
+        Client rejected = new Client(true);
+        bus.open(open.request, open.response, 1L);
+
+        //when, then
+        Assertions.assertThrows(ServiceUnavailableException.class,
+                () -> bus.open(rejected.request, rejected.response, 1L));
+        verify(rejected.request, never()).startAsync();
+    }
+
+    private static AccountEvent event(long id, long accountId) {
+        AccountEvent event = new AccountEvent(accountId, id, AccountEventType.WITHDRAW,
+                new Money(-100, Currency.BYN), Currency.BYN, LocalDateTime.of(2023, 9, 15, 12, 0));
+        event.setId(id);
+        return event;
+    }
+
+    private static class Client {
+
+        private final HttpServletRequest request = mock(HttpServletRequest.class);
+        private final HttpServletResponse response = mock(HttpServletResponse.class);
+        private final AsyncContext context = mock(AsyncContext.class);
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Client(boolean ready) throws IOException {
+            ServletOutputStream out = mock(ServletOutputStream.class);
+            doReturn(ready).when(out).isReady();
+            doAnswer(invocation -> {
+                bytes.write(invocation.getArgument(0, byte[].class));
+                return null;
+            }).when(out).write(any(byte[].class));
+            doAnswer(invocation -> {
+                if (ready) {
+                    invocation.getArgument(0, WriteListener.class).onWritePossible();
+                }
+                return null;
+            }).when(out).setWriteListener(any());
+            doReturn(context).when(request).startAsync();
+            doReturn(response).when(context).getResponse();
+            doReturn(out).when(response).getOutputStream();
+        }
+
+        String written() {
+            return bytes.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.clevertec.bank.util.exchange;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.ExchangeRate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+class ExchangeRateHistoryTest {
+
+    private static final LocalDateTime AUGUST = LocalDateTime.of(2023, 8, 27, 0, 0);
+    private static final LocalDateTime SEPTEMBER = LocalDateTime.of(2023, 9, 1, 0, 0);
+
+    private final ExchangeRateHistory history = ExchangeRateHistory.of(List.of(
+            new ExchangeRate(Currency.EUR, Currency.BYN, new BigDecimal("3.50"), SEPTEMBER),
+            new ExchangeRate(Currency.EUR, Currency.BYN, new BigDecimal("3.42"), AUGUST)
+    ));
+
+    @Test
+    void rateAtTest_shouldReturnRateInForceAtGivenMoment() {
+        //given
+        LocalDateTime at = LocalDateTime.of(2023, 8, 31, 23, 59, 59);
+
+        //when
+        BigDecimal actual = history.rateAt(Currency.EUR, Currency.BYN, at);
+
+        //then
+        Assertions.assertEquals(new BigDecimal("3.42"), actual);
+    }
+
+    @Test
+    void rateAtTest_shouldReturnNewRateFromItsEffectiveMoment() {
+        //given
+        LocalDateTime at = SEPTEMBER;
+
+        //when
+        BigDecimal actual = history.rateAt(Currency.EUR, Currency.BYN, at);
+
+        //then
+        Assertions.assertEquals(new BigDecimal("3.50"), actual);
+    }
+
+    @Test
+    void rateAtTest_shouldReturnNullBeforeFirstVersion() {
+        //given
+        LocalDateTime at = AUGUST.minusSeconds(1);
+
+        //when
+        BigDecimal actual = history.rateAt(Currency.EUR, Currency.BYN, at);
+
+        //then
+        Assertions.assertNull(actual);
+    }
+
+    @Test
+    void rateAtTest_shouldTellApartVersionsRecordedWithinTheSameSecond() {
+        //given
+        LocalDateTime first = SEPTEMBER.plusNanos(100_000_000);
+        LocalDateTime second = SEPTEMBER.plusNanos(200_000_000);
+        ExchangeRateHistory reloaded = ExchangeRateHistory.of(List.of(
+                new ExchangeRate(Currency.EUR, Currency.BYN, new BigDecimal("3.51"), second),
+                new ExchangeRate(Currency.EUR, Currency.BYN, new BigDecimal("3.50"), first)
+        ));
+
+        //when
+        BigDecimal actual = reloaded.rateAt(Currency.EUR, Currency.BYN, second.plusNanos(1_000));
+
+        //then
+        Assertions.assertEquals(new BigDecimal("3.51"), actual);
+        Assertions.assertEquals(new BigDecimal("3.50"), reloaded.rateAt(Currency.EUR, Currency.BYN, first));
+    }
+}
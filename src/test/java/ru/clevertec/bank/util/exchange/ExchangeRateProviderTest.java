@@ -0,0 +1,86 @@
+package ru.clevertec.bank.util.exchange;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.ExchangeRate;
+import ru.clevertec.bank.repository.ExchangeRateRepository;
+import ru.clevertec.bank.util.yaml.PropertiesProvider;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ExchangeRateProviderTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 9, 15, 12, 0);
+
+    @Mock
+    private ExchangeRateRepository exchangeRateRepository;
+
+    @Mock
+    private PropertiesProvider propertiesProvider;
+
+    @InjectMocks
+    private ExchangeRateProvider exchangeRateProvider;
+
+    @Test
+    void recordTest_shouldNotOverrideNewerStoredRatesWithOutdatedConfigurationOnStart() {
+        //given
+        ExchangeRates newer = rates("3.50");
+        doReturn(versions(newer)).when(exchangeRateRepository).findHistory();
+
+        //when
+        exchangeRateProvider.record(null, rates("3.42"), NOW);
+
+        //then
+        verify(exchangeRateRepository, never()).save(any(ExchangeRate.class));
+    }
+
+    @Test
+    void recordTest_shouldStoreRatesChangedInConfiguration() {
+        //given
+        ExchangeRates previous = rates("3.42");
+        doReturn(versions(previous)).when(exchangeRateRepository).findHistory();
+
+        //when
+        exchangeRateProvider.record(previous, rates("3.50"), NOW);
+
+        //then
+        verify(exchangeRateRepository).save(new ExchangeRate(Currency.EUR, Currency.BYN,
+                new BigDecimal("3.50").setScale(ExchangeRateProvider.RATE_SCALE, RoundingMode.HALF_EVEN), NOW));
+    }
+
+    private static ExchangeRates rates(String eurByn) {
+        return ExchangeRates.of(Map.of(
+                "EURBYN", new BigDecimal(eurByn),
+                "USDBYN", new BigDecimal("3.17"),
+                "RUBBYN", new BigDecimal("0.033488")
+        ), Currency.BYN);
+    }
+
+    private static List<ExchangeRate> versions(ExchangeRates exchangeRates) {
+        List<ExchangeRate> versions = new ArrayList<>();
+        for (Currency from : Currency.values()) {
+            for (Currency to : Currency.values()) {
+                if (from != to) {
+                    versions.add(new ExchangeRate(from, to, exchangeRates.rate(from, to)
+                            .setScale(ExchangeRateProvider.RATE_SCALE, RoundingMode.HALF_EVEN), NOW.minusDays(1)));
+                }
+            }
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,88 @@
+package ru.clevertec.bank.util.exchange;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.clevertec.bank.entity.Currency;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+class ExchangeRatesTest {
+
+    @Test
+    void rateTest_shouldReturnOneForSameCurrency() {
+        //given
+        ExchangeRates exchangeRates = ExchangeRates.of(Map.of(
+                "EURBYN", new BigDecimal("3.42"),
+                "USDBYN", new BigDecimal("3.17"),
+                "RUBBYN", new BigDecimal("0.033488")
+        ), Currency.BYN);
+
+        //when
+        BigDecimal actual = exchangeRates.rate(Currency.EUR, Currency.EUR);
+
+        //then
+        Assertions.assertEquals(BigDecimal.ONE, actual);
+    }
+
+    @Test
+    void rateTest_shouldReturnQuotedRate() {
+        //given
+        ExchangeRates exchangeRates = ExchangeRates.of(Map.of(
+                "EURRUB", new BigDecimal("102.26"),
+                "EURBYN", new BigDecimal("3.42"),
+                "USDBYN", new BigDecimal("3.17"),
+                "RUBBYN", new BigDecimal("0.033488")
+        ), Currency.BYN);
+
+        //when
+        BigDecimal actual = exchangeRates.rate(Currency.EUR.ordinal(), Currency.RUB.ordinal());
+
+        //then
+        Assertions.assertEquals(new BigDecimal("102.26"), actual);
+    }
+
+    @Test
+    void rateTest_shouldTriangulateMissingPairThroughBaseCurrency() {
+        //given
+        ExchangeRates exchangeRates = ExchangeRates.of(Map.of(
+                "EURBYN", new BigDecimal("3.42"),
+                "USDBYN", new BigDecimal("3.17"),
+                "RUBBYN", new BigDecimal("0.033488")
+        ), Currency.BYN);
+        BigDecimal expected = new BigDecimal("3.42")
+                .multiply(BigDecimal.ONE.divide(new BigDecimal("3.17"), ExchangeRates.RATE_CONTEXT),
+                        ExchangeRates.RATE_CONTEXT);
+
+        //when
+        BigDecimal actual = exchangeRates.rate(Currency.EUR, Currency.USD);
+
+        //then
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    void convertTest_shouldRoundConvertedAmountToMoneyScale() {
+        //given
+        ExchangeRates exchangeRates = ExchangeRates.of(Map.of(
+                "EURBYN", new BigDecimal("3.42"),
+                "USDBYN", new BigDecimal("3.17"),
+                "RUBBYN", new BigDecimal("0.033488")
+        ), Currency.BYN);
+
+        //when
+        BigDecimal actual = exchangeRates.convert(new BigDecimal("10.01"), Currency.RUB, Currency.BYN);
+
+        //then
+        Assertions.assertEquals(new BigDecimal("0.34"), actual);
+    }
+
+    @Test
+    void ofTest_shouldThrowExceptionIfPairCannotBeDerived() {
+        //given
+        Map<String, BigDecimal> rates = Map.of("EURBYN", new BigDecimal("3.42"));
+
+        //then
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExchangeRates.of(rates, Currency.BYN));
+    }
+}
@@ -0,0 +1,52 @@
+package ru.clevertec.bank.util.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.clevertec.bank.dto.TransactionResponseDto;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.TransactionType;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+class ExportFormatTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final TransactionResponseDto transfer = new TransactionResponseDto(12L, new Money(1050, Currency.USD),
+            TransactionType.TRANSFER, Currency.USD, 1L, 2L, LocalDateTime.of(2023, 9, 15, 12, 30),
+            new BigDecimal("3.17"), new Money(3329, Currency.BYN));
+
+    @Test
+    void writeTest_shouldWriteCsvLineInOrderOfHeader() throws IOException {
+        //given
+        StringWriter writer = new StringWriter();
+
+        //when
+        ExportFormat.CSV.write(writer, transfer, objectMapper);
+
+        //then
+        Assertions.assertEquals(ExportFormat.CSV.header().split(",").length, writer.toString().split(",").length);
+        Assertions.assertEquals("12,TRANSFER,10.50,USD,1,2,2023-09-15T12:30,3.17,33.29,BYN\n", writer.toString());
+    }
+
+    @Test
+    void writeTest_shouldWriteOneJsonObjectPerLine() throws IOException {
+        //given
+        StringWriter writer = new StringWriter();
+
+        //when
+        ExportFormat.NDJSON.write(writer, transfer, objectMapper);
+        ExportFormat.NDJSON.write(writer, transfer, objectMapper);
+
+        //then
+        String[] lines = writer.toString().split("\n");
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertEquals(12L, objectMapper.readTree(lines[0]).get("id").asLong());
+        Assertions.assertEquals("", ExportFormat.NDJSON.header());
+    }
+}
@@ -0,0 +1,62 @@
+package ru.clevertec.bank.util.idempotency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RecentKeyFilterTest {
+
+    @Test
+    void mightContainTest_shouldFindAddedKeysAndRejectMostOthers() {
+        //given
+        RecentKeyFilter filter = new RecentKeyFilter(1 << 16, 5, 10_000);
+        for (int i = 0; i < 1_000; i++) {
+            filter.add("added-" + i);
+        }
+
+        //when
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("fresh-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        //then
+        for (int i = 0; i < 1_000; i++) {
+            Assertions.assertTrue(filter.mightContain("added-" + i));
+        }
+        Assertions.assertTrue(falsePositives < 10, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void addTest_shouldForgetKeysOnceTheirGenerationIsRotatedOut() {
+        //given
+        RecentKeyFilter filter = new RecentKeyFilter(1 << 12, 3, 100);
+        filter.add("oldest");
+        for (int i = 1; i < 100; i++) {
+            filter.add("first-" + i);
+        }
+        boolean rememberedInPreviousGeneration = filter.mightContain("oldest");
+
+        //when
+        for (int i = 0; i < 100; i++) {
+            filter.add("second-" + i);
+        }
+
+        //then
+        Assertions.assertTrue(rememberedInPreviousGeneration);
+        Assertions.assertFalse(filter.mightContain("oldest"));
+    }
+
+    @Test
+    void mightContainTest_shouldReportEveryKeyWhenDisabled() {
+        //given
+        RecentKeyFilter filter = RecentKeyFilter.disabled();
+
+        //when
+        boolean actual = filter.mightContain("never-added");
+
+        //then
+        Assertions.assertTrue(actual);
+    }
+}
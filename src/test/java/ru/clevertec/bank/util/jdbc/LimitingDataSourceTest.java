@@ -0,0 +1,68 @@
+package ru.clevertec.bank.util.jdbc;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class LimitingDataSourceTest {
+
+    private DataSource delegate;
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        delegate = mock(DataSource.class);
+        connection = mock(Connection.class);
+        doReturn(connection).when(delegate).getConnection();
+    }
+
+    @Test
+    void getConnectionTest_shouldFailWhenNoConnectionIsReturnedInTime() throws SQLException {
+        //given
+        LimitingDataSource dataSource = new LimitingDataSource(delegate, 1, 1, Duration.ofMillis(10));
+        dataSource.getConnection();
+
+        //when
+        //then
+        Assertions.assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+    }
+
+    @Test
+    void getConnectionTest_shouldFailAtOnceWhenTooManyCallersWait() throws SQLException {
+        //given
+        LimitingDataSource dataSource = new LimitingDataSource(delegate, 1, 0, Duration.ofMinutes(1));
+        dataSource.getConnection();
+
+        //when
+        //then
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+                Assertions.assertThrows(SQLTransientConnectionException.class, dataSource::getConnection));
+    }
+
+    @Test
+    void closeTest_shouldLetNextCallerHaveConnection() throws SQLException {
+        //given
+        LimitingDataSource dataSource = new LimitingDataSource(delegate, 1, 0, Duration.ofMillis(10));
+        Connection first = dataSource.getConnection();
+
+        //when
+        first.close();
+        first.close();
+        dataSource.getConnection();
+
+        //then
+        verify(connection, times(2)).close();
+        Assertions.assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+    }
+}
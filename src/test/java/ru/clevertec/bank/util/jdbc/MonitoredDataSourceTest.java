@@ -0,0 +1,98 @@
+package ru.clevertec.bank.util.jdbc;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+class MonitoredDataSourceTest {
+
+    private static final String SELECT = "SELECT id FROM accounts WHERE number = ?";
+    private static final String UPDATE = "UPDATE accounts SET balance = ? WHERE id = ?";
+
+    private DataSource delegate;
+    private Connection connection;
+    private PreparedStatement statement;
+    private QueryStatistics statistics;
+    private MonitoredDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        delegate = mock(DataSource.class);
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        doReturn(connection).when(delegate).getConnection();
+        doReturn(statement).when(connection).prepareStatement(SELECT);
+        doReturn(statement).when(connection).prepareStatement(UPDATE);
+        statistics = new QueryStatistics(10, Duration.ofMinutes(1));
+        dataSource = new MonitoredDataSource(delegate, statistics);
+    }
+
+    @Test
+    void executeQueryTest_shouldCountExecutionAndRowsRead() throws SQLException {
+        //given
+        ResultSet resultSet = mock(ResultSet.class);
+        doReturn(resultSet).when(statement).executeQuery();
+        doReturn(true, true, false).when(resultSet).next();
+
+        //when
+        try (Connection proxy = dataSource.getConnection();
+             PreparedStatement prepared = proxy.prepareStatement(SELECT)) {
+            prepared.setString(1, "AS12 1234");
+            ResultSet rows = prepared.executeQuery();
+            while (rows.next()) {
+                rows.getLong("id");
+            }
+        }
+        List<QueryStats> actual = statistics.snapshot();
+
+        //then
+        Assertions.assertEquals(List.of(new QueryStats(SELECT, 1, 0, actual.get(0).totalMillis(),
+                actual.get(0).maxMillis(), 2)), actual);
+    }
+
+    @Test
+    void executeUpdateTest_shouldCountFailure() throws SQLException {
+        //given
+        doReturn(1).doThrow(new SQLException("deadlock detected")).when(statement).executeUpdate();
+
+        //when
+        try (Connection proxy = dataSource.getConnection();
+             PreparedStatement prepared = proxy.prepareStatement(UPDATE)) {
+            prepared.executeUpdate();
+            Assertions.assertThrows(SQLException.class, prepared::executeUpdate);
+        }
+        QueryStats actual = statistics.snapshot().get(0);
+
+        //then
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(2, actual.count()),
+                () -> Assertions.assertEquals(1, actual.errors()),
+                () -> Assertions.assertEquals(1, actual.rows())
+        );
+    }
+
+    @Test
+    void unwrapTest_shouldReachDriverConnection() throws SQLException {
+        //given
+        PGConnection pgConnection = mock(PGConnection.class);
+        doReturn(pgConnection).when(connection).unwrap(PGConnection.class);
+
+        //when
+        PGConnection actual = dataSource.getConnection().unwrap(PGConnection.class);
+
+        //then
+        Assertions.assertSame(pgConnection, actual);
+    }
+}
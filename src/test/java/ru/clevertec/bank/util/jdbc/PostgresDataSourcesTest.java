@@ -0,0 +1,33 @@
+package ru.clevertec.bank.util.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+import ru.clevertec.bank.util.yaml.PostgresProperties;
+
+class PostgresDataSourcesTest {
+
+    @Test
+    void pooledTest_shouldApplyPoolAndStatementCacheSettingsWithoutConnecting() {
+        //given
+        PostgresProperties properties = new PostgresProperties();
+        properties.setUrl("jdbc:postgresql://localhost:5432/postgres");
+        properties.setMaximumPoolSize(4);
+        properties.setPrepareThreshold(1);
+        properties.setPreparedStatementCacheQueries(128);
+
+        //when
+        try (HikariDataSource actual = PostgresDataSources.pooled(properties)) {
+            PGSimpleDataSource driver = (PGSimpleDataSource) actual.getDataSource();
+
+            //then
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(4, actual.getMaximumPoolSize()),
+                    () -> Assertions.assertNull(actual.getHikariPoolMXBean()),
+                    () -> Assertions.assertEquals(1, driver.getPrepareThreshold()),
+                    () -> Assertions.assertEquals(128, driver.getPreparedStatementCacheQueries())
+            );
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package ru.clevertec.bank.util.ledger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.clevertec.bank.entity.Account;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.IdempotencyKey;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.exception.DuplicateRequestException;
+import ru.clevertec.bank.exception.MoneyTransferException;
+import ru.clevertec.bank.util.exchange.ExchangeRateProvider;
+import ru.clevertec.bank.util.yaml.LedgerProperties;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceEngineTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private ExchangeRateProvider exchangeRateProvider;
+
+    @Test
+    void transferTest_shouldMoveMoneyAcrossShardsAndApplyItOnce() {
+        //given
+        InMemoryLedgerStore store = new InMemoryLedgerStore(Map.of(1L, byn("100.00"), 2L, usd("0.00")));
+        when(exchangeRateProvider.rateAt(eq(Currency.BYN), eq(Currency.USD), any(LocalDateTime.class)))
+                .thenReturn(new BigDecimal("0.315288"));
+        Account sender = account(1L, Currency.BYN);
+        Account receiver = account(2L, Currency.USD);
+
+        //when
+        Transaction actual;
+        try (BalanceEngine engine = engine(store)) {
+            engine.start();
+            actual = engine.transfer(sender, receiver, byn("10"), null);
+        }
+
+        //then
+        Assertions.assertEquals(usd("3.15"), actual.getConvertedAmount());
+        Assertions.assertEquals(1L, actual.getId());
+        Assertions.assertEquals(byn("90.00"), store.balances.get(1L));
+        Assertions.assertEquals(usd("3.15"), store.balances.get(2L));
+        Assertions.assertEquals(1, store.applied.size());
+    }
+
+    @Test
+    void quiesceTest_shouldApplyTransferCreditedByParkedShardBeforeAction() throws Exception {
+        //given
+        InMemoryLedgerStore store = new InMemoryLedgerStore(Map.of(1L, byn("100.00"), 2L, usd("0.00")));
+        when(exchangeRateProvider.rateAt(eq(Currency.BYN), eq(Currency.USD), any(LocalDateTime.class)))
+                .thenReturn(new BigDecimal("0.315288"));
+        Account sender = account(1L, Currency.BYN);
+        Account receiver = account(2L, Currency.USD);
+        store.pausedAccountId = 1L;
+        List<Money> seen = new ArrayList<>();
+
+        //when
+        try (BalanceEngine engine = engine(store)) {
+            engine.start();
+            CompletableFuture<Transaction> transfer = CompletableFuture.supplyAsync(
+                    () -> engine.transfer(sender, receiver, byn("10"), null));
+            Assertions.assertTrue(store.paused.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Void> quiesce = CompletableFuture.runAsync(
+                    () -> engine.quiesce(() -> seen.add(store.findBalance(2L).orElseThrow())));
+            TimeUnit.MILLISECONDS.sleep(200);
+            store.resumed.countDown();
+            transfer.get(5, TimeUnit.SECONDS);
+            quiesce.get(5, TimeUnit.SECONDS);
+        }
+
+        //then
+        Assertions.assertEquals(List.of(usd("3.15")), seen);
+        Assertions.assertEquals(byn("90.00"), store.balances.get(1L));
+    }
+
+    @Test
+    void withdrawTest_shouldRejectWithdrawalAboveDecidedBalance() {
+        //given
+        InMemoryLedgerStore store = new InMemoryLedgerStore(Map.of(1L, byn("15.00")));
+        Account account = account(1L, Currency.BYN);
+
+        //when
+        try (BalanceEngine engine = engine(store)) {
+            engine.start();
+            engine.withdraw(account, byn("10"), null);
+
+            //then
+            Assertions.assertThrows(MoneyTransferException.class,
+                    () -> engine.withdraw(account, byn("10"), null));
+        }
+        Assertions.assertEquals(byn("5.00"), store.balances.get(1L));
+    }
+
+    @Test
+    void depositTest_shouldRefuseSecondOperationWithSameKey() {
+        //given
+        InMemoryLedgerStore store = new InMemoryLedgerStore(Map.of(1L, byn("0.00")));
+        Account account = account(1L, Currency.BYN);
+        IdempotencyKey key = new IdempotencyKey("key-1", "deposit:1:5", LocalDateTime.now());
+
+        //when
+        try (BalanceEngine engine = engine(store)) {
+            engine.start();
+            engine.deposit(account, byn("5"), key);
+
+            //then
+            Assertions.assertThrows(DuplicateRequestException.class,
+                    () -> engine.deposit(account, byn("5"), key));
+        }
+        Assertions.assertEquals(byn("5.00"), store.balances.get(1L));
+        Assertions.assertTrue(store.keys.containsKey("key-1"));
+    }
+
+    @Test
+    void startTest_shouldReplayEntriesThatWereNotApplied() {
+        //given
+        InMemoryLedgerStore store = new InMemoryLedgerStore(Map.of(1L, byn("20.00")));
+        Account account = account(1L, Currency.BYN);
+        try (BalanceEngine engine = engine(store)) {
+            engine.start();
+            store.failing = true;
+            engine.withdraw(account, byn("5"), null);
+        }
+        store.failing = false;
+
+        //when
+        try (BalanceEngine engine = engine(store)) {
+            engine.start();
+            engine.withdraw(account, byn("15"), null);
+
+            //then
+            Assertions.assertThrows(MoneyTransferException.class,
+                    () -> engine.withdraw(account, byn("0.01"), null));
+        }
+        Assertions.assertEquals(byn("0.00"), store.balances.get(1L));
+        Assertions.assertEquals(2, store.applied.size());
+    }
+
+    @Test
+    void withdrawTest_shouldCompactLogOnceEntriesAreApplied() throws IOException {
+        //given
+        InMemoryLedgerStore store = new InMemoryLedgerStore(Map.of(1L, byn("20.00")));
+        Account account = account(1L, Currency.BYN);
+        try (BalanceEngine engine = engine(store, 1)) {
+            engine.start();
+            for (int i = 0; i < 5; i++) {
+                engine.withdraw(account, byn("1"), null);
+            }
+            engine.quiesce(() -> {
+            });
+
+            //when
+            engine.withdraw(account, byn("1"), null);
+        }
+
+        //then
+        List<LedgerEntry> logged = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.open(1, directory.resolve("shard-1.wal"))) {
+            log.read(logged::add);
+        }
+        Assertions.assertTrue(logged.size() <= 1);
+        Assertions.assertEquals(6, store.deletedBelow);
+        try (BalanceEngine engine = engine(store)) {
+            engine.start();
+            engine.withdraw(account, byn("14"), null);
+            Assertions.assertThrows(MoneyTransferException.class,
+                    () -> engine.withdraw(account, byn("0.01"), null));
+        }
+        Assertions.assertEquals(byn("0.00"), store.balances.get(1L));
+    }
+
+    private BalanceEngine engine(LedgerStore store) {
+        return engine(store, new LedgerProperties().getMaximumLogBytes());
+    }
+
+    private BalanceEngine engine(LedgerStore store, long maximumLogBytes) {
+        LedgerProperties properties = new LedgerProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setShards(2);
+        properties.setOperationTimeoutMillis(2_000);
+        properties.setMaximumLogBytes(maximumLogBytes);
+        return new BalanceEngine(properties, store, exchangeRateProvider);
+    }
+
+    private static Account account(Long id, Currency currency) {
+        Account account = new Account("5169" + id, Money.zero(currency), currency, 1L, 1L, LocalDate.now(), true);
+        account.setId(id);
+        return account;
+    }
+
+    private static Money byn(String amount) {
+        return Money.of(new BigDecimal(amount), Currency.BYN);
+    }
+
+    private static Money usd(String amount) {
+        return Money.of(new BigDecimal(amount), Currency.USD);
+    }
+
+    private static class InMemoryLedgerStore implements LedgerStore {
+
+        private final Map<Long, Money> balances = new HashMap<>();
+        private final Map<String, IdempotencyKey> keys = new HashMap<>();
+        private final Set<String> applied = new HashSet<>();
+        private final CountDownLatch paused = new CountDownLatch(1);
+        private final CountDownLatch resumed = new CountDownLatch(1);
+        private long lastTransactionId;
+        private volatile boolean failing;
+        private volatile long pausedAccountId;
+        private volatile long deletedBelow;
+
+        InMemoryLedgerStore(Map<Long, Money> balances) {
+            this.balances.putAll(balances);
+        }
+
+        @Override
+        public Optional<Money> findBalance(long accountId) {
+            if (accountId == pausedAccountId) {
+                paused.countDown();
+                try {
+                    resumed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (this) {
+                return Optional.ofNullable(balances.get(accountId));
+            }
+        }
+
+        @Override
+        public synchronized void applyLedger(List<LedgerEntry> entries) {
+            if (failing) {
+                throw new IllegalStateException("database is down");
+            }
+            for (LedgerEntry entry : entries) {
+                if (!applied.add(entry.shard() + "/" + entry.sequence())) {
+                    continue;
+                }
+                if (entry.debitAccountId() != 0) {
+                    balances.merge(entry.debitAccountId(), new Money(-entry.amount(), entry.currency()), Money::plus);
+                }
+                if (entry.creditAccountId() != 0) {
+                    balances.merge(entry.creditAccountId(), new Money(entry.convertedAmount(), entry.creditCurrency()),
+                            Money::plus);
+                }
+                if (entry.idempotencyKey() != null) {
+                    keys.put(entry.idempotencyKey(), entry.toIdempotencyKey());
+                }
+            }
+        }
+
+        @Override
+        public synchronized long[] reserveTransactionIds(int count) {
+            long[] ids = new long[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = ++lastTransactionId;
+            }
+            return ids;
+        }
+
+        @Override
+        public synchronized Set<Long> findAppliedSequences(int shard, long fromSequence) {
+            Set<Long> found = new HashSet<>();
+            for (String position : new ArrayList<>(applied)) {
+                String[] parts = position.split("/");
+                long sequence = Long.parseLong(parts[1]);
+                if (Integer.parseInt(parts[0]) == shard && sequence >= fromSequence) {
+                    found.add(sequence);
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public synchronized long findLastAppliedSequence(int shard) {
+            return findAppliedSequences(shard, 0).stream().mapToLong(Long::longValue).max().orElse(0);
+        }
+
+        @Override
+        public synchronized void deleteAppliedSequences(int shard, long belowSequence) {
+            applied.removeIf(position -> position.startsWith(shard + "/")
+                    && Long.parseLong(position.substring(position.indexOf('/') + 1)) < belowSequence);
+            deletedBelow = belowSequence;
+        }
+
+        @Override
+        public synchronized Optional<IdempotencyKey> findIdempotencyKey(String key) {
+            return Optional.ofNullable(keys.get(key));
+        }
+    }
+}
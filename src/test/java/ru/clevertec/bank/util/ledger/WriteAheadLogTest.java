@@ -0,0 +1,74 @@
+package ru.clevertec.bank.util.ledger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.TransactionType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void openTest_shouldRecoverSyncedEntriesAndCutTornTail() throws IOException {
+        //given
+        Path file = directory.resolve("shard-0.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(0, file)) {
+            log.append(entry(0, 1, "key-1"));
+            log.append(entry(0, 2, null));
+            log.sync();
+            log.append(entry(0, 3, null));
+        }
+        long intactLength = Files.size(file);
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        //when
+        List<LedgerEntry> actual = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.open(0, file)) {
+            log.read(actual::add);
+        }
+
+        //then
+        Assertions.assertEquals(List.of(entry(0, 1, "key-1"), entry(0, 2, null)), actual);
+        Assertions.assertEquals(intactLength, Files.size(file));
+    }
+
+    @Test
+    void rewriteTest_shouldKeepOnlyGivenEntriesAndAcceptAppends() throws IOException {
+        //given
+        Path file = directory.resolve("shard-1.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(1, file)) {
+            log.append(entry(1, 1, null));
+            log.append(entry(1, 2, null));
+            log.sync();
+
+            //when
+            log.rewrite(List.of(entry(1, 2, null)));
+            log.append(entry(1, 3, null));
+            log.sync();
+        }
+
+        //then
+        List<LedgerEntry> actual = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.open(1, file)) {
+            log.read(actual::add);
+        }
+        Assertions.assertEquals(List.of(entry(1, 2, null), entry(1, 3, null)), actual);
+    }
+
+    private static LedgerEntry entry(int shard, long sequence, String idempotencyKey) {
+        return new LedgerEntry(shard, sequence, 100 + sequence, TransactionType.TRANSFER, 1, 2, 1_000, 315,
+                new BigDecimal("0.315288"), Currency.BYN, Currency.USD, 1_694_736_000_000L + sequence, idempotencyKey,
+                idempotencyKey == null ? null : "transfer:1:2:10");
+    }
+}
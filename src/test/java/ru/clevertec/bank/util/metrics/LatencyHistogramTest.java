@@ -0,0 +1,56 @@
+package ru.clevertec.bank.util.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    @Test
+    void quantileTest_shouldStayWithinRelativeErrorOfBucket() {
+        //given
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        //when
+        long p50 = histogram.quantile(0.5);
+        long p99 = histogram.quantile(0.99);
+
+        //then
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(500_000, p50, 500_000 * 0.04),
+                () -> Assertions.assertEquals(990_000, p99, 990_000 * 0.04),
+                () -> Assertions.assertEquals(1_000, histogram.getCount())
+        );
+    }
+
+    @Test
+    void quantileTest_shouldNotExceedMaximumRecordedValue() {
+        //given
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_001);
+
+        //when
+        long actual = histogram.quantile(0.999);
+
+        //then
+        Assertions.assertEquals(1_000_001, actual);
+    }
+
+    @Test
+    void bucketTest_shouldMapEveryValueIntoBucketThatContainsIt() {
+        //given
+        long[] values = {0, 1, 31, 32, 63, 64, 1_000, 123_456_789, 1L << 40, Long.MAX_VALUE};
+
+        //when
+        //then
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucket(value);
+            if (value < 1L << 41) {
+                Assertions.assertTrue(LatencyHistogram.upperBound(bucket) >= value);
+                Assertions.assertTrue(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < value);
+            }
+        }
+    }
+}
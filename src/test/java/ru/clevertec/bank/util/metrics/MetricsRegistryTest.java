@@ -0,0 +1,74 @@
+package ru.clevertec.bank.util.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+class MetricsRegistryTest {
+
+    @Test
+    void counterTest_shouldReturnSameCounterForSameLabels() {
+        //given
+        MetricsRegistry registry = new MetricsRegistry();
+
+        //when
+        registry.counter("requests_total", "Requests.", "status", "400").increment();
+        registry.counter("requests_total", "Requests.", "status", "400").increment();
+        long actual = registry.counter("requests_total", "Requests.", "status", "400").get();
+
+        //then
+        Assertions.assertEquals(2, actual);
+    }
+
+    @Test
+    void writeTest_shouldWriteCountersAndTimersInPrometheusFormat() {
+        //given
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("requests_total", "Requests.", "status", "404").add(3);
+        Timer timer = registry.timer("call_seconds", "Calls.", "method", "find");
+        timer.record(2_000_000_000L);
+        StringWriter writer = new StringWriter();
+
+        //when
+        registry.write(writer);
+        String actual = writer.toString();
+
+        //then
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(actual.contains("# TYPE requests_total counter\n")),
+                () -> Assertions.assertTrue(actual.contains("requests_total{status=\"404\"} 3\n")),
+                () -> Assertions.assertTrue(actual.contains("# TYPE call_seconds summary\n")),
+                () -> Assertions.assertTrue(actual.contains("call_seconds{method=\"find\",quantile=\"0.5\"} 2\n")),
+                () -> Assertions.assertTrue(actual.contains("call_seconds_count{method=\"find\"} 1\n")),
+                () -> Assertions.assertTrue(actual.contains("call_errors_total{method=\"find\"} 0\n"))
+        );
+    }
+
+    @Test
+    void timerTest_shouldCountFailureAndRethrowIt() {
+        //given
+        Timer timer = new MetricsRegistry().timer("call_seconds", "Calls.");
+
+        //when
+        Assertions.assertThrows(IllegalStateException.class, () -> timer.time(() -> {
+            throw new IllegalStateException();
+        }));
+
+        //then
+        Assertions.assertEquals(1, timer.getErrors());
+        Assertions.assertEquals(1, timer.getHistogram().getCount());
+    }
+
+    @Test
+    void counterTest_shouldRejectSameNameWithOtherLabels() {
+        //given
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("requests_total", "Requests.", "status", "400");
+
+        //when
+        //then
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> registry.counter("requests_total", "Requests.", "method", "GET"));
+    }
+}
@@ -0,0 +1,48 @@
+package ru.clevertec.bank.util.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.clevertec.bank.entity.AccountEvent;
+import ru.clevertec.bank.entity.AccountEventType;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+class FileSinkTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void publishTest_shouldAppendOneJsonLinePerEvent() throws Exception {
+        //given
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        Path file = directory.resolve("outbox/events.ndjson");
+        AccountEvent event = new AccountEvent(5L, 9L, AccountEventType.WITHDRAW, new Money(-1050, Currency.USD),
+                Currency.USD, LocalDateTime.of(2023, 9, 15, 12, 0));
+        event.setId(1L);
+
+        //when
+        try (FileSink sink = new FileSink(file, objectMapper)) {
+            sink.publish(List.of(event));
+            sink.publish(List.of(event));
+        }
+
+        //then
+        List<String> lines = Files.readAllLines(file);
+        Assertions.assertEquals(2, lines.size());
+        JsonNode json = objectMapper.readTree(lines.get(0));
+        Assertions.assertEquals(5L, json.get("accountId").asLong());
+        Assertions.assertEquals("WITHDRAW", json.get("type").asText());
+        Assertions.assertEquals("-10.5", json.get("amount").decimalValue().stripTrailingZeros().toPlainString());
+        Assertions.assertEquals("USD", json.get("currency").asText());
+    }
+}
@@ -0,0 +1,80 @@
+package ru.clevertec.bank.util.outbox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.clevertec.bank.entity.AccountEvent;
+import ru.clevertec.bank.entity.AccountEventType;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.exception.RepositoryException;
+import ru.clevertec.bank.repository.OutboxRepository;
+import ru.clevertec.bank.util.yaml.OutboxProperties;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    @Test
+    void drainTest_shouldPublishFullBatchesToEverySinkUntilOutboxIsDrained() {
+        //given
+        OutboxRepository repository = mock(OutboxRepository.class);
+        OutboxProperties properties = new OutboxProperties();
+        properties.setBatchSize(2);
+        List<AccountEvent> events = List.of(event(1), event(2));
+        when(repository.publishBatch(eq(2), any())).thenAnswer(invocation -> {
+            invocation.getArgument(1, OutboxSink.class).publish(events);
+            return 2;
+        }).thenReturn(1);
+        List<AccountEvent> first = new ArrayList<>();
+        List<AccountEvent> second = new ArrayList<>();
+        SubscriberSink subscribers = new SubscriberSink();
+        subscribers.subscribe(second::addAll);
+        OutboxRelay relay = new OutboxRelay(properties, repository, List.of(first::addAll, subscribers));
+
+        //when
+        int actual = relay.drain();
+
+        //then
+        Assertions.assertEquals(3, actual);
+        Assertions.assertEquals(events, first);
+        Assertions.assertEquals(events, second);
+        verify(repository, times(2)).publishBatch(eq(2), any());
+    }
+
+    @Test
+    void drainTest_shouldFailWhenSinkRejectsBatch() {
+        //given
+        OutboxRepository repository = mock(OutboxRepository.class);
+        when(repository.publishBatch(any(Integer.class), any())).thenAnswer(invocation -> {
+            try {
+                invocation.getArgument(1, OutboxSink.class).publish(List.of(event(1)));
+            } catch (Exception ex) {
+                throw new RepositoryException(ex.getMessage());
+            }
+            return 1;
+        });
+        OutboxSink failing = events -> {
+            throw new IllegalStateException("sink is down");
+        };
+        OutboxRelay relay = new OutboxRelay(new OutboxProperties(), repository, List.of(failing));
+
+        //when, then
+        Assertions.assertThrows(RepositoryException.class, relay::drain);
+    }
+
+    private static AccountEvent event(long id) {
+        AccountEvent event = new AccountEvent(1L, id, AccountEventType.REFILL, new Money(100, Currency.BYN),
+                Currency.BYN, LocalDateTime.of(2023, 9, 15, 12, 0));
+        event.setId(id);
+        return event;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.clevertec.bank.util.posting;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import ru.clevertec.bank.repository.PostingRepository;
+import ru.clevertec.bank.util.yaml.BalanceProperties;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BalanceCompactorTest {
+
+    @Test
+    void compactTest_shouldFoldPostingsUpToWatermarkInWindows() {
+        //given
+        PostingRepository repository = mock(PostingRepository.class);
+        BalanceProperties properties = new BalanceProperties();
+        properties.setCompactionBatch(100);
+        BalanceCompactor compactor = new BalanceCompactor(properties, repository);
+        when(repository.findCompactionWatermark()).thenReturn(250L);
+
+        //when
+        long actual = compactor.compact();
+
+        //then
+        Assertions.assertEquals(250L, actual);
+        InOrder order = inOrder(repository);
+        order.verify(repository).compact(0L, 100L);
+        order.verify(repository).compact(100L, 200L);
+        order.verify(repository).compact(200L, 250L);
+    }
+
+    @Test
+    void compactTest_shouldStartFromLastCompactedPosting() {
+        //given
+        PostingRepository repository = mock(PostingRepository.class);
+        BalanceCompactor compactor = new BalanceCompactor(new BalanceProperties(), repository);
+        when(repository.findCompactionWatermark()).thenReturn(40L, 40L, 75L);
+        compactor.compact();
+
+        //when
+        long unchanged = compactor.compact();
+        long actual = compactor.compact();
+
+        //then
+        Assertions.assertEquals(40L, unchanged);
+        Assertions.assertEquals(75L, actual);
+        verify(repository).compact(40L, 75L);
+        verify(repository, times(2)).compact(anyLong(), anyLong());
+    }
+}
@@ -0,0 +1,76 @@
+package ru.clevertec.bank.util.posting;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.repository.PostingRepository;
+import ru.clevertec.bank.util.yaml.ReconciliationProperties;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PostingReconcilerTest {
+
+    private PostingRepository repository;
+    private PostingReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(PostingRepository.class);
+        ReconciliationProperties properties = new ReconciliationProperties();
+        properties.setChunkSize(100);
+        properties.setParallelism(2);
+        reconciler = new PostingReconciler(properties, repository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reconciler.close();
+    }
+
+    @Test
+    void reconcileTest_shouldSweepAllAccountsInChunksOnFirstRun() {
+        //given
+        Mismatch mismatch = new Mismatch(150, new Money(500, Currency.BYN), new Money(400, Currency.BYN));
+        when(repository.findLastId()).thenReturn(1000L);
+        when(repository.findMaxAccountId()).thenReturn(250L);
+        when(repository.findMismatches(anyLong(), anyLong())).thenReturn(List.of());
+        when(repository.findMismatches(101L, 200L)).thenReturn(List.of(mismatch));
+
+        //when
+        List<Mismatch> actual = reconciler.reconcile();
+
+        //then
+        Assertions.assertEquals(List.of(mismatch), actual);
+        verify(repository).findMismatches(1L, 100L);
+        verify(repository).findMismatches(201L, 250L);
+        verify(repository, never()).findAccountsPostedBetween(anyLong(), anyLong());
+    }
+
+    @Test
+    void reconcileTest_shouldCheckOnlyAccountsPostedSinceLastRun() {
+        //given
+        when(repository.findLastId()).thenReturn(1000L, 1200L);
+        when(repository.findMaxAccountId()).thenReturn(0L);
+        when(repository.findAccountsPostedBetween(1000L, 1200L)).thenReturn(List.of(3L, 8L));
+        when(repository.findMismatches(anyCollection())).thenReturn(List.of());
+        reconciler.reconcile();
+
+        //when
+        List<Mismatch> actual = reconciler.reconcile();
+
+        //then
+        Assertions.assertTrue(actual.isEmpty());
+        verify(repository).findMismatches(List.of(3L, 8L));
+        verify(repository, never()).findMismatches(anyLong(), anyLong());
+    }
+}
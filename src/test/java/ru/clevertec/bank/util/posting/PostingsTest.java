@@ -0,0 +1,88 @@
+package ru.clevertec.bank.util.posting;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.clevertec.bank.entity.Currency;
+import ru.clevertec.bank.entity.Money;
+import ru.clevertec.bank.entity.Posting;
+import ru.clevertec.bank.entity.SystemLedger;
+import ru.clevertec.bank.entity.Transaction;
+import ru.clevertec.bank.entity.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+class PostingsTest {
+
+    @Test
+    void ofTest_shouldDebitAccountAndCreditCashOnWithdrawal() {
+        //given
+        Transaction transaction = transaction(TransactionType.WITHDRAW, null, 2L,
+                new Money(1000, Currency.BYN), new Money(1000, Currency.BYN));
+
+        //when
+        List<Posting> actual = Postings.of(transaction);
+
+        //then
+        Assertions.assertEquals(List.of(
+                new Posting(7L, 2L, null, new Money(-1000, Currency.BYN), transaction.getCreatedDate()),
+                new Posting(7L, null, SystemLedger.CASH, new Money(1000, Currency.BYN), transaction.getCreatedDate())
+        ), actual);
+    }
+
+    @Test
+    void ofTest_shouldDebitCashAndCreditAccountOnDeposit() {
+        //given
+        Transaction transaction = transaction(TransactionType.REFILL, null, 2L,
+                new Money(1000, Currency.BYN), new Money(1000, Currency.BYN));
+
+        //when
+        List<Posting> actual = Postings.of(transaction);
+
+        //then
+        Assertions.assertEquals(List.of(
+                new Posting(7L, null, SystemLedger.CASH, new Money(-1000, Currency.BYN), transaction.getCreatedDate()),
+                new Posting(7L, 2L, null, new Money(1000, Currency.BYN), transaction.getCreatedDate())
+        ), actual);
+    }
+
+    @Test
+    void ofTest_shouldPostTransferBetweenCurrenciesThroughFxClearing() {
+        //given
+        Transaction transaction = transaction(TransactionType.TRANSFER, 1L, 2L,
+                new Money(10000, Currency.USD), new Money(31700, Currency.BYN));
+
+        //when
+        List<Posting> actual = Postings.of(transaction);
+
+        //then
+        Map<Currency, Long> sums = actual.stream().collect(Collectors.groupingBy(
+                posting -> posting.getAmount().currency(),
+                Collectors.summingLong(posting -> posting.getAmount().minorUnits())));
+        Assertions.assertEquals(Map.of(Currency.USD, 0L, Currency.BYN, 0L), sums);
+        Assertions.assertEquals(new Money(-10000, Currency.USD), actual.get(0).getAmount());
+        Assertions.assertEquals(1L, actual.get(0).getAccountId());
+        Assertions.assertEquals(new Money(31700, Currency.BYN), actual.get(3).getAmount());
+        Assertions.assertEquals(2L, actual.get(3).getAccountId());
+        Assertions.assertEquals(SystemLedger.FX_CLEARING, actual.get(1).getLedger());
+        Assertions.assertEquals(SystemLedger.FX_CLEARING, actual.get(2).getLedger());
+    }
+
+    private static Transaction transaction(TransactionType type, Long senderId, Long receiverId,
+                                           Money amount, Money convertedAmount) {
+        Transaction transaction = new Transaction();
+        transaction.setId(7L);
+        transaction.setType(type);
+        transaction.setSenderAccountId(senderId);
+        transaction.setReceiverAccountId(receiverId);
+        transaction.setAmount(amount);
+        transaction.setCurrency(amount.currency());
+        transaction.setExchangeRate(BigDecimal.ONE);
+        transaction.setConvertedAmount(convertedAmount);
+        transaction.setCreatedDate(LocalDateTime.of(2023, 9, 15, 12, 0));
+        return transaction;
+    }
+}
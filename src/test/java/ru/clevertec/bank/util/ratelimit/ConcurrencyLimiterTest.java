@@ -0,0 +1,41 @@
+package ru.clevertec.bank.util.ratelimit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class ConcurrencyLimiterTest {
+
+    @Test
+    void tryAcquireTest_shouldShedWhenSlotsAndQueueAreFull() throws InterruptedException {
+        //given
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 0, Duration.ofMinutes(1), Duration.ofSeconds(1));
+        limiter.tryAcquire();
+
+        //when
+        boolean actual = limiter.tryAcquire();
+
+        //then
+        Assertions.assertFalse(actual);
+    }
+
+    @Test
+    void tryAcquireTest_shouldStopQueueingWhenLatencyExceedsTarget() throws InterruptedException {
+        //given
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 10, Duration.ofMinutes(1), Duration.ofMillis(100));
+        limiter.tryAcquire();
+        limiter.release(Duration.ofSeconds(1).toNanos());
+        limiter.tryAcquire();
+
+        //when
+        boolean actual = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), limiter::tryAcquire);
+
+        //then
+        Assertions.assertAll(
+                () -> Assertions.assertFalse(actual),
+                () -> Assertions.assertTrue(limiter.isOverloaded()),
+                () -> Assertions.assertEquals(1, limiter.getInFlight())
+        );
+    }
+}
@@ -0,0 +1,53 @@
+package ru.clevertec.bank.util.ratelimit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void tryAcquireTest_shouldAllowBurstThenReturnWaitUntilNextToken() {
+        //given
+        RateLimiter limiter = new RateLimiter(10, 3, 16, clock::get);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(0, limiter.tryAcquire("client"));
+        }
+
+        //when
+        long actual = limiter.tryAcquire("client");
+
+        //then
+        Assertions.assertEquals(100_000_000L, actual);
+    }
+
+    @Test
+    void tryAcquireTest_shouldRefillAtConfiguredRate() {
+        //given
+        RateLimiter limiter = new RateLimiter(10, 1, 16, clock::get);
+        limiter.tryAcquire("client");
+
+        //when
+        clock.addAndGet(100_000_000L);
+        long actual = limiter.tryAcquire("client");
+
+        //then
+        Assertions.assertEquals(0, actual);
+    }
+
+    @Test
+    void tryAcquireTest_shouldKeepKeysOnDifferentStripesApart() {
+        //given
+        RateLimiter limiter = new RateLimiter(1, 1, 1 << 16, clock::get);
+        limiter.tryAcquire("1234567890123456");
+
+        //when
+        long actual = limiter.tryAcquire("6543210987654321");
+
+        //then
+        Assertions.assertEquals(0, actual);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.clevertec.bank.util.yaml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.clevertec.bank.entity.Currency;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class PropertiesProviderTest {
+
+    private static final String CONFIG = """
+            interestRate: 1
+            exchangeRates:
+              USDBYN: %s
+              EURBYN: 3.42
+              RUBBYN: 0.033488
+            """;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void clearProperty() {
+        System.clearProperty(Parser.CONFIG_PROPERTY);
+    }
+
+    @Test
+    void reloadTest_shouldPublishNewExchangeRates() throws IOException {
+        //given
+        Path config = writeConfig("3.17");
+        PropertiesProvider provider = new PropertiesProvider(new Parser());
+        PropertiesProvider.Snapshot before = provider.getSnapshot();
+
+        //when
+        Files.writeString(config, CONFIG.formatted("3.20"));
+        boolean reloaded = provider.reload();
+
+        //then
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(reloaded),
+                () -> Assertions.assertEquals(new BigDecimal("3.17"),
+                        before.exchangeRates().rate(Currency.USD, Currency.BYN)),
+                () -> Assertions.assertEquals(new BigDecimal("3.20"),
+                        provider.getExchangeRates().rate(Currency.USD, Currency.BYN))
+        );
+    }
+
+    @Test
+    void reloadTest_shouldKeepPreviousSnapshotIfRatesAreInvalid() throws IOException {
+        //given
+        Path config = writeConfig("3.17");
+        PropertiesProvider provider = new PropertiesProvider(new Parser());
+        PropertiesProvider.Snapshot expected = provider.getSnapshot();
+
+        //when
+        Files.writeString(config, CONFIG.formatted("-1"));
+        boolean reloaded = provider.reload();
+
+        //then
+        Assertions.assertFalse(reloaded);
+        Assertions.assertSame(expected, provider.getSnapshot());
+    }
+
+    private Path writeConfig(String usdRate) throws IOException {
+        Path config = directory.resolve("application.yml");
+        Files.writeString(config, CONFIG.formatted(usdRate));
+        System.setProperty(Parser.CONFIG_PROPERTY, config.toString());
+        return config;
+    }
+}